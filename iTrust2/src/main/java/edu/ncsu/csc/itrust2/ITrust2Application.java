@@ -2,8 +2,10 @@ package edu.ncsu.csc.iTrust2;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication ( scanBasePackages = { "edu.ncsu.csc.iTrust2" } )
+@EnableScheduling
 public class ITrust2Application {
     public static void main ( final String[] args ) {
         SpringApplication.run( ITrust2Application.class, args );
@@ -16,13 +16,13 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 
 import edu.ncsu.csc.iTrust2.models.User;
 import edu.ncsu.csc.iTrust2.models.enums.TransactionType;
-import edu.ncsu.csc.iTrust2.models.security.LoginAttempt;
 import edu.ncsu.csc.iTrust2.models.security.LoginBan;
 import edu.ncsu.csc.iTrust2.models.security.LoginLockout;
 import edu.ncsu.csc.iTrust2.services.UserService;
-import edu.ncsu.csc.iTrust2.services.security.LoginAttemptService;
+import edu.ncsu.csc.iTrust2.services.security.IPAccessCache;
 import edu.ncsu.csc.iTrust2.services.security.LoginBanService;
 import edu.ncsu.csc.iTrust2.services.security.LoginLockoutService;
+import edu.ncsu.csc.iTrust2.services.security.LoginThrottle;
 import edu.ncsu.csc.iTrust2.utils.EmailUtil;
 import edu.ncsu.csc.iTrust2.utils.LoggerUtil;
 
@@ -49,11 +49,14 @@ public class FailureHandler extends SimpleUrlAuthenticationFailureHandler {
     private LoginLockoutService loginLockoutService;
 
     @Autowired
-    private LoginAttemptService loginAttemptService;
+    private LoginThrottle       loginThrottle;
 
     @Autowired
     private UserService         userService;
 
+    @Autowired
+    private IPAccessCache       ipAccessCache;
+
     @Override
     public void onAuthenticationFailure ( final HttpServletRequest request, final HttpServletResponse response,
             final AuthenticationException ae ) throws IOException, ServletException {
@@ -73,10 +76,10 @@ public class FailureHandler extends SimpleUrlAuthenticationFailureHandler {
 
         if ( ae instanceof BadCredentialsException ) {
             // need to lockout IP
-            if ( loginAttemptService.countByIP( addr ) >= 5 ) {
-                loginAttemptService.clearIP( addr );
+            if ( loginThrottle.countIPFailures( addr ) >= 5 ) {
+                loginThrottle.clearIPFailures( addr );
                 // Check if need to ban IP
-                if ( loginLockoutService.getRecentIPLockouts( addr ) >= 2 ) {
+                if ( loginThrottle.countIPLockouts( addr ) >= 2 ) {
                     // BAN
                     final LoginBan ban = new LoginBan();
                     ban.setIp( addr );
@@ -84,6 +87,8 @@ public class FailureHandler extends SimpleUrlAuthenticationFailureHandler {
                     loginBanService.save( ban );
 
                     loginLockoutService.clearIP( addr );
+                    loginThrottle.clearIPLockouts( addr );
+                    ipAccessCache.invalidate( addr );
                     loggerUtil.log( TransactionType.IP_BANNED, addr, null, addr + " has been banned." );
                     this.getRedirectStrategy().sendRedirect( request, response, "/login?ipbanned" );
                 }
@@ -93,6 +98,8 @@ public class FailureHandler extends SimpleUrlAuthenticationFailureHandler {
                     lockout.setIp( addr );
                     lockout.setTime( ZonedDateTime.now() );
                     loginLockoutService.save( lockout );
+                    loginThrottle.recordIPLockout( addr );
+                    ipAccessCache.invalidate( addr );
                     loggerUtil.log( TransactionType.IP_LOCKOUT, addr, null, addr + " has been locked out for 1 hour." );
                     this.getRedirectStrategy().sendRedirect( request, response, "/login?iplocked" );
 
@@ -102,24 +109,17 @@ public class FailureHandler extends SimpleUrlAuthenticationFailureHandler {
             }
             else {
                 // fail for IP
-                final LoginAttempt attempt = new LoginAttempt();
-                attempt.setTime( ZonedDateTime.now() );
-                attempt.setIp( addr );
-                loginAttemptService.save( attempt );
-            }
-
-            // check username
-            if ( username != null ) {
-                user = userService.findByName( username );
+                loginThrottle.recordIPFailure( addr );
             }
 
             if ( user != null ) {
                 // check if need to lockout username
-                if ( loginAttemptService.countByUser( user ) >= 2 ) {
-                    loginAttemptService.clearUser( user );
+                if ( loginThrottle.countUserFailures( user ) >= 2 ) {
+                    loginThrottle.clearUserFailures( username );
                     // check if need to ban user
-                    if ( loginLockoutService.getRecentUserLockouts( user ) >= 2 ) {
+                    if ( loginThrottle.countUserLockouts( user ) >= 2 ) {
                         loginLockoutService.clearUser( user );
+                        loginThrottle.clearUserLockouts( user );
                         final LoginBan ban = new LoginBan();
                         ban.setTime( ZonedDateTime.now() );
                         ban.setUser( user );
@@ -136,6 +136,7 @@ public class FailureHandler extends SimpleUrlAuthenticationFailureHandler {
                         lock.setTime( ZonedDateTime.now() );
                         lock.setUser( user );
                         loginLockoutService.save( lock );
+                        loginThrottle.recordUserLockout( user );
                         loggerUtil.log( TransactionType.USER_LOCKOUT, username, null,
                                 username + " has been locked out for 1 hour." );
                         this.getRedirectStrategy().sendRedirect( request, response, "/login?locked" );
@@ -146,10 +147,7 @@ public class FailureHandler extends SimpleUrlAuthenticationFailureHandler {
                 }
                 else {
                     // fail for username
-                    final LoginAttempt attempt = new LoginAttempt();
-                    attempt.setTime( ZonedDateTime.now() );
-                    attempt.setUser( user );
-                    loginAttemptService.save( attempt );
+                    loginThrottle.recordUserFailure( user );
                 }
             }
 
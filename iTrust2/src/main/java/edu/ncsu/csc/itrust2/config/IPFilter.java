@@ -12,16 +12,13 @@ import javax.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.filter.GenericFilterBean;
 
-import edu.ncsu.csc.iTrust2.services.security.LoginBanService;
-import edu.ncsu.csc.iTrust2.services.security.LoginLockoutService;
+import edu.ncsu.csc.iTrust2.services.security.IPAccessCache;
+import edu.ncsu.csc.iTrust2.services.security.IPAccessCache.Access;
 
 public class IPFilter extends GenericFilterBean {
 
     @Autowired
-    private LoginBanService     loginBanService;
-
-    @Autowired
-    private LoginLockoutService loginLockoutService;
+    private IPAccessCache ipAccessCache;
 
     /*
      * Source for filter setup:
@@ -35,15 +32,16 @@ public class IPFilter extends GenericFilterBean {
         final String relative = httpRequest.getRequestURI().substring( httpRequest.getContextPath().length() );
 
         final String addr = request.getRemoteAddr();
+        final Access access = ipAccessCache.getAccess( addr );
 
         // Redirect all banned IPs to /login?ipbanned
-        if ( loginBanService.isIPBanned( addr )
+        if ( Access.BANNED == access
                 && ( !relative.contains( "/login" ) || !httpRequest.getParameterMap().containsKey( "ipbanned" ) ) ) {
             httpRequest.getSession().invalidate();
             httpResponse.sendRedirect( httpRequest.getContextPath() + "/login?ipbanned" );
         }
         // redirect all locked out IPs to /login?iplocked
-        else if ( loginLockoutService.isIPLocked( addr )
+        else if ( Access.LOCKED == access
                 && ( !relative.contains( "/login" ) || !httpRequest.getParameterMap().containsKey( "iplocked" ) ) ) {
             httpRequest.getSession().invalidate();
             httpResponse.sendRedirect( httpRequest.getContextPath() + "/login?iplocked" );
@@ -12,10 +12,9 @@ import org.springframework.security.web.authentication.WebAuthenticationDetails;
 import org.springframework.stereotype.Component;
 
 import edu.ncsu.csc.iTrust2.models.enums.TransactionType;
-import edu.ncsu.csc.iTrust2.services.UserService;
-import edu.ncsu.csc.iTrust2.services.security.LoginAttemptService;
-import edu.ncsu.csc.iTrust2.services.security.LoginBanService;
-import edu.ncsu.csc.iTrust2.services.security.LoginLockoutService;
+import edu.ncsu.csc.iTrust2.services.security.IPAccessCache;
+import edu.ncsu.csc.iTrust2.services.security.IPAccessCache.Access;
+import edu.ncsu.csc.iTrust2.services.security.LoginThrottle;
 import edu.ncsu.csc.iTrust2.utils.LoggerUtil;
 
 /**
@@ -32,16 +31,10 @@ public class LoginAuditingListener implements ApplicationListener<ApplicationEve
     private LoggerUtil          util;
 
     @Autowired
-    private LoginAttemptService loginAttemptService;
+    private LoginThrottle       loginThrottle;
 
     @Autowired
-    private LoginBanService     loginBanService;
-
-    @Autowired
-    private UserService         userService;
-
-    @Autowired
-    private LoginLockoutService loginLockoutService;
+    private IPAccessCache       ipAccessCache;
 
     @Override
     public void onApplicationEvent ( final ApplicationEvent event ) {
@@ -58,9 +51,9 @@ public class LoginAuditingListener implements ApplicationListener<ApplicationEve
             // invalidates the credentials if they happen to be correct (and
             // bypassed the lockout page via a direct API call).
             final String addr = det.getRemoteAddress();
-            if ( !loginLockoutService.isIPLocked( addr ) && !loginBanService.isIPBanned( addr ) ) {
-                loginAttemptService.clearIP( addr );
-                loginAttemptService.clearUser( userService.findByName( details.getUsername() ) );
+            if ( Access.ALLOWED == ipAccessCache.getAccess( addr ) ) {
+                loginThrottle.clearIPFailures( addr );
+                loginThrottle.clearUserFailures( details.getUsername() );
                 util.log( TransactionType.LOGIN_SUCCESS, details.getUsername() );
             }
 
@@ -1,35 +1,40 @@
 package edu.ncsu.csc.iTrust2.config;
 
 import javax.servlet.Filter;
-import javax.sql.DataSource;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.DefaultAuthenticationEventPublisher;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
-import org.springframework.security.config.annotation.authentication.configurers.provisioning.JdbcUserDetailsManagerConfigurer;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.builders.WebSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.access.channel.ChannelProcessingFilter;
 import org.springframework.security.web.authentication.SimpleUrlAuthenticationFailureHandler;
 import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
 
+import edu.ncsu.csc.iTrust2.services.security.CachedUserDetailsService;
+import edu.ncsu.csc.iTrust2.services.security.PasswordHasher;
+
 @Configuration
 @EnableWebSecurity
 @EnableGlobalMethodSecurity ( prePostEnabled = true )
 public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 
     /**
-     * DataSource used for connecting to and interacting with the database.
+     * Loads (and caches) users when they log in.
+     */
+    @Autowired
+    private CachedUserDetailsService userDetailsService;
+
+    /**
+     * Hashes and checks passwords on its own bounded pool of threads.
      */
     @Autowired
-    DataSource dataSource;
+    private PasswordHasher           passwordHasher;
 
     /**
      * Login configuration for iTrust2.
@@ -41,18 +46,10 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
      */
     @Autowired
     public void configureGlobal ( final AuthenticationManagerBuilder auth ) throws Exception {
-        final JdbcUserDetailsManagerConfigurer<AuthenticationManagerBuilder> dbManager = auth.jdbcAuthentication();
-
-        // User query enabled flag also checks for locked or banned users. The
-        // FailureHandler then
-        // determines if the DisabledUser Exception was due to ban, lockout, or
-        // true disable.
-        // POSSIBLE FUTURE CHANGE: Refactor the UserSource here along the lines
-        // of this:
-        // http://websystique.com/springmvc/spring-mvc-4-and-spring-security-4-integration-example/
-        dbManager.dataSource( dataSource ).passwordEncoder( passwordEncoder() )
-                .usersByUsernameQuery( "select username,password,enabled from user WHERE username = ?;" )
-                .authoritiesByUsernameQuery( "select user_username, roles from user_roles where user_username=?" );
+        // The enabled flag reported for each user only reflects whether the
+        // account is enabled. The FailureHandler then determines if the
+        // DisabledUser Exception was due to ban, lockout, or true disable.
+        auth.userDetailsService( userDetailsService ).passwordEncoder( passwordHasher );
         auth.authenticationEventPublisher( defaultAuthenticationEventPublisher() );
 
     }
@@ -100,17 +97,6 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
                 "/resetPassword", "/api/v1/generateUsers", "/viewEmails", "/api/v1/emails" );
     }
 
-    /**
-     * Bean used to generate a PasswordEncoder to hash the user-provided
-     * password.
-     *
-     * @return The password encoder.
-     */
-    @Bean
-    public PasswordEncoder passwordEncoder () {
-        return new BCryptPasswordEncoder();
-    }
-
     /**
      * AuthenticationEventPublisher used to assist with authentication
      *
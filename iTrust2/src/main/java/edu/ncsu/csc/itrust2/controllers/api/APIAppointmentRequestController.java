@@ -1,9 +1,21 @@
 package edu.ncsu.csc.iTrust2.controllers.api;
 
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -13,8 +25,11 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
+import edu.ncsu.csc.iTrust2.controllers.api.comm.AppointmentChanges;
 import edu.ncsu.csc.iTrust2.forms.AppointmentRequestForm;
 import edu.ncsu.csc.iTrust2.models.AppointmentRequest;
 import edu.ncsu.csc.iTrust2.models.User;
@@ -37,6 +52,27 @@ import edu.ncsu.csc.iTrust2.utils.LoggerUtil;
 @SuppressWarnings ( { "unchecked", "rawtypes" } )
 public class APIAppointmentRequestController extends APIController {
 
+    /** Header holding the total number of requests matching a listing */
+    private static final String       TOTAL_COUNT_HEADER = "X-Total-Count";
+
+    /** Requests per page, unless the request asks for otherwise */
+    private static final int          DEFAULT_PAGE_SIZE  = 50;
+
+    /** Properties requests can be sorted by */
+    private static final Set<String>  SORTABLE           = Set.of( "date", "id" );
+
+    /** Free slots returned unless asked for otherwise */
+    private static final int          DEFAULT_SLOT_LIMIT = 20;
+
+    /** Most free slots returned at once */
+    private static final int          MAX_SLOT_LIMIT     = 100;
+
+    /** How far ahead to look for free slots unless asked for otherwise */
+    private static final Duration     DEFAULT_SLOT_RANGE = Duration.ofDays( 14 );
+
+    /** Furthest ahead to look for free slots */
+    private static final Duration     MAX_SLOT_RANGE     = Duration.ofDays( 90 );
+
     @Autowired
     private AppointmentRequestService service;
 
@@ -47,48 +83,69 @@ public class APIAppointmentRequestController extends APIController {
     private UserService               userService;
 
     /**
-     * Retrieves a list of all AppointmentRequests in the database
+     * Retrieves a page of the AppointmentRequests in the database, soonest
+     * first. The total number of matching requests is returned in the
+     * `X-Total-Count` header.
      *
+     * @param status
+     *            Only requests with this status
+     * @param from
+     *            Only requests at or after this ISO date or date/time
+     * @param to
+     *            Only requests up to this ISO date/time, or up to the end of
+     *            this ISO date
+     * @param pageable
+     *            Which page of requests to return (`page`, `size`) and how to
+     *            order them (`sort=date,asc` or `sort=date,desc`)
      * @return list of appointment requests
      */
     @GetMapping ( BASE_PATH + "/appointmentrequests" )
     @PreAuthorize ( "hasAnyRole('ROLE_HCP')" )
-    public List<AppointmentRequest> getAppointmentRequests () {
-        final List<AppointmentRequest> requests = (List<AppointmentRequest>) service.findAll();
-
-        requests.stream().map( AppointmentRequest::getPatient ).distinct().forEach( e -> loggerUtil
-                .log( TransactionType.APPOINTMENT_REQUEST_VIEWED, LoggerUtil.currentUser(), e.getUsername() ) );
-
-        return requests;
+    public ResponseEntity getAppointmentRequests ( @RequestParam ( required = false ) final Status status,
+            @RequestParam ( required = false ) final String from, @RequestParam ( required = false ) final String to,
+            @PageableDefault ( size = DEFAULT_PAGE_SIZE, sort = "date" ) final Pageable pageable ) {
+        return listRequests( from, to, pageable, true,
+                ( start, end, page ) -> service.findByStatus( status, start, end, page ) );
     }
 
     /**
-     * Retrieves the AppointmentRequest specified by the username provided
+     * Retrieves a page of the pending AppointmentRequests for the logged in
+     * patient, soonest first. The total number of pending requests is
+     * returned in the `X-Total-Count` header.
      *
+     * @param pageable
+     *            Which page of requests to return and how to order them
      * @return list of appointment requests for the logged in patient
      */
     @GetMapping ( BASE_PATH + "/appointmentrequest" )
     @PreAuthorize ( "hasAnyRole('ROLE_PATIENT')" )
-    public List<AppointmentRequest> getAppointmentRequestsForPatient () {
+    public ResponseEntity getAppointmentRequestsForPatient (
+            @PageableDefault ( size = DEFAULT_PAGE_SIZE, sort = "date" ) final Pageable pageable ) {
         final User patient = userService.findByName( LoggerUtil.currentUser() );
-        return service.findByPatient( patient ).stream().filter( e -> e.getStatus().equals( Status.PENDING ) )
-                .collect( Collectors.toList() );
+        return listRequests( null, null, pageable, false,
+                ( start, end, page ) -> service.findByPatientAndStatus( patient, Status.PENDING, page ) );
     }
 
     /**
-     * Retrieves the AppointmentRequest specified by the username provided
+     * Retrieves a page of the pending AppointmentRequests for the logged in
+     * HCP, soonest first. Takes the same parameters as `/viewAppointments`.
      *
+     * @param from
+     *            Only requests at or after this date
+     * @param to
+     *            Only requests up to this date
+     * @param pageable
+     *            Which page of requests to return and how to order them
      * @return list of appointment requests for the logged in hcp
      */
     @GetMapping ( BASE_PATH + "/appointmentrequestForHCP" )
     @PreAuthorize ( "hasAnyRole('ROLE_HCP')" )
-    public List<AppointmentRequest> getAppointmentRequestsForHCP () {
-
+    public ResponseEntity getAppointmentRequestsForHCP ( @RequestParam ( required = false ) final String from,
+            @RequestParam ( required = false ) final String to,
+            @PageableDefault ( size = DEFAULT_PAGE_SIZE, sort = "date" ) final Pageable pageable ) {
         final User hcp = userService.findByName( LoggerUtil.currentUser() );
-
-        return service.findByHcp( hcp ).stream().filter( e -> e.getStatus().equals( Status.PENDING ) )
-                .collect( Collectors.toList() );
-
+        return listRequests( from, to, pageable, false,
+                ( start, end, page ) -> service.findByHcpAndStatus( hcp, Status.PENDING, start, end, page ) );
     }
 
     /**
@@ -141,7 +198,10 @@ public class APIAppointmentRequestController extends APIController {
                         errorResponse( "AppointmentRequest with the id " + request.getId() + " already exists" ),
                         HttpStatus.CONFLICT );
             }
-            service.save( request );
+            if ( !service.saveIfFree( request ) ) {
+                return new ResponseEntity( errorResponse( "The HCP already has an appointment at that time" ),
+                        HttpStatus.CONFLICT );
+            }
             loggerUtil.log( TransactionType.APPOINTMENT_REQUEST_SUBMITTED, request.getPatient(), request.getHcp() );
             return new ResponseEntity( request, HttpStatus.OK );
         }
@@ -226,7 +286,11 @@ public class APIAppointmentRequestController extends APIController {
                         HttpStatus.NOT_FOUND );
             }
 
-            service.save( request );
+            if ( !service.saveIfFree( request ) ) {
+                return new ResponseEntity( errorResponse( "The HCP already has an appointment at that time" ),
+                        HttpStatus.CONFLICT );
+            }
+
             loggerUtil.log( TransactionType.APPOINTMENT_REQUEST_UPDATED, request.getPatient(), request.getHcp() );
             if ( request.getStatus().getCode() == Status.APPROVED.getCode() ) {
                 loggerUtil.log( TransactionType.APPOINTMENT_REQUEST_APPROVED, request.getPatient(), request.getHcp() );
@@ -246,23 +310,241 @@ public class APIAppointmentRequestController extends APIController {
     }
 
     /**
-     * View Appointments will retrieve and display all appointments for the
-     * logged-in HCP that are in "approved" status
-     *
+     * View Appointments will retrieve a page of the appointments for the
+     * logged-in HCP that are in "approved" status, soonest first. The total
+     * number of matching appointments is returned in the `X-Total-Count`
+     * header.
      *
+     * @param from
+     *            Only appointments at or after this ISO date or date/time
+     * @param to
+     *            Only appointments up to this ISO date/time, or up to the end
+     *            of this ISO date
+     * @param pageable
+     *            Which page of appointments to return (`page`, `size`) and how
+     *            to order them (`sort=date,asc` or `sort=date,desc`)
      * @return The page to display for the user
      */
     @GetMapping ( BASE_PATH + "/viewAppointments" )
     @PreAuthorize ( "hasAnyRole('ROLE_HCP')" )
-    public List<AppointmentRequest> upcomingAppointments () {
+    public ResponseEntity upcomingAppointments ( @RequestParam ( required = false ) final String from,
+            @RequestParam ( required = false ) final String to,
+            @PageableDefault ( size = DEFAULT_PAGE_SIZE, sort = "date" ) final Pageable pageable ) {
         final User hcp = userService.findByName( LoggerUtil.currentUser() );
+        return listRequests( from, to, pageable, true,
+                ( start, end, page ) -> service.findByHcpAndStatus( hcp, Status.APPROVED, start, end, page ) );
+    }
+
+    /**
+     * Syncs the logged-in HCP's calendar. Without `since`, returns every
+     * approved appointment; with it, returns only the appointments approved or
+     * updated since then in `changed`, and the IDs of those deleted, moved to
+     * another HCP, or no longer approved in `deleted`. Either way, the
+     * response holds a `syncToken` to pass as `since` next time.
+     *
+     * Deletions are only kept for so long (see
+     * `AppointmentRequestService.getSyncHorizon`), so a `since` older than
+     * that gets every approved appointment again, with `fullSync` set to tell
+     * the client to replace its calendar rather than merge into it.
+     *
+     * The response carries an ETag that changes whenever the HCP's
+     * appointments do, so a client polling with `If-None-Match` gets a 304 if
+     * nothing has changed.
+     *
+     * @param since
+     *            Sync token from the last response, if any
+     * @param webRequest
+     *            The request, to check `If-None-Match` against
+     * @return The changes
+     */
+    @GetMapping ( BASE_PATH + "/appointmentrequests/calendar" )
+    @PreAuthorize ( "hasAnyRole('ROLE_HCP')" )
+    public ResponseEntity getCalendarChanges ( @RequestParam ( required = false ) final String since,
+            final WebRequest webRequest ) {
+        long from = 0;
+        if ( null != since ) {
+            try {
+                from = Long.parseLong( since );
+            }
+            catch ( final NumberFormatException e ) {
+                from = -1;
+            }
+            if ( from < 0 || from > service.getLatestVersion() ) {
+                return new ResponseEntity( errorResponse( "Invalid sync token " + since ), HttpStatus.BAD_REQUEST );
+            }
+        }
+
+        /*
+         * Only changes up to a point where every earlier change has committed
+         * are returned, and the token is the latest of the HCP's changes up to
+         * that point, so nothing that commits afterwards can be missed.
+         */
+        final User hcp = userService.findByName( LoggerUtil.currentUser() );
+        final long until = service.getSyncVersion();
+        final boolean fullSync = null == since || from < service.getSyncHorizon();
+        long token = Math.max( from, service.findLatestVersion( hcp, until ) );
+        if ( null != since && fullSync ) {
+            /* Move the token past the horizon, so the stale ETag can't match */
+            token = Math.max( token, Math.min( service.getSyncHorizon(), until ) );
+        }
+        final String etag = "W/\"" + token + "\"";
+        if ( webRequest.checkNotModified( etag ) ) {
+            return null;
+        }
+
+        final List<AppointmentRequest> changed = new ArrayList<AppointmentRequest>();
+        final Set<Long> deleted = new LinkedHashSet<Long>();
+        if ( fullSync ) {
+            changed.addAll( service.findByHcpAndStatus( hcp, Status.APPROVED, null, null, Pageable.unpaged() )
+                    .getContent() );
+        }
+        else if ( token > from ) {
+            for ( final AppointmentRequest request : service.findChanges( hcp, from, token ) ) {
+                if ( Status.APPROVED == request.getStatus() ) {
+                    changed.add( request );
+                }
+                else {
+                    deleted.add( request.getId() );
+                }
+            }
+            deleted.addAll( service.findDeletions( hcp, from, token ) );
+
+            /* A request moved away and back again is still the HCP's */
+            changed.forEach( request -> deleted.remove( request.getId() ) );
+        }
+
+        loggerUtil.logAll( TransactionType.APPOINTMENT_REQUEST_VIEWED, LoggerUtil.currentUser(),
+                changed.stream().map( r -> r.getPatient().getUsername() ).collect( Collectors.toList() ) );
+        final HttpHeaders headers = new HttpHeaders();
+        headers.setETag( etag );
+        final AppointmentChanges changes = new AppointmentChanges( Long.toString( token ), fullSync, changed,
+                new ArrayList<Long>( deleted ) );
+        return new ResponseEntity( changes, headers, HttpStatus.OK );
+    }
+
+    /**
+     * Finds the times an HCP is free for a new appointment: slots within
+     * working hours that don't overlap any of their approved appointments.
+     *
+     * @param hcp
+     *            Username of the HCP
+     * @param from
+     *            Earliest ISO date or date/time to look from; defaults to now
+     * @param to
+     *            Latest ISO date/time, or end of this ISO date, to look up to;
+     *            defaults to two weeks after `from`
+     * @param limit
+     *            Most slots to return, up to 100
+     * @return Free start times, earliest first
+     */
+    @GetMapping ( BASE_PATH + "/appointmentrequests/freeslots" )
+    @PreAuthorize ( "hasAnyRole('ROLE_HCP', 'ROLE_PATIENT')" )
+    public ResponseEntity getFreeSlots ( @RequestParam final String hcp,
+            @RequestParam ( required = false ) final String from, @RequestParam ( required = false ) final String to,
+            @RequestParam ( defaultValue = "" + DEFAULT_SLOT_LIMIT ) final int limit ) {
+        if ( limit < 1 || limit > MAX_SLOT_LIMIT ) {
+            return new ResponseEntity( errorResponse( "Limit must be between 1 and " + MAX_SLOT_LIMIT ),
+                    HttpStatus.BAD_REQUEST );
+        }
+        final User user = userService.findByName( hcp );
+        if ( null == user || !user.getRoles().contains( Role.ROLE_HCP ) ) {
+            return new ResponseEntity( errorResponse( "No HCP found with username " + hcp ), HttpStatus.NOT_FOUND );
+        }
+
+        final ZonedDateTime start;
+        final ZonedDateTime end;
+        try {
+            final ZonedDateTime now = ZonedDateTime.now();
+            final ZonedDateTime parsedFrom = parseFrom( from );
+            start = null == parsedFrom || parsedFrom.isBefore( now ) ? now : parsedFrom;
+            final ZonedDateTime parsedTo = parseTo( to );
+            end = null == parsedTo ? start.plus( DEFAULT_SLOT_RANGE ) : parsedTo;
+        }
+        catch ( final DateTimeParseException e ) {
+            return new ResponseEntity( errorResponse( "Could not parse date " + e.getParsedString() ),
+                    HttpStatus.BAD_REQUEST );
+        }
+        if ( end.isAfter( start.plus( MAX_SLOT_RANGE ) ) ) {
+            return new ResponseEntity( errorResponse( "Can only look " + MAX_SLOT_RANGE.toDays() + " days ahead" ),
+                    HttpStatus.BAD_REQUEST );
+        }
+        return new ResponseEntity( service.findFreeSlots( user, start, end, limit ), HttpStatus.OK );
+    }
+
+    /**
+     * Runs a query for a page of appointment requests and returns the page,
+     * with the total number matching in the `X-Total-Count` header.
+     *
+     * @param from
+     *            Start of the date range, as given in the request, or null
+     * @param to
+     *            End of the date range, as given in the request, or null
+     * @param pageable
+     *            The page requested
+     * @param logViews
+     *            Whether to log that the current user viewed each patient's
+     *            requests
+     * @param query
+     *            Finds the page of requests in the date range
+     * @return response
+     */
+    private ResponseEntity listRequests ( final String from, final String to, final Pageable pageable,
+            final boolean logViews, final RequestQuery query ) {
+        for ( final Sort.Order order : pageable.getSort() ) {
+            if ( !SORTABLE.contains( order.getProperty() ) ) {
+                return new ResponseEntity(
+                        errorResponse( "Appointment requests cannot be sorted by " + order.getProperty() ),
+                        HttpStatus.BAD_REQUEST );
+            }
+        }
+
+        /* Requests on the same date stay in a fixed order from page to page */
+        final Sort sort = pageable.getSort().and( Sort.by( "id" ) );
+        final ZonedDateTime start;
+        final ZonedDateTime end;
+        try {
+            start = parseFrom( from );
+            end = parseTo( to );
+        }
+        catch ( final DateTimeParseException e ) {
+            return new ResponseEntity( errorResponse( "Could not parse date " + e.getParsedString() ),
+                    HttpStatus.BAD_REQUEST );
+        }
+        if ( null != start && null != end && start.isAfter( end ) ) {
+            return new ResponseEntity( errorResponse( "Start Date is after End Date" ), HttpStatus.BAD_REQUEST );
+        }
+        final Page<AppointmentRequest> page = query.find( start, end,
+                PageRequest.of( pageable.getPageNumber(), pageable.getPageSize(), sort ) );
+
+        if ( logViews ) {
+            loggerUtil.logAll( TransactionType.APPOINTMENT_REQUEST_VIEWED, LoggerUtil.currentUser(),
+                    page.getContent().stream().map( r -> r.getPatient().getUsername() )
+                            .collect( Collectors.toList() ) );
+        }
+
+        final HttpHeaders headers = new HttpHeaders();
+        headers.add( TOTAL_COUNT_HEADER, Long.toString( page.getTotalElements() ) );
+        return new ResponseEntity( page.getContent(), headers, HttpStatus.OK );
+    }
+
+    /**
+     * Finds a page of appointment requests for one of the listings
+     */
+    @FunctionalInterface
+    private interface RequestQuery {
 
-        final List<AppointmentRequest> appointment = service.findByHcp( hcp ).stream()
-                .filter( e -> e.getStatus().equals( Status.APPROVED ) ).collect( Collectors.toList() );
-        /* Log the event */
-        appointment.stream().map( AppointmentRequest::getPatient ).distinct().forEach( e -> loggerUtil
-                .log( TransactionType.APPOINTMENT_REQUEST_VIEWED, LoggerUtil.currentUser(), e.getUsername() ) );
-        return appointment;
+        /**
+         * Finds the page of requests
+         *
+         * @param from
+         *            Start of the date range, or null
+         * @param to
+         *            End of the date range, or null
+         * @param pageable
+         *            The page to find
+         * @return The page of requests
+         */
+        Page<AppointmentRequest> find ( ZonedDateTime from, ZonedDateTime to, Pageable pageable );
     }
 
 }
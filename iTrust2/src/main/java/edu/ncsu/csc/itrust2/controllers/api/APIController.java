@@ -1,5 +1,10 @@
 package edu.ncsu.csc.iTrust2.controllers.api;
 
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+
 import com.google.gson.Gson;
 
 /**
@@ -131,4 +136,49 @@ public abstract class APIController {
             this.message = message;
         }
     }
+
+    /**
+     * Parses the start of a date range, from either an ISO date/time or an ISO
+     * date.
+     *
+     * @param from
+     *            The start of the range
+     * @return The start of the range, or null if none was given
+     * @throws DateTimeParseException
+     *             If the start is not a date
+     */
+    static final protected ZonedDateTime parseFrom ( final String from ) {
+        if ( null == from || from.isEmpty() ) {
+            return null;
+        }
+        try {
+            return ZonedDateTime.parse( from );
+        }
+        catch ( final DateTimeParseException ex ) {
+            return LocalDate.parse( from ).atStartOfDay( ZoneId.systemDefault() );
+        }
+    }
+
+    /**
+     * Parses the end of a date range, from either an ISO date/time or an ISO
+     * date. The range includes the whole of the end date.
+     *
+     * @param to
+     *            The end of the range
+     * @return The (exclusive) end of the range, or null if none was given
+     * @throws DateTimeParseException
+     *             If the end is not a date
+     */
+    static final protected ZonedDateTime parseTo ( final String to ) {
+        if ( null == to || to.isEmpty() ) {
+            return null;
+        }
+        try {
+            return ZonedDateTime.parse( to ).plusNanos( 1 );
+        }
+        catch ( final DateTimeParseException ex ) {
+            return LocalDate.parse( to ).plusDays( 1 ).atStartOfDay( ZoneId.systemDefault() );
+        }
+    }
+
 }
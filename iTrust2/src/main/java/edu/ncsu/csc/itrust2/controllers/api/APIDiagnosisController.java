@@ -1,5 +1,7 @@
 package edu.ncsu.csc.iTrust2.controllers.api;
 
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -7,6 +9,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import edu.ncsu.csc.iTrust2.models.Diagnosis;
@@ -81,20 +84,41 @@ public class APIDiagnosisController extends APIController {
     }
 
     /**
-     * Returns a list of diagnoses for the logged in patient
+     * Returns a list of diagnoses for the logged in patient, optionally limited
+     * to those made in office visits within a range of dates. Either end of the
+     * range may be an ISO date (which is included in full) or an ISO date and
+     * time.
      *
+     * @param from
+     *            Start of the date range, if any
+     * @param to
+     *            End of the date range, if any
      * @return List of Diagnoses for the patient
      */
     @GetMapping ( BASE_PATH + "/diagnoses" )
-    public List<Diagnosis> getDiagnosis () {
+    public ResponseEntity getDiagnosis ( @RequestParam ( required = false ) final String from,
+            @RequestParam ( required = false ) final String to ) {
         final User self = userService.findByName( LoggerUtil.currentUser() );
         if ( self == null ) {
             return null;
         }
+        final ZonedDateTime start;
+        final ZonedDateTime end;
+        try {
+            start = parseFrom( from );
+            end = parseTo( to );
+        }
+        catch ( final DateTimeParseException e ) {
+            return new ResponseEntity( errorResponse( "Could not parse date " + e.getParsedString() ),
+                    HttpStatus.BAD_REQUEST );
+        }
+        if ( null != start && null != end && start.isAfter( end ) ) {
+            return new ResponseEntity( errorResponse( "Start Date is after End Date" ), HttpStatus.BAD_REQUEST );
+        }
         loggerUtil.log( TransactionType.DIAGNOSIS_PATIENT_VIEW_ALL, self.getUsername(),
                 self.getUsername() + " viewed their diagnoses" );
 
-        return diagnosisService.findByPatient( self );
+        return new ResponseEntity( diagnosisService.findByPatient( self, start, end ), HttpStatus.OK );
     }
 
 }
@@ -12,6 +12,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import edu.ncsu.csc.iTrust2.forms.DrugForm;
@@ -31,11 +32,17 @@ import edu.ncsu.csc.iTrust2.utils.LoggerUtil;
 @RestController
 public class APIDrugController extends APIController {
 
+    /** Drugs returned by a search unless asked for otherwise */
+    private static final int DEFAULT_SEARCH_LIMIT = 10;
+
+    /** Most drugs a search will return */
+    private static final int MAX_SEARCH_LIMIT     = 50;
+
     @Autowired
-    private DrugService service;
+    private DrugService      service;
 
     @Autowired
-    private LoggerUtil  loggerUtil;
+    private LoggerUtil       loggerUtil;
 
     /**
      * Adds a new drug to the system. Requires admin permissions. Returns an
@@ -154,4 +161,25 @@ public class APIDrugController extends APIController {
         return (List<Drug>) service.findAll();
     }
 
+    /**
+     * Finds the drugs that best match what has been typed into a drug field,
+     * by NDC code (ie, "0777-31") or by words in the name (ie, "quet"). Served
+     * from memory, so it is cheap to call on every keystroke.
+     *
+     * @param q
+     *            What has been typed so far
+     * @param limit
+     *            Most drugs to return, up to 50
+     * @return The matching drugs, drugs whose code starts with the query first
+     */
+    @GetMapping ( BASE_PATH + "/drugs/search" )
+    public ResponseEntity searchDrugs ( @RequestParam ( defaultValue = "" ) final String q,
+            @RequestParam ( defaultValue = "" + DEFAULT_SEARCH_LIMIT ) final int limit ) {
+        if ( limit < 1 || limit > MAX_SEARCH_LIMIT ) {
+            return new ResponseEntity( errorResponse( "Limit must be between 1 and " + MAX_SEARCH_LIMIT ),
+                    HttpStatus.BAD_REQUEST );
+        }
+        return new ResponseEntity( service.search( q, limit ), HttpStatus.OK );
+    }
+
 }
@@ -12,6 +12,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import edu.ncsu.csc.iTrust2.forms.ICDCodeForm;
@@ -33,6 +34,12 @@ import edu.ncsu.csc.iTrust2.utils.LoggerUtil;
 @SuppressWarnings ( { "unchecked", "rawtypes" } )
 public class APIICDCodeController extends APIController {
 
+    /** Codes returned by a search unless asked for otherwise */
+    private static final int DEFAULT_SEARCH_LIMIT = 10;
+
+    /** Most codes a search will return */
+    private static final int MAX_SEARCH_LIMIT     = 50;
+
     @Autowired
     private LoggerUtil     loggerUtil;
 
@@ -50,6 +57,27 @@ public class APIICDCodeController extends APIController {
         return (List<ICDCode>) service.findAll();
     }
 
+    /**
+     * Finds the codes that best match what has been typed into a code field,
+     * by code (ie, "A01") or by words in the description (ie, "typh fev").
+     * Served from memory, so it is cheap to call on every keystroke.
+     *
+     * @param q
+     *            What has been typed so far
+     * @param limit
+     *            Most codes to return, up to 50
+     * @return The matching codes, codes that start with the query first
+     */
+    @GetMapping ( BASE_PATH + "/icdcodes/search" )
+    public ResponseEntity searchCodes ( @RequestParam ( defaultValue = "" ) final String q,
+            @RequestParam ( defaultValue = "" + DEFAULT_SEARCH_LIMIT ) final int limit ) {
+        if ( limit < 1 || limit > MAX_SEARCH_LIMIT ) {
+            return new ResponseEntity( errorResponse( "Limit must be between 1 and " + MAX_SEARCH_LIMIT ),
+                    HttpStatus.BAD_REQUEST );
+        }
+        return new ResponseEntity( service.search( q, limit ), HttpStatus.OK );
+    }
+
     /**
      * Returns the code with the given ID
      *
@@ -6,16 +6,25 @@ import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 
+import edu.ncsu.csc.iTrust2.controllers.api.comm.LogEntryCursor;
+import edu.ncsu.csc.iTrust2.controllers.api.comm.LogEntryPage;
 import edu.ncsu.csc.iTrust2.controllers.api.comm.LogEntryRequestBody;
 import edu.ncsu.csc.iTrust2.controllers.api.comm.LogEntryTableRow;
 import edu.ncsu.csc.iTrust2.models.User;
@@ -39,14 +48,27 @@ import edu.ncsu.csc.iTrust2.utils.LoggerUtil;
 @SuppressWarnings ( { "unchecked", "rawtypes" } )
 public class APILogEntryController extends APIController {
 
+    /** Types of event a patient is allowed to see in their own log */
+    private static final Set<TransactionType> PATIENT_VIEWABLE  = Collections
+            .unmodifiableSet( Arrays.stream( TransactionType.values() ).filter( TransactionType::isPatientViewable )
+                    .collect( Collectors.toCollection( () -> EnumSet.noneOf( TransactionType.class ) ) ) );
+
+    /** Every type of event, for users who are allowed to see everything */
+    private static final Set<TransactionType> ALL_TYPES         = Collections
+            .unmodifiableSet( EnumSet.allOf( TransactionType.class ) );
+
+    /** Lower bound used for cursor paging when no start date is given */
+    private static final ZonedDateTime        BEGINNING_OF_TIME = ZonedDateTime.of( 1970, 1, 2, 0, 0, 0, 0,
+            ZoneId.systemDefault() );
+
     @Autowired
-    private LogEntryService leservice;
+    private LogEntryService                   leservice;
 
     @Autowired
-    private UserService     userService;
+    private UserService                       userService;
 
     @Autowired
-    private LoggerUtil      loggerUtil;
+    private LoggerUtil                        loggerUtil;
 
     /**
      * Handles GET requests for the current user's log entries when searching by
@@ -60,78 +82,186 @@ public class APILogEntryController extends APIController {
     public ResponseEntity getEntryByDateRange ( @RequestBody final LogEntryRequestBody body ) {
         // If no dates are specified, get all entries, otherwise use the date
         // range
-        List<LogEntry> entries = null;
+        ZonedDateTime start = null;
+        ZonedDateTime end = null;
         try {
-            if ( body.getStartDate().equals( "" ) || body.getEndDate().equals( "" ) ) {
-                throw new ParseException( "Date", 1 );
-            }
+            start = parseStartDate( body );
+            end = parseEndDate( body );
 
-            // Parse in start/end dates as ZonedDateTimes
-            // from ISO date/time or ISO date strings
-            ZonedDateTime start;
-            try {
-                start = ZonedDateTime.parse( body.getStartDate() );
-            }
-            catch ( final DateTimeParseException ex ) {
-                start = LocalDate.parse( body.getStartDate() ).atStartOfDay( ZoneId.systemDefault() );
+            if ( start.isAfter( end ) ) {
+                return new ResponseEntity( errorResponse( "Start Date is after End Date" ), HttpStatus.NOT_ACCEPTABLE );
             }
+        }
+        catch ( final ParseException ex ) {
+            // No usable dates; search across all time
+            start = null;
+            end = null;
+        }
 
-            ZonedDateTime end;
-            try {
-                end = ZonedDateTime.parse( body.getEndDate() ).plusDays( 1 );
-            }
-            catch ( final DateTimeParseException ex ) {
-                end = LocalDate.parse( body.getEndDate() ).atStartOfDay( ZoneId.systemDefault() ).plusDays( 1 );
-            }
+        // Use only log entries that are viewable by the user
+        final User user = userService.findByName( LoggerUtil.currentUser() );
+        final boolean isPatient = user.getRoles().contains( Role.ROLE_PATIENT );
+        final Set<TransactionType> codes = isPatient ? PATIENT_VIEWABLE : ALL_TYPES;
+
+        // Let the database find only the entries that should show up on the
+        // page given the page and page length
+        final List<LogEntry> page;
+        final long total;
+        if ( body.getPage() < 1 ) {
+            page = Collections.emptyList();
+            total = 0;
+        }
+        else {
+            final Page<LogEntry> result = leservice.findPageForUser( LoggerUtil.currentUser(), start, end, codes,
+                    body.getPage() - 1, body.getPageLength() );
+            page = result.getContent();
+            total = result.getTotalElements();
+        }
+
+        final int numPages = 1 + (int) ( total / body.getPageLength() );
+
+        final List<LogEntryTableRow> table = buildRows( page, isPatient, numPages );
+
+        // Create a log entry as long as the user is on the first page
+        if ( body.page == 1 ) {
+            loggerUtil.log( TransactionType.VIEW_USER_LOG, LoggerUtil.currentUser() );
+        }
+        return new ResponseEntity( table, HttpStatus.OK );
+    }
+
+    /**
+     * Handles requests for the current user's log entries, one page at a time,
+     * using a cursor instead of a page number. The first request leaves the
+     * cursor out; each response includes the cursor to send for the page after
+     * it. Every page costs the same to retrieve no matter how far back it is,
+     * so this should be preferred for scrolling through a long history. The
+     * `page` field of the request is ignored.
+     *
+     * @param body
+     *            the request body, with the dates, page length, and cursor
+     * @return ResponseEntity with an error or a page of LogEntries
+     */
+    @PostMapping ( BASE_PATH + "/logentries/range/cursor" )
+    public ResponseEntity getEntryByDateRangeWithCursor ( @RequestBody final LogEntryRequestBody body ) {
+        if ( body.getPageLength() < 1 ) {
+            return new ResponseEntity( errorResponse( "Page length must be at least 1" ), HttpStatus.BAD_REQUEST );
+        }
+
+        ZonedDateTime start;
+        ZonedDateTime end;
+        try {
+            start = parseStartDate( body );
+            end = parseEndDate( body );
 
             if ( start.isAfter( end ) ) {
                 return new ResponseEntity( errorResponse( "Start Date is after End Date" ), HttpStatus.NOT_ACCEPTABLE );
             }
-            entries = leservice.findByDateRange( LoggerUtil.currentUser(), start, end );
         }
         catch ( final ParseException ex ) {
-            entries = leservice.findAllForUser( LoggerUtil.currentUser() );
+            // No usable dates; search across all time
+            start = BEGINNING_OF_TIME;
+            end = ZonedDateTime.now().plusYears( 1 );
         }
 
-        // If the entries array is null give an error response
-        if ( entries == null ) {
-            return new ResponseEntity( errorResponse( "Error retrieving Log Entries" ),
-                    HttpStatus.INTERNAL_SERVER_ERROR );
+        final boolean firstPage = null == body.getCursor() || body.getCursor().isEmpty();
+        final LogEntryCursor cursor;
+        try {
+            // Start just past the end of the range, including anything at the
+            // very end of it
+            cursor = firstPage ? new LogEntryCursor( end, Long.MAX_VALUE ) : LogEntryCursor.decode( body.getCursor() );
+        }
+        catch ( final IllegalArgumentException ex ) {
+            return new ResponseEntity( errorResponse( ex.getMessage() ), HttpStatus.BAD_REQUEST );
         }
 
-        // Use only log entries that are viewable by the user
-        List<LogEntry> visible;
         final User user = userService.findByName( LoggerUtil.currentUser() );
-        if ( user.getRoles().contains( Role.ROLE_PATIENT ) ) {
-            visible = new ArrayList<LogEntry>();
+        final boolean isPatient = user.getRoles().contains( Role.ROLE_PATIENT );
+        final Set<TransactionType> codes = isPatient ? PATIENT_VIEWABLE : ALL_TYPES;
 
-            for ( int i = 0; i < entries.size(); i++ ) {
-                final LogEntry le = entries.get( i );
-                if ( le.getLogCode().isPatientViewable() ) {
-                    visible.add( entries.get( i ) );
-                }
-            }
+        // Ask for one extra entry to find out whether there is another page
+        final List<LogEntry> entries = leservice.findBeforeForUser( LoggerUtil.currentUser(), start,
+                cursor.getTime(), cursor.getId(), codes, body.getPageLength() + 1 );
+        final boolean hasMore = entries.size() > body.getPageLength();
+        final List<LogEntry> page = hasMore ? entries.subList( 0, body.getPageLength() ) : entries;
+        final String nextCursor = hasMore ? new LogEntryCursor( page.get( page.size() - 1 ) ).encode() : null;
+
+        if ( firstPage ) {
+            loggerUtil.log( TransactionType.VIEW_USER_LOG, LoggerUtil.currentUser() );
         }
-        else {
-            visible = entries;
+        return new ResponseEntity( new LogEntryPage( buildRows( page, isPatient, 1 ), nextCursor ), HttpStatus.OK );
+    }
+
+    /**
+     * Parses the start date of the request, from either an ISO date/time or
+     * an ISO date string.
+     *
+     * @param body
+     *            the request body
+     * @return The start of the range
+     * @throws ParseException
+     *             If no start date was provided
+     */
+    private static ZonedDateTime parseStartDate ( final LogEntryRequestBody body ) throws ParseException {
+        if ( null == body.getStartDate() || body.getStartDate().equals( "" ) ) {
+            throw new ParseException( "Date", 1 );
+        }
+        try {
+            return ZonedDateTime.parse( body.getStartDate() );
         }
+        catch ( final DateTimeParseException ex ) {
+            return LocalDate.parse( body.getStartDate() ).atStartOfDay( ZoneId.systemDefault() );
+        }
+    }
 
-        final int numPages = 1 + visible.size() / body.getPageLength();
+    /**
+     * Parses the end date of the request, from either an ISO date/time or an
+     * ISO date string. The range includes the whole of the end date.
+     *
+     * @param body
+     *            the request body
+     * @return The end of the range
+     * @throws ParseException
+     *             If no end date was provided
+     */
+    private static ZonedDateTime parseEndDate ( final LogEntryRequestBody body ) throws ParseException {
+        if ( null == body.getEndDate() || body.getEndDate().equals( "" ) ) {
+            throw new ParseException( "Date", 1 );
+        }
+        try {
+            return ZonedDateTime.parse( body.getEndDate() ).plusDays( 1 );
+        }
+        catch ( final DateTimeParseException ex ) {
+            return LocalDate.parse( body.getEndDate() ).atStartOfDay( ZoneId.systemDefault() ).plusDays( 1 );
+        }
+    }
 
-        Collections.reverse( visible );
+    /**
+     * Turns log entries into proper table rows for the application to display
+     *
+     * @param page
+     *            The log entries on the page
+     * @param isPatient
+     *            Whether the current user is a patient
+     * @param numPages
+     *            Total number of pages
+     * @return The table rows
+     */
+    private List<LogEntryTableRow> buildRows ( final List<LogEntry> page, final boolean isPatient,
+            final int numPages ) {
+        final String currentUser = LoggerUtil.currentUser();
 
-        // Find only the entries that should show up on the page given the page
-        // and page length
-        final List<LogEntry> page = new ArrayList<LogEntry>();
-        for ( int i = 0; i < body.getPageLength(); i++ ) {
-            final int idx = ( body.getPage() - 1 ) * body.getPageLength() + i;
-            if ( idx >= 0 && visible.size() > idx ) {
-                page.add( visible.get( idx ) );
+        // Patients see the role of whoever else was involved; look all of
+        // them up at once rather than once per row
+        Map<String, User> others = Collections.emptyMap();
+        if ( isPatient ) {
+            final Set<String> names = new HashSet<String>();
+            for ( final LogEntry le : page ) {
+                names.add( otherParty( le, currentUser ) );
             }
+            names.remove( null );
+            others = userService.findByNames( names );
         }
 
-        // Turn these log entries into proper table rows for the application to
-        // display
         final List<LogEntryTableRow> table = new ArrayList<LogEntryTableRow>();
         for ( int i = 0; i < page.size(); i++ ) {
             final LogEntry le = page.get( i );
@@ -146,29 +276,31 @@ public class APILogEntryController extends APIController {
             row.setTransactionType( le.getLogCode().getDescription() );
             row.setNumPages( numPages );
 
-            if ( user.getRoles().contains( Role.ROLE_PATIENT ) ) {
+            if ( isPatient ) {
                 row.setPatient( true );
 
-                if ( le.getPrimaryUser().equals( LoggerUtil.currentUser() ) ) {
-                    final User secondary = userService.findByName( le.getSecondaryUser() );
-                    if ( secondary != null ) {
-                        row.setRole( secondary.getRoles().toString() );
-                    }
-                }
-                else {
-                    final User primary = userService.findByName( le.getPrimaryUser() );
-                    row.setRole( primary.getRoles().toString() );
+                final User other = others.get( otherParty( le, currentUser ) );
+                if ( other != null ) {
+                    row.setRole( other.getRoles().toString() );
                 }
             }
 
             table.add( row );
         }
+        return table;
+    }
 
-        // Create a log entry as long as the user is on the first page
-        if ( body.page == 1 ) {
-            loggerUtil.log( TransactionType.VIEW_USER_LOG, LoggerUtil.currentUser() );
-        }
-        return new ResponseEntity( table, HttpStatus.OK );
+    /**
+     * Finds the user on the other side of a log entry from the current user
+     *
+     * @param le
+     *            The log entry
+     * @param currentUser
+     *            Name of the current user
+     * @return The other user's name, which may be null
+     */
+    private static String otherParty ( final LogEntry le, final String currentUser ) {
+        return le.getPrimaryUser().equals( currentUser ) ? le.getSecondaryUser() : le.getPrimaryUser();
     }
 
 }
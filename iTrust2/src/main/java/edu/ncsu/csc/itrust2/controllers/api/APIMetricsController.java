@@ -0,0 +1,42 @@
+package edu.ncsu.csc.iTrust2.controllers.api;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import edu.ncsu.csc.iTrust2.utils.MetricSource;
+
+/**
+ * Reports the counters kept by caches, queues, and other internals of the
+ * application, so that they can be sized and watched. Admin only.
+ */
+@RestController
+@SuppressWarnings ( { "rawtypes", "unchecked" } )
+public class APIMetricsController extends APIController {
+
+    @Autowired
+    private List<MetricSource> sources;
+
+    /**
+     * Retrieves the current metrics from every source, keyed by source name
+     *
+     * @return response
+     */
+    @PreAuthorize ( "hasRole('ROLE_ADMIN')" )
+    @GetMapping ( BASE_PATH + "/metrics" )
+    public ResponseEntity getMetrics () {
+        final Map<String, Map<String, Number>> metrics = new TreeMap<String, Map<String, Number>>();
+        for ( final MetricSource source : sources ) {
+            metrics.put( source.getMetricName(), new TreeMap<String, Number>( source.getMetrics() ) );
+        }
+        return new ResponseEntity( metrics, HttpStatus.OK );
+    }
+
+}
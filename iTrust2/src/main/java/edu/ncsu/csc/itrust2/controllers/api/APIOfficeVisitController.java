@@ -1,8 +1,17 @@
 package edu.ncsu.csc.iTrust2.controllers.api;
 
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -11,12 +20,16 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import edu.ncsu.csc.iTrust2.controllers.api.comm.OfficeVisitSummary;
 import edu.ncsu.csc.iTrust2.forms.OfficeVisitForm;
 import edu.ncsu.csc.iTrust2.models.OfficeVisit;
 import edu.ncsu.csc.iTrust2.models.User;
+import edu.ncsu.csc.iTrust2.models.enums.AppointmentType;
 import edu.ncsu.csc.iTrust2.models.enums.TransactionType;
+import edu.ncsu.csc.iTrust2.services.OfficeVisitFilter;
 import edu.ncsu.csc.iTrust2.services.OfficeVisitService;
 import edu.ncsu.csc.iTrust2.services.UserService;
 import edu.ncsu.csc.iTrust2.utils.LoggerUtil;
@@ -25,53 +38,121 @@ import edu.ncsu.csc.iTrust2.utils.LoggerUtil;
 @SuppressWarnings ( { "unchecked", "rawtypes" } )
 public class APIOfficeVisitController extends APIController {
 
+    /** Header holding the total number of visits matching a listing */
+    private static final String      TOTAL_COUNT_HEADER = "X-Total-Count";
+
+    /** Visits per page, unless the request asks for otherwise */
+    private static final int         DEFAULT_PAGE_SIZE  = 50;
+
+    /** Properties visits can be sorted by */
+    private static final Set<String> SORTABLE           = Set.of( "date", "id" );
+
     @Autowired
-    private OfficeVisitService officeVisitService;
+    private OfficeVisitService       officeVisitService;
 
     @Autowired
-    private UserService        userService;
+    private UserService              userService;
 
     @Autowired
-    private LoggerUtil         loggerUtil;
+    private LoggerUtil               loggerUtil;
 
     /**
-     * Retrieves a list of all OfficeVisits in the database
+     * Retrieves a page of summaries of the OfficeVisits in the database. Use
+     * `/officevisits/{id}` for the rest of a visit. The total number of
+     * matching visits is returned in the `X-Total-Count` header.
      *
+     * @param from
+     *            Only visits at or after this ISO date or date/time
+     * @param to
+     *            Only visits up to this ISO date/time, or up to the end of this
+     *            ISO date
+     * @param hospital
+     *            Only visits at the hospital with this name
+     * @param type
+     *            Only visits of this type
+     * @param unpaged
+     *            Return every matching visit in one go, ignoring the page and
+     *            size. Only meant for exports.
+     * @param pageable
+     *            Which page of visits to return (`page`, `size`) and how to
+     *            order them (`sort=date,asc` or `sort=date,desc`)
      * @return list of office visits
      */
     @GetMapping ( BASE_PATH + "/officevisits" )
     @PreAuthorize ( "hasRole('ROLE_HCP')" )
-    public List<OfficeVisit> getOfficeVisits () {
+    public ResponseEntity getOfficeVisits ( @RequestParam ( required = false ) final String from,
+            @RequestParam ( required = false ) final String to,
+            @RequestParam ( required = false ) final String hospital,
+            @RequestParam ( required = false ) final AppointmentType type,
+            @RequestParam ( defaultValue = "false" ) final boolean unpaged,
+            @PageableDefault ( size = DEFAULT_PAGE_SIZE, sort = "date",
+                    direction = Sort.Direction.DESC ) final Pageable pageable ) {
         loggerUtil.log( TransactionType.VIEW_ALL_OFFICE_VISITS, LoggerUtil.currentUser() );
-        return (List<OfficeVisit>) officeVisitService.findAll();
+        return listVisits( new OfficeVisitFilter(), from, to, hospital, type, unpaged, pageable );
     }
 
     /**
-     * Retrieves all of the office visits for the current HCP.
+     * Retrieves a page of summaries of the office visits for the current HCP.
+     * Takes the same parameters as `/officevisits`.
      *
-     * @return all of the office visits for the current HCP.
+     * @param from
+     *            Only visits at or after this date
+     * @param to
+     *            Only visits up to this date
+     * @param hospital
+     *            Only visits at this hospital
+     * @param type
+     *            Only visits of this type
+     * @param unpaged
+     *            Return every matching visit in one go
+     * @param pageable
+     *            Which page of visits to return and how to order them
+     * @return the office visits for the current HCP.
      */
     @GetMapping ( BASE_PATH + "/officevisits/HCP" )
     @PreAuthorize ( "hasRole('ROLE_HCP')" )
-    public List<OfficeVisit> getOfficeVisitsForHCP () {
+    public ResponseEntity getOfficeVisitsForHCP ( @RequestParam ( required = false ) final String from,
+            @RequestParam ( required = false ) final String to,
+            @RequestParam ( required = false ) final String hospital,
+            @RequestParam ( required = false ) final AppointmentType type,
+            @RequestParam ( defaultValue = "false" ) final boolean unpaged,
+            @PageableDefault ( size = DEFAULT_PAGE_SIZE, sort = "date",
+                    direction = Sort.Direction.DESC ) final Pageable pageable ) {
         final User self = userService.findByName( LoggerUtil.currentUser() );
         loggerUtil.log( TransactionType.VIEW_ALL_OFFICE_VISITS, self );
-        final List<OfficeVisit> visits = officeVisitService.findByHcp( self );
-        return visits;
+        return listVisits( new OfficeVisitFilter().hcp( self ), from, to, hospital, type, unpaged, pageable );
     }
 
     /**
-     * Retrieves a list of all OfficeVisits in the database for the current
-     * patient
+     * Retrieves a page of summaries of the OfficeVisits in the database for the
+     * current patient. Takes the same parameters as `/officevisits`.
      *
+     * @param from
+     *            Only visits at or after this date
+     * @param to
+     *            Only visits up to this date
+     * @param hospital
+     *            Only visits at this hospital
+     * @param type
+     *            Only visits of this type
+     * @param unpaged
+     *            Return every matching visit in one go
+     * @param pageable
+     *            Which page of visits to return and how to order them
      * @return list of office visits
      */
     @GetMapping ( BASE_PATH + "/officevisits/myofficevisits" )
     @PreAuthorize ( "hasRole('ROLE_PATIENT')" )
-    public List<OfficeVisit> getMyOfficeVisits () {
+    public ResponseEntity getMyOfficeVisits ( @RequestParam ( required = false ) final String from,
+            @RequestParam ( required = false ) final String to,
+            @RequestParam ( required = false ) final String hospital,
+            @RequestParam ( required = false ) final AppointmentType type,
+            @RequestParam ( defaultValue = "false" ) final boolean unpaged,
+            @PageableDefault ( size = DEFAULT_PAGE_SIZE, sort = "date",
+                    direction = Sort.Direction.DESC ) final Pageable pageable ) {
         final User self = userService.findByName( LoggerUtil.currentUser() );
         loggerUtil.log( TransactionType.VIEW_ALL_OFFICE_VISITS, self );
-        return officeVisitService.findByPatient( self );
+        return listVisits( new OfficeVisitFilter().patient( self ), from, to, hospital, type, unpaged, pageable );
     }
 
     /**
@@ -86,11 +167,12 @@ public class APIOfficeVisitController extends APIController {
     public ResponseEntity getOfficeVisit ( @PathVariable final Long id ) {
         final User self = userService.findByName( LoggerUtil.currentUser() );
         loggerUtil.log( TransactionType.GENERAL_CHECKUP_HCP_VIEW, self );
-        if ( !officeVisitService.existsById( id ) ) {
+        final OfficeVisit visit = officeVisitService.findDetailedById( id );
+        if ( null == visit ) {
             return new ResponseEntity( HttpStatus.NOT_FOUND );
         }
 
-        return new ResponseEntity( officeVisitService.findById( id ), HttpStatus.OK );
+        return new ResponseEntity( visit, HttpStatus.OK );
     }
 
     /**
@@ -160,4 +242,78 @@ public class APIOfficeVisitController extends APIController {
         }
     }
 
+    /**
+     * Finds the office visits matching the request and returns a summary of
+     * each, with the total number matching in the `X-Total-Count` header.
+     *
+     * @param filter
+     *            Criteria fixed by the endpoint (ie, the current HCP)
+     * @param from
+     *            Start of the date range, or null
+     * @param to
+     *            End of the date range, or null
+     * @param hospital
+     *            Hospital name, or null
+     * @param type
+     *            Type of visit, or null
+     * @param unpaged
+     *            Whether to return every match rather than a page
+     * @param pageable
+     *            The page requested
+     * @return response
+     */
+    private ResponseEntity listVisits ( final OfficeVisitFilter filter, final String from, final String to,
+            final String hospital, final AppointmentType type, final boolean unpaged, final Pageable pageable ) {
+        for ( final Sort.Order order : pageable.getSort() ) {
+            if ( !SORTABLE.contains( order.getProperty() ) ) {
+                return new ResponseEntity( errorResponse( "Office visits cannot be sorted by " + order.getProperty() ),
+                        HttpStatus.BAD_REQUEST );
+            }
+        }
+        try {
+            filter.from( parseFrom( from ) ).to( parseTo( to ) ).hospital( emptyToNull( hospital ) ).type( type );
+        }
+        catch ( final DateTimeParseException e ) {
+            return new ResponseEntity( errorResponse( "Could not parse date " + e.getParsedString() ),
+                    HttpStatus.BAD_REQUEST );
+        }
+        if ( null != filter.getFrom() && null != filter.getTo() && filter.getFrom().isAfter( filter.getTo() ) ) {
+            return new ResponseEntity( errorResponse( "Start Date is after End Date" ), HttpStatus.BAD_REQUEST );
+        }
+
+        /* Visits on the same date stay in a fixed order from page to page */
+        final Sort sort = pageable.getSort().and( Sort.by( "id" ) );
+        final List<OfficeVisit> visits;
+        final long total;
+        if ( unpaged ) {
+            visits = officeVisitService.findAllSummaries( filter, sort );
+            total = visits.size();
+        }
+        else {
+            final Page<OfficeVisit> page = officeVisitService.findSummaries( filter,
+                    PageRequest.of( pageable.getPageNumber(), pageable.getPageSize(), sort ) );
+            visits = page.getContent();
+            total = page.getTotalElements();
+        }
+
+        final HttpHeaders headers = new HttpHeaders();
+        headers.add( TOTAL_COUNT_HEADER, Long.toString( total ) );
+        return new ResponseEntity( summarise( visits ), headers, HttpStatus.OK );
+    }
+
+    /**
+     * Turns office visits into the rows of a listing.
+     *
+     * @param visits
+     *            The office visits
+     * @return A summary of each
+     */
+    private static List<OfficeVisitSummary> summarise ( final List<OfficeVisit> visits ) {
+        return visits.stream().map( OfficeVisitSummary::new ).collect( Collectors.toList() );
+    }
+
+    private static String emptyToNull ( final String s ) {
+        return null == s || s.isEmpty() ? null : s;
+    }
+
 }
@@ -1,9 +1,13 @@
 package edu.ncsu.csc.iTrust2.controllers.api;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
@@ -14,6 +18,8 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import edu.ncsu.csc.iTrust2.forms.PatientForm;
 import edu.ncsu.csc.iTrust2.models.Patient;
@@ -191,4 +197,81 @@ public class APIPatientController extends APIController {
 
     }
 
+    /**
+     * Exports the complete record of the logged-in patient: demographics,
+     * office visits (with health metrics, diagnoses, and prescriptions), and
+     * all prescriptions. See `PatientService.exportRecord` for the layout. The
+     * record is streamed out as it is read rather than built up in memory
+     * first.
+     *
+     * @return The patient's record
+     */
+    @GetMapping ( BASE_PATH + "/patient/record" )
+    @PreAuthorize ( "hasRole('ROLE_PATIENT')" )
+    public ResponseEntity<StreamingResponseBody> exportOwnRecord () {
+        final String self = LoggerUtil.currentUser();
+        if ( ! ( patientService.findByName( self ) instanceof Patient ) ) {
+            return streamError( "Could not find a patient entry for you, " + self, HttpStatus.NOT_FOUND );
+        }
+        loggerUtil.log( TransactionType.PATIENT_RECORD_EXPORT, self, "Patient exported their full record" );
+        return streamRecord( self );
+    }
+
+    /**
+     * Exports the complete record of the patient with the username provided.
+     * See `exportOwnRecord`.
+     *
+     * @param username
+     *            The username of the patient
+     * @return The patient's record
+     */
+    @GetMapping ( BASE_PATH + "/patients/{username}/record" )
+    @PreAuthorize ( "hasRole('ROLE_HCP')" )
+    public ResponseEntity<StreamingResponseBody> exportRecord ( @PathVariable ( "username" ) final String username ) {
+        if ( ! ( patientService.findByName( username ) instanceof Patient ) ) {
+            return streamError( "No Patient found for username " + username, HttpStatus.NOT_FOUND );
+        }
+        loggerUtil.log( TransactionType.PATIENT_RECORD_EXPORT, LoggerUtil.currentUser(), username,
+                "HCP exported the full record of patient with username " + username );
+        return streamRecord( username );
+    }
+
+    /**
+     * Streams out a patient's record as a JSON attachment. The record is
+     * written after this returns, so if the patient has been deleted by then,
+     * a 404 is sent instead; nothing has been written at that point.
+     * `spring.mvc.async.request-timeout` bounds how long the export may take.
+     *
+     * @param username
+     *            The username of the patient
+     * @return The response to send
+     */
+    private ResponseEntity<StreamingResponseBody> streamRecord ( final String username ) {
+        final HttpHeaders headers = new HttpHeaders();
+        headers.setContentType( MediaType.APPLICATION_JSON );
+        headers.setContentDisposition(
+                ContentDisposition.builder( "attachment" ).filename( username + "-record.json" ).build() );
+        return new ResponseEntity<StreamingResponseBody>( out -> {
+            if ( !patientService.exportRecord( username, out ) ) {
+                throw new ResponseStatusException( HttpStatus.NOT_FOUND, "No Patient found for username " + username );
+            }
+        }, headers, HttpStatus.OK );
+    }
+
+    /**
+     * Sends an error from an endpoint that otherwise streams its response.
+     *
+     * @param message
+     *            The error message
+     * @param status
+     *            The status to send
+     * @return The response to send
+     */
+    private static ResponseEntity<StreamingResponseBody> streamError ( final String message,
+            final HttpStatus status ) {
+        final byte[] body = errorResponse( message ).getBytes( StandardCharsets.UTF_8 );
+        return ResponseEntity.status( status ).contentType( MediaType.APPLICATION_JSON )
+                .body( out -> out.write( body ) );
+    }
+
 }
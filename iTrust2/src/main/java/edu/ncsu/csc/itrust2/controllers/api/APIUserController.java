@@ -11,6 +11,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -72,6 +73,10 @@ public class APIUserController extends APIController {
     @Autowired
     private UserService               userService;
 
+    /** Hashes the passwords of new and updated users */
+    @Autowired
+    private PasswordEncoder           passwordEncoder;
+
     /**
      * Retrieves and returns a list of all Users in the system, regardless of
      * their classification (including all Patients, all Personnel, and all
@@ -119,11 +124,11 @@ public class APIUserController extends APIController {
 
         try {
             if ( rolesOnUser.contains( Role.ROLE_PATIENT ) ) {
-                user = new Patient( userF );
+                user = new Patient( userF, passwordEncoder );
             }
 
             else {
-                user = new Personnel( userF );
+                user = new Personnel( userF, passwordEncoder );
             }
 
             userService.save( user );
@@ -156,10 +161,10 @@ public class APIUserController extends APIController {
 
         try {
             if ( rolesOnUser.contains( Role.ROLE_PATIENT ) ) {
-                user = new Patient( userF );
+                user = new Patient( userF, passwordEncoder );
             }
             else {
-                user = new Personnel( userF );
+                user = new Personnel( userF, passwordEncoder );
             }
 
             if ( null != user.getId() && !id.equals( user.getId() ) ) {
@@ -230,20 +235,20 @@ public class APIUserController extends APIController {
 
     @PostMapping ( BASE_PATH + "generateUsers" )
     public ResponseEntity generateUsers () {
-        final User admin = new Personnel( new UserForm( "admin", "123456", Role.ROLE_ADMIN, 1 ) );
+        final User admin = new Personnel( new UserForm( "admin", "123456", Role.ROLE_ADMIN, 1 ), passwordEncoder );
 
-        final User doc = new Personnel( new UserForm( "hcp", "123456", Role.ROLE_HCP, 1 ) );
+        final User doc = new Personnel( new UserForm( "hcp", "123456", Role.ROLE_HCP, 1 ), passwordEncoder );
 
         userService.save( admin );
 
         userService.save( doc );
 
-        final User multiRoleDoc = new Personnel( new UserForm( "er", "123456", Role.ROLE_HCP, 1 ) );
+        final User multiRoleDoc = new Personnel( new UserForm( "er", "123456", Role.ROLE_HCP, 1 ), passwordEncoder );
         multiRoleDoc.addRole( Role.ROLE_ER );
 
         userService.save( multiRoleDoc );
 
-        final User patient = new Patient( new UserForm( "patient", "123456", Role.ROLE_PATIENT, 1 ) );
+        final User patient = new Patient( new UserForm( "patient", "123456", Role.ROLE_PATIENT, 1 ), passwordEncoder );
 
         userService.save( patient );
 
@@ -0,0 +1,132 @@
+package edu.ncsu.csc.iTrust2.controllers.api.comm;
+
+import java.util.List;
+
+import edu.ncsu.csc.iTrust2.models.AppointmentRequest;
+
+/**
+ * What changed in an HCP's calendar since the client last synced: the requests
+ * that were created or updated, the IDs of those that were deleted, and the
+ * sync token to send back next time. If `fullSync` is set, `changed` holds the
+ * whole calendar instead, and replaces whatever the client already has.
+ */
+public class AppointmentChanges {
+
+    /** Token to pass as `since` to get the changes after these */
+    private String                   syncToken;
+
+    /** Whether `changed` is the whole calendar rather than what changed */
+    private boolean                  fullSync;
+
+    /** Requests created or updated, oldest change first */
+    private List<AppointmentRequest> changed;
+
+    /** IDs of requests deleted, or moved to another HCP */
+    private List<Long>               deleted;
+
+    /**
+     * Empty constructor so that Spring is able to use this class for
+     * communicating over http
+     */
+    public AppointmentChanges () {
+        // Empty Constructor
+    }
+
+    /**
+     * Creates a set of changes
+     *
+     * @param syncToken
+     *            Token to pass as `since` next time
+     * @param fullSync
+     *            Whether `changed` is the whole calendar
+     * @param changed
+     *            Requests created or updated
+     * @param deleted
+     *            IDs of requests deleted
+     */
+    public AppointmentChanges ( final String syncToken, final boolean fullSync,
+            final List<AppointmentRequest> changed, final List<Long> deleted ) {
+        this.syncToken = syncToken;
+        this.fullSync = fullSync;
+        this.changed = changed;
+        this.deleted = deleted;
+    }
+
+    /**
+     * Returns the token to pass as `since` to get the changes after these
+     *
+     * @return the sync token
+     */
+    public String getSyncToken () {
+        return syncToken;
+    }
+
+    /**
+     * Sets the token to pass as `since` to get the changes after these
+     *
+     * @param syncToken
+     *            the sync token
+     */
+    public void setSyncToken ( final String syncToken ) {
+        this.syncToken = syncToken;
+    }
+
+    /**
+     * Returns whether the requests are the whole calendar, rather than what
+     * changed
+     *
+     * @return true if the client should replace its calendar
+     */
+    public boolean isFullSync () {
+        return fullSync;
+    }
+
+    /**
+     * Sets whether the requests are the whole calendar
+     *
+     * @param fullSync
+     *            true if the client should replace its calendar
+     */
+    public void setFullSync ( final boolean fullSync ) {
+        this.fullSync = fullSync;
+    }
+
+    /**
+     * Returns the requests created or updated
+     *
+     * @return requests changed, oldest change first
+     */
+    public List<AppointmentRequest> getChanged () {
+        return changed;
+    }
+
+    /**
+     * Sets the requests created or updated
+     *
+     * @param changed
+     *            requests changed
+     */
+    public void setChanged ( final List<AppointmentRequest> changed ) {
+        this.changed = changed;
+    }
+
+    /**
+     * Returns the IDs of requests deleted
+     *
+     * @return IDs of requests deleted, or moved to another HCP
+     */
+    public List<Long> getDeleted () {
+        return deleted;
+    }
+
+    /**
+     * Sets the IDs of requests deleted
+     *
+     * @param deleted
+     *            IDs of requests deleted
+     */
+    public void setDeleted ( final List<Long> deleted ) {
+        this.deleted = deleted;
+    }
+
+}
@@ -0,0 +1,103 @@
+package edu.ncsu.csc.iTrust2.controllers.api.comm;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+import edu.ncsu.csc.iTrust2.models.security.LogEntry;
+
+/**
+ * Position in a user's log, used for cursor-based paging through log entries.
+ * A cursor points just past the last entry that was returned, identified by
+ * its time and ID, so the next page can be found with an index seek rather
+ * than by skipping over every earlier page. Clients receive and return it as
+ * an opaque string.
+ */
+public class LogEntryCursor {
+
+    /** Separates the time from the ID in the encoded cursor */
+    private static final String SEPARATOR = "|";
+
+    /** Time of the last entry returned */
+    private final ZonedDateTime time;
+
+    /** ID of the last entry returned */
+    private final Long          id;
+
+    /**
+     * Creates a cursor pointing just past the given time and ID
+     *
+     * @param time
+     *            Time of the last entry returned
+     * @param id
+     *            ID of the last entry returned
+     */
+    public LogEntryCursor ( final ZonedDateTime time, final Long id ) {
+        this.time = time;
+        this.id = id;
+    }
+
+    /**
+     * Creates a cursor pointing just past the given entry
+     *
+     * @param entry
+     *            The last entry returned
+     */
+    public LogEntryCursor ( final LogEntry entry ) {
+        this( entry.getTime(), entry.getId() );
+    }
+
+    /**
+     * Gets the time of the last entry returned
+     *
+     * @return time of the last entry
+     */
+    public ZonedDateTime getTime () {
+        return time;
+    }
+
+    /**
+     * Gets the ID of the last entry returned
+     *
+     * @return ID of the last entry
+     */
+    public Long getId () {
+        return id;
+    }
+
+    /**
+     * Turns this cursor into the opaque string handed to clients
+     *
+     * @return The encoded cursor
+     */
+    public String encode () {
+        final String raw = time.toInstant().toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString( raw.getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    /**
+     * Reads a cursor previously created by `encode()`
+     *
+     * @param cursor
+     *            The encoded cursor
+     * @return The decoded cursor
+     * @throws IllegalArgumentException
+     *             If the cursor is not one that we created
+     */
+    public static LogEntryCursor decode ( final String cursor ) {
+        try {
+            final String raw = new String( Base64.getUrlDecoder().decode( cursor ), StandardCharsets.UTF_8 );
+            final int split = raw.indexOf( SEPARATOR );
+            final Instant instant = Instant.parse( raw.substring( 0, split ) );
+            final Long id = Long.parseLong( raw.substring( split + 1 ) );
+            return new LogEntryCursor( instant.atZone( ZoneId.systemDefault() ), id );
+        }
+        catch ( final IndexOutOfBoundsException | DateTimeParseException | NumberFormatException e ) {
+            throw new IllegalArgumentException( "Invalid cursor: " + cursor );
+        }
+    }
+
+}
@@ -0,0 +1,76 @@
+package edu.ncsu.csc.iTrust2.controllers.api.comm;
+
+import java.util.List;
+
+/**
+ * One page of the Log Entry view when paging with a cursor. Holds the rows on
+ * the page along with the cursor to send back to get the next page.
+ */
+public class LogEntryPage {
+
+    /** Rows on this page */
+    private List<LogEntryTableRow> rows;
+
+    /** Cursor for the next page; null if this is the last page */
+    private String                 nextCursor;
+
+    /**
+     * Empty constructor so that Spring is able to use this class for
+     * communicating over http
+     */
+    public LogEntryPage () {
+        // Empty Constructor
+    }
+
+    /**
+     * Creates a page from its rows and the cursor for the next page
+     *
+     * @param rows
+     *            Rows on this page
+     * @param nextCursor
+     *            Cursor for the next page, or null if there isn't one
+     */
+    public LogEntryPage ( final List<LogEntryTableRow> rows, final String nextCursor ) {
+        this.rows = rows;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Returns the rows on this page
+     *
+     * @return rows on the page
+     */
+    public List<LogEntryTableRow> getRows () {
+        return rows;
+    }
+
+    /**
+     * Sets the rows on this page
+     *
+     * @param rows
+     *            rows on the page
+     */
+    public void setRows ( final List<LogEntryTableRow> rows ) {
+        this.rows = rows;
+    }
+
+    /**
+     * Returns the cursor for the next page
+     *
+     * @return cursor for the next page, or null if this is the last page
+     */
+    public String getNextCursor () {
+        return nextCursor;
+    }
+
+    /**
+     * Sets the cursor for the next page
+     *
+     * @param nextCursor
+     *            cursor for the next page
+     */
+    public void setNextCursor ( final String nextCursor ) {
+        this.nextCursor = nextCursor;
+    }
+
+}
@@ -20,6 +20,12 @@ public class LogEntryRequestBody {
     /** Number of items per page */
     public int    pageLength;
 
+    /**
+     * Cursor returned with the previous page, when paging by cursor. Empty or
+     * null for the first page.
+     */
+    public String cursor;
+
     /**
      * Empty Constructor required for spring to use this as a RequestBody
      */
@@ -103,4 +109,23 @@ public class LogEntryRequestBody {
         this.pageLength = pageLength;
     }
 
+    /**
+     * Gets the cursor returned with the previous page.
+     *
+     * @return cursor for the page to retrieve
+     */
+    public String getCursor () {
+        return cursor;
+    }
+
+    /**
+     * Sets the cursor returned with the previous page.
+     *
+     * @param cursor
+     *            cursor for the page to retrieve
+     */
+    public void setCursor ( final String cursor ) {
+        this.cursor = cursor;
+    }
+
 }
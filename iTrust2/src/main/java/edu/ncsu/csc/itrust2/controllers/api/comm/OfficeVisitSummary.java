@@ -0,0 +1,140 @@
+package edu.ncsu.csc.iTrust2.controllers.api.comm;
+
+import java.time.ZonedDateTime;
+
+import com.google.gson.annotations.JsonAdapter;
+
+import edu.ncsu.csc.iTrust2.adapters.ZonedDateTimeAdapter;
+import edu.ncsu.csc.iTrust2.models.OfficeVisit;
+import edu.ncsu.csc.iTrust2.models.enums.AppointmentType;
+
+/**
+ * A row in a list of office visits: who, when, where, and what kind of visit
+ * it was, without the health metrics, diagnoses, or prescriptions. The full
+ * visit can be fetched by its ID.
+ */
+public class OfficeVisitSummary {
+
+    /** ID of the office visit */
+    private Long            id;
+
+    /** Username of the patient */
+    private String          patient;
+
+    /** Username of the HCP */
+    private String          hcp;
+
+    /** When the visit took place */
+    @JsonAdapter ( ZonedDateTimeAdapter.class )
+    private ZonedDateTime   date;
+
+    /** Type of visit */
+    private AppointmentType type;
+
+    /** Name of the hospital the visit took place at */
+    private String          hospital;
+
+    /** The HCP's notes */
+    private String          notes;
+
+    /** Whether the visit was for a scheduled appointment */
+    private boolean         preScheduled;
+
+    /**
+     * Empty constructor so that Spring is able to use this class for
+     * communicating over http
+     */
+    public OfficeVisitSummary () {
+        // Empty Constructor
+    }
+
+    /**
+     * Summarises an office visit.
+     *
+     * @param visit
+     *            The office visit
+     */
+    public OfficeVisitSummary ( final OfficeVisit visit ) {
+        this.id = visit.getId();
+        this.patient = null == visit.getPatient() ? null : visit.getPatient().getUsername();
+        this.hcp = null == visit.getHcp() ? null : visit.getHcp().getUsername();
+        this.date = visit.getDate();
+        this.type = visit.getType();
+        this.hospital = null == visit.getHospital() ? null : visit.getHospital().getName();
+        this.notes = visit.getNotes();
+        this.preScheduled = null != visit.getAppointment();
+    }
+
+    /**
+     * Returns the ID of the office visit
+     *
+     * @return ID of the office visit
+     */
+    public Long getId () {
+        return id;
+    }
+
+    /**
+     * Returns the username of the patient
+     *
+     * @return Username of the patient
+     */
+    public String getPatient () {
+        return patient;
+    }
+
+    /**
+     * Returns the username of the HCP
+     *
+     * @return Username of the HCP
+     */
+    public String getHcp () {
+        return hcp;
+    }
+
+    /**
+     * Returns when the visit took place
+     *
+     * @return Date and time of the visit
+     */
+    public ZonedDateTime getDate () {
+        return date;
+    }
+
+    /**
+     * Returns the type of visit
+     *
+     * @return Type of visit
+     */
+    public AppointmentType getType () {
+        return type;
+    }
+
+    /**
+     * Returns the name of the hospital the visit took place at
+     *
+     * @return Name of the hospital
+     */
+    public String getHospital () {
+        return hospital;
+    }
+
+    /**
+     * Returns the HCP's notes
+     *
+     * @return Notes
+     */
+    public String getNotes () {
+        return notes;
+    }
+
+    /**
+     * Returns whether the visit was for a scheduled appointment
+     *
+     * @return Whether the visit was pre-scheduled
+     */
+    public boolean isPreScheduled () {
+        return preScheduled;
+    }
+
+}
@@ -3,17 +3,21 @@ package edu.ncsu.csc.iTrust2.models;
 import java.time.ZonedDateTime;
 
 import javax.persistence.Basic;
+import javax.persistence.Column;
 import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 
+import org.hibernate.annotations.GenericGenerator;
+
 import com.google.gson.annotations.JsonAdapter;
 
 import edu.ncsu.csc.iTrust2.adapters.ZonedDateTimeAdapter;
@@ -30,6 +34,11 @@ import edu.ncsu.csc.iTrust2.models.enums.Status;
  */
 
 @Entity
+@Table ( indexes = {
+        @Index ( name = "idx_appointment_request_hcp_patient_date", columnList = "hcp_id, patient_id, date" ),
+        @Index ( name = "idx_appointment_request_hcp_status_date", columnList = "hcp_id, status, date" ),
+        @Index ( name = "idx_appointment_request_patient_status_date", columnList = "patient_id, status, date" ),
+        @Index ( name = "idx_appointment_request_hcp_version", columnList = "hcp_id, change_version" ) } )
 public class AppointmentRequest extends DomainObject {
 
     /**
@@ -42,7 +51,8 @@ public class AppointmentRequest extends DomainObject {
      * ID of the AppointmentRequest
      */
     @Id
-    @GeneratedValue ( strategy = GenerationType.AUTO )
+    @GeneratedValue ( generator = PooledIdGenerator.NAME )
+    @GenericGenerator ( name = PooledIdGenerator.NAME, strategy = PooledIdGenerator.STRATEGY )
     private Long id;
 
     /**
@@ -123,6 +133,35 @@ public class AppointmentRequest extends DomainObject {
      */
     private String comments;
 
+    /**
+     * Stamped on the request each time it is saved, from a counter shared by
+     * every request, so that calendar clients can ask for just the requests
+     * that changed since they last synced. Null for requests that haven't been
+     * saved since the counter was added.
+     */
+    @Column ( name = "change_version" )
+    private Long   changeVersion;
+
+    /**
+     * Retrieves the version of the last change to this AppointmentRequest
+     *
+     * @return The change version, or null if it has none yet
+     */
+    public Long getChangeVersion () {
+        return changeVersion;
+    }
+
+    /**
+     * Sets the version of the last change to this AppointmentRequest. Done by
+     * `AppointmentRequestService` whenever the request is saved.
+     *
+     * @param changeVersion
+     *            The new change version
+     */
+    public void setChangeVersion ( final Long changeVersion ) {
+        this.changeVersion = changeVersion;
+    }
+
     /**
      * The Status of the AppointmentRequest
      */
@@ -0,0 +1,133 @@
+package edu.ncsu.csc.iTrust2.models;
+
+import java.time.ZonedDateTime;
+
+import javax.persistence.Basic;
+import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.validation.constraints.NotNull;
+
+import org.hibernate.annotations.GenericGenerator;
+
+import edu.ncsu.csc.iTrust2.adapters.ZonedDateTimeAttributeConverter;
+
+/**
+ * Records that an AppointmentRequest was deleted, or moved to another HCP, so
+ * that calendar clients syncing an HCP's appointments know to drop it. Holds
+ * the change version of the deletion, drawn from the same counter as
+ * `AppointmentRequest.getChangeVersion()`, and only the username of the HCP
+ * so that it outlives the request it describes.
+ *
+ * Deletions are only kept for `itrust2.calendar.sync-token-days`; see
+ * `AppointmentRequestService.pruneDeletionsBefore`.
+ */
+@Entity
+@Table ( indexes = {
+        @Index ( name = "idx_appointment_request_deletion_hcp_version", columnList = "hcp, change_version" ),
+        @Index ( name = "idx_appointment_request_deletion_time", columnList = "time" ) } )
+public class AppointmentRequestDeletion extends DomainObject {
+
+    /**
+     * ID of the deletion record
+     */
+    @Id
+    @GeneratedValue ( generator = PooledIdGenerator.NAME )
+    @GenericGenerator ( name = PooledIdGenerator.NAME, strategy = PooledIdGenerator.STRATEGY )
+    private Long          id;
+
+    /**
+     * ID of the AppointmentRequest that was deleted
+     */
+    @NotNull
+    private Long          requestId;
+
+    /**
+     * Username of the HCP the request belonged to
+     */
+    @NotNull
+    private String        hcp;
+
+    /**
+     * Version the deletion happened at
+     */
+    @NotNull
+    @Column ( name = "change_version" )
+    private Long          changeVersion;
+
+    /**
+     * When the deletion happened. Nullable, as records from before this was
+     * kept don't have one; they are pruned as though they were old.
+     */
+    @Basic
+    @Convert ( converter = ZonedDateTimeAttributeConverter.class )
+    private ZonedDateTime time = ZonedDateTime.now();
+
+    /**
+     * Used so that Hibernate can construct and load objects
+     */
+    public AppointmentRequestDeletion () {
+    }
+
+    /**
+     * Records the deletion of a request.
+     *
+     * @param requestId
+     *            ID of the AppointmentRequest that was deleted
+     * @param hcp
+     *            Username of the HCP it belonged to
+     * @param changeVersion
+     *            Version the deletion happened at
+     */
+    public AppointmentRequestDeletion ( final Long requestId, final String hcp, final Long changeVersion ) {
+        this.requestId = requestId;
+        this.hcp = hcp;
+        this.changeVersion = changeVersion;
+    }
+
+    @Override
+    public Long getId () {
+        return id;
+    }
+
+    /**
+     * Returns the ID of the AppointmentRequest that was deleted
+     *
+     * @return ID of the request
+     */
+    public Long getRequestId () {
+        return requestId;
+    }
+
+    /**
+     * Returns the username of the HCP the request belonged to
+     *
+     * @return Username of the HCP
+     */
+    public String getHcp () {
+        return hcp;
+    }
+
+    /**
+     * Returns the version the deletion happened at
+     *
+     * @return The change version
+     */
+    public Long getChangeVersion () {
+        return changeVersion;
+    }
+
+    /**
+     * Returns when the deletion happened
+     *
+     * @return The time of the deletion, or null if it wasn't recorded
+     */
+    public ZonedDateTime getTime () {
+        return time;
+    }
+
+}
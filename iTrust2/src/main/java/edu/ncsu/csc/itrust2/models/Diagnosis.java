@@ -1,14 +1,16 @@
 package edu.ncsu.csc.iTrust2.models;
 
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 
+import org.hibernate.annotations.GenericGenerator;
+
 import com.fasterxml.jackson.annotation.JsonBackReference;
 
 /**
@@ -22,8 +24,12 @@ import com.fasterxml.jackson.annotation.JsonBackReference;
 @Table ( name = "Diagnoses" )
 public class Diagnosis extends DomainObject {
 
+    /**
+     * The office visit the diagnosis was made in. Loaded only when asked for,
+     * since the diagnoses of a visit are almost always reached through it.
+     */
     @NotNull
-    @ManyToOne
+    @ManyToOne ( fetch = FetchType.LAZY )
     @JoinColumn ( name = "visit_id", nullable = false )
     @JsonBackReference
     private OfficeVisit visit;
@@ -31,7 +37,8 @@ public class Diagnosis extends DomainObject {
     private String      note;
 
     @Id
-    @GeneratedValue ( strategy = GenerationType.AUTO )
+    @GeneratedValue ( generator = PooledIdGenerator.NAME )
+    @GenericGenerator ( name = PooledIdGenerator.NAME, strategy = PooledIdGenerator.STRATEGY )
     private Long        id;
 
     @NotNull
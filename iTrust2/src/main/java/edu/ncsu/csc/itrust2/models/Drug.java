@@ -2,12 +2,14 @@ package edu.ncsu.csc.iTrust2.models;
 
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Pattern;
 
+import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.validator.constraints.Length;
 
 import edu.ncsu.csc.iTrust2.forms.DrugForm;
@@ -19,6 +21,7 @@ import edu.ncsu.csc.iTrust2.forms.DrugForm;
  * @author Kai Presler-Marshall
  */
 @Entity
+@Table ( indexes = { @Index ( name = "idx_drug_code", columnList = "code", unique = true ) } )
 public class Drug extends DomainObject {
 
     /** For Hibernate/Thymeleaf _must_ be an empty constructor */
@@ -39,7 +42,8 @@ public class Drug extends DomainObject {
     }
 
     @Id
-    @GeneratedValue ( strategy = GenerationType.AUTO )
+    @GeneratedValue ( generator = PooledIdGenerator.NAME )
+    @GenericGenerator ( name = PooledIdGenerator.NAME, strategy = PooledIdGenerator.STRATEGY )
     private Long   id;
 
     @Pattern ( regexp = "^\\d{4}-\\d{4}-\\d{2}$" )
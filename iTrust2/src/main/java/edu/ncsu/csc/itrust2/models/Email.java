@@ -1,33 +1,91 @@
 package edu.ncsu.csc.iTrust2.models;
 
+import java.time.ZonedDateTime;
+
+import javax.persistence.Basic;
+import javax.persistence.Column;
+import javax.persistence.Convert;
 import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.GenericGenerator;
+
+import edu.ncsu.csc.iTrust2.adapters.ZonedDateTimeAttributeConverter;
+import edu.ncsu.csc.iTrust2.models.enums.EmailStatus;
+
+/**
+ * An email, kept as a row in the outbox. Saving one only queues it, as part of
+ * whatever transaction saved it; `EmailOutboxWorker` sends it afterwards and
+ * records how that went here.
+ *
+ * Emails saved before the outbox existed were never meant to be sent, so when
+ * `status` and `attempts` are added to an existing table, its rows default to
+ * having been sent already rather than all going out at once.
+ */
 @Entity
+@Table ( indexes = { @Index ( name = "idx_email_status_next_attempt", columnList = "status, next_attempt" ) } )
 public class Email extends DomainObject {
 
     @Id
-    @GeneratedValue ( strategy = GenerationType.AUTO )
-    private Long   id;
+    @GeneratedValue ( generator = PooledIdGenerator.NAME )
+    @GenericGenerator ( name = PooledIdGenerator.NAME, strategy = PooledIdGenerator.STRATEGY )
+    private Long          id;
 
     @NotNull
-    private String sender;
+    private String        sender;
 
     @NotNull
     @ManyToOne
     @JoinColumn ( name = "receiver", columnDefinition = "varchar(100)" )
-    private User   receiver;
+    private User          receiver;
+
+    @NotNull
+    private String        subject;
 
     @NotNull
-    private String subject;
+    private String        messageBody;
 
+    /** Where the email is in the outbox */
     @NotNull
-    private String messageBody;
+    @Enumerated ( EnumType.STRING )
+    @ColumnDefault ( "'SENT'" )
+    private EmailStatus   status      = EmailStatus.PENDING;
+
+    /** Number of times sending has been tried */
+    @ColumnDefault ( "0" )
+    private int           attempts;
+
+    /** When the email may next be sent */
+    @Basic
+    @Column ( name = "next_attempt" )
+    @Convert ( converter = ZonedDateTimeAttributeConverter.class )
+    private ZonedDateTime nextAttempt = ZonedDateTime.now();
+
+    /** When a worker claimed the email for sending */
+    @Basic
+    @Convert ( converter = ZonedDateTimeAttributeConverter.class )
+    private ZonedDateTime claimedAt;
+
+    /** Identifies the batch of emails a worker claimed together */
+    private String        claimToken;
+
+    /** When the email was sent */
+    @Basic
+    @Convert ( converter = ZonedDateTimeAttributeConverter.class )
+    private ZonedDateTime sentAt;
+
+    /** Why the last attempt to send the email failed */
+    @Column ( length = 1000 )
+    private String        lastError;
 
     public Email ( final String sender, final User receiver, final String subject, final String messageBody ) {
         this.sender = sender;
@@ -76,4 +134,52 @@ public class Email extends DomainObject {
         this.messageBody = messageBody;
     }
 
+    public EmailStatus getStatus () {
+        return status;
+    }
+
+    public void setStatus ( final EmailStatus status ) {
+        this.status = status;
+    }
+
+    public int getAttempts () {
+        return attempts;
+    }
+
+    public void setAttempts ( final int attempts ) {
+        this.attempts = attempts;
+    }
+
+    public ZonedDateTime getNextAttempt () {
+        return nextAttempt;
+    }
+
+    public void setNextAttempt ( final ZonedDateTime nextAttempt ) {
+        this.nextAttempt = nextAttempt;
+    }
+
+    public ZonedDateTime getClaimedAt () {
+        return claimedAt;
+    }
+
+    public String getClaimToken () {
+        return claimToken;
+    }
+
+    public ZonedDateTime getSentAt () {
+        return sentAt;
+    }
+
+    public void setSentAt ( final ZonedDateTime sentAt ) {
+        this.sentAt = sentAt;
+    }
+
+    public String getLastError () {
+        return lastError;
+    }
+
+    public void setLastError ( final String lastError ) {
+        this.lastError = lastError;
+    }
+
 }
@@ -2,9 +2,10 @@ package edu.ncsu.csc.iTrust2.models;
 
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 
+import org.hibernate.annotations.GenericGenerator;
+
 import edu.ncsu.csc.iTrust2.forms.ICDCodeForm;
 
 /**
@@ -19,7 +20,8 @@ import edu.ncsu.csc.iTrust2.forms.ICDCodeForm;
 public class ICDCode extends DomainObject {
 
     @Id
-    @GeneratedValue ( strategy = GenerationType.AUTO )
+    @GeneratedValue ( generator = PooledIdGenerator.NAME )
+    @GenericGenerator ( name = PooledIdGenerator.NAME, strategy = PooledIdGenerator.STRATEGY )
     private Long   id;
 
     /**
@@ -10,14 +10,23 @@ import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import javax.persistence.NamedEntityGraphs;
+import javax.persistence.NamedSubgraph;
 import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
+import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
+import org.hibernate.annotations.GenericGenerator;
+
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import com.google.gson.annotations.JsonAdapter;
 
@@ -28,12 +37,37 @@ import edu.ncsu.csc.iTrust2.models.enums.AppointmentType;
 /**
  * This is the validated database-persisted office visit representation
  *
+ * Two fetch plans are defined for loading visits. `SUMMARY_GRAPH` joins in
+ * everything a visit refers to directly (its patient, HCP, hospital, health
+ * metrics and appointment), so that a list of visits comes back in a single
+ * query. `FULL_GRAPH` adds the diagnoses and their codes, for showing one visit
+ * in full. Either way, the diagnoses and prescriptions of every visit loaded
+ * together are fetched with one query per collection, not one per visit.
+ *
  * @author Kai Presler-Marshall
  *
  */
 @Entity
+@NamedEntityGraphs ( {
+        @NamedEntityGraph ( name = OfficeVisit.SUMMARY_GRAPH,
+                attributeNodes = { @NamedAttributeNode ( "patient" ), @NamedAttributeNode ( "hcp" ),
+                        @NamedAttributeNode ( "hospital" ), @NamedAttributeNode ( "basicHealthMetrics" ),
+                        @NamedAttributeNode ( "appointment" ) } ),
+        @NamedEntityGraph ( name = OfficeVisit.FULL_GRAPH,
+                attributeNodes = { @NamedAttributeNode ( "patient" ), @NamedAttributeNode ( "hcp" ),
+                        @NamedAttributeNode ( "hospital" ), @NamedAttributeNode ( "basicHealthMetrics" ),
+                        @NamedAttributeNode ( "appointment" ),
+                        @NamedAttributeNode ( value = "diagnoses", subgraph = "diagnoses" ) },
+                subgraphs = @NamedSubgraph ( name = "diagnoses", attributeNodes = @NamedAttributeNode ( "code" ) ) ) } )
+@Table ( indexes = { @Index ( name = "idx_office_visit_patient_date", columnList = "patient_id, date" ) } )
 public class OfficeVisit extends DomainObject {
 
+    /** Fetch plan for listing visits */
+    public static final String SUMMARY_GRAPH = "OfficeVisit.summary";
+
+    /** Fetch plan for showing a single visit in full */
+    public static final String FULL_GRAPH    = "OfficeVisit.full";
+
     /**
      * The patient of this office visit
      */
@@ -71,7 +105,8 @@ public class OfficeVisit extends DomainObject {
      * The id of this office visit
      */
     @Id
-    @GeneratedValue ( strategy = GenerationType.AUTO )
+    @GeneratedValue ( generator = PooledIdGenerator.NAME )
+    @GenericGenerator ( name = PooledIdGenerator.NAME, strategy = PooledIdGenerator.STRATEGY )
     private Long               id;
 
     /**
@@ -95,6 +130,7 @@ public class OfficeVisit extends DomainObject {
      * loop
      */
     @OneToMany ( cascade = CascadeType.ALL )
+    @Fetch ( FetchMode.SUBSELECT )
     @JsonManagedReference
     private List<Diagnosis>    diagnoses;
 
@@ -111,6 +147,7 @@ public class OfficeVisit extends DomainObject {
     private AppointmentRequest appointment;
 
     @OneToMany ( cascade = CascadeType.ALL )
+    @Fetch ( FetchMode.SUBSELECT )
     @JsonManagedReference
     private List<Prescription> prescriptions;
 
@@ -10,6 +10,7 @@ import javax.persistence.Enumerated;
 
 import org.hibernate.validator.constraints.Length;
 import org.springframework.data.jpa.convert.threeten.Jsr310JpaConverters.LocalDateConverter;
+import org.springframework.security.crypto.password.PasswordEncoder;
 
 import com.google.gson.annotations.JsonAdapter;
 
@@ -133,8 +134,8 @@ public class Patient extends User {
 
     }
 
-    public Patient ( final UserForm uf ) {
-        super( uf );
+    public Patient ( final UserForm uf, final PasswordEncoder encoder ) {
+        super( uf, encoder );
         if ( !getRoles().contains( Role.ROLE_PATIENT ) ) {
             throw new IllegalArgumentException( "Attempted to create a Patient record for a non-Patient user!" );
         }
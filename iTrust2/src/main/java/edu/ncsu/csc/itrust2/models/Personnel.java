@@ -5,6 +5,7 @@ import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 
 import org.hibernate.validator.constraints.Length;
+import org.springframework.security.crypto.password.PasswordEncoder;
 
 import edu.ncsu.csc.iTrust2.forms.PersonnelForm;
 import edu.ncsu.csc.iTrust2.forms.UserForm;
@@ -21,8 +22,8 @@ public class Personnel extends User {
 
     }
 
-    public Personnel ( final UserForm uf ) {
-        super( uf );
+    public Personnel ( final UserForm uf, final PasswordEncoder encoder ) {
+        super( uf, encoder );
         if ( getRoles().contains( Role.ROLE_PATIENT ) ) {
             throw new IllegalArgumentException( "Attempted to create a Personnel record for a non-Patient user!" );
         }
@@ -0,0 +1,59 @@
+package edu.ncsu.csc.iTrust2.models;
+
+import java.util.Properties;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+/**
+ * Generates IDs from a sequence of their own for each entity (`office_visit`
+ * draws from `office_visit_seq`, and so on), handing them out a block at a
+ * time. On MySQL, which has no real sequences, each one is a single-row table;
+ * either way, an entity only goes to its sequence once every
+ * `itrust2.id.allocation_size` inserts, and never contends with any other
+ * entity when it does. This is what lets Hibernate batch inserts together.
+ *
+ * Use it on an ID field with:
+ *
+ * <pre>
+ * &#64;GeneratedValue ( generator = PooledIdGenerator.NAME )
+ * &#64;GenericGenerator ( name = PooledIdGenerator.NAME, strategy = PooledIdGenerator.STRATEGY )
+ * </pre>
+ *
+ * Blocks are handed out with the `pooled-lo` optimizer, so the value held in
+ * the sequence is always the next ID that will be used; that keeps rows
+ * inserted by hand (or by other tools) from clashing, as long as they take
+ * their IDs from the sequence too. See `IdSequenceSeeder` for moving a
+ * database that still has IDs from the old, shared `hibernate_sequence`.
+ */
+public class PooledIdGenerator extends SequenceStyleGenerator {
+
+    /** Name to register the generator under */
+    public static final String NAME                    = "pooled_id";
+
+    /** Strategy to pass to `@GenericGenerator` */
+    public static final String STRATEGY                = "edu.ncsu.csc.iTrust2.models.PooledIdGenerator";
+
+    /** Hibernate setting holding the number of IDs handed out per block */
+    public static final String ALLOCATION_SIZE_SETTING = "itrust2.id.allocation_size";
+
+    /** IDs handed out per block, unless configured otherwise */
+    public static final int    DEFAULT_ALLOCATION_SIZE = 50;
+
+    @Override
+    public void configure ( final Type type, final Properties params, final ServiceRegistry serviceRegistry )
+            throws MappingException {
+        final int allocationSize = ConfigurationHelper.getInt( ALLOCATION_SIZE_SETTING,
+                serviceRegistry.getService( ConfigurationService.class ).getSettings(), DEFAULT_ALLOCATION_SIZE );
+        params.putIfAbsent( CONFIG_PREFER_SEQUENCE_PER_ENTITY, "true" );
+        params.putIfAbsent( CONFIG_SEQUENCE_PER_ENTITY_SUFFIX, "_seq" );
+        params.putIfAbsent( INCREMENT_PARAM, String.valueOf( allocationSize ) );
+        params.putIfAbsent( OPT_PARAM, "pooled-lo" );
+        super.configure( type, params, serviceRegistry );
+    }
+
+}
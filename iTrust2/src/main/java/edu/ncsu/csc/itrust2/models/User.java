@@ -14,8 +14,8 @@ import javax.persistence.Id;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.validator.constraints.Length;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
@@ -69,14 +69,15 @@ public class User extends DomainObject {
      *
      * @param form
      *            the filled-in user form with user information
+     * @param encoder
+     *            hashes the password from the form
      */
-    protected User ( final UserForm form ) {
+    protected User ( final UserForm form, final PasswordEncoder encoder ) {
         setUsername( form.getUsername() );
         if ( !form.getPassword().equals( form.getPassword2() ) ) {
             throw new IllegalArgumentException( "Passwords do not match!" );
         }
-        final PasswordEncoder pe = new BCryptPasswordEncoder();
-        setPassword( pe.encode( form.getPassword() ) );
+        setPassword( encoder.encode( form.getPassword() ) );
         setEnabled( null != form.getEnabled() ? 1 : 0 );
         setRoles( form.getRoles().stream().map( Role::valueOf ).collect( Collectors.toSet() ) );
 
@@ -102,9 +103,12 @@ public class User extends DomainObject {
     private Integer   enabled;
 
     /**
-     * The role of the user
+     * The role of the user. When many users are loaded at once (ie, the HCPs
+     * on a list of office visits), their roles are fetched in batches rather
+     * than one user at a time.
      */
     @ElementCollection ( targetClass = Role.class, fetch = FetchType.EAGER )
+    @BatchSize ( size = 50 )
     @Enumerated ( EnumType.STRING )
     private Set<Role> roles;
 
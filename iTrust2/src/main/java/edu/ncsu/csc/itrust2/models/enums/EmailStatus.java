@@ -0,0 +1,26 @@
+package edu.ncsu.csc.iTrust2.models.enums;
+
+/**
+ * Where an Email is in the outbox: waiting to be sent, being sent by a worker,
+ * sent, or given up on.
+ */
+public enum EmailStatus {
+
+    /**
+     * Waiting to be sent, or to be retried
+     */
+    PENDING,
+    /**
+     * Claimed by a worker that is sending it
+     */
+    SENDING,
+    /**
+     * Handed to the transport successfully
+     */
+    SENT,
+    /**
+     * Failed too many times, or can never be sent; left for someone to look at
+     */
+    FAILED,
+
+}
@@ -263,6 +263,10 @@ public enum TransactionType {
      * HCP edits patient's demographics
      */
     PATIENT_DEMOGRAPHICS_EDIT ( 1201, "HCP edits patient's demographics", true ),
+    /**
+     * Patient's full record exported
+     */
+    PATIENT_RECORD_EXPORT ( 1202, "Patient's full record exported", true ),
 
     /**
      * User views their log entries
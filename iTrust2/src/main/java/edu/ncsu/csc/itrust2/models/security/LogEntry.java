@@ -6,15 +6,19 @@ import javax.persistence.Basic;
 import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 
+import org.hibernate.annotations.GenericGenerator;
+
 import com.google.gson.annotations.JsonAdapter;
 
 import edu.ncsu.csc.iTrust2.adapters.ZonedDateTimeAdapter;
 import edu.ncsu.csc.iTrust2.adapters.ZonedDateTimeAttributeConverter;
 import edu.ncsu.csc.iTrust2.models.DomainObject;
+import edu.ncsu.csc.iTrust2.models.PooledIdGenerator;
 import edu.ncsu.csc.iTrust2.models.enums.TransactionType;
 
 /**
@@ -23,10 +27,17 @@ import edu.ncsu.csc.iTrust2.models.enums.TransactionType;
  * happened), a username, and a time when the event occurred. Has support for an
  * optional secondary user and message for further elaboration
  *
+ * Entries are almost always looked up by user and then ordered by time, so
+ * there is an index for each of the two users that covers that ordering. The
+ * index on time alone serves date-range searches and the retention job.
+ *
  * @author Kai Presler-Marshall
  *
  */
 @Entity
+@Table ( indexes = { @Index ( name = "idx_log_entry_primary_user_time", columnList = "primaryUser, time, id" ),
+        @Index ( name = "idx_log_entry_secondary_user_time", columnList = "secondaryUser, time, id" ),
+        @Index ( name = "idx_log_entry_time", columnList = "time" ) } )
 public class LogEntry extends DomainObject {
 
     /**
@@ -66,7 +77,8 @@ public class LogEntry extends DomainObject {
      * ID of the LogEntry
      */
     @Id
-    @GeneratedValue ( strategy = GenerationType.AUTO )
+    @GeneratedValue ( generator = PooledIdGenerator.NAME )
+    @GenericGenerator ( name = PooledIdGenerator.NAME, strategy = PooledIdGenerator.STRATEGY )
     private Long            id;
 
     /**
@@ -6,16 +6,20 @@ import javax.persistence.Basic;
 import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+
+import org.hibernate.annotations.GenericGenerator;
 
 import com.google.gson.annotations.JsonAdapter;
 
 import edu.ncsu.csc.iTrust2.adapters.ZonedDateTimeAdapter;
 import edu.ncsu.csc.iTrust2.adapters.ZonedDateTimeAttributeConverter;
 import edu.ncsu.csc.iTrust2.models.DomainObject;
+import edu.ncsu.csc.iTrust2.models.PooledIdGenerator;
 import edu.ncsu.csc.iTrust2.models.User;
 
 /**
@@ -33,10 +37,14 @@ import edu.ncsu.csc.iTrust2.models.User;
  *
  */
 @Entity
+@Table ( indexes = { @Index ( name = "idx_login_attempt_ip_time", columnList = "ip, time" ),
+        @Index ( name = "idx_login_attempt_user_time", columnList = "user_id, time" ),
+        @Index ( name = "idx_login_attempt_time", columnList = "time" ) } )
 public class LoginAttempt extends DomainObject {
 
     @Id
-    @GeneratedValue ( strategy = GenerationType.AUTO )
+    @GeneratedValue ( generator = PooledIdGenerator.NAME )
+    @GenericGenerator ( name = PooledIdGenerator.NAME, strategy = PooledIdGenerator.STRATEGY )
     private Long          id;
 
     private String        ip;
@@ -6,16 +6,20 @@ import javax.persistence.Basic;
 import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+
+import org.hibernate.annotations.GenericGenerator;
 
 import com.google.gson.annotations.JsonAdapter;
 
 import edu.ncsu.csc.iTrust2.adapters.ZonedDateTimeAdapter;
 import edu.ncsu.csc.iTrust2.adapters.ZonedDateTimeAttributeConverter;
 import edu.ncsu.csc.iTrust2.models.DomainObject;
+import edu.ncsu.csc.iTrust2.models.PooledIdGenerator;
 import edu.ncsu.csc.iTrust2.models.User;
 
 /**
@@ -24,15 +28,22 @@ import edu.ncsu.csc.iTrust2.models.User;
  * result in a LoginBan. Upon the elevation to a LoginBan, all associated
  * LoginLockout objects are deleted.
  *
+ * Lockouts are only ever looked up for an IP or user within a recent window of
+ * time, which the (ip, time) and (user, time) indexes cover.
+ *
  * @author Thomas
  * @author Kai Presler-Marshall
  *
  */
 @Entity
+@Table ( indexes = { @Index ( name = "idx_login_lockout_ip_time", columnList = "ip, time" ),
+        @Index ( name = "idx_login_lockout_user_time", columnList = "user_id, time" ),
+        @Index ( name = "idx_login_lockout_time", columnList = "time" ) } )
 public class LoginLockout extends DomainObject {
 
     @Id
-    @GeneratedValue ( strategy = GenerationType.AUTO )
+    @GeneratedValue ( generator = PooledIdGenerator.NAME )
+    @GenericGenerator ( name = PooledIdGenerator.NAME, strategy = PooledIdGenerator.STRATEGY )
     private Long          id;
 
     private String        ip;
@@ -0,0 +1,84 @@
+package edu.ncsu.csc.iTrust2.repositories;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import edu.ncsu.csc.iTrust2.models.AppointmentRequestDeletion;
+
+public interface AppointmentRequestDeletionRepository extends JpaRepository<AppointmentRequestDeletion, Long> {
+
+    /**
+     * Finds the IDs of an HCP's requests that were deleted between two
+     * versions. Served by the (hcp, change_version) index.
+     *
+     * @param hcp
+     *            Username of the HCP
+     * @param since
+     *            Only deletions after this version
+     * @param until
+     *            Only deletions up to and including this version
+     * @return IDs of the deleted requests
+     */
+    @Query ( "SELECT DISTINCT d.requestId FROM AppointmentRequestDeletion d WHERE d.hcp = :hcp"
+            + " AND d.changeVersion > :since AND d.changeVersion <= :until" )
+    public List<Long> findDeletedIds ( @Param ( "hcp" ) String hcp, @Param ( "since" ) long since,
+            @Param ( "until" ) long until );
+
+    /**
+     * Finds the version of an HCP's latest deletion, up to a given version.
+     *
+     * @param hcp
+     *            Username of the HCP
+     * @param until
+     *            Only deletions up to and including this version
+     * @return The version, or null if there are none
+     */
+    @Query ( "SELECT MAX(d.changeVersion) FROM AppointmentRequestDeletion d WHERE d.hcp = :hcp"
+            + " AND d.changeVersion <= :until" )
+    public Long findLatestVersion ( @Param ( "hcp" ) String hcp, @Param ( "until" ) long until );
+
+    /**
+     * Finds the version of the latest deletion of anyone's request.
+     *
+     * @return The version, or null if there are none
+     */
+    @Query ( "SELECT MAX(d.changeVersion) FROM AppointmentRequestDeletion d" )
+    public Long findMaxVersion ();
+
+    /**
+     * Finds the version of the earliest deletion still kept.
+     *
+     * @return The version, or null if there are none
+     */
+    @Query ( "SELECT MIN(d.changeVersion) FROM AppointmentRequestDeletion d" )
+    public Long findMinVersion ();
+
+    /**
+     * Finds the version of the latest deletion that happened before a given
+     * time, or whose time wasn't recorded. Served by the time index.
+     *
+     * @param before
+     *            Only deletions before this
+     * @return The version, or null if there are none
+     */
+    @Query ( "SELECT MAX(d.changeVersion) FROM AppointmentRequestDeletion d WHERE d.time < :before"
+            + " OR d.time IS NULL" )
+    public Long findLatestVersionBefore ( @Param ( "before" ) ZonedDateTime before );
+
+    /**
+     * Deletes every deletion record below a given version.
+     *
+     * @param version
+     *            Records with a version below this are deleted
+     * @return Number of records deleted
+     */
+    @Modifying
+    @Query ( "DELETE FROM AppointmentRequestDeletion d WHERE d.changeVersion < :version" )
+    public int deleteBeforeVersion ( @Param ( "version" ) long version );
+
+}
@@ -1,11 +1,22 @@
 package edu.ncsu.csc.iTrust2.repositories;
 
+import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.Optional;
 
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import edu.ncsu.csc.iTrust2.models.AppointmentRequest;
 import edu.ncsu.csc.iTrust2.models.User;
+import edu.ncsu.csc.iTrust2.models.enums.Status;
 
 public interface AppointmentRequestRepository extends JpaRepository<AppointmentRequest, Long> {
 
@@ -15,4 +26,151 @@ public interface AppointmentRequestRepository extends JpaRepository<AppointmentR
 
     public List<AppointmentRequest> findByHcpAndPatient ( User hcp, User patient );
 
+    /**
+     * Finds the appointment between an HCP and a patient at a given time.
+     *
+     * @param hcp
+     *            The HCP
+     * @param patient
+     *            The patient
+     * @param date
+     *            When the appointment is
+     * @return The appointment, if there is one
+     */
+    public Optional<AppointmentRequest> findFirstByHcpAndPatientAndDate ( User hcp, User patient,
+            ZonedDateTime date );
+
+    /**
+     * Finds a page of an HCP's appointment requests with a given status.
+     * Served by the (hcp, status, date) index.
+     *
+     * @param hcp
+     *            The HCP
+     * @param status
+     *            Status of the requests to find
+     * @param from
+     *            Earliest date to include, or null for no limit
+     * @param to
+     *            Date to stop before, or null for no limit
+     * @param pageable
+     *            The page to find, and how to sort it
+     * @return The page of requests
+     */
+    @EntityGraph ( attributePaths = { "patient", "hcp" } )
+    @Query ( "SELECT r FROM AppointmentRequest r WHERE r.hcp = :hcp AND r.status = :status"
+            + " AND ( :from IS NULL OR r.date >= :from ) AND ( :to IS NULL OR r.date < :to )" )
+    public Page<AppointmentRequest> findByHcpAndStatus ( @Param ( "hcp" ) User hcp,
+            @Param ( "status" ) Status status, @Param ( "from" ) ZonedDateTime from,
+            @Param ( "to" ) ZonedDateTime to, Pageable pageable );
+
+    /**
+     * Finds a page of a patient's appointment requests with a given status.
+     * Served by the (patient, status, date) index.
+     *
+     * @param patient
+     *            The patient
+     * @param status
+     *            Status of the requests to find
+     * @param pageable
+     *            The page to find, and how to sort it
+     * @return The page of requests
+     */
+    @EntityGraph ( attributePaths = { "patient", "hcp" } )
+    public Page<AppointmentRequest> findByPatientAndStatus ( User patient, Status status, Pageable pageable );
+
+    /**
+     * Finds a page of everyone's appointment requests.
+     *
+     * @param status
+     *            Status of the requests to find, or null for any status
+     * @param from
+     *            Earliest date to include, or null for no limit
+     * @param to
+     *            Date to stop before, or null for no limit
+     * @param pageable
+     *            The page to find, and how to sort it
+     * @return The page of requests
+     */
+    @EntityGraph ( attributePaths = { "patient", "hcp" } )
+    @Query ( "SELECT r FROM AppointmentRequest r WHERE ( :status IS NULL OR r.status = :status )"
+            + " AND ( :from IS NULL OR r.date >= :from ) AND ( :to IS NULL OR r.date < :to )" )
+    public Page<AppointmentRequest> findByStatus ( @Param ( "status" ) Status status,
+            @Param ( "from" ) ZonedDateTime from, @Param ( "to" ) ZonedDateTime to, Pageable pageable );
+
+    /**
+     * Finds an HCP's appointments with a given status that end after a given
+     * time. Served by the (hcp, status, date) index.
+     *
+     * @param hcp
+     *            Username of the HCP
+     * @param status
+     *            Status of the appointments to find
+     * @param date
+     *            Only appointments starting after this
+     * @return The appointments
+     */
+    public List<AppointmentRequest> findByHcpUsernameAndStatusAndDateAfter ( String hcp, Status status,
+            ZonedDateTime date );
+
+    /**
+     * Finds an HCP's requests that changed between two versions, oldest change
+     * first. Served by the (hcp, change_version) index.
+     *
+     * @param hcp
+     *            The HCP
+     * @param since
+     *            Only requests changed after this version
+     * @param until
+     *            Only requests changed up to and including this version
+     * @return The requests
+     */
+    @EntityGraph ( attributePaths = { "patient", "hcp" } )
+    @Query ( "SELECT r FROM AppointmentRequest r WHERE r.hcp = :hcp AND r.changeVersion > :since"
+            + " AND r.changeVersion <= :until ORDER BY r.changeVersion" )
+    public List<AppointmentRequest> findChanges ( @Param ( "hcp" ) User hcp, @Param ( "since" ) long since,
+            @Param ( "until" ) long until );
+
+    /**
+     * Finds the version of the latest change to any of an HCP's requests, up to
+     * a given version.
+     *
+     * @param hcp
+     *            The HCP
+     * @param until
+     *            Only changes up to and including this version
+     * @return The version, or null if there are none
+     */
+    @Query ( "SELECT MAX(r.changeVersion) FROM AppointmentRequest r WHERE r.hcp = :hcp"
+            + " AND r.changeVersion <= :until" )
+    public Long findLatestVersion ( @Param ( "hcp" ) User hcp, @Param ( "until" ) long until );
+
+    /**
+     * Finds the version of the latest change to anyone's request.
+     *
+     * @return The version, or null if there are none
+     */
+    @Query ( "SELECT MAX(r.changeVersion) FROM AppointmentRequest r" )
+    public Long findMaxVersion ();
+
+    /**
+     * Finds the username of the HCP a request belongs to in the database.
+     * Pending changes aren't flushed first, so this still gives the old HCP
+     * while a request that is being moved is waiting to be saved.
+     *
+     * @param id
+     *            ID of the request
+     * @return Username of the HCP, or null if there is no such request
+     */
+    @QueryHints ( @QueryHint ( name = org.hibernate.annotations.QueryHints.FLUSH_MODE, value = "COMMIT" ) )
+    @Query ( "SELECT r.hcp.username FROM AppointmentRequest r WHERE r.id = :id" )
+    public String findHcpUsernameById ( @Param ( "id" ) Long id );
+
+    /**
+     * Finds the ID and HCP username of every request, as pairs.
+     *
+     * @return `[id, hcp]` for each request
+     */
+    @Query ( "SELECT r.id, r.hcp.username FROM AppointmentRequest r" )
+    public List<Object[]> findIdsAndHcps ();
+
 }
@@ -1,14 +1,37 @@
 package edu.ncsu.csc.iTrust2.repositories;
 
+import java.time.ZonedDateTime;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import edu.ncsu.csc.iTrust2.models.Diagnosis;
 import edu.ncsu.csc.iTrust2.models.OfficeVisit;
+import edu.ncsu.csc.iTrust2.models.User;
 
 public interface DiagnosisRepository extends JpaRepository<Diagnosis, Long> {
 
     public List<Diagnosis> findByVisit ( OfficeVisit visit );
 
+    /**
+     * Finds the diagnoses made during a patient's office visits, with their
+     * ICD codes, in a single query. Diagnoses are ordered by the date of their
+     * visit.
+     *
+     * @param patient
+     *            The patient
+     * @param from
+     *            Earliest visit date to include, or null for no limit
+     * @param to
+     *            Visit date to stop before, or null for no limit
+     * @return The patient's diagnoses
+     */
+    @Query ( "SELECT d FROM Diagnosis d JOIN FETCH d.code JOIN d.visit v WHERE v.patient = :patient"
+            + " AND ( :from IS NULL OR v.date >= :from ) AND ( :to IS NULL OR v.date < :to )"
+            + " ORDER BY v.date, d.id" )
+    public List<Diagnosis> findByPatient ( @Param ( "patient" ) User patient, @Param ( "from" ) ZonedDateTime from,
+            @Param ( "to" ) ZonedDateTime to );
+
 }
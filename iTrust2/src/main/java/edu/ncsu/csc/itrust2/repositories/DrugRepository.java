@@ -1,5 +1,8 @@
 package edu.ncsu.csc.iTrust2.repositories;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import edu.ncsu.csc.iTrust2.models.Drug;
@@ -10,4 +13,13 @@ public interface DrugRepository extends JpaRepository<Drug, Long> {
 
     public Drug findByCode ( String code );
 
+    /**
+     * Finds several Drugs at once.
+     *
+     * @param codes
+     *            Codes to look up
+     * @return The matching Drugs; codes that don't exist are left out
+     */
+    public List<Drug> findByCodeIn ( Collection<String> codes );
+
 }
@@ -1,14 +1,129 @@
 package edu.ncsu.csc.iTrust2.repositories;
 
+import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import edu.ncsu.csc.iTrust2.models.Email;
 import edu.ncsu.csc.iTrust2.models.User;
+import edu.ncsu.csc.iTrust2.models.enums.EmailStatus;
 
 public interface EmailRepository extends JpaRepository<Email, Long> {
 
     public List<Email> findByReceiver ( User receiver );
 
+    /**
+     * Finds the IDs of emails that are due to be sent: those waiting whose
+     * next attempt has come, and those a worker claimed so long ago that it
+     * must have died, as long as they have attempts left. Served by the
+     * (status, next_attempt) index.
+     *
+     * @param pending
+     *            `EmailStatus.PENDING`
+     * @param sending
+     *            `EmailStatus.SENDING`
+     * @param now
+     *            The current time
+     * @param staleBefore
+     *            Claims from before this are taken to be abandoned
+     * @param maxAttempts
+     *            Abandoned emails that have been claimed this many times are
+     *            left out
+     * @param pageable
+     *            How many to find
+     * @return IDs of the emails, longest waiting first
+     */
+    @Query ( "SELECT e.id FROM Email e WHERE ( e.status = :pending AND e.nextAttempt <= :now )"
+            + " OR ( e.status = :sending AND e.claimedAt < :staleBefore AND e.attempts < :maxAttempts )"
+            + " ORDER BY e.nextAttempt" )
+    public List<Long> findDue ( @Param ( "pending" ) EmailStatus pending, @Param ( "sending" ) EmailStatus sending,
+            @Param ( "now" ) ZonedDateTime now, @Param ( "staleBefore" ) ZonedDateTime staleBefore,
+            @Param ( "maxAttempts" ) int maxAttempts, Pageable pageable );
+
+    /**
+     * Claims emails for sending, if they are still due, and counts the
+     * attempt. Counting it here rather than once the email is sent means
+     * that an email whose worker dies while sending it still runs out of
+     * attempts. An email that another worker claimed first is left alone, so
+     * each email is only claimed once.
+     *
+     * @param ids
+     *            IDs of the emails, from `findDue`
+     * @param pending
+     *            `EmailStatus.PENDING`
+     * @param sending
+     *            `EmailStatus.SENDING`
+     * @param token
+     *            Identifies this claim
+     * @param now
+     *            The current time
+     * @param staleBefore
+     *            Claims from before this are taken to be abandoned
+     * @param maxAttempts
+     *            Abandoned emails that have been claimed this many times are
+     *            left alone
+     * @return Number of emails claimed
+     */
+    @Modifying
+    @Query ( "UPDATE Email e SET e.status = :sending, e.claimToken = :token, e.claimedAt = :now,"
+            + " e.attempts = e.attempts + 1 WHERE e.id IN :ids"
+            + " AND ( ( e.status = :pending AND e.nextAttempt <= :now )"
+            + " OR ( e.status = :sending AND e.claimedAt < :staleBefore AND e.attempts < :maxAttempts ) )" )
+    public int claim ( @Param ( "ids" ) Collection<Long> ids, @Param ( "pending" ) EmailStatus pending,
+            @Param ( "sending" ) EmailStatus sending, @Param ( "token" ) String token,
+            @Param ( "now" ) ZonedDateTime now, @Param ( "staleBefore" ) ZonedDateTime staleBefore,
+            @Param ( "maxAttempts" ) int maxAttempts );
+
+    /**
+     * Gives up on emails whose worker died while sending them, once they have
+     * been claimed as many times as they may be.
+     *
+     * @param sending
+     *            `EmailStatus.SENDING`
+     * @param failed
+     *            `EmailStatus.FAILED`
+     * @param staleBefore
+     *            Claims from before this are taken to be abandoned
+     * @param maxAttempts
+     *            Times an email may be claimed
+     * @param error
+     *            Recorded as the reason the emails failed
+     * @return Number of emails given up on
+     */
+    @Modifying
+    @Query ( "UPDATE Email e SET e.status = :failed, e.claimToken = NULL, e.lastError = :error"
+            + " WHERE e.status = :sending AND e.claimedAt < :staleBefore AND e.attempts >= :maxAttempts" )
+    public int abandon ( @Param ( "sending" ) EmailStatus sending, @Param ( "failed" ) EmailStatus failed,
+            @Param ( "staleBefore" ) ZonedDateTime staleBefore, @Param ( "maxAttempts" ) int maxAttempts,
+            @Param ( "error" ) String error );
+
+    /**
+     * Finds the emails in a claim, along with who they are going to.
+     *
+     * @param token
+     *            Identifies the claim
+     * @param status
+     *            `EmailStatus.SENDING`, so that emails that have since been
+     *            claimed by someone else are left out
+     * @return The emails
+     */
+    @EntityGraph ( attributePaths = { "receiver" } )
+    public List<Email> findByClaimTokenAndStatus ( String token, EmailStatus status );
+
+    /**
+     * Counts the emails in a given state.
+     *
+     * @param status
+     *            The state
+     * @return Number of emails
+     */
+    public long countByStatus ( EmailStatus status );
+
 }
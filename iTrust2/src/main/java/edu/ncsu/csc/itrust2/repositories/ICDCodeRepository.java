@@ -1,5 +1,8 @@
 package edu.ncsu.csc.iTrust2.repositories;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import edu.ncsu.csc.iTrust2.models.ICDCode;
@@ -8,4 +11,13 @@ public interface ICDCodeRepository extends JpaRepository<ICDCode, Long> {
 
     public ICDCode findByCode ( String code );
 
+    /**
+     * Finds several ICD codes at once.
+     *
+     * @param codes
+     *            Codes to look up
+     * @return The matching ICDCodes; codes that don't exist are left out
+     */
+    public List<ICDCode> findByCodeIn ( Collection<String> codes );
+
 }
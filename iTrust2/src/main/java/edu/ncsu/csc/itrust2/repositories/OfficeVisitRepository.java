@@ -1,13 +1,25 @@
 package edu.ncsu.csc.iTrust2.repositories;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import edu.ncsu.csc.iTrust2.models.OfficeVisit;
 import edu.ncsu.csc.iTrust2.models.User;
 
-public interface OfficeVisitRepository extends JpaRepository<OfficeVisit, Long> {
+public interface OfficeVisitRepository
+        extends JpaRepository<OfficeVisit, Long>, JpaSpecificationExecutor<OfficeVisit> {
 
     public List<OfficeVisit> findByHcp ( User hcp );
 
@@ -15,4 +27,44 @@ public interface OfficeVisitRepository extends JpaRepository<OfficeVisit, Long>
 
     public List<OfficeVisit> findByHcpAndPatient ( User hcp, User patient );
 
+    /**
+     * Finds a page of the office visits matching a specification, loading each
+     * with the summary fetch plan.
+     */
+    @Override
+    @EntityGraph ( OfficeVisit.SUMMARY_GRAPH )
+    public Page<OfficeVisit> findAll ( Specification<OfficeVisit> spec, Pageable pageable );
+
+    /**
+     * Finds every office visit matching a specification, loading each with the
+     * summary fetch plan.
+     */
+    @Override
+    @EntityGraph ( OfficeVisit.SUMMARY_GRAPH )
+    public List<OfficeVisit> findAll ( Specification<OfficeVisit> spec, Sort sort );
+
+    /**
+     * Finds an office visit, loading it with the full fetch plan.
+     *
+     * @param id
+     *            ID of the office visit
+     * @return The office visit, if it exists
+     */
+    @EntityGraph ( OfficeVisit.FULL_GRAPH )
+    public Optional<OfficeVisit> findDetailedById ( Long id );
+
+    /**
+     * Walks through a patient's office visits, oldest first, with a database
+     * cursor rather than loading them all at once. Each visit comes with the
+     * summary fetch plan. The stream has to be consumed (and closed) inside a
+     * transaction.
+     *
+     * @param patient
+     *            The patient
+     * @return The patient's office visits
+     */
+    @EntityGraph ( OfficeVisit.SUMMARY_GRAPH )
+    @QueryHints ( @QueryHint ( name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "50" ) )
+    public Stream<OfficeVisit> streamByPatientOrderByDateAscIdAsc ( User patient );
+
 }
@@ -1,8 +1,12 @@
 package edu.ncsu.csc.iTrust2.repositories;
 
 import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import edu.ncsu.csc.iTrust2.models.Prescription;
 import edu.ncsu.csc.iTrust2.models.User;
@@ -11,4 +15,16 @@ public interface PrescriptionRepository extends JpaRepository<Prescription, Long
 
     public List<Prescription> findByPatient ( final User patient );
 
+    /**
+     * Walks through a patient's prescriptions, oldest first, with a database
+     * cursor rather than loading them all at once. The stream has to be
+     * consumed (and closed) inside a transaction.
+     *
+     * @param patient
+     *            The patient
+     * @return The patient's prescriptions
+     */
+    @QueryHints ( @QueryHint ( name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "50" ) )
+    public Stream<Prescription> streamByPatientOrderByStartDateAscIdAsc ( final User patient );
+
 }
@@ -1,6 +1,11 @@
 package edu.ncsu.csc.iTrust2.repositories;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import edu.ncsu.csc.iTrust2.models.User;
 
@@ -8,4 +13,25 @@ public interface UserRepository extends JpaRepository<User, String> {
 
     User findByUsername ( String username );
 
+    /**
+     * Finds a User along with their roles in a single query.
+     *
+     * @param username
+     *            Username to look up
+     * @return The matching User, or null if there isn't one
+     */
+    @Query ( "SELECT u FROM User u LEFT JOIN FETCH u.roles WHERE u.username = :username" )
+    User findWithRolesByUsername ( @Param ( "username" ) String username );
+
+    /**
+     * Finds every User with one of the provided usernames, along with their
+     * roles, in a single query.
+     *
+     * @param usernames
+     *            Usernames to look up
+     * @return The matching Users; usernames that don't exist are left out
+     */
+    @Query ( "SELECT DISTINCT u FROM User u LEFT JOIN FETCH u.roles WHERE u.username IN :usernames" )
+    List<User> findByUsernameIn ( @Param ( "usernames" ) Collection<String> usernames );
+
 }
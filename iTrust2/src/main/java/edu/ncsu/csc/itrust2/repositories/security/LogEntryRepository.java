@@ -1,11 +1,17 @@
 package edu.ncsu.csc.iTrust2.repositories.security;
 
 import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.List;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import edu.ncsu.csc.iTrust2.models.enums.TransactionType;
 import edu.ncsu.csc.iTrust2.models.security.LogEntry;
 
 public interface LogEntryRepository extends JpaRepository<LogEntry, Long> {
@@ -23,13 +29,157 @@ public interface LogEntryRepository extends JpaRepository<LogEntry, Long> {
 
     /**
      * Retrieves all log entries for a user where they are either the primary or
-     * secondary user on the Entry.
+     * secondary user on the Entry. Written as a UNION of two lookups so that
+     * each half can use its own index, which an OR across the two columns
+     * cannot.
      *
      * @param user
      *            User to search on
      * @return List of matching records
      */
-    @Query ( "SELECT le FROM LogEntry le WHERE le.primaryUser = ?1 OR le.secondaryUser = ?1" )
+    @Query ( value = "SELECT * FROM log_entry WHERE primary_user = ?1 "
+            + "UNION SELECT * FROM log_entry WHERE secondary_user = ?1", nativeQuery = true )
     public List<LogEntry> findByPrimaryUserOrSecondaryUser ( String user );
 
+    /**
+     * Retrieves all log entries for a user, where they are either the primary
+     * or secondary user on the Entry, between (inclusive) two dates. As with
+     * `findByPrimaryUserOrSecondaryUser`, this is a UNION of two index-driven
+     * lookups.
+     *
+     * @param user
+     *            User to search on
+     * @param fromDate
+     *            Starting date
+     * @param toDate
+     *            Ending date
+     * @return List of matching records
+     */
+    @Query ( value = "SELECT * FROM log_entry WHERE primary_user = :user AND time BETWEEN :fromDate AND :toDate "
+            + "UNION SELECT * FROM log_entry WHERE secondary_user = :user AND time BETWEEN :fromDate AND :toDate",
+            nativeQuery = true )
+    public List<LogEntry> findByUserAndTimeBetween ( @Param ( "user" ) String user,
+            @Param ( "fromDate" ) ZonedDateTime fromDate, @Param ( "toDate" ) ZonedDateTime toDate );
+
+    /**
+     * Retrieves one page of the log entries for a user, restricted to the
+     * given types of event. Ordering comes from the Pageable.
+     *
+     * @param user
+     *            User to search on
+     * @param codes
+     *            Types of event to include
+     * @param pageable
+     *            Page number, size and sort order
+     * @return The requested page, along with the total number of matches
+     */
+    @Query ( value = "SELECT le FROM LogEntry le WHERE ( le.primaryUser = :user OR le.secondaryUser = :user ) "
+            + "AND le.logCode IN :codes",
+            countQuery = "SELECT COUNT(le) FROM LogEntry le WHERE ( le.primaryUser = :user OR le.secondaryUser = :user ) "
+                    + "AND le.logCode IN :codes" )
+    public Page<LogEntry> findPageByUser ( @Param ( "user" ) String user,
+            @Param ( "codes" ) Collection<TransactionType> codes, Pageable pageable );
+
+    /**
+     * Retrieves one page of the log entries for a user between (inclusive) two
+     * dates, restricted to the given types of event. Ordering comes from the
+     * Pageable.
+     *
+     * @param user
+     *            User to search on
+     * @param fromDate
+     *            Starting date
+     * @param toDate
+     *            Ending date
+     * @param codes
+     *            Types of event to include
+     * @param pageable
+     *            Page number, size and sort order
+     * @return The requested page, along with the total number of matches
+     */
+    @Query ( value = "SELECT le FROM LogEntry le WHERE ( le.primaryUser = :user OR le.secondaryUser = :user ) "
+            + "AND le.time BETWEEN :fromDate AND :toDate AND le.logCode IN :codes",
+            countQuery = "SELECT COUNT(le) FROM LogEntry le WHERE ( le.primaryUser = :user OR le.secondaryUser = :user ) "
+                    + "AND le.time BETWEEN :fromDate AND :toDate AND le.logCode IN :codes" )
+    public Page<LogEntry> findPageByUserAndTimeBetween ( @Param ( "user" ) String user,
+            @Param ( "fromDate" ) ZonedDateTime fromDate, @Param ( "toDate" ) ZonedDateTime toDate,
+            @Param ( "codes" ) Collection<TransactionType> codes, Pageable pageable );
+
+    /**
+     * Retrieves log entries where the user is the primary user, restricted to
+     * the given types of event, from no earlier than `fromDate` and strictly
+     * before the (time, id) position given. Ordering and the number of entries
+     * come from the Pageable, which should sort by time and then id, newest
+     * first, so that the (primaryUser, time, id) index can be walked directly.
+     *
+     * @param user
+     *            User to search on
+     * @param codes
+     *            Types of event to include
+     * @param fromDate
+     *            Earliest time to include
+     * @param beforeTime
+     *            Time of the position to start before
+     * @param beforeId
+     *            ID of the position to start before
+     * @param pageable
+     *            Number of entries and sort order
+     * @return List of matching records
+     */
+    @Query ( "SELECT le FROM LogEntry le WHERE le.primaryUser = :user AND le.logCode IN :codes "
+            + "AND le.time >= :fromDate AND ( le.time < :beforeTime OR ( le.time = :beforeTime AND le.id < :beforeId ) )" )
+    public List<LogEntry> findByPrimaryUserBefore ( @Param ( "user" ) String user,
+            @Param ( "codes" ) Collection<TransactionType> codes, @Param ( "fromDate" ) ZonedDateTime fromDate,
+            @Param ( "beforeTime" ) ZonedDateTime beforeTime, @Param ( "beforeId" ) Long beforeId,
+            Pageable pageable );
+
+    /**
+     * Same as `findByPrimaryUserBefore`, but for entries where the user is the
+     * secondary user.
+     *
+     * @param user
+     *            User to search on
+     * @param codes
+     *            Types of event to include
+     * @param fromDate
+     *            Earliest time to include
+     * @param beforeTime
+     *            Time of the position to start before
+     * @param beforeId
+     *            ID of the position to start before
+     * @param pageable
+     *            Number of entries and sort order
+     * @return List of matching records
+     */
+    @Query ( "SELECT le FROM LogEntry le WHERE le.secondaryUser = :user AND le.logCode IN :codes "
+            + "AND le.time >= :fromDate AND ( le.time < :beforeTime OR ( le.time = :beforeTime AND le.id < :beforeId ) )" )
+    public List<LogEntry> findBySecondaryUserBefore ( @Param ( "user" ) String user,
+            @Param ( "codes" ) Collection<TransactionType> codes, @Param ( "fromDate" ) ZonedDateTime fromDate,
+            @Param ( "beforeTime" ) ZonedDateTime beforeTime, @Param ( "beforeId" ) Long beforeId,
+            Pageable pageable );
+
+    /**
+     * Retrieves the IDs of log entries from strictly before the given time,
+     * oldest first. Use the Pageable to limit how many are returned at once.
+     *
+     * @param cutoff
+     *            Time before which entries are returned
+     * @param pageable
+     *            Number of IDs to return
+     * @return IDs of matching records
+     */
+    @Query ( "SELECT le.id FROM LogEntry le WHERE le.time < :cutoff ORDER BY le.time, le.id" )
+    public List<Long> findIdsBefore ( @Param ( "cutoff" ) ZonedDateTime cutoff, Pageable pageable );
+
+    /**
+     * Deletes the log entries with the given IDs in a single statement.
+     *
+     * @param ids
+     *            IDs of the entries to delete
+     * @return Number of entries deleted
+     */
+    @Modifying
+    @Query ( "DELETE FROM LogEntry le WHERE le.id IN :ids" )
+    public int deleteByIdIn ( @Param ( "ids" ) Collection<Long> ids );
+
 }
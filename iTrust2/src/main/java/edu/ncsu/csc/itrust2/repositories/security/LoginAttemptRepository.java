@@ -1,6 +1,12 @@
 package edu.ncsu.csc.iTrust2.repositories.security;
 
+import java.time.ZonedDateTime;
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import edu.ncsu.csc.iTrust2.models.User;
 import edu.ncsu.csc.iTrust2.models.security.LoginAttempt;
@@ -43,4 +49,34 @@ public interface LoginAttemptRepository extends JpaRepository<LoginAttempt, Long
      */
     public long deleteByUser ( User user );
 
+    /**
+     * Deletes all saved LoginAttempt records for the user with the given
+     * username.
+     *
+     * @param username
+     *            Username of the User to delete by.
+     * @return The number of records deleted
+     */
+    public long deleteByUserUsername ( String username );
+
+    /**
+     * Retrieves every LoginAttempt recorded after the given time.
+     *
+     * @param time
+     *            Earliest time to include (exclusive)
+     * @return The list of matching LoginAttempts.
+     */
+    public List<LoginAttempt> findByTimeAfter ( ZonedDateTime time );
+
+    /**
+     * Deletes all saved LoginAttempts from before the given time.
+     *
+     * @param time
+     *            Attempts older than this are deleted
+     * @return The number of records deleted
+     */
+    @Modifying
+    @Query ( "DELETE FROM LoginAttempt la WHERE la.time < :time" )
+    public int deleteByTimeBefore ( @Param ( "time" ) ZonedDateTime time );
+
 }
@@ -1,8 +1,12 @@
 package edu.ncsu.csc.iTrust2.repositories.security;
 
+import java.time.ZonedDateTime;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import edu.ncsu.csc.iTrust2.models.User;
 import edu.ncsu.csc.iTrust2.models.security.LoginLockout;
@@ -45,4 +49,72 @@ public interface LoginLockoutRepository extends JpaRepository<LoginLockout, Long
      */
     public long deleteByUser ( User user );
 
+    /**
+     * Retrieves every LoginLockout recorded after the given time.
+     *
+     * @param time
+     *            Earliest time to include (exclusive)
+     * @return The list of matching LoginLockouts.
+     */
+    public List<LoginLockout> findByTimeAfter ( ZonedDateTime time );
+
+    /**
+     * Checks to see if there is a LoginLockout for the given IP address more
+     * recent than the given time.
+     *
+     * @param ipAddress
+     *            The IP address to search on.
+     * @param time
+     *            Earliest time to include (exclusive)
+     * @return True iff a lockout was found.
+     */
+    public boolean existsByIpAndTimeAfter ( String ipAddress, ZonedDateTime time );
+
+    /**
+     * Checks to see if there is a LoginLockout for the given user more recent
+     * than the given time.
+     *
+     * @param user
+     *            The User to search on.
+     * @param time
+     *            Earliest time to include (exclusive)
+     * @return True iff a lockout was found.
+     */
+    public boolean existsByUserAndTimeAfter ( User user, ZonedDateTime time );
+
+    /**
+     * Counts the LoginLockouts for the given IP address more recent than the
+     * given time.
+     *
+     * @param ipAddress
+     *            The IP address to search on.
+     * @param time
+     *            Earliest time to include (exclusive)
+     * @return The number of matching LoginLockouts.
+     */
+    public long countByIpAndTimeAfter ( String ipAddress, ZonedDateTime time );
+
+    /**
+     * Counts the LoginLockouts for the given user more recent than the given
+     * time.
+     *
+     * @param user
+     *            The User to search on.
+     * @param time
+     *            Earliest time to include (exclusive)
+     * @return The number of matching LoginLockouts.
+     */
+    public long countByUserAndTimeAfter ( User user, ZonedDateTime time );
+
+    /**
+     * Deletes all saved LoginLockouts from before the given time.
+     *
+     * @param time
+     *            Lockouts older than this are deleted
+     * @return The number of records deleted.
+     */
+    @Modifying
+    @Query ( "DELETE FROM LoginLockout ll WHERE ll.time < :time" )
+    public int deleteByTimeBefore ( @Param ( "time" ) ZonedDateTime time );
+
 }
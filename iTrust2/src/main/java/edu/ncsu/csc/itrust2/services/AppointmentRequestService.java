@@ -1,36 +1,285 @@
 package edu.ncsu.csc.iTrust2.services;
 
+import java.time.Duration;
+import java.time.LocalTime;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
+import javax.annotation.PostConstruct;
 import javax.transaction.Transactional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import edu.ncsu.csc.iTrust2.forms.AppointmentRequestForm;
 import edu.ncsu.csc.iTrust2.models.AppointmentRequest;
+import edu.ncsu.csc.iTrust2.models.AppointmentRequestDeletion;
+import edu.ncsu.csc.iTrust2.models.DomainObject;
 import edu.ncsu.csc.iTrust2.models.User;
 import edu.ncsu.csc.iTrust2.models.enums.AppointmentType;
 import edu.ncsu.csc.iTrust2.models.enums.Status;
+import edu.ncsu.csc.iTrust2.repositories.AppointmentRequestDeletionRepository;
 import edu.ncsu.csc.iTrust2.repositories.AppointmentRequestRepository;
 
+/**
+ * Keeps a `ScheduleIndex` of each HCP's approved appointments up to date as
+ * requests are saved and deleted here, so that booking an appointment can be
+ * checked for clashes, and an HCP's free slots found, without reading all of
+ * the HCP's requests. Every appointment is taken to last
+ * `itrust2.schedule.appointment-minutes`, and free slots are only offered
+ * between `itrust2.schedule.day-start` and `itrust2.schedule.day-end`.
+ *
+ * Every request saved here is also stamped with a change version from a
+ * `ChangeVersionClock`, and every request deleted (or moved to another HCP)
+ * leaves an `AppointmentRequestDeletion` behind, so that an HCP's calendar can
+ * be kept in sync by asking for only what changed since it last looked.
+ * Deletions are pruned once they are `itrust2.calendar.sync-token-days` old,
+ * so a client that hasn't synced for that long has to start over.
+ */
 @Component
 @Transactional
 public class AppointmentRequestService extends Service {
 
     @Autowired
-    private AppointmentRequestRepository repository;
+    private AppointmentRequestRepository         repository;
 
     @Autowired
-    private UserService                  userService;
+    private AppointmentRequestDeletionRepository deletionRepository;
+
+    @Autowired
+    private UserService                          userService;
+
+    /** How long every appointment lasts */
+    @Value ( "${itrust2.schedule.appointment-minutes:30}" )
+    private long                                 appointmentMinutes;
+
+    /** When an HCP's working day starts */
+    @Value ( "${itrust2.schedule.day-start:09:00}" )
+    private String                               dayStart;
+
+    /** When an HCP's working day ends */
+    @Value ( "${itrust2.schedule.day-end:17:00}" )
+    private String                               dayEnd;
+
+    /** How long deletions are kept, and so how long a sync token stays good */
+    @Value ( "${itrust2.calendar.sync-token-days:30}" )
+    private long                                 syncTokenDays;
+
+    /** Each HCP's approved appointments */
+    private ScheduleIndex                        schedule;
+
+    /** Hands out change versions */
+    private ChangeVersionClock                   clock;
+
+    /**
+     * Oldest sync token that changes can still be found since; deletions
+     * after it are all kept
+     */
+    private volatile long                        horizon;
 
     @Override
     protected JpaRepository getRepository () {
         return repository;
     }
 
+    /**
+     * Sets up the schedule index. HCPs are loaded into it as they are asked
+     * about.
+     */
+    @PostConstruct
+    public void createSchedule () {
+        final Duration length = Duration.ofMinutes( appointmentMinutes );
+        schedule = new ScheduleIndex( hcp -> repository.findByHcpUsernameAndStatusAndDateAfter( hcp,
+                Status.APPROVED, ZonedDateTime.now().minus( length ) ), length );
+    }
+
+    /**
+     * Starts the change version clock after the highest version in use, and
+     * works out how far back deletions have been kept.
+     */
+    @PostConstruct
+    public void createClock () {
+        final Long requests = repository.findMaxVersion();
+        final Long deletions = deletionRepository.findMaxVersion();
+        clock = new ChangeVersionClock( Math.max( null == requests ? 0 : requests,
+                null == deletions ? 0 : deletions ) );
+        updateHorizon();
+    }
+
+    /**
+     * Returns the oldest sync token that changes can still be found since.
+     * Deletions before it have been pruned, so a client with an older token
+     * has to sync from scratch.
+     *
+     * @return The version
+     */
+    public long getSyncHorizon () {
+        return horizon;
+    }
+
+    /**
+     * Scheduled entry point; prunes deletions older than
+     * `itrust2.calendar.sync-token-days`.
+     */
+    @Scheduled ( cron = "${itrust2.calendar.prune-cron:0 45 3 * * *}" )
+    public void pruneDeletions () {
+        pruneDeletionsBefore( ZonedDateTime.now().minusDays( syncTokenDays ) );
+    }
+
+    /**
+     * Deletes the records of deletions that happened before a given time, and
+     * moves the sync horizon up past them. The newest of them is kept, so
+     * that the horizon can be worked out again from what is left on restart.
+     *
+     * @param cutoff
+     *            Deletions before this are pruned
+     * @return Number of records deleted
+     */
+    public int pruneDeletionsBefore ( final ZonedDateTime cutoff ) {
+        final Long newest = deletionRepository.findLatestVersionBefore( cutoff );
+        final int pruned = null == newest ? 0 : deletionRepository.deleteBeforeVersion( newest );
+        updateHorizon();
+        return pruned;
+    }
+
+    /**
+     * Returns the latest change version that can be handed to a client as a
+     * sync token: every change up to it has been committed. See
+     * `ChangeVersionClock.safePoint()`.
+     *
+     * @return The version
+     */
+    public long getSyncVersion () {
+        return clock.safePoint();
+    }
+
+    /**
+     * Returns the highest change version handed out so far. No valid sync
+     * token is greater than this.
+     *
+     * @return The version
+     */
+    public long getLatestVersion () {
+        return clock.latest();
+    }
+
+    /**
+     * Finds the version of the latest change to an HCP's requests, including
+     * deletions, up to a given version.
+     *
+     * @param hcp
+     *            The HCP
+     * @param until
+     *            Only changes up to and including this version
+     * @return The version, or 0 if the HCP's requests have never changed
+     */
+    public long findLatestVersion ( final User hcp, final long until ) {
+        final Long changed = repository.findLatestVersion( hcp, until );
+        final Long deleted = deletionRepository.findLatestVersion( hcp.getUsername(), until );
+        return Math.max( null == changed ? 0 : changed, null == deleted ? 0 : deleted );
+    }
+
+    /**
+     * Finds an HCP's requests, of any status, that were saved between two
+     * versions, oldest change first.
+     *
+     * @param hcp
+     *            The HCP
+     * @param since
+     *            Only requests saved after this version
+     * @param until
+     *            Only requests saved up to and including this version
+     * @return The requests
+     */
+    public List<AppointmentRequest> findChanges ( final User hcp, final long since, final long until ) {
+        return repository.findChanges( hcp, since, until );
+    }
+
+    /**
+     * Finds the IDs of an HCP's requests that were deleted, or moved to
+     * another HCP, between two versions.
+     *
+     * @param hcp
+     *            The HCP
+     * @param since
+     *            Only deletions after this version
+     * @param until
+     *            Only deletions up to and including this version
+     * @return IDs of the requests
+     */
+    public List<Long> findDeletions ( final User hcp, final long since, final long until ) {
+        return deletionRepository.findDeletedIds( hcp.getUsername(), since, until );
+    }
+
+    /**
+     * Forgets every HCP's appointments, so that they are read from the
+     * database again. Call this if requests are changed without going through
+     * this service.
+     */
+    public void invalidateSchedule () {
+        schedule.clear();
+    }
+
+    /**
+     * Saves a request, unless it would overlap an approved appointment of the
+     * same HCP. The slot is held from the check until this transaction is
+     * over, so a request saved at the same time elsewhere sees it as taken
+     * even before this one commits. Rejected requests never clash with
+     * anything.
+     *
+     * @param request
+     *            The request; if it has an ID, it won't clash with itself
+     * @return true if the request was saved, false if the slot was taken
+     */
+    public boolean saveIfFree ( final AppointmentRequest request ) {
+        if ( Status.REJECTED == request.getStatus() ) {
+            save( request );
+            return true;
+        }
+        final String hcp = request.getHcp().getUsername();
+        final Long hold = schedule.hold( hcp, request.getDate(), request.getId() );
+        if ( null == hold ) {
+            return false;
+        }
+        try {
+            save( request );
+        }
+        finally {
+            /* Registered after the save's own update, so the slot is never free in between */
+            whenFinished( () -> schedule.release( hcp, hold ) );
+        }
+        return true;
+    }
+
+    /**
+     * Finds the times that an HCP has no approved appointment, within working
+     * hours, on a grid of appointment-length slots.
+     *
+     * @param hcp
+     *            The HCP
+     * @param from
+     *            Earliest time an appointment may start
+     * @param to
+     *            Time appointments must start before
+     * @param limit
+     *            Most start times to return
+     * @return Free start times, earliest first
+     */
+    public List<ZonedDateTime> findFreeSlots ( final User hcp, final ZonedDateTime from, final ZonedDateTime to,
+            final int limit ) {
+        return schedule.findFreeSlots( hcp.getUsername(), from, to, LocalTime.parse( dayStart ),
+                LocalTime.parse( dayEnd ), limit );
+    }
+
     public List<AppointmentRequest> findByPatient ( final User patient ) {
         return repository.findByPatient( patient );
     }
@@ -43,6 +292,79 @@ public class AppointmentRequestService extends Service {
         return repository.findByHcpAndPatient( hcp, patient );
     }
 
+    /**
+     * Finds a page of an HCP's appointment requests with a given status,
+     * optionally only those within a date range. Only the requested page is
+     * loaded, however many requests the HCP has had in the past.
+     *
+     * @param hcp
+     *            The HCP
+     * @param status
+     *            Status of the requests to find
+     * @param from
+     *            Earliest date to include, or null for no limit
+     * @param to
+     *            Date to stop before, or null for no limit
+     * @param pageable
+     *            The page to find, and how to sort it
+     * @return The page of requests
+     */
+    public Page<AppointmentRequest> findByHcpAndStatus ( final User hcp, final Status status,
+            final ZonedDateTime from, final ZonedDateTime to, final Pageable pageable ) {
+        return repository.findByHcpAndStatus( hcp, status, from, to, pageable );
+    }
+
+    /**
+     * Finds a page of a patient's appointment requests with a given status.
+     *
+     * @param patient
+     *            The patient
+     * @param status
+     *            Status of the requests to find
+     * @param pageable
+     *            The page to find, and how to sort it
+     * @return The page of requests
+     */
+    public Page<AppointmentRequest> findByPatientAndStatus ( final User patient, final Status status,
+            final Pageable pageable ) {
+        return repository.findByPatientAndStatus( patient, status, pageable );
+    }
+
+    /**
+     * Finds a page of everyone's appointment requests, optionally only those
+     * with a given status or within a date range.
+     *
+     * @param status
+     *            Status of the requests to find, or null for any status
+     * @param from
+     *            Earliest date to include, or null for no limit
+     * @param to
+     *            Date to stop before, or null for no limit
+     * @param pageable
+     *            The page to find, and how to sort it
+     * @return The page of requests
+     */
+    public Page<AppointmentRequest> findByStatus ( final Status status, final ZonedDateTime from,
+            final ZonedDateTime to, final Pageable pageable ) {
+        return repository.findByStatus( status, from, to, pageable );
+    }
+
+    /**
+     * Finds the appointment between an HCP and a patient at a given time.
+     *
+     * @param hcp
+     *            The HCP
+     * @param patient
+     *            The patient
+     * @param date
+     *            When the appointment is
+     * @return The appointment, if there is one
+     */
+    public Optional<AppointmentRequest> findByHcpAndPatientAndDate ( final User hcp, final User patient,
+            final ZonedDateTime date ) {
+        return repository.findFirstByHcpAndPatientAndDate( hcp, patient, date );
+    }
+
     public AppointmentRequest build ( final AppointmentRequestForm raf ) {
         final AppointmentRequest ar = new AppointmentRequest();
 
@@ -84,4 +406,140 @@ public class AppointmentRequestService extends Service {
         return ar;
     }
 
+    @Override
+    public void save ( final DomainObject obj ) {
+        stamp( (AppointmentRequest) obj );
+        super.save( obj );
+        requestSaved( (AppointmentRequest) obj );
+    }
+
+    @Override
+    public void saveAll ( final List< ? extends DomainObject> objects ) {
+        objects.forEach( obj -> stamp( (AppointmentRequest) obj ) );
+        super.saveAll( objects );
+        objects.forEach( obj -> requestSaved( (AppointmentRequest) obj ) );
+    }
+
+    @Override
+    public void saveInChunks ( final List< ? extends DomainObject> objects, final int chunkSize ) {
+        objects.forEach( obj -> stamp( (AppointmentRequest) obj ) );
+        super.saveInChunks( objects, chunkSize );
+        objects.forEach( obj -> requestSaved( (AppointmentRequest) obj ) );
+    }
+
+    @Override
+    public void delete ( final DomainObject obj ) {
+        final AppointmentRequest request = (AppointmentRequest) obj;
+        if ( null != request.getId() ) {
+            deletionRepository.save( new AppointmentRequestDeletion( request.getId(),
+                    request.getHcp().getUsername(), clock.next() ) );
+        }
+        super.delete( obj );
+        afterCompletion( request.getHcp(), () -> schedule.removed( request.getId() ) );
+    }
+
+    @Override
+    public void deleteAll () {
+        final long version = clock.next();
+        final List<AppointmentRequestDeletion> deletions = new ArrayList<AppointmentRequestDeletion>();
+        for ( final Object[] row : repository.findIdsAndHcps() ) {
+            deletions.add( new AppointmentRequestDeletion( (Long) row[0], (String) row[1], version ) );
+        }
+        deletionRepository.saveAll( deletions );
+        super.deleteAll();
+        schedule.clear();
+    }
+
+    /**
+     * Sets the sync horizon to just below the earliest deletion kept. Before
+     * anything has been pruned this turns away tokens that are older than
+     * every deletion, which costs those clients a full sync but is never
+     * wrong. The horizon only ever moves up.
+     */
+    private void updateHorizon () {
+        final Long earliest = deletionRepository.findMinVersion();
+        if ( null != earliest ) {
+            horizon = Math.max( horizon, earliest - 1 );
+        }
+    }
+
+    /**
+     * Stamps a request that is about to be saved with the next change version.
+     * If it already exists and is being moved to another HCP, a deletion is
+     * recorded for the old HCP at the same version.
+     *
+     * @param request
+     *            The request being saved
+     */
+    private void stamp ( final AppointmentRequest request ) {
+        final long version = clock.next();
+        if ( null != request.getId() ) {
+            final String previous = repository.findHcpUsernameById( request.getId() );
+            if ( null != previous && !previous.equals( request.getHcp().getUsername() ) ) {
+                deletionRepository.save( new AppointmentRequestDeletion( request.getId(), previous, version ) );
+            }
+        }
+        request.setChangeVersion( version );
+    }
+
+    /**
+     * Updates the schedule once a saved request is committed.
+     *
+     * @param request
+     *            The request that was saved
+     */
+    private void requestSaved ( final AppointmentRequest request ) {
+        afterCompletion( request.getHcp(), () -> schedule.saved( request ) );
+    }
+
+    /**
+     * Runs a change to the schedule once the current transaction is over,
+     * whether it committed or not, or straight away if there isn't one.
+     *
+     * @param update
+     *            The change to make
+     */
+    private void whenFinished ( final Runnable update ) {
+        if ( !TransactionSynchronizationManager.isSynchronizationActive() ) {
+            update.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion ( final int status ) {
+                update.run();
+            }
+        } );
+    }
+
+    /**
+     * Updates the schedule once the current transaction commits, or straight
+     * away if there isn't one. If the transaction rolls back instead, the HCP
+     * is forgotten, since their schedule may have been loaded with changes
+     * that never happened.
+     *
+     * @param hcp
+     *            HCP whose schedule changed
+     * @param update
+     *            The change to make
+     */
+    private void afterCompletion ( final User hcp, final Runnable update ) {
+        if ( !TransactionSynchronizationManager.isSynchronizationActive() ) {
+            update.run();
+            return;
+        }
+        final String username = hcp.getUsername();
+        TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion ( final int status ) {
+                if ( STATUS_COMMITTED == status ) {
+                    update.run();
+                }
+                else {
+                    schedule.forget( username );
+                }
+            }
+        } );
+    }
+
 }
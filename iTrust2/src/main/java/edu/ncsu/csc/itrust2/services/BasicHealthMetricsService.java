@@ -1,5 +1,7 @@
 package edu.ncsu.csc.iTrust2.services;
 
+import java.util.Arrays;
+
 import javax.transaction.Transactional;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -25,9 +27,25 @@ public class BasicHealthMetricsService extends Service {
     }
 
     public BasicHealthMetrics build ( final OfficeVisitForm ovf ) {
+        return build( ovf,
+                new BuildContext( userService.findByNames( Arrays.asList( ovf.getPatient(), ovf.getHcp() ) ), null,
+                        null ) );
+    }
+
+    /**
+     * Builds the metrics recorded on an office visit, taking the patient and
+     * HCP from users that have already been looked up.
+     *
+     * @param ovf
+     *            The office visit
+     * @param context
+     *            Users referred to by the visit
+     * @return The metrics
+     */
+    public BasicHealthMetrics build ( final OfficeVisitForm ovf, final BuildContext context ) {
         final BasicHealthMetrics bhm = new BasicHealthMetrics();
-        bhm.setPatient( userService.findByName( ovf.getPatient() ) );
-        bhm.setHcp( userService.findByName( ovf.getHcp() ) );
+        bhm.setPatient( context.getUser( ovf.getPatient() ) );
+        bhm.setHcp( context.getUser( ovf.getHcp() ) );
 
         bhm.setDiastolic( ovf.getDiastolic() );
         bhm.setHdl( ovf.getHdl() );
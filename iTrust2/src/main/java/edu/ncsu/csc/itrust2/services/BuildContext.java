@@ -0,0 +1,82 @@
+package edu.ncsu.csc.iTrust2.services;
+
+import java.util.Collections;
+import java.util.Map;
+
+import edu.ncsu.csc.iTrust2.models.Drug;
+import edu.ncsu.csc.iTrust2.models.ICDCode;
+import edu.ncsu.csc.iTrust2.models.User;
+
+/**
+ * The users, drugs, and ICD codes that a form refers to, loaded ahead of time
+ * so that turning the form into models doesn't look each one up on its own.
+ * `OfficeVisitService.resolve()` gathers everything an office visit needs (its
+ * patient and HCP, and every prescription's drug and diagnosis' code) with one
+ * query per kind; the various `build` methods then take what they need from
+ * here.
+ *
+ * Anything that was referred to but doesn't exist comes back as null, just as
+ * it would have from `findByName` or `findByCode`.
+ */
+public class BuildContext {
+
+    /** Users, by username */
+    private final Map<String, User>    users;
+
+    /** Drugs, by NDC */
+    private final Map<String, Drug>    drugs;
+
+    /** ICD codes, by code */
+    private final Map<String, ICDCode> icdCodes;
+
+    /**
+     * Creates a context from what has already been looked up.
+     *
+     * @param users
+     *            Users, by username
+     * @param drugs
+     *            Drugs, by NDC
+     * @param icdCodes
+     *            ICD codes, by code
+     */
+    public BuildContext ( final Map<String, User> users, final Map<String, Drug> drugs,
+            final Map<String, ICDCode> icdCodes ) {
+        this.users = null == users ? Collections.emptyMap() : users;
+        this.drugs = null == drugs ? Collections.emptyMap() : drugs;
+        this.icdCodes = null == icdCodes ? Collections.emptyMap() : icdCodes;
+    }
+
+    /**
+     * Returns a user referred to by the form.
+     *
+     * @param username
+     *            Username of the user
+     * @return The user, or null if there is no such user
+     */
+    public User getUser ( final String username ) {
+        return null == username ? null : users.get( username );
+    }
+
+    /**
+     * Returns a drug referred to by the form.
+     *
+     * @param code
+     *            NDC of the drug
+     * @return The drug, or null if there is no such drug
+     */
+    public Drug getDrug ( final String code ) {
+        return null == code ? null : drugs.get( code );
+    }
+
+    /**
+     * Returns an ICD code referred to by the form.
+     *
+     * @param code
+     *            The code
+     * @return The ICDCode, or null if there is no such code
+     */
+    public ICDCode getICDCode ( final String code ) {
+        return null == code ? null : icdCodes.get( code );
+    }
+
+}
@@ -0,0 +1,117 @@
+package edu.ncsu.csc.iTrust2.services;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Hands out increasing change versions for `AppointmentRequestService` to
+ * stamp on the requests it saves and deletes, so that a client that has seen
+ * everything up to some version can ask for just what changed after it.
+ *
+ * Versions are handed out before the transaction using them commits, and
+ * transactions can commit in any order, so the highest version handed out is
+ * not safe to give a client as a sync token: a slower transaction may still
+ * commit a lower one, which a client resuming from the higher one would never
+ * see. `safePoint()` is the highest version below every version still in
+ * flight, and is what clients should be given instead. A transaction always
+ * sees its own changes, so its own versions don't hold it back.
+ *
+ * Versions are only unique within one running application, so this is only
+ * good for a single node; it carries on from the highest version already in
+ * the database when started.
+ */
+public class ChangeVersionClock {
+
+    /** Highest version handed out */
+    private long                latest;
+
+    /** Versions handed out to transactions that haven't finished yet */
+    private final TreeSet<Long> inFlight = new TreeSet<Long>();
+
+    /**
+     * Creates a clock.
+     *
+     * @param start
+     *            Highest version already used; the first version handed out
+     *            is the one after it
+     */
+    public ChangeVersionClock ( final long start ) {
+        latest = start;
+    }
+
+    /**
+     * Hands out the next version. Within a transaction, the version is held
+     * in flight until the transaction commits or rolls back.
+     *
+     * @return The version
+     */
+    public synchronized long next () {
+        final long version = ++latest;
+        if ( TransactionSynchronizationManager.isSynchronizationActive() ) {
+            inFlight.add( version );
+            ownVersions( true ).add( version );
+        }
+        return version;
+    }
+
+    /**
+     * Returns the highest version such that every change up to and including
+     * it has been committed, or belongs to the current transaction.
+     *
+     * @return The version
+     */
+    public synchronized long safePoint () {
+        final Set<Long> own = ownVersions( false );
+        for ( final Long version : inFlight ) {
+            if ( !own.contains( version ) ) {
+                return version - 1;
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Returns the highest version handed out.
+     *
+     * @return The version
+     */
+    public synchronized long latest () {
+        return latest;
+    }
+
+    /**
+     * Returns the versions handed out to the current transaction.
+     *
+     * @param create
+     *            Whether to start tracking the transaction's versions if they
+     *            aren't already; if not, an empty set is returned instead
+     * @return The versions
+     */
+    @SuppressWarnings ( "unchecked" )
+    private Set<Long> ownVersions ( final boolean create ) {
+        if ( !TransactionSynchronizationManager.isSynchronizationActive() ) {
+            return new HashSet<Long>();
+        }
+        Set<Long> own = (Set<Long>) TransactionSynchronizationManager.getResource( this );
+        if ( null == own && create ) {
+            final Set<Long> versions = new HashSet<Long>();
+            TransactionSynchronizationManager.bindResource( this, versions );
+            TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion ( final int status ) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible( ChangeVersionClock.this );
+                    synchronized ( ChangeVersionClock.this ) {
+                        inFlight.removeAll( versions );
+                    }
+                }
+            } );
+            own = versions;
+        }
+        return null == own ? new HashSet<Long>() : own;
+    }
+
+}
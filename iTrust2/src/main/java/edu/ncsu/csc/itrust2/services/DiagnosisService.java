@@ -1,7 +1,7 @@
 package edu.ncsu.csc.iTrust2.services;
 
+import java.time.ZonedDateTime;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import javax.transaction.Transactional;
 
@@ -43,10 +43,46 @@ public class DiagnosisService extends Service {
         return diag;
     }
 
+    /**
+     * Builds a diagnosis made during an office visit that is itself being
+     * built, taking its code from those that have already been looked up.
+     *
+     * @param form
+     *            The diagnosis
+     * @param visit
+     *            The office visit it was made in
+     * @param context
+     *            ICD codes referred to by the visit
+     * @return The diagnosis
+     */
+    public Diagnosis build ( final DiagnosisForm form, final OfficeVisit visit, final BuildContext context ) {
+        final Diagnosis diag = new Diagnosis();
+        diag.setVisit( visit );
+        diag.setNote( form.getNote() );
+        diag.setCode( context.getICDCode( form.getCode() ) );
+        diag.setId( form.getId() );
+
+        return diag;
+    }
+
     public List<Diagnosis> findByPatient ( final User patient ) {
-        return service.findByPatient( patient ).stream().map( e -> findByVisit( e ) ).flatMap( e -> e.stream() )
-                .collect( Collectors.toList() );
+        return findByPatient( patient, null, null );
+    }
 
+    /**
+     * Finds the diagnoses made during a patient's office visits within a range
+     * of dates, oldest first.
+     *
+     * @param patient
+     *            The patient
+     * @param from
+     *            Earliest visit date to include, or null for no limit
+     * @param to
+     *            Visit date to stop before, or null for no limit
+     * @return The patient's diagnoses
+     */
+    public List<Diagnosis> findByPatient ( final User patient, final ZonedDateTime from, final ZonedDateTime to ) {
+        return repository.findByPatient( patient, from, to );
     }
 
     public List<Diagnosis> findByVisit ( final OfficeVisit visit ) {
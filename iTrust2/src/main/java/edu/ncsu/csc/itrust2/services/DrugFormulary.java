@@ -0,0 +1,119 @@
+package edu.ncsu.csc.iTrust2.services;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.ncsu.csc.iTrust2.models.Drug;
+
+/**
+ * An unchanging, in-memory copy of every drug, keyed by NDC code and ID and
+ * indexed for typeahead search by code or name. `DrugService` builds a new
+ * formulary whenever the drugs change and swaps it in whole, so a formulary
+ * can be shared between any number of threads without locking. Like
+ * `ICDCodeCatalog`, the formulary keeps its own copies of the drugs; they are
+ * shared by everyone who looks a drug up, and must be treated as read-only.
+ */
+public class DrugFormulary {
+
+    /** Every drug, sorted by code */
+    private final List<Drug>        drugs;
+
+    /** Drugs by their NDC code */
+    private final Map<String, Drug> byCode;
+
+    /** Drugs by their ID */
+    private final Map<Long, Drug>   byId;
+
+    /** Typeahead index over each drug's code and name */
+    private final PrefixIndex<Drug> index;
+
+    /**
+     * Builds a formulary of copies of the drugs provided.
+     *
+     * @param drugs
+     *            Every drug
+     */
+    public DrugFormulary ( final Collection<Drug> drugs ) {
+        final List<Drug> sorted = new ArrayList<Drug>( drugs.size() );
+        for ( final Drug drug : drugs ) {
+            final Drug copy = new Drug();
+            copy.setId( drug.getId() );
+            copy.setCode( drug.getCode() );
+            copy.setName( drug.getName() );
+            copy.setDescription( drug.getDescription() );
+            sorted.add( copy );
+        }
+        sorted.sort( Comparator.comparing( Drug::getCode, Comparator.nullsLast( Comparator.naturalOrder() ) ) );
+        this.drugs = Collections.unmodifiableList( sorted );
+
+        byCode = new HashMap<String, Drug>();
+        byId = new HashMap<Long, Drug>();
+        for ( final Drug drug : sorted ) {
+            byCode.put( drug.getCode(), drug );
+            byId.put( drug.getId(), drug );
+        }
+        index = new PrefixIndex<Drug>( this.drugs, Drug::getCode, Drug::getName );
+    }
+
+    /**
+     * Returns every drug, sorted by code.
+     *
+     * @return Every drug
+     */
+    public List<Drug> getDrugs () {
+        return drugs;
+    }
+
+    /**
+     * Returns the number of drugs in the formulary.
+     *
+     * @return Number of drugs
+     */
+    public int size () {
+        return drugs.size();
+    }
+
+    /**
+     * Looks up a drug by its NDC code (ie, "0777-3105-02").
+     *
+     * @param code
+     *            The code
+     * @return The drug, or null if there is none
+     */
+    public Drug findByCode ( final String code ) {
+        return byCode.get( code );
+    }
+
+    /**
+     * Looks up a drug by its ID.
+     *
+     * @param id
+     *            The ID
+     * @return The drug, or null if there is none
+     */
+    public Drug findById ( final Long id ) {
+        return byId.get( id );
+    }
+
+    /**
+     * Finds drugs for a typeahead. A drug matches when every word of the query
+     * is the start of a word in its code or name, ignoring case. Drugs whose
+     * code starts with the query come first; within each group, drugs are in
+     * order of code.
+     *
+     * @param query
+     *            What has been typed so far
+     * @param limit
+     *            Most drugs to return
+     * @return The best matches, at most `limit` of them
+     */
+    public List<Drug> search ( final String query, final int limit ) {
+        return index.search( query, limit );
+    }
+
+}
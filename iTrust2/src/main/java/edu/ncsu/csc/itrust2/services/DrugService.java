@@ -1,31 +1,223 @@
 package edu.ncsu.csc.iTrust2.services;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
 import javax.transaction.Transactional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Component;
 
+import edu.ncsu.csc.iTrust2.models.DomainObject;
 import edu.ncsu.csc.iTrust2.models.Drug;
 import edu.ncsu.csc.iTrust2.repositories.DrugRepository;
+import edu.ncsu.csc.iTrust2.utils.MetricSource;
 
+/**
+ * Looks up drugs from an in-memory `DrugFormulary` rather than the database.
+ * Every prescription and office visit looks its drugs up by NDC code, while the
+ * drugs themselves only change when an admin edits the formulary, so the
+ * formulary is loaded once at startup and thrown away whenever a drug is added,
+ * edited, or deleted through here. It is also reloaded once it is
+ * `itrust2.drug-formulary.ttl-seconds` old. See `SnapshotCache`.
+ *
+ * How long lookups take is reported under `drugFormulary` at
+ * `GET /api/v1/metrics`.
+ */
 @Component
 @Transactional
-public class DrugService extends Service {
+public class DrugService extends Service implements MetricSource {
 
     @Autowired
-    private DrugRepository repository;
+    private DrugRepository               repository;
+
+    /** How long a formulary is used before it is reloaded */
+    @Value ( "${itrust2.drug-formulary.ttl-seconds:3600}" )
+    private long                         ttlSeconds;
+
+    /** Holds the current formulary */
+    private SnapshotCache<DrugFormulary> formulary;
+
+    /** Number of lookups served */
+    private final AtomicLong             lookups     = new AtomicLong();
+
+    /** Time spent on all lookups, in nanoseconds */
+    private final AtomicLong             lookupNanos = new AtomicLong();
+
+    /** Longest a single lookup has taken, in nanoseconds */
+    private final AtomicLong             maxNanos    = new AtomicLong();
 
     @Override
     protected JpaRepository getRepository () {
         return repository;
     }
 
+    /**
+     * Loads the formulary, so that the first lookup doesn't have to.
+     */
+    @PostConstruct
+    public void loadFormulary () {
+        formulary = new SnapshotCache<DrugFormulary>( () -> new DrugFormulary( repository.findAll() ), ttlSeconds );
+        formulary.get();
+    }
+
+    /**
+     * Returns the current formulary, loading it first if need be.
+     *
+     * @return The formulary
+     */
+    public DrugFormulary getFormulary () {
+        return formulary.get();
+    }
+
+    /**
+     * Throws away the current formulary, so that the next lookup loads a new
+     * one. Call this if the drugs are changed without going through this
+     * service.
+     */
+    public void invalidateFormulary () {
+        formulary.invalidate();
+    }
+
     public boolean existsByCode ( final String code ) {
-        return repository.existsByCode( code );
+        return null != findByCode( code );
     }
 
     public Drug findByCode ( final String code ) {
-        return repository.findByCode( code );
+        final long start = System.nanoTime();
+        final Drug drug = getFormulary().findByCode( code );
+        timed( start );
+        return drug;
+    }
+
+    /**
+     * Looks up several drugs at once. Use this instead of calling `findByCode`
+     * in a loop.
+     *
+     * @param codes
+     *            Codes to look up; nulls and duplicates are fine
+     * @return Map from code to Drug, for each code that exists
+     */
+    public Map<String, Drug> findByCodes ( final Collection<String> codes ) {
+        if ( null == codes || codes.isEmpty() ) {
+            return Collections.emptyMap();
+        }
+        final long start = System.nanoTime();
+        final DrugFormulary current = getFormulary();
+        final Map<String, Drug> found = new HashMap<String, Drug>();
+        for ( final String code : codes ) {
+            final Drug drug = current.findByCode( code );
+            if ( null != drug ) {
+                found.put( code, drug );
+            }
+        }
+        timed( start );
+        return found;
+    }
+
+    /**
+     * Finds drugs for a typeahead, by NDC code or name. See
+     * `DrugFormulary.search`.
+     *
+     * @param query
+     *            What has been typed so far
+     * @param limit
+     *            Most drugs to return
+     * @return The best matches
+     */
+    public List<Drug> search ( final String query, final int limit ) {
+        final long start = System.nanoTime();
+        final List<Drug> found = getFormulary().search( query, limit );
+        timed( start );
+        return found;
+    }
+
+    /**
+     * Returns every drug, sorted by code.
+     */
+    @Override
+    public List< ? extends DomainObject> findAll () {
+        return getFormulary().getDrugs();
+    }
+
+    @Override
+    public DomainObject findById ( final Object id ) {
+        if ( ! ( id instanceof Long ) ) {
+            return super.findById( id );
+        }
+        final long start = System.nanoTime();
+        final Drug drug = getFormulary().findById( (Long) id );
+        timed( start );
+        return drug;
+    }
+
+    @Override
+    public void save ( final DomainObject obj ) {
+        super.save( obj );
+        formulary.changed();
+    }
+
+    @Override
+    public void saveAll ( final List< ? extends DomainObject> objects ) {
+        super.saveAll( objects );
+        formulary.changed();
+    }
+
+    @Override
+    public void saveInChunks ( final List< ? extends DomainObject> objects, final int chunkSize ) {
+        super.saveInChunks( objects, chunkSize );
+        formulary.changed();
+    }
+
+    @Override
+    public void delete ( final DomainObject obj ) {
+        super.delete( obj );
+        formulary.changed();
     }
+
+    @Override
+    public void deleteAll () {
+        super.deleteAll();
+        formulary.changed();
+    }
+
+    @Override
+    public String getMetricName () {
+        return "drugFormulary";
+    }
+
+    @Override
+    public Map<String, Number> getMetrics () {
+        final Map<String, Number> metrics = new HashMap<String, Number>();
+        final long count = lookups.get();
+        metrics.put( "lookups", count );
+        metrics.put( "meanLookupMicros", count == 0 ? 0 : lookupNanos.get() / count / 1000.0 );
+        metrics.put( "maxLookupMicros", maxNanos.get() / 1000.0 );
+        metrics.put( "loads", formulary.getLoads() );
+        metrics.put( "invalidations", formulary.getInvalidations() );
+        final DrugFormulary current = formulary.peek();
+        metrics.put( "size", null == current ? 0 : current.size() );
+        return metrics;
+    }
+
+    /**
+     * Records how long a lookup took.
+     *
+     * @param start
+     *            `System.nanoTime()` when the lookup started
+     */
+    private void timed ( final long start ) {
+        final long elapsed = System.nanoTime() - start;
+        lookups.incrementAndGet();
+        lookupNanos.addAndGet( elapsed );
+        maxNanos.accumulateAndGet( elapsed, Math::max );
+    }
+
 }
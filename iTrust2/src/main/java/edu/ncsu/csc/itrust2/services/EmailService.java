@@ -1,23 +1,57 @@
 package edu.ncsu.csc.iTrust2.services;
 
+import java.time.ZonedDateTime;
+import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
 
 import javax.transaction.Transactional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Component;
 
 import edu.ncsu.csc.iTrust2.models.Email;
 import edu.ncsu.csc.iTrust2.models.User;
+import edu.ncsu.csc.iTrust2.models.enums.EmailStatus;
 import edu.ncsu.csc.iTrust2.repositories.EmailRepository;
 
+/**
+ * Manages the email outbox. Emails are saved as `PENDING`; `EmailOutboxWorker`
+ * claims them in batches, sends them, and reports back here whether each one
+ * went. A failed email is retried after a delay that doubles each time, from
+ * `itrust2.email.backoff-seconds` up to `itrust2.email.max-backoff-seconds`,
+ * and is marked `FAILED` once it has been tried `itrust2.email.max-attempts`
+ * times. Each claim counts as an attempt, so that an email that keeps
+ * crashing its worker is given up on too.
+ */
 @Component
 @Transactional
 public class EmailService extends Service {
 
+    /** Longest error message kept on an email */
+    private static final int ERROR_LENGTH = 1000;
+
     @Autowired
-    private EmailRepository repository;
+    private EmailRepository  repository;
+
+    /** Times an email is tried before it is given up on */
+    @Value ( "${itrust2.email.max-attempts:5}" )
+    private int              maxAttempts;
+
+    /** How long to wait before the first retry */
+    @Value ( "${itrust2.email.backoff-seconds:30}" )
+    private long             backoffSeconds;
+
+    /** Longest to wait between retries */
+    @Value ( "${itrust2.email.max-backoff-seconds:3600}" )
+    private long             maxBackoffSeconds;
+
+    /** How long a worker has to send an email it claimed before others may */
+    @Value ( "${itrust2.email.claim-timeout-seconds:300}" )
+    private long             claimTimeoutSeconds;
 
     @Override
     protected JpaRepository getRepository () {
@@ -27,4 +61,122 @@ public class EmailService extends Service {
     public List<Email> findByReceiver ( final User receiver ) {
         return repository.findByReceiver( receiver );
     }
+
+    /**
+     * Claims a batch of emails that are due to be sent, so that no other
+     * worker sends them too. Emails claimed by a worker that hasn't reported
+     * back within `itrust2.email.claim-timeout-seconds` are claimed again, or
+     * marked `FAILED` if they have run out of attempts.
+     *
+     * @param limit
+     *            Most emails to claim
+     * @return The emails claimed, longest waiting first
+     */
+    public List<Email> claim ( final int limit ) {
+        final ZonedDateTime now = ZonedDateTime.now();
+        final ZonedDateTime staleBefore = now.minusSeconds( claimTimeoutSeconds );
+        repository.abandon( EmailStatus.SENDING, EmailStatus.FAILED, staleBefore, maxAttempts,
+                "Not sent within the claim timeout" );
+        final List<Long> due = repository.findDue( EmailStatus.PENDING, EmailStatus.SENDING, now, staleBefore,
+                maxAttempts, PageRequest.of( 0, limit ) );
+        if ( due.isEmpty() ) {
+            return Collections.emptyList();
+        }
+        final String token = UUID.randomUUID().toString();
+        if ( 0 == repository.claim( due, EmailStatus.PENDING, EmailStatus.SENDING, token, now, staleBefore,
+                maxAttempts ) ) {
+            return Collections.emptyList();
+        }
+        return repository.findByClaimTokenAndStatus( token, EmailStatus.SENDING );
+    }
+
+    /**
+     * Records that a claimed email was sent.
+     *
+     * @param email
+     *            The email, as it was claimed
+     */
+    public void markSent ( final Email email ) {
+        final Email current = claimed( email );
+        if ( null != current ) {
+            current.setStatus( EmailStatus.SENT );
+            current.setSentAt( ZonedDateTime.now() );
+            current.setLastError( null );
+        }
+    }
+
+    /**
+     * Records that a claimed email couldn't be sent. It is retried later,
+     * unless it has run out of attempts or can never be sent.
+     *
+     * @param email
+     *            The email, as it was claimed
+     * @param error
+     *            Why it couldn't be sent
+     * @param permanent
+     *            Whether retrying can't help, ie because there is nowhere to
+     *            send it
+     * @return The status the email was left in, or null if it had already
+     *         been claimed by someone else
+     */
+    public EmailStatus markFailed ( final Email email, final String error, final boolean permanent ) {
+        final Email current = claimed( email );
+        if ( null == current ) {
+            return null;
+        }
+        /* The attempt was counted when the email was claimed */
+        final int attempts = current.getAttempts();
+        current.setLastError( null == error || error.length() <= ERROR_LENGTH ? error
+                : error.substring( 0, ERROR_LENGTH ) );
+        if ( permanent || attempts >= maxAttempts ) {
+            current.setStatus( EmailStatus.FAILED );
+        }
+        else {
+            current.setStatus( EmailStatus.PENDING );
+            current.setNextAttempt( ZonedDateTime.now().plusSeconds( backoff( attempts ) ) );
+        }
+        return current.getStatus();
+    }
+
+    /**
+     * Counts the emails in a given state.
+     *
+     * @param status
+     *            The state
+     * @return Number of emails
+     */
+    public long countByStatus ( final EmailStatus status ) {
+        return repository.countByStatus( status );
+    }
+
+    /**
+     * Returns how long to wait before retrying an email that has failed a
+     * number of times.
+     *
+     * @param attempts
+     *            Times it has been tried
+     * @return Seconds to wait
+     */
+    public long backoff ( final int attempts ) {
+        final int doublings = Math.min( attempts - 1, 20 );
+        return Math.min( maxBackoffSeconds, backoffSeconds << doublings );
+    }
+
+    /**
+     * Loads an email to record how sending it went, as long as it is still
+     * held by the claim it was sent under.
+     *
+     * @param email
+     *            The email, as it was claimed
+     * @return The email, or null if it has been claimed again since
+     */
+    private Email claimed ( final Email email ) {
+        final Email current = repository.findById( email.getId() ).orElse( null );
+        if ( null == current || EmailStatus.SENDING != current.getStatus()
+                || !email.getClaimToken().equals( current.getClaimToken() ) ) {
+            return null;
+        }
+        return current;
+    }
+
 }
@@ -0,0 +1,118 @@
+package edu.ncsu.csc.iTrust2.services;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.ncsu.csc.iTrust2.models.ICDCode;
+
+/**
+ * An unchanging, in-memory copy of every ICD code, indexed for lookup by code
+ * or ID and for typeahead search. `ICDCodeService` builds a new catalog
+ * whenever the codes change and swaps it in whole, so a catalog can be shared
+ * between any number of threads without locking. The catalog keeps its own
+ * copies of the codes, which no persistence context ever manages; they are
+ * shared by everyone who looks a code up, and must be treated as read-only.
+ */
+public class ICDCodeCatalog {
+
+    /** Every code, sorted by code */
+    private final List<ICDCode>         codes;
+
+    /** Codes by their code */
+    private final Map<String, ICDCode>  byCode;
+
+    /** Codes by their ID */
+    private final Map<Long, ICDCode>    byId;
+
+    /** Typeahead index over each code and its description */
+    private final PrefixIndex<ICDCode> index;
+
+    /**
+     * Builds a catalog of copies of the codes provided.
+     *
+     * @param codes
+     *            Every ICD code
+     */
+    public ICDCodeCatalog ( final Collection<ICDCode> codes ) {
+        final List<ICDCode> sorted = new ArrayList<ICDCode>( codes.size() );
+        for ( final ICDCode code : codes ) {
+            final ICDCode copy = new ICDCode();
+            copy.setId( code.getId() );
+            copy.setCode( code.getCode() );
+            copy.setDescription( code.getDescription() );
+            sorted.add( copy );
+        }
+        sorted.sort( Comparator.comparing( ICDCode::getCode, Comparator.nullsLast( Comparator.naturalOrder() ) ) );
+        this.codes = Collections.unmodifiableList( sorted );
+
+        byCode = new HashMap<String, ICDCode>();
+        byId = new HashMap<Long, ICDCode>();
+        for ( final ICDCode code : sorted ) {
+            byCode.put( code.getCode(), code );
+            byId.put( code.getId(), code );
+        }
+        index = new PrefixIndex<ICDCode>( this.codes, ICDCode::getCode, ICDCode::getDescription );
+    }
+
+    /**
+     * Returns every code, sorted by code.
+     *
+     * @return Every code
+     */
+    public List<ICDCode> getCodes () {
+        return codes;
+    }
+
+    /**
+     * Returns the number of codes in the catalog.
+     *
+     * @return Number of codes
+     */
+    public int size () {
+        return codes.size();
+    }
+
+    /**
+     * Looks up a code by its code (ie, "A01.1").
+     *
+     * @param code
+     *            The code
+     * @return The code, or null if there is none
+     */
+    public ICDCode findByCode ( final String code ) {
+        return byCode.get( code );
+    }
+
+    /**
+     * Looks up a code by its ID.
+     *
+     * @param id
+     *            The ID
+     * @return The code, or null if there is none
+     */
+    public ICDCode findById ( final Long id ) {
+        return byId.get( id );
+    }
+
+    /**
+     * Finds codes for a typeahead. A code matches when every word of the query
+     * is the start of a word in its code or description, ignoring case. Codes
+     * that themselves start with the query come first; within each group,
+     * codes are in order.
+     *
+     * @param query
+     *            What has been typed so far
+     * @param limit
+     *            Most codes to return
+     * @return The best matches, at most `limit` of them
+     */
+    public List<ICDCode> search ( final String query, final int limit ) {
+        return index.search( query, limit );
+    }
+
+}
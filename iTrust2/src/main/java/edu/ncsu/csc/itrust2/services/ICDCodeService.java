@@ -1,28 +1,158 @@
 package edu.ncsu.csc.iTrust2.services;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
 import javax.transaction.Transactional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Component;
 
+import edu.ncsu.csc.iTrust2.models.DomainObject;
 import edu.ncsu.csc.iTrust2.models.ICDCode;
 import edu.ncsu.csc.iTrust2.repositories.ICDCodeRepository;
 
+/**
+ * Looks up ICD codes from an in-memory `ICDCodeCatalog` rather than the
+ * database. The codes hardly ever change, so the catalog is loaded once at
+ * startup and then only thrown away when a code is saved or deleted through
+ * here. In case the codes are changed some other way, a catalog is also
+ * reloaded once it is `itrust2.icd-catalog.ttl-seconds` old. See
+ * `SnapshotCache`.
+ */
 @Component
 @Transactional
 public class ICDCodeService extends Service {
 
     @Autowired
-    private ICDCodeRepository repository;
+    private ICDCodeRepository             repository;
+
+    /** How long a catalog is used before it is reloaded */
+    @Value ( "${itrust2.icd-catalog.ttl-seconds:3600}" )
+    private long                          ttlSeconds;
+
+    /** Holds the current catalog */
+    private SnapshotCache<ICDCodeCatalog> catalog;
 
     @Override
     protected JpaRepository getRepository () {
         return repository;
     }
 
+    /**
+     * Loads the catalog, so that the first lookup doesn't have to.
+     */
+    @PostConstruct
+    public void loadCatalog () {
+        catalog = new SnapshotCache<ICDCodeCatalog>( () -> new ICDCodeCatalog( repository.findAll() ), ttlSeconds );
+        catalog.get();
+    }
+
+    /**
+     * Returns the current catalog of ICD codes, loading it first if need be.
+     *
+     * @return The catalog
+     */
+    public ICDCodeCatalog getCatalog () {
+        return catalog.get();
+    }
+
+    /**
+     * Throws away the current catalog, so that the next lookup loads a new
+     * one. Call this if the codes are changed without going through this
+     * service.
+     */
+    public void invalidateCatalog () {
+        catalog.invalidate();
+    }
+
     public ICDCode findByCode ( final String code ) {
-        return repository.findByCode( code );
+        return getCatalog().findByCode( code );
+    }
+
+    /**
+     * Looks up several ICD codes at once.
+     *
+     * @param codes
+     *            Codes to look up; nulls and duplicates are fine
+     * @return Map from code to ICDCode, for each code that exists
+     */
+    public Map<String, ICDCode> findByCodes ( final Collection<String> codes ) {
+        if ( null == codes || codes.isEmpty() ) {
+            return Collections.emptyMap();
+        }
+        final ICDCodeCatalog current = getCatalog();
+        final Map<String, ICDCode> found = new HashMap<String, ICDCode>();
+        for ( final String code : codes ) {
+            final ICDCode icd = current.findByCode( code );
+            if ( null != icd ) {
+                found.put( code, icd );
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds ICD codes for a typeahead, by code or description. See
+     * `ICDCodeCatalog.search`.
+     *
+     * @param query
+     *            What has been typed so far
+     * @param limit
+     *            Most codes to return
+     * @return The best matches
+     */
+    public List<ICDCode> search ( final String query, final int limit ) {
+        return getCatalog().search( query, limit );
+    }
+
+    /**
+     * Returns every ICD code, sorted by code.
+     */
+    @Override
+    public List< ? extends DomainObject> findAll () {
+        return getCatalog().getCodes();
+    }
+
+    @Override
+    public DomainObject findById ( final Object id ) {
+        return id instanceof Long ? getCatalog().findById( (Long) id ) : super.findById( id );
+    }
+
+    @Override
+    public void save ( final DomainObject obj ) {
+        super.save( obj );
+        catalog.changed();
+    }
+
+    @Override
+    public void saveAll ( final List< ? extends DomainObject> objects ) {
+        super.saveAll( objects );
+        catalog.changed();
+    }
+
+    @Override
+    public void saveInChunks ( final List< ? extends DomainObject> objects, final int chunkSize ) {
+        super.saveInChunks( objects, chunkSize );
+        catalog.changed();
+    }
+
+    @Override
+    public void delete ( final DomainObject obj ) {
+        super.delete( obj );
+        catalog.changed();
+    }
+
+    @Override
+    public void deleteAll () {
+        super.deleteAll();
+        catalog.changed();
     }
 
 }
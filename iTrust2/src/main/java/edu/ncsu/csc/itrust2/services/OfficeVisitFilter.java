@@ -0,0 +1,128 @@
+package edu.ncsu.csc.iTrust2.services;
+
+import java.time.ZonedDateTime;
+
+import edu.ncsu.csc.iTrust2.models.User;
+import edu.ncsu.csc.iTrust2.models.enums.AppointmentType;
+
+/**
+ * Narrows down a search for office visits. Every criterion is optional; those
+ * left null match everything.
+ */
+public class OfficeVisitFilter {
+
+    /** Only visits with this HCP */
+    private User            hcp;
+
+    /** Only visits with this patient */
+    private User            patient;
+
+    /** Only visits at or after this time */
+    private ZonedDateTime   from;
+
+    /** Only visits before this time */
+    private ZonedDateTime   to;
+
+    /** Only visits at the hospital with this name */
+    private String          hospital;
+
+    /** Only visits of this type */
+    private AppointmentType type;
+
+    /**
+     * Only include visits with an HCP
+     *
+     * @param hcp
+     *            The HCP
+     * @return This filter
+     */
+    public OfficeVisitFilter hcp ( final User hcp ) {
+        this.hcp = hcp;
+        return this;
+    }
+
+    /**
+     * Only include visits with a patient
+     *
+     * @param patient
+     *            The patient
+     * @return This filter
+     */
+    public OfficeVisitFilter patient ( final User patient ) {
+        this.patient = patient;
+        return this;
+    }
+
+    /**
+     * Only include visits at or after a time
+     *
+     * @param from
+     *            Start of the range, inclusive
+     * @return This filter
+     */
+    public OfficeVisitFilter from ( final ZonedDateTime from ) {
+        this.from = from;
+        return this;
+    }
+
+    /**
+     * Only include visits before a time
+     *
+     * @param to
+     *            End of the range, exclusive
+     * @return This filter
+     */
+    public OfficeVisitFilter to ( final ZonedDateTime to ) {
+        this.to = to;
+        return this;
+    }
+
+    /**
+     * Only include visits at a hospital
+     *
+     * @param hospital
+     *            Name of the hospital
+     * @return This filter
+     */
+    public OfficeVisitFilter hospital ( final String hospital ) {
+        this.hospital = hospital;
+        return this;
+    }
+
+    /**
+     * Only include visits of a type
+     *
+     * @param type
+     *            The type of visit
+     * @return This filter
+     */
+    public OfficeVisitFilter type ( final AppointmentType type ) {
+        this.type = type;
+        return this;
+    }
+
+    public User getHcp () {
+        return hcp;
+    }
+
+    public User getPatient () {
+        return patient;
+    }
+
+    public ZonedDateTime getFrom () {
+        return from;
+    }
+
+    public ZonedDateTime getTo () {
+        return to;
+    }
+
+    public String getHospital () {
+        return hospital;
+    }
+
+    public AppointmentType getType () {
+        return type;
+    }
+
+}
@@ -2,19 +2,29 @@ package edu.ncsu.csc.iTrust2.services;
 
 import java.time.LocalDate;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import javax.persistence.criteria.Predicate;
 import javax.transaction.Transactional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Component;
 
+import edu.ncsu.csc.iTrust2.forms.DiagnosisForm;
 import edu.ncsu.csc.iTrust2.forms.OfficeVisitForm;
 import edu.ncsu.csc.iTrust2.forms.PrescriptionForm;
-import edu.ncsu.csc.iTrust2.models.AppointmentRequest;
-import edu.ncsu.csc.iTrust2.models.Diagnosis;
 import edu.ncsu.csc.iTrust2.models.OfficeVisit;
 import edu.ncsu.csc.iTrust2.models.Patient;
 import edu.ncsu.csc.iTrust2.models.User;
@@ -46,6 +56,12 @@ public class OfficeVisitService extends Service {
     @Autowired
     private DiagnosisService          diagnosisService;
 
+    @Autowired
+    private DrugService               drugService;
+
+    @Autowired
+    private ICDCodeService            icdCodeService;
+
     @Override
     protected JpaRepository getRepository () {
         return repository;
@@ -59,15 +75,158 @@ public class OfficeVisitService extends Service {
         return repository.findByPatient( patient );
     }
 
+    /**
+     * Walks through a patient's office visits, oldest first, without loading
+     * them all at once. Close the stream when done with it, and `detach` each
+     * visit once it has been used so that memory use stays flat.
+     *
+     * @param patient
+     *            The patient
+     * @return The patient's office visits
+     */
+    public Stream<OfficeVisit> streamByPatient ( final User patient ) {
+        return repository.streamByPatientOrderByDateAscIdAsc( patient );
+    }
+
     public List<OfficeVisit> findByHcpAndPatient ( final User hcp, final User patient ) {
         return repository.findByHcpAndPatient( hcp, patient );
     }
 
+    /**
+     * Returns a page of the office visits matching a filter, with what each
+     * refers to directly but without its diagnoses or prescriptions loaded up
+     * front. For listings.
+     *
+     * @param filter
+     *            Which visits to include
+     * @param pageable
+     *            Which page to return, and how to sort
+     * @return The page of office visits
+     */
+    public Page<OfficeVisit> findSummaries ( final OfficeVisitFilter filter, final Pageable pageable ) {
+        return repository.findAll( toSpecification( filter ), pageable );
+    }
+
+    /**
+     * Returns every office visit matching a filter, for listing. Prefer
+     * `findSummaries(OfficeVisitFilter, Pageable)`; this has no limit on how
+     * many it returns.
+     *
+     * @param filter
+     *            Which visits to include
+     * @param sort
+     *            How to sort them
+     * @return The office visits
+     */
+    public List<OfficeVisit> findAllSummaries ( final OfficeVisitFilter filter, final Sort sort ) {
+        return repository.findAll( toSpecification( filter ), sort );
+    }
+
+    /**
+     * Returns an office visit with everything it refers to, its diagnoses and
+     * prescriptions included, loaded up front.
+     *
+     * @param id
+     *            ID of the office visit
+     * @return The office visit, or null if there is none
+     */
+    public OfficeVisit findDetailedById ( final Long id ) {
+        return null == id ? null : repository.findDetailedById( id ).orElse( null );
+    }
+
+    /**
+     * Looks up everything an office visit refers to: its patient and HCP, and
+     * the patient, drug, and code of each of its prescriptions and diagnoses.
+     * Each kind is loaded with a single query, however many there are.
+     *
+     * @param ovf
+     *            The office visit
+     * @return Everything the visit refers to
+     */
+    public BuildContext resolve ( final OfficeVisitForm ovf ) {
+        return resolve( Collections.singletonList( ovf ) );
+    }
+
+    /**
+     * Looks up everything several office visits refer to, with a single query
+     * per kind across all of them. See `resolve(OfficeVisitForm)`.
+     *
+     * @param forms
+     *            The office visits
+     * @return Everything the visits refer to
+     */
+    public BuildContext resolve ( final Collection<OfficeVisitForm> forms ) {
+        final Set<String> usernames = new HashSet<String>();
+        final Set<String> drugs = new HashSet<String>();
+        final Set<String> icdCodes = new HashSet<String>();
+        for ( final OfficeVisitForm ovf : forms ) {
+            usernames.add( ovf.getPatient() );
+            usernames.add( ovf.getHcp() );
+            if ( null != ovf.getPrescriptions() ) {
+                for ( final PrescriptionForm pf : ovf.getPrescriptions() ) {
+                    usernames.add( pf.getPatient() );
+                    drugs.add( pf.getDrug() );
+                }
+            }
+            if ( null != ovf.getDiagnoses() ) {
+                for ( final DiagnosisForm df : ovf.getDiagnoses() ) {
+                    icdCodes.add( df.getCode() );
+                }
+            }
+        }
+        usernames.remove( null );
+        drugs.remove( null );
+        icdCodes.remove( null );
+
+        return new BuildContext( userService.findByNames( usernames ), drugService.findByCodes( drugs ),
+                icdCodeService.findByCodes( icdCodes ) );
+    }
+
+    /**
+     * Builds and saves many office visits at once, along with their
+     * diagnoses, prescriptions, and health metrics. The visits are handled
+     * `hibernate.jdbc.batch_size` at a time: what each chunk refers to is
+     * looked up together, and the chunk is written as JDBC batches and then
+     * cleared out of memory before the next is built. All-or-nothing; if any
+     * visit is invalid, none are saved.
+     *
+     * @param forms
+     *            The office visits
+     * @return Number of office visits saved
+     */
+    public int importAll ( final List<OfficeVisitForm> forms ) {
+        final int chunkSize = getChunkSize();
+        for ( int start = 0; start < forms.size(); start += chunkSize ) {
+            final List<OfficeVisitForm> chunk = forms.subList( start, Math.min( forms.size(), start + chunkSize ) );
+            final BuildContext context = resolve( chunk );
+            final List<OfficeVisit> visits = new ArrayList<OfficeVisit>( chunk.size() );
+            for ( final OfficeVisitForm ovf : chunk ) {
+                visits.add( build( ovf, context ) );
+            }
+            saveInChunks( visits, chunkSize );
+        }
+        return forms.size();
+    }
+
     public OfficeVisit build ( final OfficeVisitForm ovf ) {
+        return build( ovf, resolve( ovf ) );
+    }
+
+    /**
+     * Builds an office visit, taking everything it refers to from those that
+     * have already been looked up.
+     *
+     * @param ovf
+     *            The office visit
+     * @param context
+     *            Everything the visit refers to; see `resolve`
+     * @return The office visit
+     */
+    public OfficeVisit build ( final OfficeVisitForm ovf, final BuildContext context ) {
         final OfficeVisit ov = new OfficeVisit();
 
-        ov.setPatient( userService.findByName( ovf.getPatient() ) );
-        ov.setHcp( userService.findByName( ovf.getHcp() ) );
+        ov.setPatient( context.getUser( ovf.getPatient() ) );
+        ov.setHcp( context.getUser( ovf.getHcp() ) );
         ov.setNotes( ovf.getNotes() );
 
         if ( ovf.getId() != null ) {
@@ -91,40 +250,30 @@ public class OfficeVisitService extends Service {
         ov.setType( at );
 
         if ( null != ovf.getPreScheduled() ) {
-            final List<AppointmentRequest> requests = appointmentRequestService.findByHcpAndPatient( ov.getHcp(),
-                    ov.getPatient() );
-            try {
-                final AppointmentRequest match = requests.stream().filter( e -> e.getDate().equals( ov.getDate() ) )
-                        .collect( Collectors.toList() )
-                        .get( 0 ); /*
-                                    * We should have one and only one
-                                    * appointment for the provided HCP & patient
-                                    * and the time specified
-                                    */
-                ov.setAppointment( match );
-            }
-            catch ( final Exception e ) {
-                throw new IllegalArgumentException( "Marked as preschedule but no match can be found" + e.toString() );
-            }
-
+            /*
+             * We should have one and only one appointment for the provided HCP
+             * & patient and the time specified
+             */
+            ov.setAppointment( appointmentRequestService
+                    .findByHcpAndPatientAndDate( ov.getHcp(), ov.getPatient(), ov.getDate() )
+                    .orElseThrow( () -> new IllegalArgumentException(
+                            "Marked as preschedule but no match can be found" ) ) );
         }
         ov.setHospital( hospitalService.findByName( ovf.getHospital() ) );
-        ov.setBasicHealthMetrics( bhmService.build( ovf ) );
+        ov.setBasicHealthMetrics( bhmService.build( ovf, context ) );
 
         // associate all diagnoses with this visit
         if ( ovf.getDiagnoses() != null ) {
-            ov.setDiagnoses(
-                    ovf.getDiagnoses().stream().map( diagnosisService::build ).collect( Collectors.toList() ) );
-            for ( final Diagnosis d : ov.getDiagnoses() ) {
-                d.setVisit( ov );
-            }
+            ov.setDiagnoses( ovf.getDiagnoses().stream().map( df -> diagnosisService.build( df, ov, context ) )
+                    .collect( Collectors.toList() ) );
         }
 
         ov.validateDiagnoses();
 
         final List<PrescriptionForm> ps = ovf.getPrescriptions();
         if ( ps != null ) {
-            ov.setPrescriptions( ps.stream().map( prescriptionService::build ).collect( Collectors.toList() ) );
+            ov.setPrescriptions(
+                    ps.stream().map( pf -> prescriptionService.build( pf, context ) ).collect( Collectors.toList() ) );
         }
 
         final Patient p = (Patient) ov.getPatient();
@@ -156,4 +305,36 @@ public class OfficeVisitService extends Service {
         return ov;
     }
 
+    /**
+     * Turns a filter into the query criteria that match it.
+     *
+     * @param filter
+     *            The filter
+     * @return The matching criteria
+     */
+    private static Specification<OfficeVisit> toSpecification ( final OfficeVisitFilter filter ) {
+        return ( root, query, cb ) -> {
+            final List<Predicate> predicates = new ArrayList<Predicate>();
+            if ( null != filter.getHcp() ) {
+                predicates.add( cb.equal( root.get( "hcp" ), filter.getHcp() ) );
+            }
+            if ( null != filter.getPatient() ) {
+                predicates.add( cb.equal( root.get( "patient" ), filter.getPatient() ) );
+            }
+            if ( null != filter.getFrom() ) {
+                predicates.add( cb.greaterThanOrEqualTo( root.<ZonedDateTime> get( "date" ), filter.getFrom() ) );
+            }
+            if ( null != filter.getTo() ) {
+                predicates.add( cb.lessThan( root.<ZonedDateTime> get( "date" ), filter.getTo() ) );
+            }
+            if ( null != filter.getHospital() ) {
+                predicates.add( cb.equal( root.get( "hospital" ).get( "name" ), filter.getHospital() ) );
+            }
+            if ( null != filter.getType() ) {
+                predicates.add( cb.equal( root.get( "type" ), filter.getType() ) );
+            }
+            return cb.and( predicates.toArray( new Predicate[predicates.size()] ) );
+        };
+    }
+
 }
@@ -1,11 +1,25 @@
 package edu.ncsu.csc.iTrust2.services;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
 import javax.transaction.Transactional;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Component;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ncsu.csc.iTrust2.models.DomainObject;
+import edu.ncsu.csc.iTrust2.models.OfficeVisit;
+import edu.ncsu.csc.iTrust2.models.Patient;
+import edu.ncsu.csc.iTrust2.models.Prescription;
+import edu.ncsu.csc.iTrust2.models.User;
 import edu.ncsu.csc.iTrust2.repositories.PatientRepository;
 
 @Component
@@ -13,11 +27,95 @@ import edu.ncsu.csc.iTrust2.repositories.PatientRepository;
 public class PatientService extends UserService {
 
     @Autowired
-    private PatientRepository repository;
+    private PatientRepository   repository;
+
+    @Autowired
+    private OfficeVisitService  officeVisitService;
+
+    @Autowired
+    private PrescriptionService prescriptionService;
+
+    /** Serializes records the same way the rest of the API does */
+    @Autowired
+    private ObjectMapper        objectMapper;
 
     @Override
     protected JpaRepository getRepository () {
         return repository;
     }
 
+    /**
+     * Writes out a patient's complete record as a single JSON object:
+     *
+     * <pre>
+     * { "patient": {...}, "officeVisits": [...], "prescriptions": [...] }
+     * </pre>
+     *
+     * Each office visit includes its health metrics, diagnoses, and the
+     * prescriptions written during it; `prescriptions` is every prescription
+     * the patient has, whether or not it came from a visit. Visits and
+     * prescriptions are read from the database with a cursor and written out
+     * one at a time as they arrive, so this takes the same amount of memory no
+     * matter how long the record is.
+     *
+     * @param username
+     *            Username of the patient
+     * @param out
+     *            Where to write the record; it is flushed, but left open
+     * @return False if there is no such patient, in which case nothing is
+     *         written
+     * @throws IOException
+     *             If the record cannot be written out
+     */
+    public boolean exportRecord ( final String username, final OutputStream out ) throws IOException {
+        final User user = findByName( username );
+        if ( ! ( user instanceof Patient ) ) {
+            return false;
+        }
+
+        final JsonGenerator json = objectMapper.getFactory().createGenerator( out, JsonEncoding.UTF8 );
+        json.disable( JsonGenerator.Feature.AUTO_CLOSE_TARGET );
+        json.writeStartObject();
+        json.writeFieldName( "patient" );
+        objectMapper.writeValue( json, user );
+
+        json.writeArrayFieldStart( "officeVisits" );
+        try ( Stream<OfficeVisit> visits = officeVisitService.streamByPatient( user ) ) {
+            writeAll( json, visits.iterator(), officeVisitService );
+        }
+        json.writeEndArray();
+
+        json.writeArrayFieldStart( "prescriptions" );
+        try ( Stream<Prescription> prescriptions = prescriptionService.streamByPatient( user ) ) {
+            writeAll( json, prescriptions.iterator(), prescriptionService );
+        }
+        json.writeEndArray();
+
+        json.writeEndObject();
+        json.close();
+        return true;
+    }
+
+    /**
+     * Writes out each record in turn, letting go of it once it has been
+     * written.
+     *
+     * @param json
+     *            Where to write the records
+     * @param records
+     *            The records to write
+     * @param service
+     *            Service the records belong to
+     * @throws IOException
+     *             If a record cannot be written out
+     */
+    private void writeAll ( final JsonGenerator json, final Iterator< ? extends DomainObject> records,
+            final Service service ) throws IOException {
+        while ( records.hasNext() ) {
+            final DomainObject record = records.next();
+            objectMapper.writeValue( json, record );
+            service.detach( record );
+        }
+    }
+
 }
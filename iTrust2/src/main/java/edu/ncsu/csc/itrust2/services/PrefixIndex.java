@@ -0,0 +1,177 @@
+package edu.ncsu.csc.iTrust2.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * A typeahead index over an unchanging list of items, each with a key (ie, a
+ * code) and some text (ie, a name or description). An item matches a query
+ * when every word of the query is the start of a word in its key or text,
+ * ignoring case.
+ *
+ * Every word of every item is kept, lower-cased and sorted, alongside the item
+ * it came from. All the words that start with a given prefix sit next to each
+ * other, so finding them is a binary search followed by a short scan.
+ *
+ * @param <T>
+ *            Type of item indexed
+ */
+public class PrefixIndex <T> {
+
+    /** Splits text and queries into words */
+    private static final String      WORD_SEPARATORS = "[^\\p{Alnum}.]+";
+
+    /** The items, in the order results are returned in */
+    private final List<T>            items;
+
+    /** Gets an item's key */
+    private final Function<T, String> key;
+
+    /** Every word of every item, sorted */
+    private final String[]           words;
+
+    /** For each word, the position in `items` of the item it came from */
+    private final int[]              owners;
+
+    /**
+     * Indexes a list of items.
+     *
+     * @param items
+     *            The items, in the order results should come back in
+     * @param key
+     *            Gets an item's key
+     * @param text
+     *            Gets an item's text
+     */
+    public PrefixIndex ( final List<T> items, final Function<T, String> key, final Function<T, String> text ) {
+        this.items = items;
+        this.key = key;
+
+        final List<IndexEntry> index = new ArrayList<IndexEntry>();
+        for ( int i = 0; i < items.size(); i++ ) {
+            for ( final String word : wordsOf( key.apply( items.get( i ) ) ) ) {
+                index.add( new IndexEntry( word, i ) );
+            }
+            for ( final String word : wordsOf( text.apply( items.get( i ) ) ) ) {
+                index.add( new IndexEntry( word, i ) );
+            }
+        }
+        index.sort( Comparator.comparing( ( final IndexEntry e ) -> e.word ).thenComparingInt( e -> e.owner ) );
+
+        words = new String[index.size()];
+        owners = new int[index.size()];
+        for ( int i = 0; i < index.size(); i++ ) {
+            words[i] = index.get( i ).word;
+            owners[i] = index.get( i ).owner;
+        }
+    }
+
+    /**
+     * Finds the items that match a query. Items whose key starts with the
+     * query come first; within each group, items keep their order.
+     *
+     * @param query
+     *            What has been typed so far
+     * @param limit
+     *            Most items to return
+     * @return The best matches, at most `limit` of them
+     */
+    public List<T> search ( final String query, final int limit ) {
+        final List<String> terms = wordsOf( query );
+        if ( terms.isEmpty() || limit < 1 ) {
+            return Collections.emptyList();
+        }
+
+        BitSet matches = null;
+        for ( final String term : terms ) {
+            final BitSet found = startingWith( term );
+            if ( null == matches ) {
+                matches = found;
+            }
+            else {
+                matches.and( found );
+            }
+        }
+
+        final String whole = query.trim().toLowerCase( Locale.ROOT );
+        final List<T> keyMatches = new ArrayList<T>();
+        final List<T> otherMatches = new ArrayList<T>();
+        for ( int i = matches.nextSetBit( 0 ); i >= 0 && keyMatches.size() < limit; i = matches.nextSetBit( i + 1 ) ) {
+            final T item = items.get( i );
+            final String itemKey = key.apply( item );
+            if ( null != itemKey && itemKey.toLowerCase( Locale.ROOT ).startsWith( whole ) ) {
+                keyMatches.add( item );
+            }
+            else if ( otherMatches.size() < limit ) {
+                otherMatches.add( item );
+            }
+        }
+        keyMatches.addAll( otherMatches );
+        return keyMatches.size() > limit ? keyMatches.subList( 0, limit ) : keyMatches;
+    }
+
+    /**
+     * Finds every item with a word that starts with a prefix.
+     *
+     * @param prefix
+     *            The prefix, in lower case
+     * @return The positions in `items` of the items found
+     */
+    private BitSet startingWith ( final String prefix ) {
+        final BitSet found = new BitSet( items.size() );
+        int i = Arrays.binarySearch( words, prefix );
+        if ( i < 0 ) {
+            i = -i - 1;
+        }
+        for ( ; i < words.length && words[i].startsWith( prefix ); i++ ) {
+            found.set( owners[i] );
+        }
+        return found;
+    }
+
+    /**
+     * Splits text into lower-case words. Full stops are kept, so that codes
+     * like "A01.1" stay whole; hyphenated codes like "0777-3105-02" are split
+     * up, but a query typed the same way is split up to match.
+     *
+     * @param text
+     *            The text to split
+     * @return The words in the text
+     */
+    private static List<String> wordsOf ( final String text ) {
+        final List<String> result = new ArrayList<String>();
+        if ( null == text ) {
+            return result;
+        }
+        for ( final String word : text.toLowerCase( Locale.ROOT ).split( WORD_SEPARATORS ) ) {
+            if ( !word.isEmpty() ) {
+                result.add( word );
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A word and the item it came from
+     */
+    private static final class IndexEntry {
+
+        /** The word */
+        private final String word;
+
+        /** Position of the item in `items` */
+        private final int    owner;
+
+        private IndexEntry ( final String word, final int owner ) {
+            this.word = word;
+            this.owner = owner;
+        }
+    }
+
+}
@@ -1,7 +1,11 @@
 package edu.ncsu.csc.iTrust2.services;
 
 import java.time.LocalDate;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.transaction.Transactional;
 
@@ -33,12 +37,28 @@ public class PrescriptionService extends Service {
     }
 
     public Prescription build ( final PrescriptionForm form ) {
+        return build( form,
+                new BuildContext( userService.findByNames( Collections.singleton( form.getPatient() ) ),
+                        drugService.findByCodes( Collections.singleton( form.getDrug() ) ), null ) );
+    }
+
+    /**
+     * Builds a prescription, taking its drug and patient from those that have
+     * already been looked up.
+     *
+     * @param form
+     *            The prescription
+     * @param context
+     *            Users and drugs referred to by the prescription
+     * @return The prescription
+     */
+    public Prescription build ( final PrescriptionForm form, final BuildContext context ) {
         final Prescription pr = new Prescription();
 
-        pr.setDrug( drugService.findByCode( form.getDrug() ) );
+        pr.setDrug( context.getDrug( form.getDrug() ) );
         pr.setDosage( form.getDosage() );
         pr.setRenewals( form.getRenewals() );
-        pr.setPatient( userService.findByName( form.getPatient() ) );
+        pr.setPatient( context.getUser( form.getPatient() ) );
 
         if ( form.getId() != null ) {
             pr.setId( form.getId() );
@@ -50,8 +70,48 @@ public class PrescriptionService extends Service {
         return pr;
     }
 
+    /**
+     * Builds and saves many prescriptions at once. They are handled
+     * `hibernate.jdbc.batch_size` at a time: the patients and drugs each chunk
+     * refers to are looked up together, and the chunk is written as JDBC
+     * batches and then cleared out of memory before the next is built.
+     * All-or-nothing; if any prescription is invalid, none are saved.
+     *
+     * @param forms
+     *            The prescriptions
+     * @return Number of prescriptions saved
+     */
+    public int importAll ( final List<PrescriptionForm> forms ) {
+        final int chunkSize = getChunkSize();
+        for ( int start = 0; start < forms.size(); start += chunkSize ) {
+            final List<PrescriptionForm> chunk = forms.subList( start, Math.min( forms.size(), start + chunkSize ) );
+            final BuildContext context = new BuildContext(
+                    userService.findByNames( chunk.stream().map( PrescriptionForm::getPatient )
+                            .filter( Objects::nonNull ).collect( Collectors.toSet() ) ),
+                    drugService.findByCodes( chunk.stream().map( PrescriptionForm::getDrug )
+                            .filter( Objects::nonNull ).collect( Collectors.toSet() ) ),
+                    null );
+            saveInChunks( chunk.stream().map( form -> build( form, context ) ).collect( Collectors.toList() ),
+                    chunkSize );
+        }
+        return forms.size();
+    }
+
     public List<Prescription> findByPatient ( final User patient ) {
         return repository.findByPatient( patient );
     }
 
+    /**
+     * Walks through a patient's prescriptions, oldest first, without loading
+     * them all at once. Close the stream when done with it, and `detach` each
+     * prescription once it has been used so that memory use stays flat.
+     *
+     * @param patient
+     *            The patient
+     * @return The patient's prescriptions
+     */
+    public Stream<Prescription> streamByPatient ( final User patient ) {
+        return repository.streamByPatientOrderByStartDateAscIdAsc( patient );
+    }
+
 }
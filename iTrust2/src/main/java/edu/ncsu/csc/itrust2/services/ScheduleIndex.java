@@ -0,0 +1,368 @@
+package edu.ncsu.csc.iTrust2.services;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import edu.ncsu.csc.iTrust2.models.AppointmentRequest;
+import edu.ncsu.csc.iTrust2.models.enums.Status;
+
+/**
+ * The approved appointments of each HCP, kept in memory sorted by start time
+ * so that `AppointmentRequestService` can tell whether a new appointment would
+ * overlap one of them, and find gaps in an HCP's day, without reading the
+ * HCP's whole history. Every appointment is taken to be the same length.
+ *
+ * An HCP's appointments are only loaded the first time they are asked about,
+ * and only those that haven't finished yet. After that, the service reports
+ * each appointment that is approved, moved, or cancelled, once its transaction
+ * commits; an HCP whose transaction rolled back is simply forgotten and loaded
+ * again next time.
+ *
+ * An appointment that is about to be saved holds its slot from the moment it
+ * is checked until its transaction is over, so that two transactions can't
+ * both book the same time before either of them commits. Held slots clash
+ * like approved appointments, and survive the HCP being forgotten.
+ */
+public class ScheduleIndex {
+
+    /** Loads the approved appointments of an HCP, by username */
+    private final Function<String, Collection<AppointmentRequest>> loader;
+
+    /** Length of every appointment, in milliseconds */
+    private final long                                            length;
+
+    /** Each HCP's appointments, by username */
+    private final Map<String, HcpSchedule>                        schedules;
+
+    /** Username of the HCP each indexed appointment belongs to, by ID */
+    private final Map<Long, String>                               owners;
+
+    /** Hands out IDs for held slots; negative, so never the ID of a request */
+    private final AtomicLong                                      holds;
+
+    /**
+     * Creates an empty index.
+     *
+     * @param loader
+     *            Loads the approved appointments of an HCP that haven't
+     *            finished yet, given the HCP's username
+     * @param length
+     *            How long every appointment lasts
+     */
+    public ScheduleIndex ( final Function<String, Collection<AppointmentRequest>> loader, final Duration length ) {
+        this.loader = loader;
+        this.length = length.toMillis();
+        schedules = new ConcurrentHashMap<String, HcpSchedule>();
+        owners = new ConcurrentHashMap<Long, String>();
+        holds = new AtomicLong();
+    }
+
+    /**
+     * Returns how long every appointment lasts.
+     *
+     * @return Length of an appointment
+     */
+    public Duration getLength () {
+        return Duration.ofMillis( length );
+    }
+
+    /**
+     * Finds an approved appointment that would overlap one starting at the
+     * given time.
+     *
+     * @param hcp
+     *            Username of the HCP
+     * @param start
+     *            When the new appointment would start
+     * @param ignore
+     *            ID of an appointment to leave out (ie, the one being moved),
+     *            or null
+     * @return ID of an overlapping appointment, or null if there is none
+     */
+    public Long findConflict ( final String hcp, final ZonedDateTime start, final Long ignore ) {
+        final HcpSchedule schedule = scheduleOf( hcp );
+        synchronized ( schedule ) {
+            final Slot conflict = schedule.overlapping( start.toInstant().toEpochMilli(), ignore );
+            return null == conflict ? null : conflict.id;
+        }
+    }
+
+    /**
+     * Holds the slot for an appointment starting at the given time, if no
+     * approved or held appointment overlaps it. The check and the hold happen
+     * together, so of two overlapping holds only the first succeeds.
+     *
+     * @param hcp
+     *            Username of the HCP
+     * @param start
+     *            When the new appointment would start
+     * @param ignore
+     *            ID of an appointment to leave out (ie, the one being moved),
+     *            or null
+     * @return ID of the hold, to release it with, or null if the slot is taken
+     */
+    public Long hold ( final String hcp, final ZonedDateTime start, final Long ignore ) {
+        final HcpSchedule schedule = scheduleOf( hcp );
+        synchronized ( schedule ) {
+            final long time = start.toInstant().toEpochMilli();
+            if ( null != schedule.overlapping( time, ignore ) ) {
+                return null;
+            }
+            final Long hold = holds.decrementAndGet();
+            schedule.add( new Slot( time, hold ) );
+            return hold;
+        }
+    }
+
+    /**
+     * Releases a slot held by `hold()`.
+     *
+     * @param hcp
+     *            Username of the HCP
+     * @param hold
+     *            ID of the hold
+     */
+    public void release ( final String hcp, final Long hold ) {
+        final HcpSchedule schedule = schedules.get( hcp );
+        if ( null != schedule ) {
+            synchronized ( schedule ) {
+                schedule.remove( hold );
+            }
+        }
+    }
+
+    /**
+     * Finds the times an HCP is free for an appointment, on a grid of
+     * appointment-length slots starting at `dayStart` each day.
+     *
+     * @param hcp
+     *            Username of the HCP
+     * @param from
+     *            Earliest time an appointment may start
+     * @param to
+     *            Time appointments must start before
+     * @param dayStart
+     *            When the HCP's working day starts
+     * @param dayEnd
+     *            When the HCP's working day ends; appointments have to end by
+     *            then
+     * @param limit
+     *            Most start times to return
+     * @return Free start times, earliest first
+     */
+    public List<ZonedDateTime> findFreeSlots ( final String hcp, final ZonedDateTime from, final ZonedDateTime to,
+            final LocalTime dayStart, final LocalTime dayEnd, final int limit ) {
+        final ZoneId zone = from.getZone();
+        final long until = to.toInstant().toEpochMilli();
+        final List<ZonedDateTime> free = new ArrayList<ZonedDateTime>();
+        final HcpSchedule schedule = scheduleOf( hcp );
+        synchronized ( schedule ) {
+            for ( LocalDate day = from.toLocalDate(); free.size() < limit
+                    && !day.atTime( dayStart ).atZone( zone ).isAfter( to ); day = day.plusDays( 1 ) ) {
+                final long open = day.atTime( dayStart ).atZone( zone ).toInstant().toEpochMilli();
+                final long close = day.atTime( dayEnd ).atZone( zone ).toInstant().toEpochMilli();
+                long slot = onGrid( open, Math.max( open, from.toInstant().toEpochMilli() ) );
+                while ( free.size() < limit && slot + length <= close && slot < until ) {
+                    final Slot conflict = schedule.overlapping( slot, null );
+                    if ( null == conflict ) {
+                        free.add( ZonedDateTime.ofInstant( Instant.ofEpochMilli( slot ), zone ) );
+                        slot += length;
+                    }
+                    else {
+                        slot = onGrid( open, conflict.start + length );
+                    }
+                }
+            }
+        }
+        return free;
+    }
+
+    /**
+     * Records that an appointment has been saved. Approved appointments are
+     * added (or moved); anything else is removed.
+     *
+     * @param request
+     *            The appointment, as it was committed
+     */
+    public void saved ( final AppointmentRequest request ) {
+        removed( request.getId() );
+        if ( Status.APPROVED == request.getStatus() ) {
+            final String hcp = request.getHcp().getUsername();
+            final HcpSchedule schedule = schedules.get( hcp );
+            if ( null != schedule ) {
+                synchronized ( schedule ) {
+                    if ( schedule.loaded ) {
+                        schedule.add( new Slot( request.getDate().toInstant().toEpochMilli(), request.getId() ) );
+                        owners.put( request.getId(), hcp );
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Records that an appointment has been deleted.
+     *
+     * @param id
+     *            ID of the appointment
+     */
+    public void removed ( final Long id ) {
+        final String hcp = owners.remove( id );
+        final HcpSchedule schedule = null == hcp ? null : schedules.get( hcp );
+        if ( null != schedule ) {
+            synchronized ( schedule ) {
+                schedule.remove( id );
+            }
+        }
+    }
+
+    /**
+     * Forgets an HCP's appointments, so that they are loaded again next time.
+     * Held slots are kept.
+     *
+     * @param hcp
+     *            Username of the HCP
+     */
+    public void forget ( final String hcp ) {
+        final HcpSchedule schedule = schedules.get( hcp );
+        if ( null != schedule ) {
+            synchronized ( schedule ) {
+                schedule.unload();
+            }
+        }
+    }
+
+    /**
+     * Forgets every HCP's appointments. Held slots are kept.
+     */
+    public void clear () {
+        schedules.keySet().forEach( this::forget );
+    }
+
+    /**
+     * Returns an HCP's schedule, loading it first if need be.
+     *
+     * @param hcp
+     *            Username of the HCP
+     * @return The schedule
+     */
+    private HcpSchedule scheduleOf ( final String hcp ) {
+        final HcpSchedule schedule = schedules.computeIfAbsent( hcp, k -> new HcpSchedule() );
+        synchronized ( schedule ) {
+            if ( !schedule.loaded ) {
+                for ( final AppointmentRequest request : loader.apply( hcp ) ) {
+                    schedule.add( new Slot( request.getDate().toInstant().toEpochMilli(), request.getId() ) );
+                    owners.put( request.getId(), hcp );
+                }
+                schedule.loaded = true;
+            }
+        }
+        return schedule;
+    }
+
+    /**
+     * Rounds a time up to the next slot boundary of the day.
+     *
+     * @param open
+     *            Start of the day, which is on the grid
+     * @param time
+     *            The time to round, no earlier than `open`
+     * @return The first slot boundary at or after `time`
+     */
+    private long onGrid ( final long open, final long time ) {
+        return open + ( time - open + length - 1 ) / length * length;
+    }
+
+    /**
+     * One HCP's approved appointments. Guarded by its own monitor.
+     */
+    private final class HcpSchedule {
+
+        /** Appointments by start time */
+        private final TreeSet<Slot>   slots = new TreeSet<Slot>();
+
+        /** Appointments by ID */
+        private final Map<Long, Slot> byId  = new HashMap<Long, Slot>();
+
+        /** Whether the appointments have been read from the database */
+        private boolean               loaded;
+
+        private void add ( final Slot slot ) {
+            remove( slot.id );
+            slots.add( slot );
+            byId.put( slot.id, slot );
+        }
+
+        private void remove ( final Long id ) {
+            final Slot slot = byId.remove( id );
+            if ( null != slot ) {
+                slots.remove( slot );
+            }
+        }
+
+        /**
+         * Drops every appointment but the held slots, to be loaded again.
+         */
+        private void unload () {
+            for ( final Slot slot : new ArrayList<Slot>( slots ) ) {
+                if ( slot.id >= 0 ) {
+                    remove( slot.id );
+                }
+            }
+            loaded = false;
+        }
+
+        /**
+         * Finds an appointment overlapping one that starts at the given time:
+         * that is, one starting less than an appointment length either side of
+         * it. Only a handful of appointments can fit in that window, so this is
+         * a tree lookup and a short scan.
+         */
+        private Slot overlapping ( final long start, final Long ignore ) {
+            for ( final Slot slot : slots.subSet( new Slot( start - length + 1, Long.MIN_VALUE ), true,
+                    new Slot( start + length, Long.MIN_VALUE ), false ) ) {
+                if ( !slot.id.equals( ignore ) ) {
+                    return slot;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * An appointment's start time and ID, ordered by start time
+     */
+    private static final class Slot implements Comparable<Slot> {
+
+        /** Start time, in milliseconds since the epoch */
+        private final long start;
+
+        /** ID of the appointment */
+        private final Long id;
+
+        private Slot ( final long start, final Long id ) {
+            this.start = start;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo ( final Slot other ) {
+            final int byStart = Long.compare( start, other.start );
+            return 0 != byStart ? byStart : Long.compare( id, other.id );
+        }
+    }
+
+}
@@ -3,6 +3,11 @@ package edu.ncsu.csc.iTrust2.services;
 import java.util.List;
 import java.util.Optional;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.transaction.Transactional;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Example;
 import org.springframework.data.jpa.repository.JpaRepository;
 
@@ -26,6 +31,13 @@ import edu.ncsu.csc.iTrust2.models.DomainObject;
  */
 abstract public class Service {
 
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /** Number of records `saveInChunks` writes between flushes by default */
+    @Value ( "${spring.jpa.properties.hibernate.jdbc.batch_size:50}" )
+    private int           defaultChunkSize;
+
     /**
      * Returns the Repository that Spring uses for interacting with the
      * database. This is the only method that _must_ be overridden in child
@@ -40,11 +52,94 @@ abstract public class Service {
      * exists, `save()` will perform an in-place update, overwriting the
      * existing record.
      *
+     * The write isn't flushed straight away. Outside of a transaction it goes
+     * out when `save()` returns; within one, it is held back until the
+     * transaction commits (or a query or `flush()` needs it), so that several
+     * saves can be sent together as a JDBC batch.
+     *
      * @param obj
      *            The object to save into the database.
      */
     public void save ( final DomainObject obj ) {
-        getRepository().saveAndFlush( obj );
+        getRepository().save( obj );
+    }
+
+    /**
+     * Writes every save held back in the current transaction to the database,
+     * for callers that need to see any constraint violations straight away.
+     */
+    public void flush () {
+        entityManager.flush();
+    }
+
+    /**
+     * Saves a large collection of elements, flushing and then clearing the
+     * persistence context after every `hibernate.jdbc.batch_size` records so
+     * that memory use stays flat however many there are. Like `saveAll()`, this
+     * is all-or-nothing.
+     *
+     * Clearing detaches every entity loaded in the current transaction, not
+     * just the ones saved here, so don't call this in the middle of other work
+     * on managed entities.
+     *
+     * @param objects
+     *            The objects to save to the database.
+     */
+    @Transactional
+    public void saveInChunks ( final List< ? extends DomainObject> objects ) {
+        saveInChunks( objects, getChunkSize() );
+    }
+
+    /**
+     * Returns the number of records `saveInChunks` writes between flushes by
+     * default, for subclasses that build up their own chunks.
+     *
+     * @return The chunk size
+     */
+    protected int getChunkSize () {
+        return defaultChunkSize;
+    }
+
+    /**
+     * Saves a large collection of elements, flushing and then clearing the
+     * persistence context after every `chunkSize` records. See
+     * `saveInChunks(List)`.
+     *
+     * @param objects
+     *            The objects to save to the database.
+     * @param chunkSize
+     *            Number of records to write between flushes; best kept a
+     *            multiple of `hibernate.jdbc.batch_size`
+     */
+    @Transactional
+    public void saveInChunks ( final List< ? extends DomainObject> objects, final int chunkSize ) {
+        if ( chunkSize < 1 ) {
+            throw new IllegalArgumentException( "Chunk size must be positive" );
+        }
+        int pending = 0;
+        for ( final DomainObject obj : objects ) {
+            getRepository().save( obj );
+            if ( ++pending == chunkSize ) {
+                entityManager.flush();
+                entityManager.clear();
+                pending = 0;
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    /**
+     * Stops tracking an object (and anything it cascades to) in the current
+     * persistence context, so that it can be garbage collected once the caller
+     * is done with it. Use this when walking through more records than should
+     * be held at once. Unsaved changes to the object are lost.
+     *
+     * @param obj
+     *            The object to stop tracking
+     */
+    public void detach ( final DomainObject obj ) {
+        entityManager.detach( obj );
     }
 
     /**
@@ -61,14 +156,15 @@ abstract public class Service {
     /**
      * Saves a collection of elements to the database. If an error occurs saving
      * any of them, no objects will be saved. This makes it handy for ensuring
-     * database consistency where all records should exist together.
+     * database consistency where all records should exist together. Like
+     * `save()`, this doesn't flush; the records are batched together when the
+     * transaction commits.
      *
      * @param objects
      *            A List of objects to save to the database.
      */
     public void saveAll ( final List< ? extends DomainObject> objects ) {
         getRepository().saveAll( objects );
-        getRepository().flush();
     }
 
     /**
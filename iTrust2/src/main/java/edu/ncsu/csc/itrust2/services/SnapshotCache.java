@@ -0,0 +1,170 @@
+package edu.ncsu.csc.iTrust2.services;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Holds an unchanging snapshot of some table (ie, an `ICDCodeCatalog`) for a
+ * service to answer lookups from. The snapshot is loaded when first needed and
+ * kept until the service says the table has changed; the next lookup after
+ * that loads a fresh one. Changes made inside a transaction are picked up
+ * again once it commits or rolls back, so a snapshot is never left holding
+ * rows that were never committed.
+ *
+ * In case the table is changed some other way, a snapshot is also reloaded
+ * once it is older than its time to live. Only one thread does that reload;
+ * the rest keep using the old snapshot until it is done.
+ *
+ * @param <T>
+ *            Type of snapshot
+ */
+public class SnapshotCache <T> {
+
+    /** Loads a new snapshot */
+    private final Supplier<T>   loader;
+
+    /** How long a snapshot is used before it is reloaded, in nanoseconds */
+    private final long          ttlNanos;
+
+    /** The current snapshot, or null if it has to be loaded before use */
+    private volatile T          snapshot;
+
+    /** `System.nanoTime()` after which the current snapshot is reloaded */
+    private volatile long       expires;
+
+    /** Guards `generation`, and putting a new snapshot in place */
+    private final Object        lock          = new Object();
+
+    /**
+     * Bumped whenever the table changes, so that a snapshot loaded before the
+     * change isn't put in place after it
+     */
+    private long                generation;
+
+    /** Set while a thread is reloading an expired snapshot */
+    private final AtomicBoolean reloading     = new AtomicBoolean();
+
+    /** Number of snapshots loaded */
+    private final AtomicLong    loads         = new AtomicLong();
+
+    /** Number of times a snapshot was thrown away */
+    private final AtomicLong    invalidations = new AtomicLong();
+
+    /**
+     * Creates an empty cache; nothing is loaded until `get` is called.
+     *
+     * @param loader
+     *            Loads a new snapshot from the database
+     * @param ttlSeconds
+     *            How long a snapshot is used before it is reloaded
+     */
+    public SnapshotCache ( final Supplier<T> loader, final long ttlSeconds ) {
+        this.loader = loader;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos( ttlSeconds );
+    }
+
+    /**
+     * Returns the current snapshot, loading it first if need be.
+     *
+     * @return The snapshot
+     */
+    public T get () {
+        final T current = snapshot;
+        if ( null == current ) {
+            return load();
+        }
+        if ( System.nanoTime() - expires > 0 && reloading.compareAndSet( false, true ) ) {
+            try {
+                return load();
+            }
+            finally {
+                reloading.set( false );
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Returns the current snapshot without loading one.
+     *
+     * @return The snapshot, or null if there isn't one loaded
+     */
+    public T peek () {
+        return snapshot;
+    }
+
+    /**
+     * Throws away the current snapshot, so that the next lookup loads a new
+     * one.
+     */
+    public void invalidate () {
+        synchronized ( lock ) {
+            generation++;
+            snapshot = null;
+        }
+        invalidations.incrementAndGet();
+    }
+
+    /**
+     * Throws away the snapshot now, and again once the current transaction (if
+     * any) is over, since until then other threads could load a snapshot
+     * without the change in it. Call this after every change to the table.
+     */
+    public void changed () {
+        invalidate();
+        if ( TransactionSynchronizationManager.isSynchronizationActive() ) {
+            TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion ( final int status ) {
+                    invalidate();
+                }
+            } );
+        }
+    }
+
+    /**
+     * Returns the number of snapshots loaded so far.
+     *
+     * @return Number of loads
+     */
+    public long getLoads () {
+        return loads.get();
+    }
+
+    /**
+     * Returns the number of times a snapshot has been thrown away.
+     *
+     * @return Number of invalidations
+     */
+    public long getInvalidations () {
+        return invalidations.get();
+    }
+
+    /**
+     * Loads a new snapshot and, unless the table changed in the meantime, puts
+     * it in place.
+     *
+     * @return The new snapshot
+     */
+    private T load () {
+        final long loadedIn;
+        synchronized ( lock ) {
+            loadedIn = generation;
+        }
+        final T loaded = loader.get();
+        loads.incrementAndGet();
+        synchronized ( lock ) {
+            if ( loadedIn == generation ) {
+                snapshot = loaded;
+                expires = System.nanoTime() + ttlNanos;
+            }
+        }
+        return loaded;
+    }
+
+}
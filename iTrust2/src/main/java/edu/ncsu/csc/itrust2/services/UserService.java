@@ -1,5 +1,11 @@
 package edu.ncsu.csc.iTrust2.services;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import javax.transaction.Transactional;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -7,8 +13,10 @@ import org.springframework.context.annotation.Primary;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Component;
 
+import edu.ncsu.csc.iTrust2.models.DomainObject;
 import edu.ncsu.csc.iTrust2.models.User;
 import edu.ncsu.csc.iTrust2.repositories.UserRepository;
+import edu.ncsu.csc.iTrust2.services.security.CachedUserDetailsService;
 
 @Component
 @Transactional
@@ -16,15 +24,78 @@ import edu.ncsu.csc.iTrust2.repositories.UserRepository;
 public class UserService extends Service {
 
     @Autowired
-    private UserRepository repository;
+    private UserRepository           repository;
+
+    @Autowired
+    private CachedUserDetailsService userDetailsService;
 
     @Override
     protected JpaRepository getRepository () {
         return repository;
     }
 
+    /**
+     * Saves the user and makes sure that logins see the change as soon as it
+     * commits.
+     */
+    @Override
+    public void save ( final DomainObject obj ) {
+        super.save( obj );
+        userDetailsService.changed( ( (User) obj ).getUsername() );
+    }
+
+    /**
+     * Saves the users and makes sure that logins see the changes as soon as
+     * they commit.
+     */
+    @Override
+    public void saveAll ( final List< ? extends DomainObject> objects ) {
+        super.saveAll( objects );
+        userDetailsService.changedAll();
+    }
+
+    @Override
+    public void saveInChunks ( final List< ? extends DomainObject> objects, final int chunkSize ) {
+        super.saveInChunks( objects, chunkSize );
+        userDetailsService.changedAll();
+    }
+
+    /**
+     * Deletes the user and makes sure that they can no longer log in.
+     */
+    @Override
+    public void delete ( final DomainObject obj ) {
+        super.delete( obj );
+        userDetailsService.changed( ( (User) obj ).getUsername() );
+    }
+
+    @Override
+    public void deleteAll () {
+        super.deleteAll();
+        userDetailsService.changedAll();
+    }
+
     public User findByName ( final String username ) {
         return repository.findByUsername( username );
     }
 
+    /**
+     * Looks up several users at once. Use this instead of calling
+     * `findByName` in a loop.
+     *
+     * @param usernames
+     *            Usernames to look up; nulls and duplicates are fine
+     * @return Map from username to User, for each username that exists
+     */
+    public Map<String, User> findByNames ( final Collection<String> usernames ) {
+        if ( null == usernames || usernames.isEmpty() ) {
+            return Collections.emptyMap();
+        }
+        final Map<String, User> users = new HashMap<String, User>();
+        for ( final User user : repository.findByUsernameIn( usernames ) ) {
+            users.put( user.getUsername(), user );
+        }
+        return users;
+    }
+
 }
@@ -0,0 +1,248 @@
+package edu.ncsu.csc.iTrust2.services.security;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import edu.ncsu.csc.iTrust2.models.User;
+import edu.ncsu.csc.iTrust2.repositories.UserRepository;
+import edu.ncsu.csc.iTrust2.utils.MetricSource;
+
+/**
+ * Loads users for Spring Security when they log in. Each user, along with their
+ * roles, is fetched with a single query and then kept in a bounded,
+ * least-recently-used cache so that repeat logins (and the rush at shift
+ * change) don't go to the database at all.
+ *
+ * `UserService` invalidates a user whenever they are saved or deleted, both
+ * straight away and again once the change commits, so the cache never holds an
+ * out-of-date password, role, or enabled flag for longer than it takes to
+ * write the change. Entries also expire after
+ * `itrust2.user-cache.ttl-seconds`, in case the database is changed some other
+ * way.
+ *
+ * Spring Security also saves re-hashed passwords through here, when a user
+ * logs in with a password hashed at an old cost factor (see `PasswordHasher`).
+ */
+@Component
+public class CachedUserDetailsService implements UserDetailsService, UserDetailsPasswordService, MetricSource {
+
+    @Autowired
+    private UserRepository                   repository;
+
+    /** Most users held at once */
+    @Value ( "${itrust2.user-cache.max-entries:1000}" )
+    private int                              maxEntries;
+
+    /** How long a user is cached for */
+    @Value ( "${itrust2.user-cache.ttl-seconds:300}" )
+    private long                             ttlSeconds;
+
+    /** Cached users by username, least recently used first */
+    private final Map<String, CachedDetails> cache     = new LinkedHashMap<String, CachedDetails>( 16, 0.75f,
+            true ) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry ( final Map.Entry<String, CachedDetails> eldest ) {
+            if ( size() > maxEntries ) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /** Lookups answered from the cache */
+    private final AtomicLong                 hits      = new AtomicLong();
+
+    /** Lookups that had to go to the database */
+    private final AtomicLong                 misses    = new AtomicLong();
+
+    /** Users dropped to make room for others */
+    private final AtomicLong                 evictions = new AtomicLong();
+
+    /**
+     * Bumped on every invalidation, so that a user loaded before it is not
+     * cached after it. Only touched while holding the cache's lock.
+     */
+    private long                             generation;
+
+    /** Number of cached users, kept so that metrics needn't take the lock */
+    private volatile int                     size;
+
+    @Override
+    public UserDetails loadUserByUsername ( final String username ) throws UsernameNotFoundException {
+        final long now = System.nanoTime();
+        CachedDetails cached;
+        final long loadedIn;
+        synchronized ( cache ) {
+            cached = cache.get( username );
+            loadedIn = generation;
+        }
+        if ( null != cached && now - cached.expires < 0 ) {
+            hits.incrementAndGet();
+            return copy( cached.details );
+        }
+
+        misses.incrementAndGet();
+        final User user = repository.findWithRolesByUsername( username );
+        if ( null == user ) {
+            throw new UsernameNotFoundException( "No user found for " + username );
+        }
+        final UserDetails details = org.springframework.security.core.userdetails.User
+                .withUsername( user.getUsername() ).password( user.getPassword() )
+                .disabled( null == user.getEnabled() || 1 != user.getEnabled() )
+                .authorities( user.getRoles().stream().map( role -> new SimpleGrantedAuthority( role.name() ) )
+                        .collect( Collectors.toList() ) )
+                .build();
+        cached = new CachedDetails( details, now + TimeUnit.SECONDS.toNanos( ttlSeconds ) );
+        synchronized ( cache ) {
+            if ( loadedIn == generation ) {
+                cache.put( username, cached );
+                size = cache.size();
+            }
+        }
+        return copy( details );
+    }
+
+    /**
+     * Saves a password that has been re-hashed during login.
+     */
+    @Override
+    public UserDetails updatePassword ( final UserDetails details, final String newPassword ) {
+        final User user = repository.findByUsername( details.getUsername() );
+        if ( null != user ) {
+            user.setPassword( newPassword );
+            repository.saveAndFlush( user );
+        }
+        invalidate( details.getUsername() );
+        return org.springframework.security.core.userdetails.User.withUserDetails( details ).password( newPassword )
+                .build();
+    }
+
+    /**
+     * Forgets the cached copy of a user. Call this whenever a user is changed
+     * or deleted.
+     *
+     * @param username
+     *            Username of the user
+     */
+    public void invalidate ( final String username ) {
+        synchronized ( cache ) {
+            generation++;
+            cache.remove( username );
+            size = cache.size();
+        }
+    }
+
+    /**
+     * Forgets every cached user.
+     */
+    public void invalidateAll () {
+        synchronized ( cache ) {
+            generation++;
+            cache.clear();
+            size = 0;
+        }
+    }
+
+    /**
+     * Forgets the cached copy of a user now, and again once the current
+     * transaction (if any) is over, since until it commits a login could load
+     * the user as they were before the change and cache them.
+     *
+     * @param username
+     *            Username of the user that was changed or deleted
+     */
+    public void changed ( final String username ) {
+        invalidate( username );
+        afterCompletion( () -> invalidate( username ) );
+    }
+
+    /**
+     * Forgets every cached user now, and again once the current transaction
+     * (if any) is over.
+     */
+    public void changedAll () {
+        invalidateAll();
+        afterCompletion( this::invalidateAll );
+    }
+
+    @Override
+    public String getMetricName () {
+        return "userCache";
+    }
+
+    @Override
+    public Map<String, Number> getMetrics () {
+        final Map<String, Number> metrics = new HashMap<String, Number>();
+        metrics.put( "hits", hits.get() );
+        metrics.put( "misses", misses.get() );
+        metrics.put( "evictions", evictions.get() );
+        metrics.put( "size", size );
+        return metrics;
+    }
+
+    /**
+     * Runs an invalidation once the current transaction is over, if there is
+     * one.
+     *
+     * @param invalidation
+     *            The invalidation
+     */
+    private static void afterCompletion ( final Runnable invalidation ) {
+        if ( TransactionSynchronizationManager.isSynchronizationActive() ) {
+            TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion ( final int status ) {
+                    invalidation.run();
+                }
+            } );
+        }
+    }
+
+    /**
+     * Spring Security erases the password from the UserDetails once a login is
+     * done with it, so never hand out the cached instance itself.
+     *
+     * @param details
+     *            The cached details
+     * @return A copy that is safe to give to Spring Security
+     */
+    private static UserDetails copy ( final UserDetails details ) {
+        return org.springframework.security.core.userdetails.User.withUserDetails( details ).build();
+    }
+
+    /**
+     * A user's details and when they stop being trusted
+     */
+    private static final class CachedDetails {
+
+        /** The user's details */
+        private final UserDetails details;
+
+        /** `System.nanoTime()` after which the details are stale */
+        private final long        expires;
+
+        private CachedDetails ( final UserDetails details, final long expires ) {
+            this.details = details;
+            this.expires = expires;
+        }
+    }
+
+}
@@ -0,0 +1,164 @@
+package edu.ncsu.csc.iTrust2.services.security;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remembers, for a short while, whether each IP address is banned, locked out,
+ * or neither, so that `IPFilter` does not have to query for bans and lockouts
+ * on every request (every script and stylesheet included).
+ *
+ * Decisions expire after `itrust2.ip-cache.ttl-seconds`. Whatever creates or
+ * removes a ban or lockout must call `invalidate` so that the change is seen
+ * right away; the expiry is only a backstop, and bounds how long a lockout can
+ * outlast its hour.
+ *
+ * Every lookup and invalidation takes a stamp from a shared counter, and a
+ * decision is only cached if nothing newer has been recorded for its address.
+ * Invalidating an address leaves a marker stamped after any lookup already
+ * running, so a lookup racing with a new ban can never put a stale "allowed"
+ * back, while every other address keeps its cached decision.
+ */
+@Component
+public class IPAccessCache {
+
+    /**
+     * Whether an IP address may make requests
+     */
+    public enum Access {
+        /** Neither banned nor locked out */
+        ALLOWED,
+        /** Locked out for now */
+        LOCKED,
+        /** Banned */
+        BANNED
+    }
+
+    @Autowired
+    private LoginBanService                 loginBanService;
+
+    @Autowired
+    private LoginLockoutService             loginLockoutService;
+
+    /** How long a decision is trusted for */
+    @Value ( "${itrust2.ip-cache.ttl-seconds:30}" )
+    private long                            ttlSeconds;
+
+    /** Number of addresses remembered before old decisions are cleared out */
+    @Value ( "${itrust2.ip-cache.max-entries:100000}" )
+    private int                             maxEntries;
+
+    /** Cached decisions per IP address */
+    private final Map<String, CachedAccess> decisions = new ConcurrentHashMap<String, CachedAccess>();
+
+    /** Hands out stamps, so that newer decisions can't be overwritten by older ones */
+    private final AtomicLong                stamps    = new AtomicLong();
+
+    /** Stamp of the last time every decision was forgotten */
+    private volatile long                   clearedAt;
+
+    /**
+     * Finds out whether an IP address is banned, locked out, or neither, from
+     * the cache if possible.
+     *
+     * @param ip
+     *            The IP address
+     * @return The access the address currently has
+     */
+    public Access getAccess ( final String ip ) {
+        final long now = System.nanoTime();
+        final CachedAccess cached = decisions.get( ip );
+        if ( null != cached && null != cached.access && now - cached.expires < 0 ) {
+            return cached.access;
+        }
+        final long stamp = stamps.incrementAndGet();
+
+        final Access access;
+        if ( loginBanService.isIPBanned( ip ) ) {
+            access = Access.BANNED;
+        }
+        else if ( loginLockoutService.isIPLocked( ip ) ) {
+            access = Access.LOCKED;
+        }
+        else {
+            access = Access.ALLOWED;
+        }
+
+        if ( decisions.size() >= maxEntries ) {
+            decisions.values().removeIf( c -> now - c.expires >= 0 );
+            if ( decisions.size() >= maxEntries ) {
+                clear();
+            }
+        }
+        if ( stamp > clearedAt ) {
+            final CachedAccess decision = new CachedAccess( access, now + ttlNanos(), stamp );
+            decisions.merge( ip, decision, ( old, mine ) -> old.stamp > mine.stamp ? old : mine );
+        }
+        return access;
+    }
+
+    /**
+     * Forgets the cached decision for an IP address. Call this after banning,
+     * locking out, or clearing either for the address.
+     *
+     * @param ip
+     *            The IP address
+     */
+    public void invalidate ( final String ip ) {
+        /* Kept for as long as a decision would be, which outlasts any lookup already running */
+        decisions.put( ip, new CachedAccess( null, System.nanoTime() + ttlNanos(), stamps.incrementAndGet() ) );
+    }
+
+    /**
+     * Forgets every cached decision.
+     */
+    public void invalidateAll () {
+        clear();
+    }
+
+    /**
+     * Forgets every cached decision, and stops lookups already running from
+     * caching theirs.
+     */
+    private void clear () {
+        clearedAt = stamps.incrementAndGet();
+        decisions.clear();
+    }
+
+    /**
+     * Returns how long a decision is trusted for.
+     *
+     * @return The TTL in nanoseconds
+     */
+    private long ttlNanos () {
+        return TimeUnit.SECONDS.toNanos( ttlSeconds );
+    }
+
+    /**
+     * A decision and when it stops being trusted
+     */
+    private static final class CachedAccess {
+
+        /** The decision, or null if the address has just been invalidated */
+        private final Access access;
+
+        /** `System.nanoTime()` after which the decision is stale */
+        private final long   expires;
+
+        /** When the decision was looked up, relative to other lookups */
+        private final long   stamp;
+
+        private CachedAccess ( final Access access, final long expires, final long stamp ) {
+            this.access = access;
+            this.expires = expires;
+            this.stamp = stamp;
+        }
+    }
+
+}
@@ -1,15 +1,22 @@
 package edu.ncsu.csc.iTrust2.services.security;
 
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import javax.transaction.Transactional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Component;
 
+import edu.ncsu.csc.iTrust2.models.enums.TransactionType;
 import edu.ncsu.csc.iTrust2.models.security.LogEntry;
 import edu.ncsu.csc.iTrust2.repositories.security.LogEntryRepository;
 import edu.ncsu.csc.iTrust2.services.Service;
@@ -18,8 +25,15 @@ import edu.ncsu.csc.iTrust2.services.Service;
 @Transactional
 public class LogEntryService extends Service {
 
+    /** Newest entries first; ties broken by insertion order */
+    private static final Sort                 NEWEST_FIRST = Sort.by( Direction.DESC, "time", "id" );
+
+    /** In-memory equivalent of NEWEST_FIRST */
+    private static final Comparator<LogEntry> NEWER        = Comparator.comparing( LogEntry::getTime )
+            .thenComparing( LogEntry::getId ).reversed();
+
     @Autowired
-    private LogEntryRepository repository;
+    private LogEntryRepository                repository;
 
     @Override
     protected JpaRepository getRepository () {
@@ -32,13 +46,123 @@ public class LogEntryService extends Service {
 
     public List<LogEntry> findByDateRange ( final String user, final ZonedDateTime startDate,
             final ZonedDateTime endDate ) {
+        return repository.findByUserAndTimeBetween( user, startDate, endDate );
+    }
 
-        final List<LogEntry> withinRange = repository.findByTimeBetween( startDate, endDate );
+    /**
+     * Retrieves a single page of log entries for a user, newest first. The
+     * filtering, ordering, and paging are all done by the database, so the
+     * cost depends on the page size rather than the number of entries.
+     *
+     * @param user
+     *            User to find entries for
+     * @param startDate
+     *            Earliest time to include, or null for no lower bound
+     * @param endDate
+     *            Latest time to include, or null for no upper bound
+     * @param codes
+     *            Types of event to include
+     * @param page
+     *            Zero-based page number
+     * @param pageLength
+     *            Number of entries per page
+     * @return The requested page, along with the total number of matches
+     */
+    public Page<LogEntry> findPageForUser ( final String user, final ZonedDateTime startDate,
+            final ZonedDateTime endDate, final Collection<TransactionType> codes, final int page,
+            final int pageLength ) {
+        final PageRequest request = PageRequest.of( page, pageLength, NEWEST_FIRST );
+        if ( null == startDate || null == endDate ) {
+            return repository.findPageByUser( user, codes, request );
+        }
+        return repository.findPageByUserAndTimeBetween( user, startDate, endDate, codes, request );
+    }
 
-        return withinRange.stream()
-                .filter( e -> e.getPrimaryUser().equals( user ) || e.getSecondaryUser().equals( user ) )
-                .collect( Collectors.toList() );
+    /**
+     * Retrieves up to `count` log entries for a user, newest first, starting
+     * just before the given (time, id) position. Unlike paging by offset, the
+     * cost of this does not grow the further back the user goes.
+     *
+     * The user can be either the primary or the secondary user on an entry.
+     * Rather than OR-ing the two together, which keeps the database from using
+     * either index, each side is looked up separately and the two sorted lists
+     * are merged.
+     *
+     * @param user
+     *            User to find entries for
+     * @param startDate
+     *            Earliest time to include
+     * @param beforeTime
+     *            Time of the position to start before
+     * @param beforeId
+     *            ID of the position to start before
+     * @param codes
+     *            Types of event to include
+     * @param count
+     *            Maximum number of entries to return
+     * @return Matching entries, newest first
+     */
+    public List<LogEntry> findBeforeForUser ( final String user, final ZonedDateTime startDate,
+            final ZonedDateTime beforeTime, final Long beforeId, final Collection<TransactionType> codes,
+            final int count ) {
+        final PageRequest request = PageRequest.of( 0, count, NEWEST_FIRST );
+        final List<LogEntry> asPrimary = repository.findByPrimaryUserBefore( user, codes, startDate, beforeTime,
+                beforeId, request );
+        final List<LogEntry> asSecondary = repository.findBySecondaryUserBefore( user, codes, startDate,
+                beforeTime, beforeId, request );
+        return mergeNewestFirst( asPrimary, asSecondary, count );
+    }
+
+    /**
+     * Deletes up to `count` of the oldest log entries from before the cutoff,
+     * in their own transaction. Call this repeatedly to clear out a large
+     * backlog without holding locks on the table for long.
+     *
+     * @param cutoff
+     *            Entries strictly older than this are deleted
+     * @param count
+     *            Maximum number of entries to delete
+     * @return Number of entries deleted
+     */
+    public int deleteChunkBefore ( final ZonedDateTime cutoff, final int count ) {
+        final List<Long> ids = repository.findIdsBefore( cutoff, PageRequest.of( 0, count ) );
+        if ( ids.isEmpty() ) {
+            return 0;
+        }
+        return repository.deleteByIdIn( ids );
+    }
 
+    /**
+     * Merges two lists of entries that are each sorted newest first into a
+     * single list of at most `count` entries, also sorted newest first. An
+     * entry in both lists (a user acting on themselves) is only kept once.
+     *
+     * @param first
+     *            First sorted list
+     * @param second
+     *            Second sorted list
+     * @param count
+     *            Maximum number of entries to return
+     * @return The merged list
+     */
+    private static List<LogEntry> mergeNewestFirst ( final List<LogEntry> first, final List<LogEntry> second,
+            final int count ) {
+        final List<LogEntry> merged = new ArrayList<LogEntry>( Math.min( count, first.size() + second.size() ) );
+        int i = 0;
+        int j = 0;
+        while ( merged.size() < count && ( i < first.size() || j < second.size() ) ) {
+            if ( i < first.size() && j < second.size()
+                    && first.get( i ).getId().equals( second.get( j ).getId() ) ) {
+                j++;
+            }
+            if ( j >= second.size() || ( i < first.size() && NEWER.compare( first.get( i ), second.get( j ) ) <= 0 ) ) {
+                merged.add( first.get( i++ ) );
+            }
+            else {
+                merged.add( second.get( j++ ) );
+            }
+        }
+        return merged;
     }
 
 }
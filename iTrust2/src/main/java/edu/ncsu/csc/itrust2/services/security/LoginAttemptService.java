@@ -1,5 +1,8 @@
 package edu.ncsu.csc.iTrust2.services.security;
 
+import java.time.ZonedDateTime;
+import java.util.List;
+
 import javax.transaction.Transactional;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -7,6 +10,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Component;
 
 import edu.ncsu.csc.iTrust2.models.User;
+import edu.ncsu.csc.iTrust2.models.security.LoginAttempt;
 import edu.ncsu.csc.iTrust2.repositories.security.LoginAttemptRepository;
 import edu.ncsu.csc.iTrust2.services.Service;
 
@@ -38,4 +42,16 @@ public class LoginAttemptService extends Service {
         return repository.deleteByUser( user );
     }
 
+    public long clearUser ( final String username ) {
+        return repository.deleteByUserUsername( username );
+    }
+
+    public int clearBefore ( final ZonedDateTime time ) {
+        return repository.deleteByTimeBefore( time );
+    }
+
+    public List<LoginAttempt> findSince ( final ZonedDateTime time ) {
+        return repository.findByTimeAfter( time );
+    }
+
 }
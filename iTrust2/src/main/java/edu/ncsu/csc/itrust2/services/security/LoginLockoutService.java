@@ -1,7 +1,7 @@
 package edu.ncsu.csc.iTrust2.services.security;
 
 import java.time.ZonedDateTime;
-import java.util.stream.Collectors;
+import java.util.List;
 
 import javax.transaction.Transactional;
 
@@ -10,6 +10,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Component;
 
 import edu.ncsu.csc.iTrust2.models.User;
+import edu.ncsu.csc.iTrust2.models.security.LoginLockout;
 import edu.ncsu.csc.iTrust2.repositories.security.LoginLockoutRepository;
 import edu.ncsu.csc.iTrust2.services.Service;
 
@@ -17,6 +18,12 @@ import edu.ncsu.csc.iTrust2.services.Service;
 @Transactional
 public class LoginLockoutService extends Service {
 
+    /** How long a lockout lasts */
+    public static final long       LOCKOUT_MINUTES    = 60;
+
+    /** How far back lockouts are counted towards a ban */
+    public static final long       BAN_WINDOW_MINUTES = 1440;
+
     @Autowired
     private LoginLockoutRepository repository;
 
@@ -26,11 +33,8 @@ public class LoginLockoutService extends Service {
     }
 
     public boolean isIPLocked ( final String ipAddress ) {
-        final long now = ZonedDateTime.now().toEpochSecond();
-
-        return repository.findByIp( ipAddress ).stream().filter( e -> ( now - e.getTime().toEpochSecond() ) < 60 * 60 )
-                .collect( Collectors.toList() ).size() > 0; // locked if within
-                                                            // 60 minutes
+        // locked if within 60 minutes
+        return repository.existsByIpAndTimeAfter( ipAddress, ZonedDateTime.now().minusMinutes( LOCKOUT_MINUTES ) );
     }
 
     public long clearIP ( final String ipAddress ) {
@@ -39,16 +43,12 @@ public class LoginLockoutService extends Service {
     }
 
     public int getRecentIPLockouts ( final String ipAddress ) {
-        final long now = ZonedDateTime.now().toEpochSecond();
-        return repository.findByIp( ipAddress ).stream()
-                .filter( e -> ( now - e.getTime().toEpochSecond() ) < 1440 * 60 ).collect( Collectors.toList() ).size(); // 1440
-                                                                                                                         // minutes
+        return (int) repository.countByIpAndTimeAfter( ipAddress,
+                ZonedDateTime.now().minusMinutes( BAN_WINDOW_MINUTES ) );
     }
 
     public int getRecentUserLockouts ( final User user ) {
-        final long now = ZonedDateTime.now().toEpochSecond();
-        return repository.findByUser( user ).stream().filter( e -> ( now - e.getTime().toEpochSecond() ) < 1440 * 60 )
-                .collect( Collectors.toList() ).size(); // 1440 minutes
+        return (int) repository.countByUserAndTimeAfter( user, ZonedDateTime.now().minusMinutes( BAN_WINDOW_MINUTES ) );
     }
 
     public long clearUser ( final User user ) {
@@ -56,10 +56,22 @@ public class LoginLockoutService extends Service {
     }
 
     public boolean isUserLocked ( final User user ) {
-        final long now = ZonedDateTime.now().toEpochSecond();
-        return repository.findByUser( user ).stream().filter( e -> ( now - e.getTime().toEpochSecond() ) < 60 * 60 )
-                .collect( Collectors.toList() ).size() > 0; // locked if within
-                                                            // 60 minutes
+        // locked if within 60 minutes
+        return repository.existsByUserAndTimeAfter( user, ZonedDateTime.now().minusMinutes( LOCKOUT_MINUTES ) );
+    }
+
+    /**
+     * Deletes lockouts that are too old to lock anyone out or count towards a
+     * ban.
+     *
+     * @return The number of records deleted
+     */
+    public int clearExpired () {
+        return repository.deleteByTimeBefore( ZonedDateTime.now().minusMinutes( BAN_WINDOW_MINUTES ) );
+    }
+
+    public List<LoginLockout> findSince ( final ZonedDateTime time ) {
+        return repository.findByTimeAfter( time );
     }
 
 }
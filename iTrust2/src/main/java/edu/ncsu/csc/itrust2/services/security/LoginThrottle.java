@@ -0,0 +1,353 @@
+package edu.ncsu.csc.iTrust2.services.security;
+
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import edu.ncsu.csc.iTrust2.models.User;
+import edu.ncsu.csc.iTrust2.models.security.LoginAttempt;
+import edu.ncsu.csc.iTrust2.models.security.LoginLockout;
+import edu.ncsu.csc.iTrust2.utils.SlidingWindowCounter;
+
+/**
+ * Keeps track of recent failed logins and lockouts, per IP address and per
+ * user, so that `FailureHandler` can decide whether to lock out or ban without
+ * going to the database. Counts live in lock-free sliding-window counters held
+ * in concurrent maps.
+ *
+ * The LoginAttempt table is kept up to date for durability, but the inserts and
+ * deletes are handed to a single background thread, in order, so a burst of
+ * failed logins becomes a steady trickle of writes rather than one write per
+ * request. If that thread falls too far behind, further writes are dropped
+ * (and counted); the in-memory counts are what the decisions are made on. On
+ * startup the counts are rebuilt from the LoginAttempt and LoginLockout
+ * tables.
+ *
+ * Lockouts are only counted here; recording the LoginLockout itself is left
+ * to the caller, as other parts of the application check for it.
+ */
+@Component
+public class LoginThrottle {
+
+    /** Number of buckets each sliding window is split into */
+    private static final int                        BUCKETS       = 48;
+
+    @Autowired
+    private LoginAttemptService                     loginAttemptService;
+
+    @Autowired
+    private LoginLockoutService                     loginLockoutService;
+
+    /** How far back failed logins are counted */
+    @Value ( "${itrust2.login.attempt-window-minutes:1440}" )
+    private long                                    attemptWindowMinutes;
+
+    /** Maximum number of writes waiting for the background thread */
+    @Value ( "${itrust2.login.write-queue-capacity:10000}" )
+    private int                                     writeQueueCapacity;
+
+    /** Failed logins per IP address */
+    private final Map<String, SlidingWindowCounter> ipFailures    = new ConcurrentHashMap<String, SlidingWindowCounter>();
+
+    /** Failed logins per username */
+    private final Map<String, SlidingWindowCounter> userFailures  = new ConcurrentHashMap<String, SlidingWindowCounter>();
+
+    /** Lockouts per IP address */
+    private final Map<String, SlidingWindowCounter> ipLockouts    = new ConcurrentHashMap<String, SlidingWindowCounter>();
+
+    /** Lockouts per username */
+    private final Map<String, SlidingWindowCounter> userLockouts  = new ConcurrentHashMap<String, SlidingWindowCounter>();
+
+    /** Writes that were dropped because the background thread was behind */
+    private final AtomicLong                        droppedWrites = new AtomicLong();
+
+    /** Runs the writes to the LoginAttempt table, one at a time and in order */
+    private ThreadPoolExecutor                      writer;
+
+    /**
+     * Starts the background writer and loads recent history from the
+     * database.
+     */
+    @PostConstruct
+    public void start () {
+        writer = new ThreadPoolExecutor( 1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>( writeQueueCapacity ), r -> {
+                    final Thread t = new Thread( r, "login-attempt-writer" );
+                    t.setDaemon( true );
+                    return t;
+                }, ( r, executor ) -> droppedWrites.incrementAndGet() );
+        rebuild();
+    }
+
+    /**
+     * Finishes any writes that are still waiting and stops the writer.
+     */
+    @PreDestroy
+    public void stop () {
+        writer.shutdown();
+        try {
+            writer.awaitTermination( 5, TimeUnit.SECONDS );
+        }
+        catch ( final InterruptedException ie ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Throws away the in-memory counts and reloads them from the LoginAttempt
+     * and LoginLockout tables.
+     */
+    public void rebuild () {
+        ipFailures.clear();
+        userFailures.clear();
+        ipLockouts.clear();
+        userLockouts.clear();
+
+        final ZonedDateTime now = ZonedDateTime.now();
+        for ( final LoginAttempt attempt : loginAttemptService
+                .findSince( now.minusMinutes( attemptWindowMinutes ) ) ) {
+            final long time = attempt.getTime().toInstant().toEpochMilli();
+            if ( null != attempt.getIp() ) {
+                failures( ipFailures, attempt.getIp() ).add( time );
+            }
+            if ( null != attempt.getUser() ) {
+                failures( userFailures, attempt.getUser().getUsername() ).add( time );
+            }
+        }
+        for ( final LoginLockout lockout : loginLockoutService
+                .findSince( now.minusMinutes( LoginLockoutService.BAN_WINDOW_MINUTES ) ) ) {
+            final long time = lockout.getTime().toInstant().toEpochMilli();
+            if ( null != lockout.getIp() ) {
+                lockouts( ipLockouts, lockout.getIp() ).add( time );
+            }
+            if ( null != lockout.getUser() ) {
+                lockouts( userLockouts, lockout.getUser().getUsername() ).add( time );
+            }
+        }
+    }
+
+    /**
+     * Returns the number of recent failed logins from an IP address.
+     *
+     * @param ip
+     *            The IP address
+     * @return Recent failures
+     */
+    public long countIPFailures ( final String ip ) {
+        return count( ipFailures, ip );
+    }
+
+    /**
+     * Records a failed login from an IP address.
+     *
+     * @param ip
+     *            The IP address
+     */
+    public void recordIPFailure ( final String ip ) {
+        final ZonedDateTime now = ZonedDateTime.now();
+        failures( ipFailures, ip ).add( now.toInstant().toEpochMilli() );
+
+        final LoginAttempt attempt = new LoginAttempt();
+        attempt.setTime( now );
+        attempt.setIp( ip );
+        writer.execute( () -> loginAttemptService.save( attempt ) );
+    }
+
+    /**
+     * Forgets the failed logins from an IP address.
+     *
+     * @param ip
+     *            The IP address
+     */
+    public void clearIPFailures ( final String ip ) {
+        ipFailures.remove( ip );
+        writer.execute( () -> loginAttemptService.clearIP( ip ) );
+    }
+
+    /**
+     * Returns the number of recent failed logins for a user.
+     *
+     * @param user
+     *            The user
+     * @return Recent failures
+     */
+    public long countUserFailures ( final User user ) {
+        return count( userFailures, user.getUsername() );
+    }
+
+    /**
+     * Records a failed login for a user.
+     *
+     * @param user
+     *            The user
+     */
+    public void recordUserFailure ( final User user ) {
+        final ZonedDateTime now = ZonedDateTime.now();
+        failures( userFailures, user.getUsername() ).add( now.toInstant().toEpochMilli() );
+
+        final LoginAttempt attempt = new LoginAttempt();
+        attempt.setTime( now );
+        attempt.setUser( user );
+        writer.execute( () -> loginAttemptService.save( attempt ) );
+    }
+
+    /**
+     * Forgets the failed logins for a user.
+     *
+     * @param username
+     *            Name of the user
+     */
+    public void clearUserFailures ( final String username ) {
+        if ( null == username ) {
+            return;
+        }
+        userFailures.remove( username );
+        writer.execute( () -> loginAttemptService.clearUser( username ) );
+    }
+
+    /**
+     * Returns the number of lockouts of an IP address in the last day.
+     *
+     * @param ip
+     *            The IP address
+     * @return Recent lockouts
+     */
+    public long countIPLockouts ( final String ip ) {
+        return count( ipLockouts, ip );
+    }
+
+    /**
+     * Counts a lockout of an IP address.
+     *
+     * @param ip
+     *            The IP address
+     */
+    public void recordIPLockout ( final String ip ) {
+        lockouts( ipLockouts, ip ).add( System.currentTimeMillis() );
+    }
+
+    /**
+     * Forgets the lockouts of an IP address.
+     *
+     * @param ip
+     *            The IP address
+     */
+    public void clearIPLockouts ( final String ip ) {
+        ipLockouts.remove( ip );
+    }
+
+    /**
+     * Returns the number of lockouts of a user in the last day.
+     *
+     * @param user
+     *            The user
+     * @return Recent lockouts
+     */
+    public long countUserLockouts ( final User user ) {
+        return count( userLockouts, user.getUsername() );
+    }
+
+    /**
+     * Counts a lockout of a user.
+     *
+     * @param user
+     *            The user
+     */
+    public void recordUserLockout ( final User user ) {
+        lockouts( userLockouts, user.getUsername() ).add( System.currentTimeMillis() );
+    }
+
+    /**
+     * Forgets the lockouts of a user.
+     *
+     * @param user
+     *            The user
+     */
+    public void clearUserLockouts ( final User user ) {
+        userLockouts.remove( user.getUsername() );
+    }
+
+    /**
+     * Waits for every write handed to the background thread so far to finish.
+     *
+     * @throws InterruptedException
+     *             If interrupted while waiting
+     */
+    public void flush () throws InterruptedException {
+        try {
+            writer.submit( () -> {
+            } ).get( 10, TimeUnit.SECONDS );
+        }
+        catch ( final ExecutionException | TimeoutException e ) {
+            throw new IllegalStateException( "Login attempt writer is not keeping up", e );
+        }
+    }
+
+    /**
+     * Returns the number of writes that have been dropped because the
+     * background thread fell too far behind.
+     *
+     * @return Dropped writes since startup
+     */
+    public long getDroppedWrites () {
+        return droppedWrites.get();
+    }
+
+    /**
+     * Stops tracking IP addresses and users with nothing left in their
+     * windows, so that a burst from many addresses doesn't stay in memory.
+     */
+    @Scheduled ( fixedDelayString = "${itrust2.login.evict-interval-ms:300000}" )
+    public void evictIdle () {
+        final long now = System.currentTimeMillis();
+        ipFailures.values().removeIf( c -> 0 == c.count( now ) );
+        userFailures.values().removeIf( c -> 0 == c.count( now ) );
+        ipLockouts.values().removeIf( c -> 0 == c.count( now ) );
+        userLockouts.values().removeIf( c -> 0 == c.count( now ) );
+    }
+
+    /**
+     * Deletes LoginAttempts and LoginLockouts that have aged out of their
+     * windows and no longer count for anything. The attempts are deleted on the
+     * background writer so that they stay in order with everything else
+     * written there.
+     */
+    @Scheduled ( cron = "${itrust2.login.purge-cron:0 15 * * * *}" )
+    public void purgeExpired () {
+        final ZonedDateTime cutoff = ZonedDateTime.now().minusMinutes( attemptWindowMinutes );
+        writer.execute( () -> loginAttemptService.clearBefore( cutoff ) );
+        loginLockoutService.clearExpired();
+    }
+
+    private static long count ( final Map<String, SlidingWindowCounter> counters, final String key ) {
+        final SlidingWindowCounter counter = counters.get( key );
+        return null == counter ? 0 : counter.count( System.currentTimeMillis() );
+    }
+
+    private SlidingWindowCounter failures ( final Map<String, SlidingWindowCounter> counters, final String key ) {
+        return counters.computeIfAbsent( key,
+                k -> new SlidingWindowCounter( TimeUnit.MINUTES.toMillis( attemptWindowMinutes ), BUCKETS ) );
+    }
+
+    private static SlidingWindowCounter lockouts ( final Map<String, SlidingWindowCounter> counters,
+            final String key ) {
+        return counters.computeIfAbsent( key,
+                k -> new SlidingWindowCounter( TimeUnit.MINUTES.toMillis( LoginLockoutService.BAN_WINDOW_MINUTES ),
+                        BUCKETS ) );
+    }
+
+}
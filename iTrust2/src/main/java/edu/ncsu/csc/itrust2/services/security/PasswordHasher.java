@@ -0,0 +1,204 @@
+package edu.ncsu.csc.iTrust2.services.security;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import edu.ncsu.csc.iTrust2.utils.MetricSource;
+
+/**
+ * Hashes and checks passwords with BCrypt on a small, dedicated pool of
+ * threads. BCrypt is deliberately slow, and running it directly on request
+ * threads lets a flood of logins take every core on the machine; here at most
+ * `itrust2.password.threads` hashes run at once, up to `queue-capacity` more
+ * wait their turn, and anything past that is turned away straight away.
+ *
+ * The cost factor is set with `itrust2.password.cost`. Passwords stored with
+ * a different cost are re-hashed the next time their owner logs in (Spring
+ * Security asks `upgradeEncoding`, then saves the new hash through
+ * `CachedUserDetailsService`).
+ */
+@Component
+public class PasswordHasher implements PasswordEncoder, MetricSource {
+
+    /** Pulls the cost factor out of a BCrypt hash */
+    private static final Pattern  COST     = Pattern.compile( "^\\$2[abyx]?\\$(\\d\\d)\\$" );
+
+    /** BCrypt cost factor for new hashes */
+    @Value ( "${itrust2.password.cost:10}" )
+    private int                   cost;
+
+    /** Most hashes computed at once */
+    @Value ( "${itrust2.password.threads:0}" )
+    private int                   threads;
+
+    /** Most hashes waiting to be computed */
+    @Value ( "${itrust2.password.queue-capacity:100}" )
+    private int                   queueCapacity;
+
+    /** Longest a caller waits for its hash, queueing included */
+    @Value ( "${itrust2.password.timeout-ms:10000}" )
+    private long                  timeoutMs;
+
+    /** Does the actual hashing */
+    private BCryptPasswordEncoder bcrypt;
+
+    /** Runs the hashing */
+    private ThreadPoolExecutor    executor;
+
+    /** Hashes computed or checked */
+    private final AtomicLong      operations = new AtomicLong();
+
+    /** Time spent hashing, not counting time in the queue */
+    private final AtomicLong      hashNanos  = new AtomicLong();
+
+    /** Slowest single hash */
+    private final AtomicLong      maxNanos   = new AtomicLong();
+
+    /** Requests turned away because the queue was full */
+    private final AtomicLong      rejected   = new AtomicLong();
+
+    /** Passwords re-hashed because their cost was out of date */
+    private final AtomicInteger   upgrades   = new AtomicInteger();
+
+    /**
+     * Starts the hashing threads.
+     */
+    @PostConstruct
+    public void start () {
+        final int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        bcrypt = new BCryptPasswordEncoder( cost );
+        final AtomicInteger count = new AtomicInteger();
+        executor = new ThreadPoolExecutor( poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>( queueCapacity ), r -> {
+                    final Thread t = new Thread( r, "password-hasher-" + count.incrementAndGet() );
+                    t.setDaemon( true );
+                    return t;
+                } );
+    }
+
+    /**
+     * Stops the hashing threads.
+     */
+    @PreDestroy
+    public void stop () {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String encode ( final CharSequence rawPassword ) {
+        return run( () -> bcrypt.encode( rawPassword ) );
+    }
+
+    @Override
+    public boolean matches ( final CharSequence rawPassword, final String encodedPassword ) {
+        return run( () -> bcrypt.matches( rawPassword, encodedPassword ) );
+    }
+
+    /**
+     * Asks for a password to be re-hashed whenever it was hashed with a
+     * different cost than the current one, in either direction.
+     */
+    @Override
+    public boolean upgradeEncoding ( final String encodedPassword ) {
+        if ( null == encodedPassword ) {
+            return false;
+        }
+        final Matcher m = COST.matcher( encodedPassword );
+        final boolean outdated = m.find() && Integer.parseInt( m.group( 1 ) ) != cost;
+        if ( outdated ) {
+            upgrades.incrementAndGet();
+        }
+        return outdated;
+    }
+
+    @Override
+    public String getMetricName () {
+        return "passwordHasher";
+    }
+
+    @Override
+    public Map<String, Number> getMetrics () {
+        final long ops = operations.get();
+        final Map<String, Number> metrics = new HashMap<String, Number>();
+        metrics.put( "cost", cost );
+        metrics.put( "threads", executor.getMaximumPoolSize() );
+        metrics.put( "active", executor.getActiveCount() );
+        metrics.put( "queueDepth", executor.getQueue().size() );
+        metrics.put( "operations", ops );
+        metrics.put( "rejected", rejected.get() );
+        metrics.put( "upgrades", upgrades.get() );
+        metrics.put( "meanHashMillis", 0 == ops ? 0 : hashNanos.get() / ops / 1_000_000.0 );
+        metrics.put( "maxHashMillis", maxNanos.get() / 1_000_000.0 );
+        return metrics;
+    }
+
+    /**
+     * Runs a hashing task on the pool and waits for its result.
+     *
+     * @param task
+     *            The hashing to do
+     * @return Its result
+     */
+    private <T> T run ( final Callable<T> task ) {
+        final Future<T> future;
+        try {
+            future = executor.submit( () -> {
+                final long start = System.nanoTime();
+                try {
+                    return task.call();
+                }
+                finally {
+                    final long elapsed = System.nanoTime() - start;
+                    operations.incrementAndGet();
+                    hashNanos.addAndGet( elapsed );
+                    maxNanos.accumulateAndGet( elapsed, Math::max );
+                }
+            } );
+        }
+        catch ( final RejectedExecutionException ree ) {
+            rejected.incrementAndGet();
+            throw new AuthenticationServiceException( "Too many logins in progress; please try again" );
+        }
+
+        try {
+            return future.get( timeoutMs, TimeUnit.MILLISECONDS );
+        }
+        catch ( final InterruptedException ie ) {
+            future.cancel( true );
+            Thread.currentThread().interrupt();
+            throw new AuthenticationServiceException( "Interrupted while checking password", ie );
+        }
+        catch ( final TimeoutException te ) {
+            future.cancel( true );
+            throw new AuthenticationServiceException( "Timed out checking password", te );
+        }
+        catch ( final ExecutionException ee ) {
+            if ( ee.getCause() instanceof RuntimeException ) {
+                throw (RuntimeException) ee.getCause();
+            }
+            throw new IllegalStateException( ee.getCause() );
+        }
+    }
+
+}
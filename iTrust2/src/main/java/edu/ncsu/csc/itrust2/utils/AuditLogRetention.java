@@ -0,0 +1,212 @@
+package edu.ncsu.csc.iTrust2.utils;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import edu.ncsu.csc.iTrust2.services.security.LogEntryService;
+
+/**
+ * Removes audit log entries once they are older than the retention period.
+ * Runs on the schedule given by `itrust2.audit.retention.cron`, and only if
+ * `itrust2.audit.retention.enabled` is set.
+ *
+ * If the `log_entry` table has been converted to the monthly partitioned
+ * layout in `sql/log_entry_partitioned.sql` (and `partitioned` is set), whole
+ * months are removed by dropping their partition, which is nearly free no
+ * matter how many rows it holds, and partitions for the coming months are
+ * created ahead of time. Otherwise entries are deleted a chunk at a time, each
+ * chunk in its own transaction, so that the table is never locked for long.
+ * That is also what happens if `partitioned` is set but the table turns out
+ * not to have been converted, so entries are never left to pile up.
+ */
+@Component
+public class AuditLogRetention {
+
+    /** Name of the audit log table */
+    private static final String            TABLE          = "log_entry";
+
+    /** Name of the catch-all partition at the end of the table */
+    private static final String            MAX_PARTITION  = "pmax";
+
+    /** Partitions are named for the month they hold, ie p202610 */
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern( "'p'yyyyMM" );
+
+    @Autowired
+    private LogEntryService                service;
+
+    @Autowired
+    private JdbcTemplate                   jdbc;
+
+    /** Whether old entries are removed at all */
+    @Value ( "${itrust2.audit.retention.enabled:false}" )
+    private boolean                        enabled;
+
+    /** How long entries are kept for */
+    @Value ( "${itrust2.audit.retention.days:2555}" )
+    private int                            retentionDays;
+
+    /** Whether the table uses the partitioned layout */
+    @Value ( "${itrust2.audit.retention.partitioned:false}" )
+    private boolean                        partitioned;
+
+    /** How many months of empty partitions to keep ready */
+    @Value ( "${itrust2.audit.retention.months-ahead:3}" )
+    private int                            monthsAhead;
+
+    /** Maximum number of entries removed per transaction */
+    @Value ( "${itrust2.audit.retention.delete-chunk-size:1000}" )
+    private int                            chunkSize;
+
+    /**
+     * Scheduled entry point; removes everything older than the retention
+     * period.
+     */
+    @Scheduled ( cron = "${itrust2.audit.retention.cron:0 30 3 * * *}" )
+    public void run () {
+        if ( !enabled ) {
+            return;
+        }
+        final ZonedDateTime cutoff = ZonedDateTime.now().minusDays( retentionDays );
+        if ( partitioned && isPartitioned() ) {
+            dropPartitionsBefore( cutoff );
+            createUpcomingPartitions( LocalDate.now() );
+        }
+        else {
+            deleteBefore( cutoff );
+        }
+    }
+
+    /**
+     * Deletes all log entries strictly older than the cutoff, in chunks.
+     *
+     * @param cutoff
+     *            Entries older than this are deleted
+     * @return Number of entries deleted
+     */
+    public long deleteBefore ( final ZonedDateTime cutoff ) {
+        long total = 0;
+        int deleted;
+        do {
+            deleted = service.deleteChunkBefore( cutoff, chunkSize );
+            total += deleted;
+        }
+        while ( deleted > 0 );
+        return total;
+    }
+
+    /**
+     * Drops every partition that only holds entries older than the cutoff.
+     *
+     * @param cutoff
+     *            Partitions entirely before this are dropped
+     * @return Names of the partitions that were dropped
+     */
+    public Set<String> dropPartitionsBefore ( final ZonedDateTime cutoff ) {
+        final Set<String> dropped = new HashSet<String>();
+        final List<Map<String, Object>> partitions = partitions();
+        if ( partitions.isEmpty() ) {
+            return dropped;
+        }
+        final long cutoffDays = jdbc.queryForObject( "SELECT TO_DAYS(?)", Long.class,
+                cutoff.toLocalDate().toString() );
+        for ( final Map<String, Object> partition : partitions ) {
+            final String name = (String) partition.get( "PARTITION_NAME" );
+            final String bound = (String) partition.get( "PARTITION_DESCRIPTION" );
+            // Every entry in a partition is strictly below its bound
+            if ( !MAX_PARTITION.equals( name ) && Long.parseLong( bound ) <= cutoffDays ) {
+                jdbc.execute( "ALTER TABLE " + TABLE + " DROP PARTITION " + name );
+                dropped.add( name );
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * Makes sure there is a partition for this month and each of the next
+     * `months-ahead` months, by splitting them off the front of the catch-all
+     * partition. Months at or before the latest existing partition are left
+     * alone, as ranges can only be added to the end of the table. Does
+     * nothing if the table hasn't been converted to the partitioned layout.
+     *
+     * @param today
+     *            The current date
+     * @return Names of the partitions that were created
+     */
+    public Set<String> createUpcomingPartitions ( final LocalDate today ) {
+        final Set<String> created = new HashSet<String>();
+        String latest = "";
+        boolean hasMax = false;
+        for ( final Map<String, Object> partition : partitions() ) {
+            final String name = (String) partition.get( "PARTITION_NAME" );
+            if ( MAX_PARTITION.equals( name ) ) {
+                hasMax = true;
+            }
+            else if ( name.compareTo( latest ) > 0 ) {
+                latest = name;
+            }
+        }
+        if ( !hasMax ) {
+            return created;
+        }
+        final LocalDate thisMonth = today.withDayOfMonth( 1 );
+        for ( int i = 0; i <= monthsAhead; i++ ) {
+            final LocalDate month = thisMonth.plusMonths( i );
+            final String name = PARTITION_NAME.format( month );
+            if ( name.compareTo( latest ) <= 0 ) {
+                continue;
+            }
+            jdbc.execute( "ALTER TABLE " + TABLE + " REORGANIZE PARTITION " + MAX_PARTITION + " INTO ( PARTITION "
+                    + name + " VALUES LESS THAN ( TO_DAYS( '" + month.plusMonths( 1 ) + "' ) ), PARTITION "
+                    + MAX_PARTITION + " VALUES LESS THAN MAXVALUE )" );
+            created.add( name );
+            latest = name;
+        }
+        return created;
+    }
+
+    /**
+     * Checks whether the audit log table has been converted to the monthly
+     * partitioned layout, ie has the catch-all partition at its end.
+     *
+     * @return Whether the table is partitioned
+     */
+    public boolean isPartitioned () {
+        for ( final Map<String, Object> partition : partitions() ) {
+            if ( MAX_PARTITION.equals( partition.get( "PARTITION_NAME" ) ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lists the partitions of the audit log table, oldest first. A table that
+     * isn't partitioned, or a database without partitioning (ie H2), has none.
+     *
+     * @return Name and upper bound of each partition
+     */
+    private List<Map<String, Object>> partitions () {
+        try {
+            return jdbc.queryForList( "SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS "
+                    + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL "
+                    + "ORDER BY PARTITION_ORDINAL_POSITION", TABLE );
+        }
+        catch ( final DataAccessException e ) {
+            return Collections.emptyList();
+        }
+    }
+
+}
@@ -0,0 +1,312 @@
+package edu.ncsu.csc.iTrust2.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import edu.ncsu.csc.iTrust2.models.security.LogEntry;
+import edu.ncsu.csc.iTrust2.services.security.LogEntryService;
+
+/**
+ * Writes LogEntries to the database on behalf of `LoggerUtil`. Rather than
+ * saving (and flushing) every entry inside of the request that created it,
+ * entries are placed on a bounded in-memory queue that a single background
+ * thread drains, writing up to `batch-size` entries at a time in one
+ * transaction so that Hibernate can send them as a JDBC batch.
+ *
+ * If the queue is full, callers wait up to `offer-timeout-ms` for space to free
+ * up and, failing that, write their entry synchronously. Audit records are
+ * therefore never dropped; a burst just degrades back to the old behaviour. On
+ * shutdown, anything still queued is written out if `flush-on-shutdown` is set.
+ *
+ * Setting `itrust2.audit.async` to false bypasses the queue entirely.
+ * `flush()` writes out everything queued so far, for callers (ie, tests) that
+ * need to read the log straight after writing to it.
+ *
+ * Entries written and entries that couldn't be written at all are reported
+ * under `auditLog` at `GET /api/v1/metrics`.
+ */
+@Component
+public class AuditLogWriter implements MetricSource {
+
+    @Autowired
+    private LogEntryService         service;
+
+    /** Whether entries are written in the background */
+    @Value ( "${itrust2.audit.async:true}" )
+    private boolean                 async;
+
+    /** Maximum number of entries waiting to be written */
+    @Value ( "${itrust2.audit.queue-capacity:10000}" )
+    private int                     queueCapacity;
+
+    /** Maximum number of entries written in a single transaction */
+    @Value ( "${itrust2.audit.batch-size:100}" )
+    private int                     batchSize;
+
+    /** How long the writer waits to fill up a batch before writing it */
+    @Value ( "${itrust2.audit.flush-interval-ms:100}" )
+    private long                    flushIntervalMs;
+
+    /** How long a caller waits for room on a full queue */
+    @Value ( "${itrust2.audit.offer-timeout-ms:50}" )
+    private long                    offerTimeoutMs;
+
+    /** Whether queued entries are written out when the application stops */
+    @Value ( "${itrust2.audit.flush-on-shutdown:true}" )
+    private boolean                 flushOnShutdown;
+
+    /** Entries waiting to be written */
+    private BlockingQueue<LogEntry> queue;
+
+    /** Background thread draining the queue */
+    private Thread                  worker;
+
+    /** Cleared to tell the worker to stop */
+    private volatile boolean        running;
+
+    /**
+     * Held by whoever is taking entries off the queue, until they have been
+     * written; fair, so that `flush()` isn't starved by the worker's loop
+     */
+    private final ReentrantLock     draining = new ReentrantLock( true );
+
+    /** Entries written by the worker or by `flush()` */
+    private final AtomicLong        written  = new AtomicLong();
+
+    /** Entries that couldn't be written, even on their own */
+    private final AtomicLong        failed   = new AtomicLong();
+
+    /**
+     * Creates the queue and starts the background writer, if enabled.
+     */
+    @PostConstruct
+    public void start () {
+        if ( !async ) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<LogEntry>( queueCapacity );
+        running = true;
+        worker = new Thread( this::drain, "audit-log-writer" );
+        worker.setDaemon( true );
+        worker.start();
+    }
+
+    /**
+     * Stops the background writer and, if configured to do so, writes out
+     * anything that is still waiting in the queue.
+     */
+    @PreDestroy
+    public void stop () {
+        if ( !async ) {
+            return;
+        }
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join( TimeUnit.SECONDS.toMillis( 5 ) );
+        }
+        catch ( final InterruptedException ie ) {
+            Thread.currentThread().interrupt();
+        }
+        if ( flushOnShutdown ) {
+            flush();
+        }
+    }
+
+    /**
+     * Queues a LogEntry to be written. If asynchronous writing is disabled or
+     * the queue stays full, the entry is written before this method returns.
+     *
+     * @param entry
+     *            The LogEntry to write
+     */
+    public void write ( final LogEntry entry ) {
+        if ( async ) {
+            try {
+                if ( queue.offer( entry, offerTimeoutMs, TimeUnit.MILLISECONDS ) ) {
+                    return;
+                }
+            }
+            catch ( final InterruptedException ie ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        service.save( entry );
+    }
+
+    /**
+     * Queues several LogEntries to be written. Entries that can't be queued
+     * are written before this method returns, all in one transaction, so they
+     * go out as JDBC batches rather than a statement and flush apiece. They are
+     * written in chunks, so a large list doesn't pile up in memory.
+     *
+     * @param entries
+     *            The LogEntries to write
+     */
+    public void writeAll ( final Collection<LogEntry> entries ) {
+        final List<LogEntry> unqueued = new ArrayList<LogEntry>();
+        for ( final LogEntry entry : entries ) {
+            if ( !async || !unqueued.isEmpty() ) {
+                unqueued.add( entry );
+                continue;
+            }
+            try {
+                if ( !queue.offer( entry, offerTimeoutMs, TimeUnit.MILLISECONDS ) ) {
+                    unqueued.add( entry );
+                }
+            }
+            catch ( final InterruptedException ie ) {
+                Thread.currentThread().interrupt();
+                unqueued.add( entry );
+            }
+        }
+        if ( !unqueued.isEmpty() ) {
+            service.saveInChunks( unqueued );
+        }
+    }
+
+    /**
+     * Writes everything that is currently queued on the calling thread. Once
+     * this returns, every entry queued before it was called has been written,
+     * including any the background writer had already taken off the queue.
+     */
+    public void flush () {
+        if ( !async ) {
+            return;
+        }
+        draining.lock();
+        try {
+            final List<LogEntry> batch = new ArrayList<LogEntry>( batchSize );
+            while ( queue.drainTo( batch, batchSize ) > 0 ) {
+                persist( batch );
+                batch.clear();
+            }
+        }
+        finally {
+            draining.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of entries waiting to be written.
+     *
+     * @return Current queue depth
+     */
+    public int pending () {
+        return async ? queue.size() : 0;
+    }
+
+    @Override
+    public String getMetricName () {
+        return "auditLog";
+    }
+
+    @Override
+    public Map<String, Number> getMetrics () {
+        final Map<String, Number> metrics = new HashMap<String, Number>();
+        metrics.put( "pending", pending() );
+        metrics.put( "written", written.get() );
+        metrics.put( "failed", failed.get() );
+        return metrics;
+    }
+
+    /**
+     * Main loop of the background writer. Collects a batch of entries and
+     * writes them all at once, holding `draining` throughout so that `flush()`
+     * can wait for a batch that has been taken off the queue to be written.
+     */
+    private void drain () {
+        final List<LogEntry> batch = new ArrayList<LogEntry>( batchSize );
+        while ( running ) {
+            draining.lock();
+            try {
+                try {
+                    collect( batch );
+                }
+                catch ( final InterruptedException ie ) {
+                    // Woken up by stop(); write what we have and exit the loop
+                }
+                if ( !batch.isEmpty() ) {
+                    persist( batch );
+                    batch.clear();
+                }
+            }
+            finally {
+                draining.unlock();
+            }
+        }
+    }
+
+    /**
+     * Waits for an entry, then keeps collecting more until either the batch
+     * is full or the flush interval has passed.
+     *
+     * @param batch
+     *            Where to put the entries; left empty if none arrive
+     * @throws InterruptedException
+     *             If the writer is being stopped
+     */
+    private void collect ( final List<LogEntry> batch ) throws InterruptedException {
+        final LogEntry first = queue.poll( flushIntervalMs, TimeUnit.MILLISECONDS );
+        if ( null == first ) {
+            return;
+        }
+        batch.add( first );
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( flushIntervalMs );
+        while ( batch.size() < batchSize ) {
+            queue.drainTo( batch, batchSize - batch.size() );
+            final long remaining = deadline - System.nanoTime();
+            if ( batch.size() >= batchSize || remaining <= 0 ) {
+                break;
+            }
+            final LogEntry next = queue.poll( remaining, TimeUnit.NANOSECONDS );
+            if ( null == next ) {
+                break;
+            }
+            batch.add( next );
+        }
+    }
+
+    /**
+     * Writes a batch of entries in a single transaction. If that fails, falls
+     * back to writing them one at a time so that one bad entry cannot take the
+     * rest of the batch down with it. Entries that still can't be written are
+     * counted as failed.
+     *
+     * @param batch
+     *            The entries to write
+     */
+    private void persist ( final List<LogEntry> batch ) {
+        try {
+            service.saveInChunks( batch );
+            written.addAndGet( batch.size() );
+        }
+        catch ( final Exception e ) {
+            for ( final LogEntry entry : batch ) {
+                try {
+                    service.save( entry );
+                    written.incrementAndGet();
+                }
+                catch ( final Exception ex ) {
+                    failed.incrementAndGet();
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,232 @@
+package edu.ncsu.csc.iTrust2.utils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import edu.ncsu.csc.iTrust2.models.Email;
+import edu.ncsu.csc.iTrust2.models.Patient;
+import edu.ncsu.csc.iTrust2.models.Personnel;
+import edu.ncsu.csc.iTrust2.models.User;
+import edu.ncsu.csc.iTrust2.models.enums.EmailStatus;
+import edu.ncsu.csc.iTrust2.services.EmailService;
+
+/**
+ * Sends the emails waiting in the outbox (see `EmailService`). Every
+ * `itrust2.email.poll-interval-ms`, claims as many due emails as there is room
+ * for and hands them to a pool of `itrust2.email.threads` sender threads,
+ * which pass each one to the `EmailTransport` and record whether it went.
+ * Emails are only claimed when there is room for them, so a slow transport
+ * holds them back in the database rather than piling them up in memory.
+ *
+ * Claiming is done in the database, so any number of application nodes can
+ * run a worker against the same outbox. Setting `itrust2.email.enabled` to
+ * false stops this node from sending anything.
+ *
+ * How many emails have been sent, retried, and given up on is reported under
+ * `emailOutbox` at `GET /api/v1/metrics`, along with how many times emails
+ * couldn't be claimed and how many outcomes couldn't be recorded. An email
+ * whose outcome wasn't recorded is claimed again once its claim times out.
+ */
+@Component
+public class EmailOutboxWorker implements MetricSource {
+
+    @Autowired
+    private EmailService       service;
+
+    @Autowired
+    private EmailTransport     transport;
+
+    /** Whether this node sends emails at all */
+    @Value ( "${itrust2.email.enabled:true}" )
+    private boolean            enabled;
+
+    /** Number of emails sent at once */
+    @Value ( "${itrust2.email.threads:2}" )
+    private int                threads;
+
+    /** Most emails claimed but not yet handed to a sender thread */
+    @Value ( "${itrust2.email.batch-size:20}" )
+    private int                batchSize;
+
+    /** Sends the claimed emails */
+    private ThreadPoolExecutor senders;
+
+    /** Number of emails sent */
+    private final AtomicLong   sent        = new AtomicLong();
+
+    /** Number of failures that will be retried */
+    private final AtomicLong   retried     = new AtomicLong();
+
+    /** Number of emails given up on */
+    private final AtomicLong   failed      = new AtomicLong();
+
+    /** Number of polls that couldn't claim emails */
+    private final AtomicLong   claimErrors = new AtomicLong();
+
+    /** Number of emails whose outcome couldn't be saved */
+    private final AtomicLong   unrecorded  = new AtomicLong();
+
+    /**
+     * Starts the sender threads.
+     */
+    @PostConstruct
+    public void start () {
+        senders = new ThreadPoolExecutor( threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>( batchSize ), r -> {
+                    final Thread t = new Thread( r, "email-sender" );
+                    t.setDaemon( true );
+                    return t;
+                } );
+    }
+
+    /**
+     * Lets the emails being sent finish. Anything claimed but not sent is
+     * claimed again once its claim times out.
+     */
+    @PreDestroy
+    public void stop () {
+        senders.shutdown();
+        try {
+            senders.awaitTermination( 5, TimeUnit.SECONDS );
+        }
+        catch ( final InterruptedException ie ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Scheduled entry point; claims and starts sending a batch of emails.
+     */
+    @Scheduled ( fixedDelayString = "${itrust2.email.poll-interval-ms:1000}" )
+    public void run () {
+        if ( !enabled ) {
+            return;
+        }
+        try {
+            poll();
+        }
+        catch ( final Exception e ) {
+            claimErrors.incrementAndGet();
+        }
+    }
+
+    /**
+     * Claims as many due emails as the sender threads have room for, and
+     * hands them over to be sent.
+     *
+     * @return Number of emails claimed
+     */
+    public synchronized int poll () {
+        final int room = senders.getQueue().remainingCapacity();
+        if ( 0 == room || senders.isShutdown() ) {
+            return 0;
+        }
+        final List<Email> claimed = service.claim( room );
+        for ( final Email email : claimed ) {
+            senders.execute( () -> deliver( email ) );
+        }
+        return claimed.size();
+    }
+
+    /**
+     * Returns the number of emails claimed that haven't been dealt with yet.
+     *
+     * @return Emails waiting for or being sent
+     */
+    public int pending () {
+        return senders.getQueue().size() + senders.getActiveCount();
+    }
+
+    @Override
+    public String getMetricName () {
+        return "emailOutbox";
+    }
+
+    @Override
+    public Map<String, Number> getMetrics () {
+        final Map<String, Number> metrics = new HashMap<String, Number>();
+        metrics.put( "sent", sent.get() );
+        metrics.put( "retried", retried.get() );
+        metrics.put( "failed", failed.get() );
+        metrics.put( "pending", pending() );
+        metrics.put( "claimErrors", claimErrors.get() );
+        metrics.put( "unrecorded", unrecorded.get() );
+        return metrics;
+    }
+
+    /**
+     * Sends an email and records how it went. If that can't be saved, the
+     * email is left claimed, to be tried again once the claim times out.
+     *
+     * @param email
+     *            The email, as it was claimed
+     */
+    private void deliver ( final Email email ) {
+        try {
+            final String address = addressOf( email.getReceiver() );
+            if ( null == address || address.isEmpty() ) {
+                count( service.markFailed( email, "No email address for " + email.getReceiver().getUsername(),
+                        true ) );
+                return;
+            }
+            try {
+                transport.send( email, address );
+            }
+            catch ( final Exception e ) {
+                count( service.markFailed( email, e.toString(), false ) );
+                return;
+            }
+            service.markSent( email );
+            sent.incrementAndGet();
+        }
+        catch ( final Exception e ) {
+            unrecorded.incrementAndGet();
+        }
+    }
+
+    /**
+     * Counts a failed attempt.
+     *
+     * @param status
+     *            What the email was left as
+     */
+    private void count ( final EmailStatus status ) {
+        if ( EmailStatus.FAILED == status ) {
+            failed.incrementAndGet();
+        }
+        else if ( EmailStatus.PENDING == status ) {
+            retried.incrementAndGet();
+        }
+    }
+
+    /**
+     * Finds the address to send a user's email to.
+     *
+     * @param user
+     *            The user
+     * @return Their email address, or null if they have none
+     */
+    private static String addressOf ( final User user ) {
+        if ( user instanceof Patient ) {
+            return ( (Patient) user ).getEmail();
+        }
+        if ( user instanceof Personnel ) {
+            return ( (Personnel) user ).getEmail();
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,31 @@
+package edu.ncsu.csc.iTrust2.utils;
+
+import java.io.IOException;
+
+import edu.ncsu.csc.iTrust2.models.Email;
+
+/**
+ * Delivers emails for `EmailOutboxWorker`. Which transport is used is chosen
+ * with `itrust2.email.transport`; to send email some other way (ie, over
+ * SMTP), add a component implementing this that is only created for its own
+ * value of that setting, as `FileEmailTransport` is for `file`.
+ *
+ * An email may be handed to the transport more than once (ie, if the worker
+ * dies after sending it but before recording that it did), so transports
+ * should use the email's ID to avoid sending duplicates where they can.
+ */
+public interface EmailTransport {
+
+    /**
+     * Sends an email. Several may be sent at once, from different threads.
+     *
+     * @param email
+     *            The email
+     * @param address
+     *            Address to send it to
+     * @throws IOException
+     *             If the email couldn't be sent; it will be retried later
+     */
+    public void send ( Email email, String address ) throws IOException;
+
+}
@@ -7,6 +7,12 @@ import edu.ncsu.csc.iTrust2.models.Email;
 import edu.ncsu.csc.iTrust2.models.User;
 import edu.ncsu.csc.iTrust2.services.EmailService;
 
+/**
+ * Queues emails in the outbox, for `EmailOutboxWorker` to send. The email is
+ * saved as part of the caller's transaction, if there is one, so that it is
+ * only sent if the rest of the caller's work is committed. Saving it is a
+ * single insert, so callers on the login path can afford to wait for it.
+ */
 @Component
 public class EmailUtil {
 
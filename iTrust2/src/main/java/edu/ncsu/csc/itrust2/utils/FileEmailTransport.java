@@ -0,0 +1,86 @@
+package edu.ncsu.csc.iTrust2.utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import edu.ncsu.csc.iTrust2.models.Email;
+
+/**
+ * Stands in for a mail server by writing each email to its own file, named for
+ * the email's ID, in `itrust2.email.file.directory`. Used unless
+ * `itrust2.email.transport` says otherwise. Sending the same email twice just
+ * writes the same file again.
+ */
+@Component
+@ConditionalOnProperty ( name = "itrust2.email.transport", havingValue = "file", matchIfMissing = true )
+public class FileEmailTransport implements EmailTransport {
+
+    /** Where the emails are written */
+    @Value ( "${itrust2.email.file.directory:${java.io.tmpdir}/itrust2-mail}" )
+    private String directory;
+
+    /**
+     * Creates the directory, if need be.
+     *
+     * @throws IOException
+     *             If it can't be created
+     */
+    @PostConstruct
+    public void start () throws IOException {
+        Files.createDirectories( getDirectory() );
+    }
+
+    /**
+     * Returns the directory emails are written to.
+     *
+     * @return The directory
+     */
+    public Path getDirectory () {
+        return Paths.get( directory );
+    }
+
+    /**
+     * Returns the file an email is written to.
+     *
+     * @param email
+     *            The email
+     * @return The file
+     */
+    public Path fileFor ( final Email email ) {
+        return getDirectory().resolve( email.getId() + ".eml" );
+    }
+
+    /**
+     * Writes the email out with its headers. It goes to a temporary file first
+     * and is then moved into place, so a half-written email is never seen.
+     */
+    @Override
+    public void send ( final Email email, final String address ) throws IOException {
+        final String message = "Message-ID: <" + email.getId() + "@itrust2>\r\n" + "Date: "
+                + DateTimeFormatter.RFC_1123_DATE_TIME.format( ZonedDateTime.now() ) + "\r\n" + "From: "
+                + email.getSender() + "\r\n" + "To: " + address + "\r\n" + "Subject: " + email.getSubject()
+                + "\r\n\r\n" + email.getMessageBody() + "\r\n";
+        final Path file = fileFor( email );
+        final Path partial = Files.createTempFile( getDirectory(), email.getId() + "-", ".tmp" );
+        try {
+            Files.write( partial, message.getBytes( StandardCharsets.UTF_8 ) );
+            Files.move( partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        }
+        finally {
+            Files.deleteIfExists( partial );
+        }
+    }
+
+}
@@ -0,0 +1,66 @@
+package edu.ncsu.csc.iTrust2.utils;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.id.enhanced.DatabaseStructure;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import edu.ncsu.csc.iTrust2.models.PooledIdGenerator;
+
+/**
+ * Makes sure that each table-backed ID sequence (see `PooledIdGenerator`)
+ * starts past the highest ID already in its entity's table. Entities used to
+ * draw their IDs from the single `hibernate_sequence` table; when a database
+ * from before the switch is first started, Hibernate creates the new sequence
+ * tables starting at 1, and they have to be moved forward before anything is
+ * inserted. This runs on every startup, but after the first it does nothing.
+ *
+ * Only sequences emulated with a table (ie, on MySQL) are handled here; a
+ * database with real sequences has to have them restarted by hand.
+ */
+@Component
+public class IdSequenceSeeder {
+
+    /** Column holding the next value in a sequence table */
+    private static final String  VALUE_COLUMN = "next_val";
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate         jdbc;
+
+    /**
+     * Moves every sequence table that is behind its entity's table forward.
+     */
+    @PostConstruct
+    public void seed () {
+        final SessionFactoryImplementor sessionFactory = entityManagerFactory
+                .unwrap( SessionFactoryImplementor.class );
+        for ( final EntityPersister persister : sessionFactory.getMetamodel().entityPersisters().values() ) {
+            if ( ! ( persister.getIdentifierGenerator() instanceof PooledIdGenerator )
+                    || ! ( persister instanceof AbstractEntityPersister ) ) {
+                continue;
+            }
+            final DatabaseStructure sequence = ( (PooledIdGenerator) persister.getIdentifierGenerator() )
+                    .getDatabaseStructure();
+            if ( sequence.isPhysicalSequence() ) {
+                continue;
+            }
+            final AbstractEntityPersister entity = (AbstractEntityPersister) persister;
+            final Long max = jdbc.queryForObject( "SELECT MAX(" + entity.getIdentifierColumnNames()[0] + ") FROM "
+                    + entity.getTableName(), Long.class );
+            if ( null != max ) {
+                jdbc.update( "UPDATE " + sequence.getName() + " SET " + VALUE_COLUMN + " = ? WHERE " + VALUE_COLUMN
+                        + " <= ?", max + 1, max );
+            }
+        }
+    }
+
+}
@@ -1,5 +1,8 @@
 package edu.ncsu.csc.iTrust2.utils;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -25,10 +28,15 @@ public class LoggerUtil {
     @Autowired
     private LogEntryService service;
 
+    @Autowired
+    private AuditLogWriter  writer;
+
     /**
      * Most complete logger utility. Usually won't need all of this information,
      * but if you do, it has it all. The time of the event is added
-     * automatically and is assumed to be the current time.
+     * automatically and is assumed to be the current time. The entry is handed
+     * off to the AuditLogWriter, so it may not be in the database yet when
+     * this returns.
      *
      * @param code
      *            The TransactionType of the event that occurred
@@ -42,7 +50,50 @@ public class LoggerUtil {
     public void log ( final TransactionType code, final String primaryUser, final String secondaryUser,
             final String message ) {
         final LogEntry le = new LogEntry( code, primaryUser, secondaryUser, message );
-        service.save( le );
+        writer.write( le );
+    }
+
+    /**
+     * Logs the same event once for each of several secondary users, ie an HCP
+     * viewing a list of appointments with many patients. There is still one
+     * entry per secondary user (duplicates are only logged once), but they are
+     * handed to the AuditLogWriter together, so that any written straight away
+     * go out as one batch.
+     *
+     * @param code
+     *            The TransactionType of the event that occurred
+     * @param primaryUser
+     *            The primary user involved in the event that was logged.
+     * @param secondaryUsers
+     *            The secondary users involved in the event.
+     * @param message
+     *            An (optional) message for further details.
+     */
+    public void logAll ( final TransactionType code, final String primaryUser,
+            final Collection<String> secondaryUsers, final String message ) {
+        final List<LogEntry> entries = new ArrayList<LogEntry>( secondaryUsers.size() );
+        for ( final String secondaryUser : new LinkedHashSet<String>( secondaryUsers ) ) {
+            entries.add( new LogEntry( code, primaryUser, secondaryUser, message ) );
+        }
+        if ( !entries.isEmpty() ) {
+            writer.writeAll( entries );
+        }
+    }
+
+    /**
+     * Logs the same event once for each of several secondary users, with no
+     * message.
+     *
+     * @param code
+     *            The TransactionType of the event that occurred
+     * @param primaryUser
+     *            The primary user involved in the event that was logged.
+     * @param secondaryUsers
+     *            The secondary users involved in the event.
+     */
+    public void logAll ( final TransactionType code, final String primaryUser,
+            final Collection<String> secondaryUsers ) {
+        logAll( code, primaryUser, secondaryUsers, null );
     }
 
     /**
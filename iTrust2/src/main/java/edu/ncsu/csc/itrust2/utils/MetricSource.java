@@ -0,0 +1,27 @@
+package edu.ncsu.csc.iTrust2.utils;
+
+import java.util.Map;
+
+/**
+ * Implemented by components that keep counters worth watching in production
+ * (cache hit rates, queue depths, and the like). Every MetricSource bean is
+ * reported by `GET /api/v1/metrics`.
+ */
+public interface MetricSource {
+
+    /**
+     * Name the metrics are reported under
+     *
+     * @return Name of this source
+     */
+    String getMetricName ();
+
+    /**
+     * Current value of each metric. Called on demand, so this should be cheap
+     * and must not block.
+     *
+     * @return Metric names and their current values
+     */
+    Map<String, Number> getMetrics ();
+
+}
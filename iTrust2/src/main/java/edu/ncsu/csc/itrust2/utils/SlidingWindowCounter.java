@@ -0,0 +1,109 @@
+package edu.ncsu.csc.iTrust2.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts events over a sliding window of time without taking any locks. The
+ * window is split into a fixed number of buckets; each bucket packs the period
+ * it belongs to and its count into a single long so that both can be updated
+ * together with one compare-and-set. Buckets left over from an earlier trip
+ * around the ring are treated as empty, so nothing ever needs to be swept.
+ *
+ * Counts are accurate to within one bucket's width at the trailing edge of the
+ * window, which is plenty for throttling.
+ */
+public class SlidingWindowCounter {
+
+    /** Bits of each bucket used for the count; the rest hold the period */
+    private static final int      COUNT_BITS = 20;
+
+    /** Mask selecting the count from a bucket */
+    private static final long     COUNT_MASK = ( 1L << COUNT_BITS ) - 1;
+
+    /** Width of a single bucket */
+    private final long            bucketMillis;
+
+    /** Packed (period, count) pairs, indexed by period modulo their length */
+    private final AtomicLongArray buckets;
+
+    /**
+     * Creates a counter covering the given window.
+     *
+     * @param windowMillis
+     *            Length of the window
+     * @param bucketCount
+     *            Number of buckets to split the window into
+     */
+    public SlidingWindowCounter ( final long windowMillis, final int bucketCount ) {
+        if ( windowMillis < bucketCount || bucketCount < 1 ) {
+            throw new IllegalArgumentException( "Window must be at least one millisecond per bucket" );
+        }
+        this.bucketMillis = windowMillis / bucketCount;
+        this.buckets = new AtomicLongArray( bucketCount );
+    }
+
+    /**
+     * Records one event at the given time. Events too old to fall inside the
+     * window, as seen from the newest event already recorded in their bucket,
+     * are ignored.
+     *
+     * @param timeMillis
+     *            When the event happened
+     */
+    public void add ( final long timeMillis ) {
+        final long period = timeMillis / bucketMillis;
+        final int index = (int) ( period % buckets.length() );
+        while ( true ) {
+            final long current = buckets.get( index );
+            final long currentPeriod = current >>> COUNT_BITS;
+            final long next;
+            if ( currentPeriod == period ) {
+                final long count = current & COUNT_MASK;
+                if ( count == COUNT_MASK ) {
+                    return; // Saturated; more than enough to throttle on
+                }
+                next = current + 1;
+            }
+            else if ( currentPeriod < period ) {
+                next = ( period << COUNT_BITS ) | 1;
+            }
+            else {
+                return;
+            }
+            if ( buckets.compareAndSet( index, current, next ) ) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Counts the events recorded within the window ending at the given time.
+     *
+     * @param nowMillis
+     *            End of the window
+     * @return Number of events in the window
+     */
+    public long count ( final long nowMillis ) {
+        final long newest = nowMillis / bucketMillis;
+        final long oldest = newest - buckets.length() + 1;
+        long total = 0;
+        for ( int i = 0; i < buckets.length(); i++ ) {
+            final long bucket = buckets.get( i );
+            final long period = bucket >>> COUNT_BITS;
+            if ( period >= oldest && period <= newest ) {
+                total += bucket & COUNT_MASK;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Forgets every event recorded so far.
+     */
+    public void clear () {
+        for ( int i = 0; i < buckets.length(); i++ ) {
+            buckets.set( i, 0 );
+        }
+    }
+
+}
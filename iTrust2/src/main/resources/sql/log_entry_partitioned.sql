@@ -0,0 +1,25 @@
+-- Converts the audit log (log_entry) to one partition per month so that old
+-- entries can be removed by dropping a partition instead of running DELETEs.
+--
+-- This is optional, MySQL-only, and run by hand once against an existing
+-- database, after the application has created the table. Afterwards, set
+-- itrust2.audit.retention.partitioned (and .enabled) to true; the retention
+-- job then drops expired months and keeps partitions ready for the coming
+-- ones, so only the current month is created here. Its bounds are worked out
+-- from the date the script is run, and it also holds every older entry, so it
+-- is dropped once the newest of them has expired.
+--
+-- MySQL requires the partitioning column to be part of every unique key, so
+-- the primary key becomes (id, time). IDs are still unique on their own.
+-- Converting a large table rewrites it; schedule this for a quiet period.
+
+ALTER TABLE log_entry DROP PRIMARY KEY, ADD PRIMARY KEY ( id, time );
+
+-- Partition bounds must be constants, so the statement is built as a string
+SET @next_month = DATE_ADD( LAST_DAY( CURDATE() ), INTERVAL 1 DAY );
+SET @partition_sql = CONCAT( 'ALTER TABLE log_entry PARTITION BY RANGE ( TO_DAYS( time ) ) ( ',
+    'PARTITION p', DATE_FORMAT( CURDATE(), '%Y%m' ), ' VALUES LESS THAN ( ', TO_DAYS( @next_month ), ' ), ',
+    'PARTITION pmax VALUES LESS THAN MAXVALUE )' );
+PREPARE partition_stmt FROM @partition_sql;
+EXECUTE partition_stmt;
+DEALLOCATE PREPARE partition_stmt;
@@ -0,0 +1,33 @@
+/**
+ * Helper for loading listings that the API returns a page at a time.
+ */
+'use strict';
+
+angular.module('pagedListServices', [])
+    .service('pagedListService', function ($http) {
+
+        /**
+         * Loads every page of a listing, asking for the next page until all
+         * of the rows counted in X-Total-Count have arrived.
+         * @param url The listing to load.
+         * @param params Any filters to send with each page (optional).
+         * @param done Called with all of the rows once the last page arrives.
+         * @param failed Called with the rejection if any page fails to load.
+         */
+        this.loadAll = function (url, params, done, failed) {
+            var rows = [];
+            var loadPage = function (page) {
+                $http.get(url, { params: angular.extend({}, params, { page: page, size: 500 }) })
+                    .then(function (response) {
+                        rows = rows.concat(response.data);
+                        var total = parseInt(response.headers('X-Total-Count'), 10);
+                        if (response.data.length && rows.length < total) {
+                            loadPage(page + 1);
+                        } else {
+                            done(rows);
+                        }
+                    }, failed);
+            };
+            loadPage(0);
+        }
+    });
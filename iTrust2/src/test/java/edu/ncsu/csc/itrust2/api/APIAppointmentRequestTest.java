@@ -5,9 +5,16 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.transaction.Transactional;
 
@@ -18,13 +25,20 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.context.WebApplicationContext;
 
+import com.jayway.jsonpath.JsonPath;
+
 import edu.ncsu.csc.iTrust2.common.TestUtils;
 import edu.ncsu.csc.iTrust2.forms.AppointmentRequestForm;
 import edu.ncsu.csc.iTrust2.forms.UserForm;
@@ -49,16 +63,22 @@ import edu.ncsu.csc.iTrust2.services.UserService;
 @AutoConfigureMockMvc
 public class APIAppointmentRequestTest {
 
-    private MockMvc                   mvc;
+    private MockMvc                    mvc;
+
+    @Autowired
+    private WebApplicationContext      context;
+
+    @Autowired
+    private AppointmentRequestService  arService;
 
     @Autowired
-    private WebApplicationContext     context;
+    private UserService                service;
 
     @Autowired
-    private AppointmentRequestService arService;
+    private PasswordEncoder            passwordEncoder;
 
     @Autowired
-    private UserService               service;
+    private PlatformTransactionManager transactionManager;
 
     /**
      * Sets up tests
@@ -66,12 +86,12 @@ public class APIAppointmentRequestTest {
     @Before
     public void setup () {
         mvc = MockMvcBuilders.webAppContextSetup( context ).build();
-        service.deleteAll();
         arService.deleteAll();
+        service.deleteAll();
 
-        final User patient = new Patient( new UserForm( "patient", "123456", Role.ROLE_PATIENT, 1 ) );
+        final User patient = new Patient( new UserForm( "patient", "123456", Role.ROLE_PATIENT, 1 ), passwordEncoder );
 
-        final User hcp = new Personnel( new UserForm( "hcp", "123456", Role.ROLE_HCP, 1 ) );
+        final User hcp = new Personnel( new UserForm( "hcp", "123456", Role.ROLE_HCP, 1 ), passwordEncoder );
 
         service.saveAll( List.of( patient, hcp ) );
 
@@ -184,4 +204,316 @@ public class APIAppointmentRequestTest {
 
     }
 
+    private static String iso ( final ZonedDateTime date ) {
+        return date.format( DateTimeFormatter.ISO_OFFSET_DATE_TIME );
+    }
+
+    /**
+     * Tests that the appointment request listings only return requests with
+     * the right status, a page at a time, soonest first.
+     *
+     * @throws Exception
+     */
+    @Test
+    @WithMockUser ( username = "hcp", roles = { "HCP" } )
+    @Transactional
+    public void testAppointmentRequestListings () throws Exception {
+        final User patient = service.findByName( "patient" );
+        final User hcp = service.findByName( "hcp" );
+        final ZonedDateTime start = ZonedDateTime.parse( "2030-01-01T09:00:00-05:00" );
+
+        /* Days 0-4 pending, 5-9 approved, 10-14 rejected, in no order */
+        final List<AppointmentRequest> requests = new ArrayList<AppointmentRequest>();
+        for ( int i = 14; i >= 0; i-- ) {
+            final AppointmentRequest request = new AppointmentRequest();
+            request.setPatient( patient );
+            request.setHcp( hcp );
+            request.setDate( start.plusDays( i ) );
+            request.setType( AppointmentType.GENERAL_CHECKUP );
+            request.setStatus( i < 5 ? Status.PENDING : i < 10 ? Status.APPROVED : Status.REJECTED );
+            requests.add( request );
+        }
+        arService.saveAll( requests );
+
+        mvc.perform( get( "/api/v1/appointmentrequestForHCP?size=2" ) ).andExpect( status().isOk() )
+                .andExpect( header().string( "X-Total-Count", "5" ) )
+                .andExpect( jsonPath( "$.length()" ).value( 2 ) )
+                .andExpect( jsonPath( "$[0].date" ).value( iso( start ) ) )
+                .andExpect( jsonPath( "$[1].status" ).value( "PENDING" ) );
+        mvc.perform( get( "/api/v1/appointmentrequestForHCP?size=2&page=2" ) )
+                .andExpect( jsonPath( "$.length()" ).value( 1 ) )
+                .andExpect( jsonPath( "$[0].date" ).value( iso( start.plusDays( 4 ) ) ) );
+
+        mvc.perform( get( "/api/v1/viewAppointments?from=2030-01-07&to=2030-01-08" ) )
+                .andExpect( header().string( "X-Total-Count", "2" ) )
+                .andExpect( jsonPath( "$[0].status" ).value( "APPROVED" ) );
+        mvc.perform( get( "/api/v1/viewAppointments?sort=date,desc" ) )
+                .andExpect( header().string( "X-Total-Count", "5" ) )
+                .andExpect( jsonPath( "$[0].date" ).value( iso( start.plusDays( 9 ) ) ) );
+
+        mvc.perform( get( "/api/v1/appointmentrequests?status=REJECTED" ) )
+                .andExpect( header().string( "X-Total-Count", "5" ) );
+        mvc.perform( get( "/api/v1/appointmentrequests" ) ).andExpect( header().string( "X-Total-Count", "15" ) );
+
+        mvc.perform( get( "/api/v1/appointmentrequests?sort=comments" ) ).andExpect( status().isBadRequest() );
+        mvc.perform( get( "/api/v1/viewAppointments?from=soon" ) ).andExpect( status().isBadRequest() );
+        mvc.perform( get( "/api/v1/appointmentrequests?from=2030-12-01&to=2030-11-01" ) )
+                .andExpect( status().isBadRequest() );
+    }
+
+    /**
+     * Tests that a patient only sees their own pending requests.
+     *
+     * @throws Exception
+     */
+    @Test
+    @WithMockUser ( username = "patient", roles = { "PATIENT" } )
+    @Transactional
+    public void testPendingRequestsForPatient () throws Exception {
+        final User patient = service.findByName( "patient" );
+        final User hcp = service.findByName( "hcp" );
+
+        final List<AppointmentRequest> requests = new ArrayList<AppointmentRequest>();
+        for ( final Status s : new Status[] { Status.PENDING, Status.APPROVED, Status.PENDING } ) {
+            final AppointmentRequest request = new AppointmentRequest();
+            request.setPatient( patient );
+            request.setHcp( hcp );
+            request.setDate( ZonedDateTime.parse( "2030-01-01T09:00:00-05:00" ).plusDays( requests.size() ) );
+            request.setType( AppointmentType.GENERAL_CHECKUP );
+            request.setStatus( s );
+            requests.add( request );
+        }
+        arService.saveAll( requests );
+
+        mvc.perform( get( "/api/v1/appointmentrequest" ) ).andExpect( status().isOk() )
+                .andExpect( header().string( "X-Total-Count", "2" ) )
+                .andExpect( jsonPath( "$.length()" ).value( 2 ) )
+                .andExpect( jsonPath( "$[0].status" ).value( "PENDING" ) )
+                .andExpect( jsonPath( "$[1].status" ).value( "PENDING" ) );
+    }
+
+    /**
+     * Approves an appointment between the test patient and HCP at 9:00 a week
+     * from now.
+     *
+     * @return The appointment
+     */
+    private AppointmentRequest bookNineOClock () {
+        final AppointmentRequest booked = approvedAt( 9, 0 );
+        arService.save( booked );
+        return booked;
+    }
+
+    /**
+     * Creates an approved appointment between the test patient and HCP a week
+     * from now, without saving it.
+     *
+     * @param hour
+     *            Hour it starts at
+     * @param minute
+     *            Minute it starts at
+     * @return The appointment
+     */
+    private AppointmentRequest approvedAt ( final int hour, final int minute ) {
+        final AppointmentRequest request = new AppointmentRequest();
+        request.setPatient( service.findByName( "patient" ) );
+        request.setHcp( service.findByName( "hcp" ) );
+        request.setDate( ZonedDateTime.now().plusDays( 7 ).withHour( hour ).withMinute( minute ).withSecond( 0 )
+                .withNano( 0 ) );
+        request.setType( AppointmentType.GENERAL_CHECKUP );
+        request.setStatus( Status.APPROVED );
+        return request;
+    }
+
+    /**
+     * Tests that a slot is taken from the moment it is booked, rather than
+     * once the booking commits, so two bookings at once can't both get it.
+     * Deliberately not transactional, so that the first booking can be held
+     * open on another thread, and so cleans up after itself.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testConcurrentBookings () throws Exception {
+        final AppointmentRequest first = approvedAt( 11, 0 );
+        final AppointmentRequest second = approvedAt( 11, 10 );
+        final AtomicBoolean bookedFirst = new AtomicBoolean();
+        final CountDownLatch held = new CountDownLatch( 1 );
+        final CountDownLatch checked = new CountDownLatch( 1 );
+
+        final Thread booking = new Thread( () -> new TransactionTemplate( transactionManager )
+                .executeWithoutResult( tx -> {
+                    bookedFirst.set( arService.saveIfFree( first ) );
+                    held.countDown();
+                    try {
+                        checked.await();
+                    }
+                    catch ( final InterruptedException e ) {
+                        Thread.currentThread().interrupt();
+                    }
+                } ) );
+        booking.start();
+        held.await();
+        Assert.assertFalse( "The slot should be held before the first booking commits",
+                arService.saveIfFree( second ) );
+        checked.countDown();
+        booking.join();
+
+        Assert.assertTrue( bookedFirst.get() );
+        Assert.assertFalse( "The slot should still be taken once it commits", arService.saveIfFree( second ) );
+        second.setDate( first.getDate().plusMinutes( 30 ) );
+        Assert.assertTrue( arService.saveIfFree( second ) );
+        Assert.assertEquals( 2, arService.findByHcp( service.findByName( "hcp" ) ).size() );
+
+        /* Nothing rolls these back, and other tests delete the users they refer to */
+        arService.deleteAll();
+    }
+
+    /**
+     * Tests that a patient can't request a time that clashes with one of the
+     * HCP's approved appointments.
+     *
+     * @throws Exception
+     */
+    @Test
+    @WithMockUser ( username = "patient", roles = { "PATIENT" } )
+    @Transactional
+    public void testRequestConflicts () throws Exception {
+        final ZonedDateTime nine = bookNineOClock().getDate();
+
+        final AppointmentRequestForm form = new AppointmentRequestForm();
+        form.setDate( nine.plusMinutes( 15 ).toString() );
+        form.setType( AppointmentType.GENERAL_CHECKUP.toString() );
+        form.setHcp( "hcp" );
+        form.setPatient( "patient" );
+        mvc.perform( post( "/api/v1/appointmentrequests" ).contentType( MediaType.APPLICATION_JSON )
+                .content( TestUtils.asJsonString( form ) ) ).andExpect( status().isConflict() );
+
+        form.setDate( nine.plusMinutes( 30 ).toString() );
+        mvc.perform( post( "/api/v1/appointmentrequests" ).contentType( MediaType.APPLICATION_JSON )
+                .content( TestUtils.asJsonString( form ) ) ).andExpect( status().isOk() );
+    }
+
+    /**
+     * Tests that an HCP can't approve two appointments at once, and that free
+     * slots skip their approved appointments.
+     *
+     * @throws Exception
+     */
+    @Test
+    @WithMockUser ( username = "hcp", roles = { "HCP" } )
+    @Transactional
+    public void testApproveConflictsAndFreeSlots () throws Exception {
+        final AppointmentRequest booked = bookNineOClock();
+        final ZonedDateTime nine = booked.getDate();
+
+        final AppointmentRequest pending = new AppointmentRequest();
+        pending.setPatient( booked.getPatient() );
+        pending.setHcp( booked.getHcp() );
+        pending.setDate( nine.plusMinutes( 20 ) );
+        pending.setType( AppointmentType.GENERAL_CHECKUP );
+        pending.setStatus( Status.PENDING );
+        arService.save( pending );
+
+        /* Approving the booked appointment again is fine; approving a clash is not */
+        final AppointmentRequestForm form = new AppointmentRequestForm();
+        form.setDate( nine.toString() );
+        form.setType( AppointmentType.GENERAL_CHECKUP.toString() );
+        form.setStatus( Status.APPROVED.toString() );
+        form.setHcp( "hcp" );
+        form.setPatient( "patient" );
+        mvc.perform( put( "/api/v1/appointmentrequests/" + booked.getId() ).contentType( MediaType.APPLICATION_JSON )
+                .content( TestUtils.asJsonString( form ) ) ).andExpect( status().isOk() );
+        form.setDate( pending.getDate().toString() );
+        mvc.perform( put( "/api/v1/appointmentrequests/" + pending.getId() ).contentType( MediaType.APPLICATION_JSON )
+                .content( TestUtils.asJsonString( form ) ) ).andExpect( status().isConflict() );
+
+        mvc.perform( get( "/api/v1/appointmentrequests/freeslots?hcp=hcp&from=" + nine.toLocalDate() + "&to="
+                + nine.toLocalDate() + "&limit=2" ) ).andExpect( status().isOk() )
+                .andExpect( jsonPath( "$.length()" ).value( 2 ) )
+                .andExpect( jsonPath( "$[0]" ).value( iso( nine.plusMinutes( 30 ) ) ) )
+                .andExpect( jsonPath( "$[1]" ).value( iso( nine.plusMinutes( 60 ) ) ) );
+        mvc.perform( get( "/api/v1/appointmentrequests/freeslots?hcp=patient" ) ).andExpect( status().isNotFound() );
+        mvc.perform( get( "/api/v1/appointmentrequests/freeslots?hcp=hcp&limit=0" ) )
+                .andExpect( status().isBadRequest() );
+        mvc.perform( get( "/api/v1/appointmentrequests/freeslots?hcp=hcp&to=2099-01-01" ) )
+                .andExpect( status().isBadRequest() );
+    }
+
+    /**
+     * Tests syncing an HCP's calendar: a full sync, then only what changed
+     * since, with a 304 when nothing has.
+     *
+     * @throws Exception
+     */
+    @Test
+    @WithMockUser ( username = "hcp", roles = { "HCP" } )
+    @Transactional
+    public void testCalendarSync () throws Exception {
+        final AppointmentRequest booked = bookNineOClock();
+
+        final AppointmentRequest pending = new AppointmentRequest();
+        pending.setPatient( booked.getPatient() );
+        pending.setHcp( booked.getHcp() );
+        pending.setDate( booked.getDate().plusHours( 1 ) );
+        pending.setType( AppointmentType.GENERAL_CHECKUP );
+        pending.setStatus( Status.PENDING );
+        arService.save( pending );
+
+        /* A full sync only has approved appointments */
+        final MvcResult full = mvc.perform( get( "/api/v1/appointmentrequests/calendar" ) )
+                .andExpect( status().isOk() ).andExpect( jsonPath( "$.changed.length()" ).value( 1 ) )
+                .andExpect( jsonPath( "$.changed[0].id" ).value( booked.getId() ) )
+                .andExpect( jsonPath( "$.deleted.length()" ).value( 0 ) ).andReturn();
+        final String token = JsonPath.read( full.getResponse().getContentAsString(), "$.syncToken" );
+        final String etag = full.getResponse().getHeader( HttpHeaders.ETAG );
+
+        mvc.perform( get( "/api/v1/appointmentrequests/calendar" ).header( HttpHeaders.IF_NONE_MATCH, etag ) )
+                .andExpect( status().isNotModified() );
+        mvc.perform( get( "/api/v1/appointmentrequests/calendar?since=" + token ) ).andExpect( status().isOk() )
+                .andExpect( jsonPath( "$.changed.length()" ).value( 0 ) )
+                .andExpect( jsonPath( "$.deleted.length()" ).value( 0 ) )
+                .andExpect( jsonPath( "$.syncToken" ).value( token ) );
+
+        /* Approving one appointment and deleting the other both show up */
+        pending.setStatus( Status.APPROVED );
+        arService.save( pending );
+        arService.delete( booked );
+        final MvcResult delta = mvc
+                .perform( get( "/api/v1/appointmentrequests/calendar?since=" + token )
+                        .header( HttpHeaders.IF_NONE_MATCH, etag ) )
+                .andExpect( status().isOk() ).andExpect( jsonPath( "$.changed.length()" ).value( 1 ) )
+                .andExpect( jsonPath( "$.changed[0].id" ).value( pending.getId() ) )
+                .andExpect( jsonPath( "$.deleted.length()" ).value( 1 ) )
+                .andExpect( jsonPath( "$.deleted[0]" ).value( booked.getId() ) ).andReturn();
+        final String next = JsonPath.read( delta.getResponse().getContentAsString(), "$.syncToken" );
+        Assert.assertTrue( Long.parseLong( next ) > Long.parseLong( token ) );
+
+        /* Rejecting an appointment takes it off the calendar too */
+        pending.setStatus( Status.REJECTED );
+        arService.save( pending );
+        mvc.perform( get( "/api/v1/appointmentrequests/calendar?since=" + next ) )
+                .andExpect( jsonPath( "$.changed.length()" ).value( 0 ) )
+                .andExpect( jsonPath( "$.deleted[0]" ).value( pending.getId() ) );
+
+        /* Once deletions are pruned, an older token gets the whole calendar */
+        arService.pruneDeletionsBefore( ZonedDateTime.now().plusMinutes( 1 ) );
+        Assert.assertTrue( arService.getSyncHorizon() > Long.parseLong( token ) );
+        final MvcResult resync = mvc
+                .perform( get( "/api/v1/appointmentrequests/calendar?since=" + token )
+                        .header( HttpHeaders.IF_NONE_MATCH, etag ) )
+                .andExpect( status().isOk() ).andExpect( jsonPath( "$.fullSync" ).value( true ) )
+                .andExpect( jsonPath( "$.changed.length()" ).value( 0 ) )
+                .andExpect( jsonPath( "$.deleted.length()" ).value( 0 ) ).andReturn();
+        final String fresh = JsonPath.read( resync.getResponse().getContentAsString(), "$.syncToken" );
+        Assert.assertTrue( Long.parseLong( fresh ) >= arService.getSyncHorizon() );
+        mvc.perform( get( "/api/v1/appointmentrequests/calendar?since=" + fresh ) )
+                .andExpect( jsonPath( "$.fullSync" ).value( false ) )
+                .andExpect( jsonPath( "$.changed.length()" ).value( 0 ) );
+
+        mvc.perform( get( "/api/v1/appointmentrequests/calendar?since=soon" ) ).andExpect( status().isBadRequest() );
+        mvc.perform( get( "/api/v1/appointmentrequests/calendar?since=" + ( Long.parseLong( next ) + 1000 ) ) )
+                .andExpect( status().isBadRequest() );
+    }
+
 }
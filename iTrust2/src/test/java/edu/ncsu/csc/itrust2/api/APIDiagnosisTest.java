@@ -3,14 +3,20 @@ package edu.ncsu.csc.iTrust2.api;
 import static org.junit.Assert.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import javax.persistence.EntityManagerFactory;
 import javax.transaction.Transactional;
 
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -19,6 +25,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
@@ -74,6 +81,12 @@ public class APIDiagnosisTest {
     @Autowired
     private OfficeVisitService    officeVisitService;
 
+    @Autowired
+    private EntityManagerFactory  entityManagerFactory;
+
+    @Autowired
+    private PasswordEncoder       passwordEncoder;
+
     /**
      * Sets up test
      */
@@ -81,11 +94,11 @@ public class APIDiagnosisTest {
     public void setup () {
         mvc = MockMvcBuilders.webAppContextSetup( context ).build();
 
-        final User patient = new Patient( new UserForm( "patient", "123456", Role.ROLE_PATIENT, 1 ) );
+        final User patient = new Patient( new UserForm( "patient", "123456", Role.ROLE_PATIENT, 1 ), passwordEncoder );
 
-        final User hcp = new Personnel( new UserForm( "hcp", "123456", Role.ROLE_HCP, 1 ) );
+        final User hcp = new Personnel( new UserForm( "hcp", "123456", Role.ROLE_HCP, 1 ), passwordEncoder );
 
-        final User admin = new Personnel( new UserForm( "admin", "123456", Role.ROLE_ADMIN, 1 ) );
+        final User admin = new Personnel( new UserForm( "admin", "123456", Role.ROLE_ADMIN, 1 ), passwordEncoder );
 
         userService.saveAll( List.of( patient, hcp, admin ) );
 
@@ -251,4 +264,70 @@ public class APIDiagnosisTest {
         Assert.assertEquals( 2, diagnosisService.count() );
 
     }
+
+    /**
+     * A patient's diagnoses come back in visit order from a single query, and
+     * can be limited to visits within a range of dates.
+     *
+     * @throws Exception
+     */
+    @Test
+    @Transactional
+    @WithMockUser ( username = "patient", roles = { "PATIENT" } )
+    public void testDiagnosesForPatient () throws Exception {
+        final ICDCode code = new ICDCode();
+        code.setCode( "T12" );
+        code.setDescription( "Test 12" );
+        icdCodeService.save( code );
+
+        /* Visits on the 1st, 2nd, 3rd and 4th of March, two diagnoses each */
+        for ( int i = 1; i <= 4; i++ ) {
+            final OfficeVisitForm form = new OfficeVisitForm();
+            form.setDate( "2048-03-0" + i + "T09:50:00.000-05:00" );
+            form.setHcp( "hcp" );
+            form.setPatient( "patient" );
+            form.setType( AppointmentType.GENERAL_CHECKUP.toString() );
+            form.setHospital( "iTrust Test Hospital 2" );
+            final List<DiagnosisForm> diagnoses = new ArrayList<DiagnosisForm>();
+            for ( int j = 0; j < 2; j++ ) {
+                final DiagnosisForm diagnosis = new DiagnosisForm();
+                diagnosis.setCode( "T12" );
+                diagnosis.setNote( "Visit " + i + " diagnosis " + j );
+                diagnoses.add( diagnosis );
+            }
+            form.setDiagnoses( diagnoses );
+            officeVisitService.save( officeVisitService.build( form ) );
+        }
+        /* Write the visits out now, so that only the query below is counted */
+        officeVisitService.flush();
+
+        final User patient = userService.findByName( "patient" );
+        final Statistics stats = entityManagerFactory.unwrap( SessionFactory.class ).getStatistics();
+        stats.setStatisticsEnabled( true );
+        try {
+            stats.clear();
+            final List<Diagnosis> all = diagnosisService.findByPatient( patient );
+            Assert.assertEquals( 1, stats.getPrepareStatementCount() );
+            Assert.assertEquals( 8, all.size() );
+            Assert.assertEquals( "Visit 1 diagnosis 0", all.get( 0 ).getNote() );
+            Assert.assertEquals( "Visit 4 diagnosis 1", all.get( 7 ).getNote() );
+            Assert.assertEquals( "T12", all.get( 0 ).getCode().getCode() );
+        }
+        finally {
+            stats.setStatisticsEnabled( false );
+        }
+
+        mvc.perform( get( "/api/v1/diagnoses" ) ).andExpect( status().isOk() )
+                .andExpect( jsonPath( "$.length()" ).value( 8 ) );
+        mvc.perform( get( "/api/v1/diagnoses?from=2048-03-02&to=2048-03-03" ) ).andExpect( status().isOk() )
+                .andExpect( jsonPath( "$.length()" ).value( 4 ) )
+                .andExpect( jsonPath( "$[0].note" ).value( "Visit 2 diagnosis 0" ) )
+                .andExpect( jsonPath( "$[3].note" ).value( "Visit 3 diagnosis 1" ) );
+        mvc.perform( get( "/api/v1/diagnoses?from=2048-03-04" ) ).andExpect( jsonPath( "$.length()" ).value( 2 ) );
+        mvc.perform( get( "/api/v1/diagnoses?to=2048-03-01" ) ).andExpect( jsonPath( "$.length()" ).value( 2 ) );
+        mvc.perform( get( "/api/v1/diagnoses?from=2048-03-04&to=2048-03-01" ) )
+                .andExpect( status().isBadRequest() );
+        mvc.perform( get( "/api/v1/diagnoses?from=March" ) ).andExpect( status().isBadRequest() );
+    }
+
 }
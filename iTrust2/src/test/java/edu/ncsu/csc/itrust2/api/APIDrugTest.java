@@ -1,10 +1,13 @@
 package edu.ncsu.csc.iTrust2.api;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.io.UnsupportedEncodingException;
@@ -137,4 +140,60 @@ public class APIDrugTest {
 
     }
 
+    /**
+     * Tests searching for drugs by code and name, and that the search sees
+     * drugs as soon as they are added, edited, or deleted.
+     *
+     * @throws Exception
+     */
+    @Test
+    @Transactional
+    @WithMockUser ( username = "admin", roles = { "USER", "ADMIN" } )
+    public void testSearchDrugs () throws Exception {
+        for ( final String[] d : new String[][] { { "0777-3105-02", "Quetiapine" }, { "0777-3106-02", "Amoxicillin" },
+                { "1234-0001-01", "Quinine sulfate" } } ) {
+            final DrugForm form = new DrugForm();
+            form.setCode( d[0] );
+            form.setName( d[1] );
+            form.setDescription( "" );
+            mvc.perform( post( "/api/v1/drugs" ).contentType( MediaType.APPLICATION_JSON )
+                    .content( TestUtils.asJsonString( form ) ) ).andExpect( status().isOk() );
+        }
+
+        mvc.perform( get( "/api/v1/drugs/search?q=qu" ) ).andExpect( status().isOk() )
+                .andExpect( jsonPath( "$.length()" ).value( 2 ) )
+                .andExpect( jsonPath( "$[0].name" ).value( "Quetiapine" ) )
+                .andExpect( jsonPath( "$[1].name" ).value( "Quinine sulfate" ) );
+        mvc.perform( get( "/api/v1/drugs/search?q=0777-31" ) ).andExpect( jsonPath( "$.length()" ).value( 2 ) );
+        mvc.perform( get( "/api/v1/drugs/search?q=0777-3106" ) ).andExpect( jsonPath( "$.length()" ).value( 1 ) )
+                .andExpect( jsonPath( "$[0].code" ).value( "0777-3106-02" ) );
+        mvc.perform( get( "/api/v1/drugs/search?q=sulf" ) ).andExpect( jsonPath( "$.length()" ).value( 1 ) );
+        mvc.perform( get( "/api/v1/drugs/search" ) ).andExpect( jsonPath( "$.length()" ).value( 0 ) );
+        mvc.perform( get( "/api/v1/drugs/search?q=q&limit=0" ) ).andExpect( status().isBadRequest() );
+        mvc.perform( get( "/api/v1/drugs/search?q=q&limit=51" ) ).andExpect( status().isBadRequest() );
+
+        // Renaming a drug is visible to the next search
+        final Drug amoxicillin = service.findByCode( "0777-3106-02" );
+        final DrugForm rename = new DrugForm();
+        rename.setId( amoxicillin.getId() );
+        rename.setCode( amoxicillin.getCode() );
+        rename.setName( "Quinapril" );
+        rename.setDescription( "" );
+        mvc.perform( put( "/api/v1/drugs" ).contentType( MediaType.APPLICATION_JSON )
+                .content( TestUtils.asJsonString( rename ) ) ).andExpect( status().isOk() );
+        mvc.perform( get( "/api/v1/drugs/search?q=qu" ) ).andExpect( jsonPath( "$.length()" ).value( 3 ) );
+        assertEquals( "Quinapril", service.findByCode( "0777-3106-02" ).getName() );
+
+        // As is deleting one
+        mvc.perform( delete( "/api/v1/drugs/" + service.findByCode( "1234-0001-01" ).getId() ) )
+                .andExpect( status().isOk() );
+        assertNull( service.findByCode( "1234-0001-01" ) );
+        mvc.perform( get( "/api/v1/drugs/search?q=qu" ) ).andExpect( jsonPath( "$.length()" ).value( 2 ) );
+        mvc.perform( get( "/api/v1/drugs" ) ).andExpect( jsonPath( "$.length()" ).value( 2 ) );
+
+        mvc.perform( get( "/api/v1/metrics" ) ).andExpect( status().isOk() )
+                .andExpect( jsonPath( "$.drugFormulary.size" ).value( 2 ) )
+                .andExpect( jsonPath( "$.drugFormulary.lookups" ).value( Matchers.greaterThan( 0 ) ) );
+    }
+
 }
@@ -6,6 +6,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import javax.transaction.Transactional;
@@ -91,4 +92,42 @@ public class APIICDCodeTest {
         mvc.perform( get( "/api/v1/icdcode/" + form.getId() ).contentType( MediaType.APPLICATION_JSON ) )
                 .andExpect( status().isNotFound() );
     }
+
+    /**
+     * The search endpoint is served from the catalog, which picks up codes as
+     * they are added and removed.
+     *
+     * @throws Exception
+     */
+    @Test
+    @WithMockUser ( username = "admin", roles = { "USER", "ADMIN" } )
+    public void testSearchCodes () throws Exception {
+        for ( final String[] c : new String[][] { { "A01", "Typhoid fever" }, { "A02", "Other salmonella" },
+                { "R50", "Fever of other origin" } } ) {
+            final ICDCodeForm form = new ICDCodeForm();
+            form.setCode( c[0] );
+            form.setDescription( c[1] );
+            mvc.perform( post( "/api/v1/icdcodes" ).contentType( MediaType.APPLICATION_JSON )
+                    .content( TestUtils.asJsonString( form ) ) ).andExpect( status().isOk() );
+        }
+
+        mvc.perform( get( "/api/v1/icdcodes/search?q=fev" ) ).andExpect( status().isOk() )
+                .andExpect( jsonPath( "$.length()" ).value( 2 ) )
+                .andExpect( jsonPath( "$[0].code" ).value( "A01" ) )
+                .andExpect( jsonPath( "$[1].code" ).value( "R50" ) );
+        mvc.perform( get( "/api/v1/icdcodes/search?q=a0&limit=1" ) ).andExpect( jsonPath( "$.length()" ).value( 1 ) )
+                .andExpect( jsonPath( "$[0].code" ).value( "A01" ) );
+        mvc.perform( get( "/api/v1/icdcodes/search" ) ).andExpect( jsonPath( "$.length()" ).value( 0 ) );
+        mvc.perform( get( "/api/v1/icdcodes/search?q=a&limit=0" ) ).andExpect( status().isBadRequest() );
+        mvc.perform( get( "/api/v1/icdcodes/search?q=a&limit=51" ) ).andExpect( status().isBadRequest() );
+
+        mvc.perform( delete( "/api/v1/icdcode/" + service.findByCode( "A01" ).getId() ) )
+                .andExpect( status().isOk() );
+        assertNull( service.findByCode( "A01" ) );
+        mvc.perform( get( "/api/v1/icdcodes/search?q=fev" ) ).andExpect( jsonPath( "$.length()" ).value( 1 ) )
+                .andExpect( jsonPath( "$[0].code" ).value( "R50" ) );
+        mvc.perform( get( "/api/v1/icdcodes" ) ).andExpect( jsonPath( "$.length()" ).value( 2 ) );
+
+        service.deleteAll();
+    }
 }
@@ -0,0 +1,219 @@
+package edu.ncsu.csc.iTrust2.api;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.google.gson.Gson;
+
+import edu.ncsu.csc.iTrust2.common.TestUtils;
+import edu.ncsu.csc.iTrust2.controllers.api.comm.LogEntryPage;
+import edu.ncsu.csc.iTrust2.controllers.api.comm.LogEntryRequestBody;
+import edu.ncsu.csc.iTrust2.controllers.api.comm.LogEntryTableRow;
+import edu.ncsu.csc.iTrust2.forms.UserForm;
+import edu.ncsu.csc.iTrust2.models.Patient;
+import edu.ncsu.csc.iTrust2.models.Personnel;
+import edu.ncsu.csc.iTrust2.models.enums.Role;
+import edu.ncsu.csc.iTrust2.models.enums.TransactionType;
+import edu.ncsu.csc.iTrust2.models.security.LogEntry;
+import edu.ncsu.csc.iTrust2.services.UserService;
+import edu.ncsu.csc.iTrust2.services.security.LogEntryService;
+import edu.ncsu.csc.iTrust2.utils.AuditLogWriter;
+
+/**
+ * Tests for the log entry API, making sure that the correct page of entries is
+ * returned for the current user.
+ */
+@RunWith ( SpringRunner.class )
+@SpringBootTest
+@AutoConfigureMockMvc
+public class APILogEntryTest {
+
+    private static final String   PATIENT = "patient";
+
+    private MockMvc               mvc;
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private LogEntryService       service;
+
+    @Autowired
+    private UserService           userService;
+
+    @Autowired
+    private AuditLogWriter        writer;
+
+    @Autowired
+    private PasswordEncoder       passwordEncoder;
+
+    /**
+     * Sets up the tests
+     */
+    @Before
+    public void setup () {
+        mvc = MockMvcBuilders.webAppContextSetup( context ).build();
+        /* Entries logged by earlier tests mustn't land after the cleanup */
+        writer.flush();
+        service.deleteAll();
+        userService.deleteAll();
+
+        userService.save( new Patient( new UserForm( PATIENT, "123456", Role.ROLE_PATIENT, 1 ), passwordEncoder ) );
+        userService.save( new Personnel( new UserForm( "hcp", "123456", Role.ROLE_HCP, 1 ), passwordEncoder ) );
+
+        final List<LogEntry> entries = new ArrayList<LogEntry>();
+        final ZonedDateTime now = ZonedDateTime.now();
+        for ( int i = 0; i < 25; i++ ) {
+            /* Older entries name an HCP so that their role gets filled in */
+            final LogEntry le = new LogEntry( TransactionType.LOGIN_SUCCESS, PATIENT, i >= 20 ? "hcp" : null,
+                    "Login " + i );
+            le.setTime( now.minusDays( i ) );
+            entries.add( le );
+        }
+        /* Entries a patient can't see, and entries for someone else */
+        for ( int i = 0; i < 5; i++ ) {
+            entries.add( new LogEntry( TransactionType.VIEW_USERS, PATIENT, null, null ) );
+            entries.add( new LogEntry( TransactionType.LOGIN_SUCCESS, "hcp", null, null ) );
+        }
+        service.saveAll( entries );
+    }
+
+    /**
+     * Requests one page of entries for the current user
+     *
+     * @param start
+     *            Start date, or empty for all time
+     * @param end
+     *            End date, or empty for all time
+     * @param page
+     *            Page number, starting from 1
+     * @param pageLength
+     *            Entries per page
+     * @return The rows on the page
+     * @throws Exception
+     */
+    private LogEntryTableRow[] getPage ( final String start, final String end, final int page, final int pageLength )
+            throws Exception {
+        final LogEntryRequestBody body = new LogEntryRequestBody();
+        body.setStartDate( start );
+        body.setEndDate( end );
+        body.setPage( page );
+        body.setPageLength( pageLength );
+
+        final String response = mvc
+                .perform( post( "/api/v1/logentries/range" ).contentType( MediaType.APPLICATION_JSON )
+                        .content( TestUtils.asJsonString( body ) ) )
+                .andExpect( status().isOk() ).andReturn().getResponse().getContentAsString();
+        /* Write the entry for this view now, as the synchronous logger would */
+        writer.flush();
+        return new Gson().fromJson( response, LogEntryTableRow[].class );
+    }
+
+    /**
+     * Pages through a patient's log, with and without a date range. Page 1 is
+     * requested last because viewing it creates a new entry.
+     *
+     * @throws Exception
+     */
+    @Test
+    @WithMockUser ( username = PATIENT, roles = { "PATIENT" } )
+    public void testLogEntryPaging () throws Exception {
+        LogEntryTableRow[] rows = getPage( "", "", 2, 10 );
+        Assert.assertEquals( 10, rows.length );
+        Assert.assertEquals( "Only patient-viewable entries should count towards the pages", 3,
+                rows[0].getNumPages() );
+        for ( final LogEntryTableRow row : rows ) {
+            Assert.assertEquals( PATIENT, row.getPrimary() );
+            Assert.assertEquals( TransactionType.LOGIN_SUCCESS.getDescription(), row.getTransactionType() );
+        }
+
+        rows = getPage( "", "", 3, 10 );
+        Assert.assertEquals( "The last page should only have the leftover entries", 5, rows.length );
+        for ( final LogEntryTableRow row : rows ) {
+            Assert.assertEquals( "The other user's role should be shown to the patient", "[ROLE_HCP]",
+                    row.getRole() );
+        }
+
+        final LocalDate today = LocalDate.now();
+        rows = getPage( today.minusDays( 4 ).toString(), today.toString(), 2, 3 );
+        Assert.assertEquals( 2, rows.length );
+        Assert.assertEquals( 2, rows[0].getNumPages() );
+
+        rows = getPage( "", "", 1, 10 );
+        Assert.assertEquals( 10, rows.length );
+        for ( int i = 1; i < rows.length; i++ ) {
+            Assert.assertTrue( "Entries should be returned newest first",
+                    rows[i - 1].getDateTime().compareTo( rows[i].getDateTime() ) >= 0 );
+        }
+    }
+
+    /**
+     * Scrolls through a patient's whole log using cursors, making sure that
+     * every entry shows up exactly once and in order.
+     *
+     * @throws Exception
+     */
+    @Test
+    @WithMockUser ( username = PATIENT, roles = { "PATIENT" } )
+    public void testLogEntryCursor () throws Exception {
+        final LogEntryRequestBody body = new LogEntryRequestBody();
+        body.setStartDate( "" );
+        body.setEndDate( "" );
+        body.setPageLength( 10 );
+
+        final List<String> seen = new ArrayList<String>();
+        final Set<String> cursors = new HashSet<String>();
+        int pages = 0;
+        do {
+            final String response = mvc
+                    .perform( post( "/api/v1/logentries/range/cursor" ).contentType( MediaType.APPLICATION_JSON )
+                            .content( TestUtils.asJsonString( body ) ) )
+                    .andExpect( status().isOk() ).andReturn().getResponse().getContentAsString();
+            final LogEntryPage page = new Gson().fromJson( response, LogEntryPage.class );
+            for ( final LogEntryTableRow row : page.getRows() ) {
+                Assert.assertEquals( TransactionType.LOGIN_SUCCESS.getDescription(), row.getTransactionType() );
+                seen.add( row.getDateTime() );
+            }
+            Assert.assertTrue( "Each page should have a new cursor",
+                    null == page.getNextCursor() || cursors.add( page.getNextCursor() ) );
+            body.setCursor( page.getNextCursor() );
+            pages++;
+        }
+        while ( null != body.getCursor() );
+
+        Assert.assertEquals( 3, pages );
+        Assert.assertEquals( "Every patient-viewable entry should be seen once", 25, seen.size() );
+        Assert.assertEquals( 25, new HashSet<String>( seen ).size() );
+        for ( int i = 1; i < seen.size(); i++ ) {
+            Assert.assertTrue( "Entries should be returned newest first",
+                    seen.get( i - 1 ).compareTo( seen.get( i ) ) > 0 );
+        }
+
+        body.setCursor( "not a cursor" );
+        mvc.perform( post( "/api/v1/logentries/range/cursor" ).contentType( MediaType.APPLICATION_JSON )
+                .content( TestUtils.asJsonString( body ) ) ).andExpect( status().isBadRequest() );
+    }
+
+}
@@ -8,13 +8,19 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.time.LocalDate;
+import java.time.ZonedDateTime;
 import java.util.List;
 
+import javax.persistence.EntityManagerFactory;
 import javax.transaction.Transactional;
 
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -23,18 +29,25 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+
 import edu.ncsu.csc.iTrust2.common.TestUtils;
+import edu.ncsu.csc.iTrust2.controllers.api.comm.OfficeVisitSummary;
 import edu.ncsu.csc.iTrust2.forms.AppointmentRequestForm;
+import edu.ncsu.csc.iTrust2.forms.DiagnosisForm;
 import edu.ncsu.csc.iTrust2.forms.OfficeVisitForm;
 import edu.ncsu.csc.iTrust2.forms.UserForm;
 import edu.ncsu.csc.iTrust2.models.BasicHealthMetrics;
 import edu.ncsu.csc.iTrust2.models.Hospital;
+import edu.ncsu.csc.iTrust2.models.ICDCode;
 import edu.ncsu.csc.iTrust2.models.OfficeVisit;
 import edu.ncsu.csc.iTrust2.models.Patient;
 import edu.ncsu.csc.iTrust2.models.Personnel;
@@ -51,6 +64,7 @@ import edu.ncsu.csc.iTrust2.models.enums.Status;
 import edu.ncsu.csc.iTrust2.services.AppointmentRequestService;
 import edu.ncsu.csc.iTrust2.services.BasicHealthMetricsService;
 import edu.ncsu.csc.iTrust2.services.HospitalService;
+import edu.ncsu.csc.iTrust2.services.ICDCodeService;
 import edu.ncsu.csc.iTrust2.services.OfficeVisitService;
 import edu.ncsu.csc.iTrust2.services.UserService;
 
@@ -85,6 +99,15 @@ public class APIOfficeVisitTest {
     @Autowired
     private BasicHealthMetricsService bhmService;
 
+    @Autowired
+    private ICDCodeService            icdCodeService;
+
+    @Autowired
+    private EntityManagerFactory      entityManagerFactory;
+
+    @Autowired
+    private PasswordEncoder           passwordEncoder;
+
     /**
      * Sets up test
      */
@@ -96,9 +119,9 @@ public class APIOfficeVisitTest {
 
         appointmentRequestService.deleteAll();
 
-        final User patient = new Patient( new UserForm( "patient", "123456", Role.ROLE_PATIENT, 1 ) );
+        final User patient = new Patient( new UserForm( "patient", "123456", Role.ROLE_PATIENT, 1 ), passwordEncoder );
 
-        final User hcp = new Personnel( new UserForm( "hcp", "123456", Role.ROLE_HCP, 1 ) );
+        final User hcp = new Personnel( new UserForm( "hcp", "123456", Role.ROLE_HCP, 1 ), passwordEncoder );
 
         final Patient antti = buildPatient();
 
@@ -114,7 +137,7 @@ public class APIOfficeVisitTest {
     }
 
     private Patient buildPatient () {
-        final Patient antti = new Patient( new UserForm( "antti", "123456", Role.ROLE_PATIENT, 1 ) );
+        final Patient antti = new Patient( new UserForm( "antti", "123456", Role.ROLE_PATIENT, 1 ), passwordEncoder );
 
         antti.setAddress1( "1 Test Street" );
         antti.setAddress2( "Some Location" );
@@ -171,6 +194,19 @@ public class APIOfficeVisitTest {
 
         appointmentRequestService.save( appointmentRequestService.build( appointmentForm ) );
 
+        /* The same moment matches, whatever zone it is given in */
+        final User hcp = userService.findByName( "hcp" );
+        final User patient = userService.findByName( "patient" );
+        assertTrue( appointmentRequestService
+                .findByHcpAndPatientAndDate( hcp, patient, ZonedDateTime.parse( "2030-11-19T09:50:00Z" ) )
+                .isPresent() );
+        assertFalse( appointmentRequestService
+                .findByHcpAndPatientAndDate( hcp, patient, ZonedDateTime.parse( "2030-11-19T10:50:00Z" ) )
+                .isPresent() );
+        assertFalse( appointmentRequestService
+                .findByHcpAndPatientAndDate( patient, hcp, ZonedDateTime.parse( "2030-11-19T09:50:00Z" ) )
+                .isPresent() );
+
         final OfficeVisitForm visit = new OfficeVisitForm();
         visit.setPreScheduled( "yes" );
         visit.setDate( "2030-11-19T04:50:00.000-05:00" );
@@ -421,4 +457,145 @@ public class APIOfficeVisitTest {
 
     }
 
+    /**
+     * Listing office visits should take a handful of queries however many
+     * visits there are, and return summaries rather than whole visits.
+     *
+     * @throws Exception
+     */
+    @Test
+    @WithMockUser ( username = "hcp", roles = { "HCP" } )
+    public void testOfficeVisitListingQueries () throws Exception {
+        createVisits( 20 );
+
+        final Statistics stats = entityManagerFactory.unwrap( SessionFactory.class ).getStatistics();
+        stats.setStatisticsEnabled( true );
+        try {
+            stats.clear();
+            final String content = mvc.perform( get( "/api/v1/officevisits/HCP" ) ).andExpect( status().isOk() )
+                    .andReturn().getResponse().getContentAsString();
+            final long queries = stats.getPrepareStatementCount();
+
+            final List<OfficeVisitSummary> visits = new GsonBuilder().create().fromJson( content,
+                    new TypeToken<List<OfficeVisitSummary>>() {
+                    }.getType() );
+            assertEquals( 20, visits.size() );
+            assertEquals( "patient", visits.get( 0 ).getPatient() );
+            assertEquals( "iTrust Test Hospital 2", visits.get( 0 ).getHospital() );
+            assertTrue( "Listing 20 visits took " + queries + " queries", queries <= 8 );
+
+            /* A single visit still comes back whole */
+            stats.clear();
+            mvc.perform( get( "/api/v1/officevisits/" + visits.get( 0 ).getId() ) ).andExpect( status().isOk() )
+                    .andExpect( jsonPath( "$.diagnoses[0].code.code" ).value( "Z00" ) );
+        }
+        finally {
+            stats.setStatisticsEnabled( false );
+            officeVisitService.deleteAll();
+        }
+    }
+
+    /**
+     * Listings come back a page at a time, sorted and filtered as asked, with
+     * the total in X-Total-Count.
+     *
+     * @throws Exception
+     */
+    @Test
+    @WithMockUser ( username = "hcp", roles = { "HCP" } )
+    public void testOfficeVisitPaging () throws Exception {
+        final Hospital other = new Hospital( "iTrust Test Hospital 3", "1 Other Road", "27606", "NC" );
+        hospitalService.save( other );
+        try {
+            createVisits( 12 );
+
+            /* Newest first by default */
+            List<OfficeVisitSummary> visits = listVisits( "/api/v1/officevisits/HCP?size=5", "12" );
+            assertEquals( 5, visits.size() );
+            assertEquals( "Visit 11", visits.get( 0 ).getNotes() );
+            assertEquals( "Visit 7", visits.get( 4 ).getNotes() );
+
+            visits = listVisits( "/api/v1/officevisits/HCP?size=5&page=2&sort=date,asc", "12" );
+            assertEquals( 2, visits.size() );
+            assertEquals( "Visit 10", visits.get( 0 ).getNotes() );
+
+            /* Visit i is on 2030-11-19 plus i days; the end date is inclusive */
+            visits = listVisits( "/api/v1/officevisits?from=2030-11-21&to=2030-11-23&sort=date,asc", "3" );
+            assertEquals( "Visit 2", visits.get( 0 ).getNotes() );
+            assertEquals( "Visit 4", visits.get( 2 ).getNotes() );
+
+            /* Odd visits are at the other hospital, every third is an eye exam */
+            listVisits( "/api/v1/officevisits?hospital=iTrust Test Hospital 3", "6" );
+            listVisits( "/api/v1/officevisits?type=GENERAL_OPHTHALMOLOGY", "4" );
+            listVisits( "/api/v1/officevisits?type=GENERAL_OPHTHALMOLOGY&hospital=iTrust Test Hospital 3", "2" );
+
+            /* Everything at once, only when asked for */
+            visits = listVisits( "/api/v1/officevisits?unpaged=true&size=5", "12" );
+            assertEquals( 12, visits.size() );
+
+            mvc.perform( get( "/api/v1/officevisits?sort=notes,asc" ) ).andExpect( status().isBadRequest() );
+            mvc.perform( get( "/api/v1/officevisits?from=yesterday" ) ).andExpect( status().isBadRequest() );
+            mvc.perform( get( "/api/v1/officevisits?from=2030-12-01&to=2030-11-01" ) )
+                    .andExpect( status().isBadRequest() );
+            mvc.perform( get( "/api/v1/officevisits?type=NOT_A_TYPE" ) ).andExpect( status().isBadRequest() );
+        }
+        finally {
+            officeVisitService.deleteAll();
+            hospitalService.delete( other );
+        }
+    }
+
+    /**
+     * Fetches a listing and checks its total.
+     *
+     * @param url
+     *            The listing to fetch
+     * @param total
+     *            The expected X-Total-Count
+     * @return The visits listed
+     * @throws Exception
+     */
+    private List<OfficeVisitSummary> listVisits ( final String url, final String total ) throws Exception {
+        final String content = mvc.perform( get( url ) ).andExpect( status().isOk() )
+                .andExpect( header().string( "X-Total-Count", total ) ).andReturn().getResponse()
+                .getContentAsString();
+        return new GsonBuilder().create().fromJson( content, new TypeToken<List<OfficeVisitSummary>>() {
+        }.getType() );
+    }
+
+    /**
+     * Creates visits between "hcp" and "patient", one a day from 2030-11-19.
+     * Odd-numbered visits are at "iTrust Test Hospital 3" (if it exists) and
+     * every third visit is an eye exam; each has one diagnosis.
+     *
+     * @param count
+     *            Number of visits to create
+     */
+    private void createVisits ( final int count ) {
+        ICDCode code = icdCodeService.findByCode( "Z00" );
+        if ( null == code ) {
+            code = new ICDCode();
+            code.setCode( "Z00" );
+            code.setDescription( "General examination" );
+            icdCodeService.save( code );
+        }
+        final boolean otherHospital = null != hospitalService.findByName( "iTrust Test Hospital 3" );
+
+        for ( int i = 0; i < count; i++ ) {
+            final OfficeVisitForm visit = new OfficeVisitForm();
+            visit.setDate( ZonedDateTime.parse( "2030-11-19T04:50:00.000-05:00" ).plusDays( i ).toString() );
+            visit.setHcp( "hcp" );
+            visit.setPatient( "patient" );
+            visit.setNotes( "Visit " + i );
+            visit.setType( ( i % 3 == 0 ? AppointmentType.GENERAL_OPHTHALMOLOGY : AppointmentType.GENERAL_CHECKUP )
+                    .toString() );
+            visit.setHospital( otherHospital && i % 2 == 1 ? "iTrust Test Hospital 3" : "iTrust Test Hospital 2" );
+            final DiagnosisForm diagnosis = new DiagnosisForm();
+            diagnosis.setCode( "Z00" );
+            diagnosis.setNote( "Fine" );
+            visit.setDiagnoses( List.of( diagnosis ) );
+            officeVisitService.save( officeVisitService.build( visit ) );
+        }
+    }
+
 }
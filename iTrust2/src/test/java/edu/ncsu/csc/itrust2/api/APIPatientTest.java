@@ -1,9 +1,18 @@
 package edu.ncsu.csc.iTrust2.api;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.io.ByteArrayOutputStream;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.transaction.Transactional;
 
 import org.junit.Assert;
@@ -13,24 +22,44 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import edu.ncsu.csc.iTrust2.common.TestUtils;
+import edu.ncsu.csc.iTrust2.controllers.api.APIPatientController;
+import edu.ncsu.csc.iTrust2.forms.DiagnosisForm;
+import edu.ncsu.csc.iTrust2.forms.OfficeVisitForm;
 import edu.ncsu.csc.iTrust2.forms.PatientForm;
+import edu.ncsu.csc.iTrust2.forms.PrescriptionForm;
 import edu.ncsu.csc.iTrust2.forms.UserForm;
+import edu.ncsu.csc.iTrust2.models.Drug;
+import edu.ncsu.csc.iTrust2.models.Hospital;
+import edu.ncsu.csc.iTrust2.models.ICDCode;
 import edu.ncsu.csc.iTrust2.models.Patient;
+import edu.ncsu.csc.iTrust2.models.Personnel;
 import edu.ncsu.csc.iTrust2.models.User;
+import edu.ncsu.csc.iTrust2.models.enums.AppointmentType;
 import edu.ncsu.csc.iTrust2.models.enums.BloodType;
 import edu.ncsu.csc.iTrust2.models.enums.Ethnicity;
 import edu.ncsu.csc.iTrust2.models.enums.Gender;
 import edu.ncsu.csc.iTrust2.models.enums.Role;
 import edu.ncsu.csc.iTrust2.models.enums.State;
+import edu.ncsu.csc.iTrust2.services.DrugService;
+import edu.ncsu.csc.iTrust2.services.HospitalService;
+import edu.ncsu.csc.iTrust2.services.ICDCodeService;
+import edu.ncsu.csc.iTrust2.services.OfficeVisitService;
 import edu.ncsu.csc.iTrust2.services.PatientService;
+import edu.ncsu.csc.iTrust2.services.PrescriptionService;
 
 /**
  * Test for API functionality for interacting with Patients
@@ -51,6 +80,27 @@ public class APIPatientTest {
     @Autowired
     private PatientService        service;
 
+    @Autowired
+    private OfficeVisitService    officeVisitService;
+
+    @Autowired
+    private PrescriptionService   prescriptionService;
+
+    @Autowired
+    private HospitalService       hospitalService;
+
+    @Autowired
+    private ICDCodeService        icdCodeService;
+
+    @Autowired
+    private DrugService           drugService;
+
+    @Autowired
+    private APIPatientController  patientController;
+
+    @Autowired
+    private PasswordEncoder       passwordEncoder;
+
     /**
      * Sets up test
      */
@@ -104,7 +154,7 @@ public class APIPatientTest {
         mvc.perform( put( "/api/v1/patients/antti" ).contentType( MediaType.APPLICATION_JSON )
                 .content( TestUtils.asJsonString( patient ) ) ).andExpect( status().isNotFound() );
 
-        final User antti = new Patient( new UserForm( "antti", "123456", Role.ROLE_PATIENT, 1 ) );
+        final User antti = new Patient( new UserForm( "antti", "123456", Role.ROLE_PATIENT, 1 ), passwordEncoder );
 
         service.save( antti );
 
@@ -164,7 +214,7 @@ public class APIPatientTest {
         patient.setState( State.NC.toString() );
         patient.setZip( "27514" );
 
-        final User antti = new Patient( new UserForm( "antti", "123456", Role.ROLE_PATIENT, 1 ) );
+        final User antti = new Patient( new UserForm( "antti", "123456", Role.ROLE_PATIENT, 1 ), passwordEncoder );
 
         service.save( antti );
 
@@ -181,7 +231,7 @@ public class APIPatientTest {
     @Transactional
     @WithMockUser ( username = "antti", roles = { "PATIENT" } )
     public void testPatientAsPatient () throws Exception {
-        final User antti = new Patient( new UserForm( "antti", "123456", Role.ROLE_PATIENT, 1 ) );
+        final User antti = new Patient( new UserForm( "antti", "123456", Role.ROLE_PATIENT, 1 ), passwordEncoder );
 
         service.save( antti );
 
@@ -224,4 +274,114 @@ public class APIPatientTest {
         mvc.perform( get( "/api/v1/patient/" ) ).andExpect( status().isOk() );
     }
 
+    /**
+     * Tests exporting a patient's full record, which is streamed out rather
+     * than returned all at once.
+     *
+     * @throws Exception
+     */
+    @Test
+    @WithMockUser ( username = "exporthcp", roles = { "HCP" } )
+    public void testExportRecord () throws Exception {
+        final Patient exporter = new Patient( new UserForm( "exporter", "123456", Role.ROLE_PATIENT, 1 ),
+                passwordEncoder );
+        exporter.setFirstName( "Export" );
+        final User hcp = new Personnel( new UserForm( "exporthcp", "123456", Role.ROLE_HCP, 1 ), passwordEncoder );
+        service.saveAll( List.of( exporter, hcp ) );
+
+        final Hospital hospital = new Hospital( "Export Hospital", "1 Export Road", "27606", "NC" );
+        hospitalService.save( hospital );
+        if ( null == icdCodeService.findByCode( "Z00" ) ) {
+            final ICDCode code = new ICDCode();
+            code.setCode( "Z00" );
+            code.setDescription( "General examination" );
+            icdCodeService.save( code );
+        }
+        final Drug drug = new Drug();
+        drug.setCode( "1234-5678-90" );
+        drug.setName( "Exportol" );
+        drug.setDescription( "For testing exports" );
+        drugService.save( drug );
+
+        try {
+            final List<OfficeVisitForm> visits = new ArrayList<OfficeVisitForm>();
+            for ( int i = 0; i < 3; i++ ) {
+                final OfficeVisitForm visit = new OfficeVisitForm();
+                visit.setDate( ZonedDateTime.parse( "2030-11-19T04:50:00.000-05:00" ).plusDays( i ).toString() );
+                visit.setHcp( "exporthcp" );
+                visit.setPatient( "exporter" );
+                visit.setNotes( "Visit " + i );
+                visit.setType( AppointmentType.GENERAL_CHECKUP.toString() );
+                visit.setHospital( "Export Hospital" );
+                visit.setHeight( 60f + i );
+                final DiagnosisForm diagnosis = new DiagnosisForm();
+                diagnosis.setCode( "Z00" );
+                diagnosis.setNote( "Fine" );
+                visit.setDiagnoses( List.of( diagnosis ) );
+                visits.add( visit );
+            }
+            Assert.assertEquals( 3, officeVisitService.importAll( visits ) );
+
+            final PrescriptionForm prescription = new PrescriptionForm();
+            prescription.setDrug( drug.getCode() );
+            prescription.setPatient( "exporter" );
+            prescription.setDosage( 10 );
+            prescription.setRenewals( 1 );
+            prescription.setStartDate( "2030-11-19" );
+            prescription.setEndDate( "2030-12-19" );
+            Assert.assertEquals( 1, prescriptionService.importAll( List.of( prescription ) ) );
+
+            final MvcResult started = mvc.perform( get( "/api/v1/patients/exporter/record" ) )
+                    .andExpect( request().asyncStarted() ).andReturn();
+            mvc.perform( asyncDispatch( started ) ).andExpect( status().isOk() )
+                    .andExpect( header().string( "Content-Disposition",
+                            "attachment; filename=\"exporter-record.json\"" ) )
+                    .andExpect( jsonPath( "$.patient.username" ).value( "exporter" ) )
+                    .andExpect( jsonPath( "$.patient.firstName" ).value( "Export" ) )
+                    .andExpect( jsonPath( "$.officeVisits.length()" ).value( 3 ) )
+                    .andExpect( jsonPath( "$.officeVisits[0].notes" ).value( "Visit 0" ) )
+                    .andExpect( jsonPath( "$.officeVisits[2].notes" ).value( "Visit 2" ) )
+                    .andExpect( jsonPath( "$.officeVisits[1].basicHealthMetrics.height" ).value( 61.0 ) )
+                    .andExpect( jsonPath( "$.officeVisits[1].diagnoses[0].code.code" ).value( "Z00" ) )
+                    .andExpect( jsonPath( "$.prescriptions.length()" ).value( 1 ) )
+                    .andExpect( jsonPath( "$.prescriptions[0].drug.code" ).value( "1234-5678-90" ) );
+
+            mvc.perform( get( "/api/v1/patients/nobody/record" ) ).andExpect( status().isNotFound() );
+        }
+        finally {
+            officeVisitService.deleteAll();
+            prescriptionService.deleteAll();
+            drugService.delete( drug );
+            hospitalService.delete( hospital );
+        }
+    }
+
+    /**
+     * A record is streamed after the endpoint returns, so a patient deleted in
+     * between should get a 404 rather than an empty record.
+     *
+     * @throws Exception
+     */
+    @Test
+    @WithMockUser ( username = "exporthcp", roles = { "HCP" } )
+    public void testExportDeletedPatient () throws Exception {
+        final Patient vanishing = new Patient( new UserForm( "vanishing", "123456", Role.ROLE_PATIENT, 1 ),
+                passwordEncoder );
+        service.save( vanishing );
+
+        final ResponseEntity<StreamingResponseBody> response = patientController.exportRecord( "vanishing" );
+        Assert.assertEquals( HttpStatus.OK, response.getStatusCode() );
+        service.delete( vanishing );
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            response.getBody().writeTo( out );
+            Assert.fail( "Exporting a deleted patient should be rejected" );
+        }
+        catch ( final ResponseStatusException rse ) {
+            Assert.assertEquals( HttpStatus.NOT_FOUND, rse.getStatus() );
+        }
+        Assert.assertEquals( "Nothing should be written", 0, out.size() );
+    }
+
 }
@@ -17,6 +17,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
@@ -52,6 +53,9 @@ public class APIPersonnelTest {
     @Autowired
     private PersonnelService      service;
 
+    @Autowired
+    private PasswordEncoder       passwordEncoder;
+
     /**
      * Sets up test
      */
@@ -85,7 +89,7 @@ public class APIPersonnelTest {
     @WithMockUser ( username = "hcp", roles = { "HCP" } )
     public void testPersonnelAPI () throws Exception {
 
-        final User hcp = new Personnel( new UserForm( "hcp", "123456", Role.ROLE_HCP, 1 ) );
+        final User hcp = new Personnel( new UserForm( "hcp", "123456", Role.ROLE_HCP, 1 ), passwordEncoder );
 
         service.save( hcp );
 
@@ -153,12 +157,12 @@ public class APIPersonnelTest {
     @WithMockUser ( username = "hcp", roles = { "HCP" } )
     public void testRoleFiltering () throws Exception {
 
-        final User hcp = new Personnel( new UserForm( "hcp_test1", "123456", Role.ROLE_HCP, 1 ) );
+        final User hcp = new Personnel( new UserForm( "hcp_test1", "123456", Role.ROLE_HCP, 1 ), passwordEncoder );
 
-        final User hcp2 = new Personnel( new UserForm( "hcp_test2", "123456", Role.ROLE_HCP, 1 ) );
+        final User hcp2 = new Personnel( new UserForm( "hcp_test2", "123456", Role.ROLE_HCP, 1 ), passwordEncoder );
         hcp2.addRole( Role.ROLE_ER );
 
-        final User admin = new Personnel( new UserForm( "admin_test", "123456", Role.ROLE_ADMIN, 1 ) );
+        final User admin = new Personnel( new UserForm( "admin_test", "123456", Role.ROLE_ADMIN, 1 ), passwordEncoder );
 
         service.saveAll( List.of( hcp, hcp2, admin ) );
 
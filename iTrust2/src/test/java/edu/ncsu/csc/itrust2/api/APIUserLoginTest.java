@@ -0,0 +1,194 @@
+package edu.ncsu.csc.iTrust2.api;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestBuilders.formLogin;
+import static org.springframework.security.test.web.servlet.response.SecurityMockMvcResultMatchers.authenticated;
+import static org.springframework.security.test.web.servlet.response.SecurityMockMvcResultMatchers.unauthenticated;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.WebApplicationContext;
+
+import edu.ncsu.csc.iTrust2.forms.UserForm;
+import edu.ncsu.csc.iTrust2.models.Personnel;
+import edu.ncsu.csc.iTrust2.models.User;
+import edu.ncsu.csc.iTrust2.models.enums.Role;
+import edu.ncsu.csc.iTrust2.services.UserService;
+import edu.ncsu.csc.iTrust2.services.security.CachedUserDetailsService;
+import edu.ncsu.csc.iTrust2.services.security.IPAccessCache;
+import edu.ncsu.csc.iTrust2.services.security.LoginAttemptService;
+import edu.ncsu.csc.iTrust2.services.security.LoginBanService;
+import edu.ncsu.csc.iTrust2.services.security.LoginLockoutService;
+import edu.ncsu.csc.iTrust2.services.security.LoginThrottle;
+
+/**
+ * Logs in through Spring Security, making sure that users are loaded through
+ * (and cached by) the user details service, and that passwords are hashed
+ * properly.
+ */
+@RunWith ( SpringRunner.class )
+@SpringBootTest
+@AutoConfigureMockMvc
+public class APIUserLoginTest {
+
+    private static final String        USER = "logintester";
+
+    private MockMvc                    mvc;
+
+    @Autowired
+    private WebApplicationContext      context;
+
+    @Autowired
+    private UserService                userService;
+
+    @Autowired
+    private CachedUserDetailsService   userDetailsService;
+
+    @Autowired
+    private LoginBanService            loginBanService;
+
+    @Autowired
+    private LoginLockoutService        loginLockoutService;
+
+    @Autowired
+    private LoginAttemptService        loginAttemptService;
+
+    @Autowired
+    private LoginThrottle              loginThrottle;
+
+    @Autowired
+    private IPAccessCache              ipAccessCache;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private PasswordEncoder            passwordEncoder;
+
+    @Before
+    public void setup () throws InterruptedException {
+        mvc = MockMvcBuilders.webAppContextSetup( context ).apply( SecurityMockMvcConfigurers.springSecurity() )
+                .build();
+        loginBanService.deleteAll();
+        loginLockoutService.deleteAll();
+        loginThrottle.flush();
+        loginAttemptService.deleteAll();
+        loginThrottle.rebuild();
+        ipAccessCache.invalidateAll();
+        userService.deleteAll();
+
+        userService.save( new Personnel( new UserForm( USER, "123456", Role.ROLE_HCP, 1 ), passwordEncoder ) );
+    }
+
+    /**
+     * Repeat logins should be served from the cache, and changing the user
+     * should take effect right away
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testLogin () throws Exception {
+        final long misses = userDetailsService.getMetrics().get( "misses" ).longValue();
+        final long hits = userDetailsService.getMetrics().get( "hits" ).longValue();
+
+        mvc.perform( formLogin().user( USER ).password( "123456" ) ).andExpect( authenticated().withRoles( "HCP" ) );
+        mvc.perform( formLogin().user( USER ).password( "123456" ) ).andExpect( authenticated() );
+        mvc.perform( formLogin().user( USER ).password( "654321" ) ).andExpect( unauthenticated() );
+
+        Assert.assertEquals( "Only the first login should go to the database", misses + 1,
+                userDetailsService.getMetrics().get( "misses" ).longValue() );
+        Assert.assertEquals( hits + 2, userDetailsService.getMetrics().get( "hits" ).longValue() );
+
+        final UserDetails cached = userDetailsService.loadUserByUsername( USER );
+        Assert.assertNotNull( "Logging in should not erase the cached password", cached.getPassword() );
+
+        /* Disable the user; the next login must see it */
+        final User user = userService.findByName( USER );
+        user.setEnabled( 0 );
+        userService.save( user );
+        Assert.assertFalse( userDetailsService.loadUserByUsername( USER ).isEnabled() );
+        mvc.perform( formLogin().user( USER ).password( "123456" ) ).andExpect( unauthenticated() );
+
+        /* Failed logins reference the user, so clear them out first */
+        loginThrottle.flush();
+        loginAttemptService.deleteAll();
+        userService.delete( userService.findByName( USER ) );
+        mvc.perform( formLogin().user( USER ).password( "123456" ) ).andExpect( unauthenticated() );
+    }
+
+    /**
+     * A login that loads a user while a change to them is still uncommitted
+     * sees the old row; that copy mustn't stay cached once the change commits.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testInvalidateAfterCommit () throws Exception {
+        new TransactionTemplate( transactionManager ).executeWithoutResult( tx -> {
+            final User user = userService.findByName( USER );
+            user.setEnabled( 0 );
+            userService.save( user );
+
+            final Thread login = new Thread( () -> userDetailsService.loadUserByUsername( USER ) );
+            login.start();
+            try {
+                login.join();
+            }
+            catch ( final InterruptedException ie ) {
+                throw new IllegalStateException( ie );
+            }
+        } );
+
+        Assert.assertFalse( "The change should be seen once it commits",
+                userDetailsService.loadUserByUsername( USER ).isEnabled() );
+    }
+
+    /**
+     * Logging in with a password hashed at an old cost should re-hash it at
+     * the current one
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRehashOnLogin () throws Exception {
+        final User user = userService.findByName( USER );
+        user.setPassword( new BCryptPasswordEncoder( 4 ).encode( "123456" ) );
+        userService.save( user );
+
+        mvc.perform( formLogin().user( USER ).password( "123456" ) ).andExpect( authenticated() );
+        Assert.assertTrue( "Password should have been re-hashed at the configured cost",
+                userService.findByName( USER ).getPassword().startsWith( "$2a$10$" ) );
+        mvc.perform( formLogin().user( USER ).password( "123456" ) ).andExpect( authenticated() );
+    }
+
+    /**
+     * Admins can see the cache's counters
+     *
+     * @throws Exception
+     */
+    @Test
+    @WithMockUser ( username = "admin", roles = { "ADMIN" } )
+    public void testMetrics () throws Exception {
+        mvc.perform( get( "/api/v1/metrics" ) ).andExpect( status().isOk() )
+                .andExpect( jsonPath( "$.userCache.hits" ).isNumber() )
+                .andExpect( jsonPath( "$.passwordHasher.queueDepth" ).isNumber() );
+    }
+
+}
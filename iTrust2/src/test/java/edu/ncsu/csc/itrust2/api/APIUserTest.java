@@ -10,6 +10,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
@@ -47,6 +48,9 @@ public class APIUserTest {
     @Autowired
     private UserService           service;
 
+    @Autowired
+    private PasswordEncoder       passwordEncoder;
+
     /**
      * Sets up the tests.
      */
@@ -121,7 +125,7 @@ public class APIUserTest {
 
         final UserForm uf = new UserForm( USER_1, PW, Role.ROLE_HCP, 1 );
 
-        final User u1 = new Personnel( uf );
+        final User u1 = new Personnel( uf, passwordEncoder );
 
         service.save( u1 );
 
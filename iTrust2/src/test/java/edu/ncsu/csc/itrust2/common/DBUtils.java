@@ -37,9 +37,10 @@ public class DBUtils {
 
                     /*
                      * If you delete all entries from Hibernate's table it gets
-                     * very unhappy
+                     * very unhappy. The same goes for the per-entity ID
+                     * sequences, which on MySQL are tables too.
                      */
-                    if ( "hibernate_sequence".equals( tableName ) ) {
+                    if ( "hibernate_sequence".equals( tableName ) || tableName.endsWith( "_seq" ) ) {
                         continue;
                     }
 
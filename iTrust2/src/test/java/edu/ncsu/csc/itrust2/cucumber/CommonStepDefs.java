@@ -22,20 +22,20 @@ public class CommonStepDefs extends CucumberTest {
 
     @Given ( "An Admin exists in iTrust2" )
     public void adminExists () {
-        final User u = new Personnel( new UserForm( "admin", "123456", Role.ROLE_ADMIN, 1 ) );
+        final User u = new Personnel( new UserForm( "admin", "123456", Role.ROLE_ADMIN, 1 ), passwordEncoder );
         userService.save( u );
 
     }
 
     @Given ( "A Patient exists in iTrust2" )
     public void patientExists () {
-        final User u = new Patient( new UserForm( "patient", "123456", Role.ROLE_PATIENT, 1 ) );
+        final User u = new Patient( new UserForm( "patient", "123456", Role.ROLE_PATIENT, 1 ), passwordEncoder );
         userService.save( u );
     }
 
     @Given ( "An HCP exists in iTrust2" )
     public void HCPExists () {
-        final User u = new Personnel( new UserForm( "hcp", "123456", Role.ROLE_HCP, 1 ) );
+        final User u = new Personnel( new UserForm( "hcp", "123456", Role.ROLE_HCP, 1 ), passwordEncoder );
         userService.save( u );
 
     }
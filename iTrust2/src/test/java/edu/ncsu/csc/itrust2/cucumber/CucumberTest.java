@@ -8,6 +8,7 @@ import org.openqa.selenium.WebElement;
 import org.openqa.selenium.chrome.ChromeDriver;
 import org.openqa.selenium.chrome.ChromeOptions;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.crypto.password.PasswordEncoder;
 
 import com.paulhammant.ngwebdriver.NgWebDriver;
 
@@ -17,7 +18,10 @@ import io.github.bonigarcia.wdm.ChromeDriverManager;
 public abstract class CucumberTest {
 
     @Autowired
-    protected UserService userService;
+    protected UserService     userService;
+
+    @Autowired
+    protected PasswordEncoder passwordEncoder;
 
     /* Common steps */
 
@@ -7,6 +7,9 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 
 import edu.ncsu.csc.iTrust2.common.DBUtils;
+import edu.ncsu.csc.iTrust2.services.AppointmentRequestService;
+import edu.ncsu.csc.iTrust2.services.DrugService;
+import edu.ncsu.csc.iTrust2.services.ICDCodeService;
 import io.cucumber.java.Before;
 import io.cucumber.spring.CucumberContextConfiguration;
 
@@ -16,11 +19,23 @@ import io.cucumber.spring.CucumberContextConfiguration;
 public class CucumberTestContextConfiguration {
 
     @Autowired
-    protected DataSource dataSource;
+    protected DataSource                dataSource;
+
+    @Autowired
+    protected ICDCodeService            icdCodeService;
+
+    @Autowired
+    protected DrugService               drugService;
+
+    @Autowired
+    protected AppointmentRequestService appointmentRequestService;
 
     @Before
     public void beforeTests () {
         DBUtils.resetDB( dataSource );
+        icdCodeService.invalidateCatalog();
+        drugService.invalidateFormulary();
+        appointmentRequestService.invalidateSchedule();
     }
 
 }
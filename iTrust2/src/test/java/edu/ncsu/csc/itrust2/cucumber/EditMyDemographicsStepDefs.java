@@ -40,9 +40,9 @@ public class EditMyDemographicsStepDefs extends CucumberTest {
         attemptLogout();
 
         // Create the test User
-        final User user = new Patient( new UserForm( patientString, "123456", Role.ROLE_PATIENT, 1 ) );
+        final User user = new Patient( new UserForm( patientString, "123456", Role.ROLE_PATIENT, 1 ), passwordEncoder );
 
-        final User jill = new Patient( new UserForm( jillString, "123456", Role.ROLE_PATIENT, 1 ) );
+        final User jill = new Patient( new UserForm( jillString, "123456", Role.ROLE_PATIENT, 1 ), passwordEncoder );
 
         service.save( user );
 
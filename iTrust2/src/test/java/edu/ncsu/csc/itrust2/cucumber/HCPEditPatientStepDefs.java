@@ -34,11 +34,11 @@ public class HCPEditPatientStepDefs extends CucumberTest {
     public void loadRequiredUsers () throws ParseException {
         // make sure the users we need to login exist
 
-        final User svang = new Personnel( new UserForm( "svang", "123456", Role.ROLE_HCP, 1 ) );
+        final User svang = new Personnel( new UserForm( "svang", "123456", Role.ROLE_HCP, 1 ), passwordEncoder );
 
         userService.save( svang );
 
-        final Patient jbean = new Patient( new UserForm( "jbean", "123456", Role.ROLE_PATIENT, 1 ) );
+        final Patient jbean = new Patient( new UserForm( "jbean", "123456", Role.ROLE_PATIENT, 1 ), passwordEncoder );
         jbean.setFirstName( "Jim" );
         jbean.setLastName( "Bean" );
         jbean.setEmail( "jbean@gmail.com" );
@@ -58,7 +58,8 @@ public class HCPEditPatientStepDefs extends CucumberTest {
 
         // set Nellie Sanderson's demographics
 
-        final Patient nsanderson = new Patient( new UserForm( "nsanderson", "123456", Role.ROLE_PATIENT, 1 ) );
+        final Patient nsanderson = new Patient( new UserForm( "nsanderson", "123456", Role.ROLE_PATIENT, 1 ),
+                passwordEncoder );
         nsanderson.setFirstName( "Nellie" );
         nsanderson.setLastName( "Sanderson" );
         nsanderson.setEmail( "nsanderson@gmail.com" );
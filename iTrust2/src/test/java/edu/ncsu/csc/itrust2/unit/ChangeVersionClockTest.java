@@ -0,0 +1,76 @@
+package edu.ncsu.csc.iTrust2.unit;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import edu.ncsu.csc.iTrust2.services.ChangeVersionClock;
+
+/**
+ * Tests that a ChangeVersionClock only offers versions that every earlier
+ * change has committed by.
+ */
+public class ChangeVersionClockTest {
+
+    /**
+     * Stops pretending to be in a transaction, if a test failed partway
+     */
+    @After
+    public void tearDown () {
+        if ( TransactionSynchronizationManager.isSynchronizationActive() ) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    /**
+     * Finishes the transaction pretended to be running on this thread.
+     */
+    private static void complete () {
+        for ( final TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations() ) {
+            sync.afterCompletion( TransactionSynchronization.STATUS_COMMITTED );
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    /**
+     * Versions used outside a transaction are safe straight away.
+     */
+    @Test
+    public void testWithoutTransaction () {
+        final ChangeVersionClock clock = new ChangeVersionClock( 10 );
+        assertEquals( 10, clock.safePoint() );
+        assertEquals( 11, clock.next() );
+        assertEquals( 12, clock.next() );
+        assertEquals( 12, clock.safePoint() );
+        assertEquals( 12, clock.latest() );
+    }
+
+    /**
+     * Versions held by an unfinished transaction hold back everyone else's
+     * safe point, but not the transaction's own.
+     */
+    @Test
+    public void testInFlight () throws Exception {
+        final ChangeVersionClock clock = new ChangeVersionClock( 0 );
+        TransactionSynchronizationManager.initSynchronization();
+        assertEquals( 1, clock.next() );
+        assertEquals( 2, clock.next() );
+
+        /* Another thread commits a later version */
+        assertEquals( Long.valueOf( 0 ), CompletableFuture.supplyAsync( () -> {
+            clock.next();
+            return clock.safePoint();
+        } ).get() );
+        assertEquals( 3, clock.latest() );
+        assertEquals( 3, clock.safePoint() );
+
+        complete();
+        assertEquals( 3, clock.safePoint() );
+    }
+
+}
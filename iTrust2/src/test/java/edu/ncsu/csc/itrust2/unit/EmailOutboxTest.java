@@ -0,0 +1,178 @@
+package edu.ncsu.csc.iTrust2.unit;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import edu.ncsu.csc.iTrust2.TestConfig;
+import edu.ncsu.csc.iTrust2.forms.UserForm;
+import edu.ncsu.csc.iTrust2.models.Email;
+import edu.ncsu.csc.iTrust2.models.Patient;
+import edu.ncsu.csc.iTrust2.models.User;
+import edu.ncsu.csc.iTrust2.models.enums.EmailStatus;
+import edu.ncsu.csc.iTrust2.models.enums.Role;
+import edu.ncsu.csc.iTrust2.services.EmailService;
+import edu.ncsu.csc.iTrust2.services.UserService;
+import edu.ncsu.csc.iTrust2.utils.EmailOutboxWorker;
+import edu.ncsu.csc.iTrust2.utils.EmailUtil;
+import edu.ncsu.csc.iTrust2.utils.FileEmailTransport;
+
+@RunWith ( SpringRunner.class )
+@EnableAutoConfiguration
+@SpringBootTest ( classes = TestConfig.class )
+public class EmailOutboxTest {
+
+    @Autowired
+    private EmailUtil          emailUtil;
+
+    @Autowired
+    private EmailService       emailService;
+
+    @Autowired
+    private EmailOutboxWorker  worker;
+
+    @Autowired
+    private FileEmailTransport transport;
+
+    @Autowired
+    private UserService        userService;
+
+    @Autowired
+    private PasswordEncoder    passwordEncoder;
+
+    private Patient            withAddress;
+
+    private Patient            withoutAddress;
+
+    @Before
+    public void setup () {
+        emailService.deleteAll();
+
+        withAddress = new Patient( new UserForm( "mailable", "123456", Role.ROLE_PATIENT, 1 ), passwordEncoder );
+        withAddress.setEmail( "mailable@itrust.fi" );
+        withoutAddress = new Patient( new UserForm( "unmailable", "123456", Role.ROLE_PATIENT, 1 ), passwordEncoder );
+        userService.saveAll( List.of( withAddress, withoutAddress ) );
+    }
+
+    /**
+     * Emails reference users, so clear them out before other tests delete the
+     * users
+     */
+    @After
+    public void tearDown () {
+        emailService.deleteAll();
+    }
+
+    /**
+     * Polls the outbox until the only email for a user has been sent or given
+     * up on, or gives up waiting after ten seconds.
+     */
+    private Email waitForOutcome ( final User receiver ) throws InterruptedException {
+        Email email = null;
+        for ( int i = 0; i < 100; i++ ) {
+            worker.poll();
+            email = emailService.findByReceiver( receiver ).get( 0 );
+            if ( EmailStatus.SENT == email.getStatus() || EmailStatus.FAILED == email.getStatus() ) {
+                break;
+            }
+            Thread.sleep( 100 );
+        }
+        return email;
+    }
+
+    /**
+     * Emails should be saved to the outbox, and then sent by the worker
+     */
+    @Test
+    public void testDelivery () throws Exception {
+        emailUtil.sendEmail( withAddress, "Hello", "Your appointment is tomorrow." );
+
+        final Email email = waitForOutcome( withAddress );
+        Assert.assertEquals( EmailStatus.SENT, email.getStatus() );
+        Assert.assertEquals( 1, email.getAttempts() );
+        Assert.assertNotNull( email.getSentAt() );
+
+        final Path file = transport.fileFor( email );
+        final String message = new String( Files.readAllBytes( file ), StandardCharsets.UTF_8 );
+        Assert.assertTrue( message.contains( "To: mailable@itrust.fi" ) );
+        Assert.assertTrue( message.contains( "Subject: Hello" ) );
+        Assert.assertTrue( message.endsWith( "Your appointment is tomorrow.\r\n" ) );
+        Files.delete( file );
+    }
+
+    /**
+     * An email that can never be sent should be given up on straight away
+     */
+    @Test
+    public void testUndeliverable () throws Exception {
+        emailUtil.sendEmail( withoutAddress, "Locked out", "Too many failed logins." );
+
+        final Email email = waitForOutcome( withoutAddress );
+        Assert.assertEquals( EmailStatus.FAILED, email.getStatus() );
+        Assert.assertEquals( 1, email.getAttempts() );
+        Assert.assertTrue( email.getLastError().contains( "No email address" ) );
+    }
+
+    /**
+     * An email whose worker died while sending it should be claimed again,
+     * with the claim counted as an attempt, until it runs out of attempts
+     */
+    @Test
+    public void testCrashedSends () {
+        final Email retried = crashed( withAddress, 4 );
+        final Email exhausted = crashed( withoutAddress, 5 );
+
+        emailService.claim( 20 );
+
+        final Email gaveUp = emailService.findByReceiver( withoutAddress ).get( 0 );
+        Assert.assertEquals( EmailStatus.FAILED, gaveUp.getStatus() );
+        Assert.assertEquals( 5, gaveUp.getAttempts() );
+        Assert.assertEquals( exhausted.getId(), gaveUp.getId() );
+        Assert.assertTrue( gaveUp.getLastError().contains( "claim timeout" ) );
+
+        final Email claimedAgain = emailService.findByReceiver( withAddress ).get( 0 );
+        Assert.assertEquals( retried.getId(), claimedAgain.getId() );
+        Assert.assertEquals( 5, claimedAgain.getAttempts() );
+        Assert.assertNotEquals( "crashed", claimedAgain.getClaimToken() );
+    }
+
+    /**
+     * Saves an email that was claimed a day ago and never reported back on
+     */
+    private Email crashed ( final User receiver, final int attempts ) {
+        final Email email = new Email( "iTrust2 System", receiver, "Stuck", "Claimed by a worker that died." );
+        email.setStatus( EmailStatus.SENDING );
+        email.setAttempts( attempts );
+        ReflectionTestUtils.setField( email, "claimedAt", ZonedDateTime.now().minusDays( 1 ) );
+        ReflectionTestUtils.setField( email, "claimToken", "crashed" );
+        emailService.save( email );
+        return email;
+    }
+
+    /**
+     * Retries should back off exponentially, up to the limit
+     */
+    @Test
+    public void testBackoff () {
+        Assert.assertEquals( 30, emailService.backoff( 1 ) );
+        Assert.assertEquals( 60, emailService.backoff( 2 ) );
+        Assert.assertEquals( 240, emailService.backoff( 4 ) );
+        Assert.assertEquals( 3600, emailService.backoff( 8 ) );
+        Assert.assertEquals( 3600, emailService.backoff( 1000 ) );
+    }
+
+}
@@ -0,0 +1,92 @@
+package edu.ncsu.csc.iTrust2.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import edu.ncsu.csc.iTrust2.models.ICDCode;
+import edu.ncsu.csc.iTrust2.services.ICDCodeCatalog;
+
+/**
+ * Tests looking up and searching for codes in an ICDCodeCatalog.
+ */
+public class ICDCodeCatalogTest {
+
+    private static ICDCode code ( final long id, final String code, final String description ) {
+        final ICDCode c = new ICDCode();
+        c.setId( id );
+        c.setCode( code );
+        c.setDescription( description );
+        return c;
+    }
+
+    private static List<String> codesOf ( final List<ICDCode> codes ) {
+        return codes.stream().map( ICDCode::getCode ).collect( Collectors.toList() );
+    }
+
+    private static ICDCodeCatalog catalog () {
+        final List<ICDCode> codes = new ArrayList<ICDCode>();
+        codes.add( code( 1L, "J45", "Asthma" ) );
+        codes.add( code( 2L, "A01.0", "Typhoid fever" ) );
+        codes.add( code( 3L, "A01.1", "Paratyphoid fever A" ) );
+        codes.add( code( 4L, "A00", "Cholera" ) );
+        codes.add( code( 5L, "R50.9", "Fever, unspecified" ) );
+        codes.add( code( 6L, "B01", "Varicella (chickenpox)" ) );
+        return new ICDCodeCatalog( codes );
+    }
+
+    /**
+     * Codes can be looked up by code and ID, and come back sorted.
+     */
+    @Test
+    public void testLookup () {
+        final ICDCode original = code( 7L, "Z00", "General examination" );
+        final ICDCodeCatalog catalog = new ICDCodeCatalog( List.of( original, code( 8L, "E11", "Diabetes" ) ) );
+
+        assertEquals( "General examination", catalog.findByCode( "Z00" ).getDescription() );
+        assertEquals( "Z00", catalog.findById( 7L ).getCode() );
+        assertNull( catalog.findByCode( "Z01" ) );
+        assertNull( catalog.findById( 9L ) );
+        assertEquals( List.of( "E11", "Z00" ), codesOf( catalog.getCodes() ) );
+
+        /* The catalog keeps its own copies */
+        assertNotSame( original, catalog.findByCode( "Z00" ) );
+        original.setDescription( "Changed" );
+        assertEquals( "General examination", catalog.findByCode( "Z00" ).getDescription() );
+    }
+
+    /**
+     * Searches match the start of codes and of description words, with codes
+     * that start with the query first.
+     */
+    @Test
+    public void testSearch () {
+        final ICDCodeCatalog catalog = catalog();
+
+        assertEquals( List.of( "A00", "A01.0", "A01.1" ), codesOf( catalog.search( "a0", 10 ) ) );
+        assertEquals( List.of( "A01.1" ), codesOf( catalog.search( "A01.1", 10 ) ) );
+        assertEquals( List.of( "A01.0", "A01.1", "R50.9" ), codesOf( catalog.search( "FEV", 10 ) ) );
+        assertEquals( List.of( "B01" ), codesOf( catalog.search( "chicken", 10 ) ) );
+
+        /* Every word has to match */
+        assertEquals( List.of( "A01.1" ), codesOf( catalog.search( "para fev", 10 ) ) );
+        assertTrue( catalog.search( "typhoid asthma", 10 ).isEmpty() );
+
+        /* "a" starts codes A00 and A01.x, and the words Asthma and A */
+        assertEquals( List.of( "A00", "A01.0", "A01.1", "J45" ), codesOf( catalog.search( "a", 10 ) ) );
+        assertEquals( List.of( "A00", "A01.0" ), codesOf( catalog.search( "a", 2 ) ) );
+
+        assertTrue( catalog.search( "", 10 ).isEmpty() );
+        assertTrue( catalog.search( "  ", 10 ).isEmpty() );
+        assertTrue( catalog.search( "xyz", 10 ).isEmpty() );
+        assertTrue( catalog.search( "fever", 0 ).isEmpty() );
+    }
+
+}
@@ -0,0 +1,95 @@
+package edu.ncsu.csc.iTrust2.unit;
+
+import java.time.ZonedDateTime;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import edu.ncsu.csc.iTrust2.TestConfig;
+import edu.ncsu.csc.iTrust2.models.security.LoginBan;
+import edu.ncsu.csc.iTrust2.models.security.LoginLockout;
+import edu.ncsu.csc.iTrust2.services.security.IPAccessCache;
+import edu.ncsu.csc.iTrust2.services.security.IPAccessCache.Access;
+import edu.ncsu.csc.iTrust2.services.security.LoginBanService;
+import edu.ncsu.csc.iTrust2.services.security.LoginLockoutService;
+
+@RunWith ( SpringRunner.class )
+@EnableAutoConfiguration
+@SpringBootTest ( classes = TestConfig.class )
+public class IPAccessCacheTest {
+
+    private static final String IP = "10.0.0.3";
+
+    @Autowired
+    private IPAccessCache       cache;
+
+    @Autowired
+    private LoginBanService     loginBanService;
+
+    @Autowired
+    private LoginLockoutService loginLockoutService;
+
+    @Before
+    public void setup () {
+        loginBanService.deleteAll();
+        loginLockoutService.deleteAll();
+        cache.invalidateAll();
+    }
+
+    /**
+     * Decisions should be served from the cache until they are invalidated
+     */
+    @Test
+    public void testInvalidation () {
+        Assert.assertEquals( Access.ALLOWED, cache.getAccess( IP ) );
+
+        final LoginLockout lockout = new LoginLockout();
+        lockout.setIp( IP );
+        lockout.setTime( ZonedDateTime.now() );
+        loginLockoutService.save( lockout );
+        Assert.assertEquals( "The cached decision should be used until invalidated", Access.ALLOWED,
+                cache.getAccess( IP ) );
+
+        cache.invalidate( IP );
+        Assert.assertEquals( Access.LOCKED, cache.getAccess( IP ) );
+
+        final LoginBan ban = new LoginBan();
+        ban.setIp( IP );
+        ban.setTime( ZonedDateTime.now() );
+        loginBanService.save( ban );
+        cache.invalidate( IP );
+        Assert.assertEquals( "A ban takes priority over a lockout", Access.BANNED, cache.getAccess( IP ) );
+        Assert.assertEquals( Access.ALLOWED, cache.getAccess( "10.0.0.4" ) );
+    }
+
+    /**
+     * Invalidating one address should leave the others' decisions cached
+     */
+    @Test
+    public void testInvalidateOneAddress () {
+        final String other = "10.0.0.5";
+        Assert.assertEquals( Access.ALLOWED, cache.getAccess( IP ) );
+        Assert.assertEquals( Access.ALLOWED, cache.getAccess( other ) );
+
+        for ( final String ip : new String[] { IP, other } ) {
+            final LoginLockout lockout = new LoginLockout();
+            lockout.setIp( ip );
+            lockout.setTime( ZonedDateTime.now() );
+            loginLockoutService.save( lockout );
+        }
+        cache.invalidate( IP );
+        Assert.assertEquals( Access.LOCKED, cache.getAccess( IP ) );
+        Assert.assertEquals( "Other addresses should still be served from the cache", Access.ALLOWED,
+                cache.getAccess( other ) );
+
+        cache.invalidate( other );
+        Assert.assertEquals( Access.LOCKED, cache.getAccess( other ) );
+    }
+
+}
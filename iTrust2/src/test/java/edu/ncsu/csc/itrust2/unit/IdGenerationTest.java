@@ -0,0 +1,54 @@
+package edu.ncsu.csc.iTrust2.unit;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.id.enhanced.DatabaseStructure;
+import org.hibernate.persister.entity.EntityPersister;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import edu.ncsu.csc.iTrust2.TestConfig;
+import edu.ncsu.csc.iTrust2.models.PooledIdGenerator;
+
+@RunWith ( SpringRunner.class )
+@EnableAutoConfiguration
+@SpringBootTest ( classes = TestConfig.class )
+public class IdGenerationTest {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Every entity with a generated ID should have a pooled sequence of its
+     * own, rather than sharing `hibernate_sequence`.
+     */
+    @Test
+    public void testSequencePerEntity () {
+        final Set<String> sequences = new HashSet<String>();
+        int generated = 0;
+        for ( final EntityPersister persister : entityManagerFactory.unwrap( SessionFactoryImplementor.class )
+                .getMetamodel().entityPersisters().values() ) {
+            if ( !persister.getIdentifierType().getReturnedClass().equals( Long.class ) ) {
+                continue; // Users are keyed by username
+            }
+            Assert.assertTrue( persister.getEntityName() + " should use the pooled generator",
+                    persister.getIdentifierGenerator() instanceof PooledIdGenerator );
+            final DatabaseStructure sequence = ( (PooledIdGenerator) persister.getIdentifierGenerator() )
+                    .getDatabaseStructure();
+            Assert.assertEquals( PooledIdGenerator.DEFAULT_ALLOCATION_SIZE, sequence.getIncrementSize() );
+            Assert.assertTrue( "Sequence should not be shared", sequences.add( sequence.getName() ) );
+            generated++;
+        }
+        Assert.assertEquals( 13, generated );
+    }
+
+}
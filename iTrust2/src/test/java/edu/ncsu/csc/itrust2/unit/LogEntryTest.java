@@ -1,5 +1,6 @@
 package edu.ncsu.csc.iTrust2.unit;
 
+import java.time.LocalDate;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
@@ -19,6 +20,9 @@ import edu.ncsu.csc.iTrust2.TestConfig;
 import edu.ncsu.csc.iTrust2.models.enums.TransactionType;
 import edu.ncsu.csc.iTrust2.models.security.LogEntry;
 import edu.ncsu.csc.iTrust2.services.security.LogEntryService;
+import edu.ncsu.csc.iTrust2.utils.AuditLogRetention;
+import edu.ncsu.csc.iTrust2.utils.AuditLogWriter;
+import edu.ncsu.csc.iTrust2.utils.LoggerUtil;
 
 @RunWith ( SpringRunner.class )
 @EnableAutoConfiguration
@@ -28,12 +32,22 @@ public class LogEntryTest {
     @Autowired
     private LogEntryService     service;
 
+    @Autowired
+    private LoggerUtil          loggerUtil;
+
+    @Autowired
+    private AuditLogWriter      writer;
+
+    @Autowired
+    private AuditLogRetention   retention;
+
     private static final String USER_1 = "testUser123";
 
     private static final String USER_2 = "testUser1234";
 
     @Before
     public void setup () {
+        writer.flush();
         service.deleteAll();
     }
 
@@ -79,4 +93,127 @@ public class LogEntryTest {
                 3, service.findAllForUser( USER_1 ).size() );
 
     }
+
+    /**
+     * An entry where a user is both the primary and secondary user (the
+     * constructor won't make one, but older rows can hold one) should only be
+     * paged through once.
+     */
+    @Test
+    @Transactional
+    public void testFindBeforeForSelf () {
+        service.save( new LogEntry( TransactionType.LOGIN_SUCCESS, USER_1, null, "Logged in" ) );
+        final LogEntry self = new LogEntry( TransactionType.PASSWORD_UPDATE_SUCCESS, USER_2, USER_1,
+                "Changed password" );
+        self.setPrimaryUser( USER_1 );
+        service.save( self );
+        service.save( new LogEntry( TransactionType.LOGOUT, USER_2, USER_1, "Logged out" ) );
+
+        final List<LogEntry> entries = service.findBeforeForUser( USER_1, ZonedDateTime.now().minusDays( 1 ),
+                ZonedDateTime.now().plusDays( 1 ), Long.MAX_VALUE, List.of( TransactionType.values() ), 10 );
+        Assert.assertEquals( 3, entries.size() );
+        Assert.assertEquals( 3, entries.stream().map( LogEntry::getId ).distinct().count() );
+    }
+
+    /**
+     * Log entries created through LoggerUtil are written in the background, so
+     * flush the writer before checking that they all arrived. Deliberately not
+     * transactional so that the writer's commits are visible.
+     */
+    @Test
+    public void testAuditLogWriter () {
+        for ( int i = 0; i < 25; i++ ) {
+            loggerUtil.log( TransactionType.LOGIN_SUCCESS, USER_1, "Login " + i );
+        }
+        loggerUtil.log( TransactionType.LOGOUT, USER_2 );
+
+        writer.flush();
+
+        Assert.assertEquals( "Every entry handed to the writer should be saved", 26, service.count() );
+        Assert.assertEquals( 25, service.findAllForUser( USER_1 ).size() );
+        Assert.assertEquals( 1, service.findAllForUser( USER_2 ).size() );
+        Assert.assertEquals( "Nothing should be left waiting once everything is saved", 0, writer.pending() );
+    }
+
+    /**
+     * Logging one event for many secondary users should still leave one entry
+     * per user, with duplicates logged only once.
+     */
+    @Test
+    public void testLogAll () {
+        final List<String> patients = new ArrayList<String>();
+        for ( int i = 0; i < 40; i++ ) {
+            patients.add( "patient" + i % 30 );
+        }
+        loggerUtil.logAll( TransactionType.APPOINTMENT_REQUEST_VIEWED, USER_1, patients );
+        loggerUtil.logAll( TransactionType.APPOINTMENT_REQUEST_VIEWED, USER_2, new ArrayList<String>() );
+
+        writer.flush();
+
+        Assert.assertEquals( 30, service.count() );
+        Assert.assertEquals( 30, service.findAllForUser( USER_1 ).size() );
+        Assert.assertEquals( 1, service.findAllForUser( "patient7" ).size() );
+        Assert.assertEquals( USER_1, service.findAllForUser( "patient7" ).get( 0 ).getPrimaryUser() );
+        Assert.assertEquals( 0, service.findAllForUser( USER_2 ).size() );
+    }
+
+    /**
+     * Expired entries should be removed, no matter how many chunks it takes,
+     * and nothing newer than the cutoff should be touched.
+     */
+    @Test
+    public void testRetention () {
+        final ZonedDateTime now = ZonedDateTime.now();
+        final List<LogEntry> entries = new ArrayList<LogEntry>();
+        for ( int i = 0; i < 2500; i++ ) {
+            final LogEntry le = new LogEntry( TransactionType.LOGIN_SUCCESS, USER_1, null, null );
+            le.setTime( now.minusDays( 400 + i % 30 ) );
+            entries.add( le );
+        }
+        for ( int i = 0; i < 10; i++ ) {
+            final LogEntry le = new LogEntry( TransactionType.LOGIN_SUCCESS, USER_2, null, null );
+            le.setTime( now.minusDays( i ) );
+            entries.add( le );
+        }
+        service.saveAll( entries );
+
+        Assert.assertEquals( 2500, retention.deleteBefore( now.minusDays( 365 ) ) );
+        Assert.assertEquals( 10, service.count() );
+        Assert.assertEquals( 10, service.findAllForUser( USER_2 ).size() );
+        Assert.assertEquals( "Nothing left to remove", 0, retention.deleteBefore( now.minusDays( 365 ) ) );
+    }
+
+    /**
+     * The test database isn't partitioned, so partition maintenance should
+     * leave it alone rather than fail.
+     */
+    @Test
+    public void testPartitionsOnUnpartitionedTable () {
+        Assert.assertFalse( retention.isPartitioned() );
+        Assert.assertTrue( retention.createUpcomingPartitions( LocalDate.now() ).isEmpty() );
+        Assert.assertTrue( retention.dropPartitionsBefore( ZonedDateTime.now() ).isEmpty() );
+    }
+
+    /**
+     * Saving in chunks should write every record, whether or not the count is
+     * a multiple of the chunk size.
+     */
+    @Test
+    public void testSaveInChunks () {
+        final List<LogEntry> entries = new ArrayList<LogEntry>();
+        for ( int i = 0; i < 123; i++ ) {
+            entries.add( new LogEntry( TransactionType.LOGIN_SUCCESS, USER_1, null, null ) );
+        }
+        service.saveInChunks( entries, 50 );
+        Assert.assertEquals( 123, service.count() );
+        Assert.assertTrue( entries.stream().allMatch( le -> null != le.getId() ) );
+
+        try {
+            service.saveInChunks( entries, 0 );
+            Assert.fail( "A chunk size of zero should be rejected" );
+        }
+        catch ( final IllegalArgumentException iae ) {
+            // expected
+        }
+    }
 }
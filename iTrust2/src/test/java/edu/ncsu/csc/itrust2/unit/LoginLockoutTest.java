@@ -0,0 +1,102 @@
+package edu.ncsu.csc.iTrust2.unit;
+
+import java.time.ZonedDateTime;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import edu.ncsu.csc.iTrust2.TestConfig;
+import edu.ncsu.csc.iTrust2.forms.UserForm;
+import edu.ncsu.csc.iTrust2.models.Patient;
+import edu.ncsu.csc.iTrust2.models.User;
+import edu.ncsu.csc.iTrust2.models.enums.Role;
+import edu.ncsu.csc.iTrust2.models.security.LoginLockout;
+import edu.ncsu.csc.iTrust2.services.UserService;
+import edu.ncsu.csc.iTrust2.services.security.LoginAttemptService;
+import edu.ncsu.csc.iTrust2.services.security.LoginLockoutService;
+
+@RunWith ( SpringRunner.class )
+@EnableAutoConfiguration
+@SpringBootTest ( classes = TestConfig.class )
+public class LoginLockoutTest {
+
+    private static final String IP = "10.0.0.5";
+
+    @Autowired
+    private LoginLockoutService service;
+
+    @Autowired
+    private LoginAttemptService loginAttemptService;
+
+    @Autowired
+    private UserService         userService;
+
+    @Autowired
+    private PasswordEncoder     passwordEncoder;
+
+    private User                user;
+
+    @Before
+    public void setup () {
+        loginAttemptService.deleteAll();
+        service.deleteAll();
+        userService.deleteAll();
+
+        user = new Patient( new UserForm( "lockedout", "123456", Role.ROLE_PATIENT, 1 ), passwordEncoder );
+        userService.save( user );
+    }
+
+    /**
+     * Lockouts reference users, so clear them out before other tests delete
+     * the users
+     */
+    @After
+    public void tearDown () {
+        service.deleteAll();
+    }
+
+    private void lockout ( final String ip, final User u, final ZonedDateTime time ) {
+        final LoginLockout lockout = new LoginLockout();
+        lockout.setIp( ip );
+        lockout.setUser( u );
+        lockout.setTime( time );
+        service.save( lockout );
+    }
+
+    /**
+     * Only lockouts from within the last hour lock anyone out, and only those
+     * from within the last day count towards a ban
+     */
+    @Test
+    public void testRecentLockouts () {
+        final ZonedDateTime now = ZonedDateTime.now();
+        lockout( IP, null, now.minusHours( 2 ) );
+        lockout( IP, null, now.minusDays( 2 ) );
+        lockout( null, user, now.minusDays( 5 ) );
+
+        Assert.assertFalse( service.isIPLocked( IP ) );
+        Assert.assertFalse( service.isUserLocked( user ) );
+        Assert.assertEquals( 1, service.getRecentIPLockouts( IP ) );
+        Assert.assertEquals( 0, service.getRecentUserLockouts( user ) );
+
+        lockout( IP, null, now.minusMinutes( 10 ) );
+        lockout( null, user, now.minusMinutes( 10 ) );
+        Assert.assertTrue( service.isIPLocked( IP ) );
+        Assert.assertTrue( service.isUserLocked( user ) );
+        Assert.assertEquals( 2, service.getRecentIPLockouts( IP ) );
+        Assert.assertEquals( 1, service.getRecentUserLockouts( user ) );
+        Assert.assertFalse( service.isIPLocked( "10.0.0.6" ) );
+
+        Assert.assertEquals( "Lockouts older than a day should be purged", 2, service.clearExpired() );
+        Assert.assertEquals( 3, service.count() );
+    }
+
+}
@@ -0,0 +1,146 @@
+package edu.ncsu.csc.iTrust2.unit;
+
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import edu.ncsu.csc.iTrust2.TestConfig;
+import edu.ncsu.csc.iTrust2.forms.UserForm;
+import edu.ncsu.csc.iTrust2.models.Patient;
+import edu.ncsu.csc.iTrust2.models.User;
+import edu.ncsu.csc.iTrust2.models.enums.Role;
+import edu.ncsu.csc.iTrust2.models.security.LoginLockout;
+import edu.ncsu.csc.iTrust2.services.UserService;
+import edu.ncsu.csc.iTrust2.services.security.LoginAttemptService;
+import edu.ncsu.csc.iTrust2.services.security.LoginLockoutService;
+import edu.ncsu.csc.iTrust2.services.security.LoginThrottle;
+import edu.ncsu.csc.iTrust2.utils.SlidingWindowCounter;
+
+@RunWith ( SpringRunner.class )
+@EnableAutoConfiguration
+@SpringBootTest ( classes = TestConfig.class )
+public class LoginThrottleTest {
+
+    private static final String IP = "10.0.0.1";
+
+    @Autowired
+    private LoginThrottle       throttle;
+
+    @Autowired
+    private LoginAttemptService loginAttemptService;
+
+    @Autowired
+    private LoginLockoutService loginLockoutService;
+
+    @Autowired
+    private UserService         userService;
+
+    @Autowired
+    private PasswordEncoder     passwordEncoder;
+
+    private User                user;
+
+    @Before
+    public void setup () {
+        loginAttemptService.deleteAll();
+        loginLockoutService.deleteAll();
+        userService.deleteAll();
+        throttle.rebuild();
+
+        user = new Patient( new UserForm( "throttled", "123456", Role.ROLE_PATIENT, 1 ), passwordEncoder );
+        userService.save( user );
+    }
+
+    /**
+     * Events should only count while they are inside the window
+     */
+    @Test
+    public void testSlidingWindow () {
+        final long minute = TimeUnit.MINUTES.toMillis( 1 );
+        final SlidingWindowCounter counter = new SlidingWindowCounter( 10 * minute, 10 );
+        final long start = 1_000_000 * minute;
+
+        counter.add( start );
+        counter.add( start + 1 );
+        counter.add( start + 5 * minute );
+        Assert.assertEquals( 3, counter.count( start + 5 * minute ) );
+        Assert.assertEquals( "The first two events should have slid out of the window", 1,
+                counter.count( start + 10 * minute ) );
+        Assert.assertEquals( 0, counter.count( start + 20 * minute ) );
+
+        counter.add( start + 20 * minute );
+        Assert.assertEquals( "Reusing a bucket should not pick up its old count", 1,
+                counter.count( start + 20 * minute ) );
+
+        counter.clear();
+        Assert.assertEquals( 0, counter.count( start + 20 * minute ) );
+    }
+
+    /**
+     * Failures are counted in memory, written to the database in the
+     * background, and can be rebuilt from the database
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    public void testFailures () throws InterruptedException {
+        for ( int i = 0; i < 3; i++ ) {
+            throttle.recordIPFailure( IP );
+        }
+        throttle.recordUserFailure( user );
+        Assert.assertEquals( 3, throttle.countIPFailures( IP ) );
+        Assert.assertEquals( 1, throttle.countUserFailures( user ) );
+        Assert.assertEquals( 0, throttle.countIPFailures( "10.0.0.2" ) );
+
+        throttle.flush();
+        Assert.assertEquals( "Every failure should be written through", 3, loginAttemptService.countByIP( IP ) );
+        Assert.assertEquals( 1, loginAttemptService.countByUser( user ) );
+
+        throttle.rebuild();
+        Assert.assertEquals( "Counts should survive a restart", 3, throttle.countIPFailures( IP ) );
+        Assert.assertEquals( 1, throttle.countUserFailures( user ) );
+
+        throttle.clearIPFailures( IP );
+        throttle.clearUserFailures( user.getUsername() );
+        Assert.assertEquals( 0, throttle.countIPFailures( IP ) );
+        throttle.flush();
+        Assert.assertEquals( 0, loginAttemptService.count() );
+    }
+
+    /**
+     * Lockouts are counted, and recent ones are picked back up on a rebuild
+     */
+    @Test
+    public void testLockouts () {
+        throttle.recordIPLockout( IP );
+        throttle.recordUserLockout( user );
+        Assert.assertEquals( 1, throttle.countIPLockouts( IP ) );
+        Assert.assertEquals( 1, throttle.countUserLockouts( user ) );
+
+        final LoginLockout lockout = new LoginLockout();
+        lockout.setIp( IP );
+        lockout.setTime( ZonedDateTime.now().minusMinutes( 5 ) );
+        loginLockoutService.save( lockout );
+        final LoginLockout old = new LoginLockout();
+        old.setIp( IP );
+        old.setTime( ZonedDateTime.now().minusDays( 3 ) );
+        loginLockoutService.save( old );
+
+        throttle.rebuild();
+        Assert.assertEquals( "Only the recent lockout should be counted", 1, throttle.countIPLockouts( IP ) );
+        Assert.assertEquals( 0, throttle.countUserLockouts( user ) );
+
+        throttle.clearIPLockouts( IP );
+        Assert.assertEquals( 0, throttle.countIPLockouts( IP ) );
+    }
+
+}
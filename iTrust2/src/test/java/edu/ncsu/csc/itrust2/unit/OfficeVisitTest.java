@@ -17,9 +17,13 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import edu.ncsu.csc.iTrust2.TestConfig;
+import edu.ncsu.csc.iTrust2.forms.DiagnosisForm;
+import edu.ncsu.csc.iTrust2.forms.OfficeVisitForm;
+import edu.ncsu.csc.iTrust2.forms.PrescriptionForm;
 import edu.ncsu.csc.iTrust2.forms.UserForm;
 import edu.ncsu.csc.iTrust2.models.BasicHealthMetrics;
 import edu.ncsu.csc.iTrust2.models.Diagnosis;
@@ -68,17 +72,64 @@ public class OfficeVisitTest {
     @Autowired
     private PrescriptionService       prescriptionService;
 
+    @Autowired
+    private PasswordEncoder           passwordEncoder;
+
     @Before
     public void setup () {
         officeVisitService.deleteAll();
 
-        final User hcp = new Personnel( new UserForm( "hcp", "123456", Role.ROLE_HCP, 1 ) );
+        final User hcp = new Personnel( new UserForm( "hcp", "123456", Role.ROLE_HCP, 1 ), passwordEncoder );
 
-        final User alice = new Patient( new UserForm( "AliceThirteen", "123456", Role.ROLE_PATIENT, 1 ) );
+        final User alice = new Patient( new UserForm( "AliceThirteen", "123456", Role.ROLE_PATIENT, 1 ),
+                passwordEncoder );
 
         userService.saveAll( List.of( hcp, alice ) );
     }
 
+    /**
+     * Importing more visits and prescriptions than fit in one chunk should
+     * save every one of them
+     */
+    @Test
+    @Transactional
+    public void testImportAll () {
+        hospitalService.save( new Hospital( "Import Hospital", "123 Main St", "12345", "NC" ) );
+        final Drug drug = new Drug();
+        drug.setCode( "2222-3333-44" );
+        drug.setName( "Importol" );
+        drug.setDescription( "For testing imports" );
+        drugService.save( drug );
+
+        final List<OfficeVisitForm> visits = new ArrayList<OfficeVisitForm>();
+        final List<PrescriptionForm> prescriptions = new ArrayList<PrescriptionForm>();
+        for ( int i = 0; i < 120; i++ ) {
+            final OfficeVisitForm visit = new OfficeVisitForm();
+            visit.setDate( ZonedDateTime.parse( "2030-11-19T04:50:00.000-05:00" ).plusDays( i ).toString() );
+            visit.setHcp( "hcp" );
+            visit.setPatient( "AliceThirteen" );
+            visit.setType( AppointmentType.GENERAL_CHECKUP.toString() );
+            visit.setHospital( "Import Hospital" );
+            visit.setNotes( "Imported visit " + i );
+            visits.add( visit );
+
+            final PrescriptionForm prescription = new PrescriptionForm();
+            prescription.setDrug( drug.getCode() );
+            prescription.setPatient( "AliceThirteen" );
+            prescription.setDosage( 10 + i );
+            prescription.setRenewals( 1 );
+            prescription.setStartDate( "2030-11-19" );
+            prescription.setEndDate( "2030-12-19" );
+            prescriptions.add( prescription );
+        }
+
+        Assert.assertEquals( 120, officeVisitService.importAll( visits ) );
+        Assert.assertEquals( 120, prescriptionService.importAll( prescriptions ) );
+        final User alice = userService.findByName( "AliceThirteen" );
+        Assert.assertEquals( 120, officeVisitService.findByPatient( alice ).size() );
+        Assert.assertEquals( 120, prescriptionService.findByPatient( alice ).size() );
+    }
+
     @Test
     @Transactional
     public void testOfficeVisit () {
@@ -195,4 +246,82 @@ public class OfficeVisitTest {
         Assert.assertEquals( 2, retrieved.getPrescriptions().size() );
 
     }
+
+    /**
+     * Building a visit should fill in every user, drug, and ICD code it refers
+     * to, all of them looked up ahead of time.
+     */
+    @Test
+    @Transactional
+    public void testBuildResolvesReferences () {
+        final Hospital hosp = new Hospital( "Dr. Jenkins' Insane Asylum", "123 Main St", "12345", "NC" );
+        hospitalService.save( hosp );
+
+        final List<String> drugCodes = List.of( "1111-2222-33", "4444-5555-66" );
+        for ( final String ndc : drugCodes ) {
+            final Drug drug = new Drug();
+            drug.setCode( ndc );
+            drug.setName( "Drug " + ndc );
+            drug.setDescription( "A drug" );
+            drugService.save( drug );
+        }
+        for ( final String icd : List.of( "B10", "B20" ) ) {
+            final ICDCode code = new ICDCode();
+            code.setCode( icd );
+            code.setDescription( "Code " + icd );
+            icdCodeService.save( code );
+        }
+
+        final OfficeVisitForm form = new OfficeVisitForm();
+        form.setDate( "2030-11-19T04:50:00.000-05:00" );
+        form.setHcp( "hcp" );
+        form.setPatient( "AliceThirteen" );
+        form.setType( AppointmentType.GENERAL_CHECKUP.toString() );
+        form.setHospital( hosp.getName() );
+
+        final List<PrescriptionForm> prescriptions = new ArrayList<PrescriptionForm>();
+        for ( final String ndc : drugCodes ) {
+            final PrescriptionForm pf = new PrescriptionForm();
+            pf.setDrug( ndc );
+            pf.setPatient( "AliceThirteen" );
+            pf.setDosage( 10 );
+            pf.setRenewals( 1 );
+            pf.setStartDate( "2030-11-19" );
+            pf.setEndDate( "2030-12-19" );
+            prescriptions.add( pf );
+        }
+        form.setPrescriptions( prescriptions );
+
+        final List<DiagnosisForm> diagnoses = new ArrayList<DiagnosisForm>();
+        for ( final String icd : List.of( "B10", "B20" ) ) {
+            final DiagnosisForm df = new DiagnosisForm();
+            df.setCode( icd );
+            df.setNote( "Note for " + icd );
+            diagnoses.add( df );
+        }
+        form.setDiagnoses( diagnoses );
+
+        final OfficeVisit visit = officeVisitService.build( form );
+
+        Assert.assertEquals( "hcp", visit.getHcp().getUsername() );
+        Assert.assertEquals( "AliceThirteen", visit.getPatient().getUsername() );
+        Assert.assertEquals( "hcp", visit.getBasicHealthMetrics().getHcp().getUsername() );
+        Assert.assertEquals( "AliceThirteen", visit.getBasicHealthMetrics().getPatient().getUsername() );
+
+        Assert.assertEquals( 2, visit.getPrescriptions().size() );
+        for ( int i = 0; i < drugCodes.size(); i++ ) {
+            Assert.assertEquals( drugCodes.get( i ), visit.getPrescriptions().get( i ).getDrug().getCode() );
+            Assert.assertEquals( "AliceThirteen", visit.getPrescriptions().get( i ).getPatient().getUsername() );
+        }
+
+        Assert.assertEquals( 2, visit.getDiagnoses().size() );
+        Assert.assertEquals( "B10", visit.getDiagnoses().get( 0 ).getCode().getCode() );
+        Assert.assertEquals( "B20", visit.getDiagnoses().get( 1 ).getCode().getCode() );
+        for ( final Diagnosis d : visit.getDiagnoses() ) {
+            Assert.assertSame( visit, d.getVisit() );
+        }
+
+        officeVisitService.save( visit );
+        Assert.assertEquals( 1, officeVisitService.count() );
+    }
 }
@@ -11,6 +11,7 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import edu.ncsu.csc.iTrust2.TestConfig;
@@ -28,6 +29,9 @@ public class PatientTest {
     @Autowired
     private PatientService      service;
 
+    @Autowired
+    private PasswordEncoder     passwordEncoder;
+
     private static final String USER_1 = "demoTestUser1";
 
     private static final String USER_2 = "demoTestUser2";
@@ -45,7 +49,7 @@ public class PatientTest {
 
         Assert.assertEquals( "There should be no Patient records in the system!", 0, service.count() );
 
-        final Patient p1 = new Patient( new UserForm( USER_1, PW, Role.ROLE_PATIENT, 1 ) );
+        final Patient p1 = new Patient( new UserForm( USER_1, PW, Role.ROLE_PATIENT, 1 ), passwordEncoder );
 
         service.save( p1 );
 
@@ -73,7 +77,7 @@ public class PatientTest {
         Assert.assertEquals( "Karl", retrieved.getFirstName() );
 
         try {
-            final Patient p2 = new Patient( new UserForm( USER_2, PW, Role.ROLE_ADMIN, 1 ) );
+            final Patient p2 = new Patient( new UserForm( USER_2, PW, Role.ROLE_ADMIN, 1 ), passwordEncoder );
             Assert.fail( "Should not be able to create a Patient from a non-Patient user" );
         }
         catch ( final Exception e ) {
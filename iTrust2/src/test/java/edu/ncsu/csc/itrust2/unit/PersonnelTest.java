@@ -11,6 +11,7 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import edu.ncsu.csc.iTrust2.TestConfig;
@@ -28,6 +29,9 @@ public class PersonnelTest {
     @Autowired
     private PersonnelService    service;
 
+    @Autowired
+    private PasswordEncoder     passwordEncoder;
+
     private static final String USER_1 = "demoTestUser1";
 
     private static final String USER_2 = "demoTestUser2";
@@ -45,7 +49,7 @@ public class PersonnelTest {
 
         Assert.assertEquals( "There should be no Personnel records in the system", 0, service.count() );
 
-        final Personnel p1 = new Personnel( new UserForm( USER_1, PW, Role.ROLE_ADMIN, 1 ) );
+        final Personnel p1 = new Personnel( new UserForm( USER_1, PW, Role.ROLE_ADMIN, 1 ), passwordEncoder );
 
         service.save( p1 );
 
@@ -73,7 +77,7 @@ public class PersonnelTest {
         Assert.assertEquals( "Rosa", retrieved.getFirstName() );
 
         try {
-            final Personnel p2 = new Personnel( new UserForm( USER_2, PW, Role.ROLE_PATIENT, 1 ) );
+            final Personnel p2 = new Personnel( new UserForm( USER_2, PW, Role.ROLE_PATIENT, 1 ), passwordEncoder );
             Assert.fail( "Should not be able to create a Personnel from a Patient user" );
         }
         catch ( final Exception e ) {
@@ -0,0 +1,143 @@
+package edu.ncsu.csc.iTrust2.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.time.Duration;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import edu.ncsu.csc.iTrust2.forms.UserForm;
+import edu.ncsu.csc.iTrust2.models.AppointmentRequest;
+import edu.ncsu.csc.iTrust2.models.Personnel;
+import edu.ncsu.csc.iTrust2.models.User;
+import edu.ncsu.csc.iTrust2.models.enums.Role;
+import edu.ncsu.csc.iTrust2.models.enums.Status;
+import edu.ncsu.csc.iTrust2.services.ScheduleIndex;
+
+/**
+ * Tests finding clashes and free slots in a ScheduleIndex.
+ */
+public class ScheduleIndexTest {
+
+    private static final ZonedDateTime MONDAY = ZonedDateTime.parse( "2030-01-07T00:00:00-05:00" );
+
+    private static final User          HCP    = new Personnel( new UserForm( "hcp", "123456", Role.ROLE_HCP, 1 ),
+            new BCryptPasswordEncoder( 4 ) );
+
+    private static AppointmentRequest appointment ( final long id, final ZonedDateTime date, final Status status ) {
+        final AppointmentRequest request = new AppointmentRequest();
+        request.setId( id );
+        request.setHcp( HCP );
+        request.setDate( date );
+        request.setStatus( status );
+        return request;
+    }
+
+    private static ZonedDateTime at ( final int hour, final int minute ) {
+        return MONDAY.withHour( hour ).withMinute( minute );
+    }
+
+    /**
+     * Index with appointments at 9:00 and 10:15 on Monday
+     */
+    private static ScheduleIndex index () {
+        final List<AppointmentRequest> approved = new ArrayList<AppointmentRequest>();
+        approved.add( appointment( 1L, at( 9, 0 ), Status.APPROVED ) );
+        approved.add( appointment( 2L, at( 10, 15 ), Status.APPROVED ) );
+        return new ScheduleIndex( hcp -> "hcp".equals( hcp ) ? approved : new ArrayList<AppointmentRequest>(),
+                Duration.ofMinutes( 30 ) );
+    }
+
+    /**
+     * Appointments clash when they start less than an appointment length
+     * apart, and never with themselves.
+     */
+    @Test
+    public void testFindConflict () {
+        final ScheduleIndex index = index();
+        assertEquals( Long.valueOf( 1L ), index.findConflict( "hcp", at( 9, 0 ), null ) );
+        assertEquals( Long.valueOf( 1L ), index.findConflict( "hcp", at( 8, 31 ), null ) );
+        assertEquals( Long.valueOf( 1L ), index.findConflict( "hcp", at( 9, 29 ), null ) );
+        assertNull( index.findConflict( "hcp", at( 8, 30 ), null ) );
+        assertNull( index.findConflict( "hcp", at( 9, 30 ), null ) );
+        assertEquals( Long.valueOf( 2L ), index.findConflict( "hcp", at( 10, 0 ), null ) );
+        assertNull( index.findConflict( "hcp", at( 10, 15 ), 2L ) );
+        assertNull( index.findConflict( "other", at( 9, 0 ), null ) );
+    }
+
+    /**
+     * Approving, moving, rejecting, and deleting appointments should all be
+     * reflected straight away.
+     */
+    @Test
+    public void testUpdates () {
+        final ScheduleIndex index = index();
+        assertNull( index.findConflict( "hcp", at( 14, 0 ), null ) );
+
+        index.saved( appointment( 3L, at( 14, 0 ), Status.APPROVED ) );
+        assertEquals( Long.valueOf( 3L ), index.findConflict( "hcp", at( 14, 0 ), null ) );
+
+        index.saved( appointment( 3L, at( 15, 0 ), Status.APPROVED ) );
+        assertNull( index.findConflict( "hcp", at( 14, 0 ), null ) );
+        assertEquals( Long.valueOf( 3L ), index.findConflict( "hcp", at( 15, 0 ), null ) );
+
+        index.saved( appointment( 3L, at( 15, 0 ), Status.REJECTED ) );
+        assertNull( index.findConflict( "hcp", at( 15, 0 ), null ) );
+
+        index.removed( 1L );
+        assertNull( index.findConflict( "hcp", at( 9, 0 ), null ) );
+
+        index.clear();
+        assertEquals( Long.valueOf( 1L ), index.findConflict( "hcp", at( 9, 0 ), null ) );
+    }
+
+    /**
+     * A held slot should clash like an approved appointment until it is
+     * released, and survive the HCP being forgotten.
+     */
+    @Test
+    public void testHold () {
+        final ScheduleIndex index = index();
+        assertNull( index.hold( "hcp", at( 9, 15 ), null ) );
+        final Long moved = index.hold( "hcp", at( 9, 0 ), 1L );
+        assertNotNull( moved );
+        index.release( "hcp", moved );
+
+        final Long hold = index.hold( "hcp", at( 14, 0 ), null );
+        assertNotNull( hold );
+        assertNull( index.hold( "hcp", at( 14, 20 ), null ) );
+        assertEquals( hold, index.findConflict( "hcp", at( 14, 20 ), null ) );
+
+        index.forget( "hcp" );
+        assertEquals( hold, index.findConflict( "hcp", at( 14, 20 ), null ) );
+        assertEquals( Long.valueOf( 1L ), index.findConflict( "hcp", at( 8, 45 ), null ) );
+
+        index.release( "hcp", hold );
+        assertNull( index.findConflict( "hcp", at( 14, 20 ), null ) );
+    }
+
+    /**
+     * Free slots should be on the half hour, within working hours, and skip
+     * anything that clashes with an appointment.
+     */
+    @Test
+    public void testFindFreeSlots () {
+        final ScheduleIndex index = index();
+        final List<ZonedDateTime> free = index.findFreeSlots( "hcp", at( 8, 50 ), MONDAY.plusDays( 2 ),
+                LocalTime.of( 9, 0 ), LocalTime.of( 12, 0 ), 5 );
+        assertEquals( List.of( at( 9, 30 ), at( 11, 0 ), at( 11, 30 ), at( 9, 0 ).plusDays( 1 ),
+                at( 9, 30 ).plusDays( 1 ) ), free );
+
+        /* Nothing is offered after the end of the range */
+        assertEquals( List.of( at( 11, 0 ) ), index.findFreeSlots( "hcp", at( 10, 40 ), at( 11, 30 ),
+                LocalTime.of( 9, 0 ), LocalTime.of( 12, 0 ), 5 ) );
+    }
+
+}
@@ -9,6 +9,7 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -28,6 +29,9 @@ public class UserTest {
     @Autowired
     private UserService         service;
 
+    @Autowired
+    private PasswordEncoder     passwordEncoder;
+
     private static final String USER_1 = "testUser1";
 
     private static final String USER_2 = "testUser2";
@@ -47,7 +51,7 @@ public class UserTest {
 
         Assert.assertEquals( "There should be no users in the system", 0, service.count() );
 
-        final User user1 = new Personnel( new UserForm( USER_1, PW, Role.ROLE_HCP, 1 ) );
+        final User user1 = new Personnel( new UserForm( USER_1, PW, Role.ROLE_HCP, 1 ), passwordEncoder );
 
         service.save( user1 );
 
@@ -63,9 +67,9 @@ public class UserTest {
         Assert.assertEquals( "A user with two roles should be retrieved with two roles", 2,
                 service.findByName( USER_1 ).getRoles().size() );
 
-        final User user2 = new Patient( new UserForm( USER_2, PW, Role.ROLE_PATIENT, 1 ) );
+        final User user2 = new Patient( new UserForm( USER_2, PW, Role.ROLE_PATIENT, 1 ), passwordEncoder );
 
-        User user3 = new Personnel( new UserForm( USER_3, PW, Role.ROLE_LABTECH, 1 ) );
+        User user3 = new Personnel( new UserForm( USER_3, PW, Role.ROLE_LABTECH, 1 ), passwordEncoder );
         service.saveAll( List.of( user2, user3 ) );
 
         Assert.assertEquals( "Creating multiple users should save them as expected", 3, service.count() );
@@ -87,7 +91,7 @@ public class UserTest {
             final UserForm uf = new UserForm( USER_2, PW, Role.ROLE_ADMIN, 1 );
             uf.addRole( Role.ROLE_LABTECH.toString() );
 
-            final User user2 = new Personnel( uf );
+            final User user2 = new Personnel( uf, passwordEncoder );
 
             Assert.fail( "It should not be possible to create an Admin with a secondary role!" );
         }
@@ -97,7 +101,7 @@ public class UserTest {
 
         try {
             final UserForm uf = new UserForm( USER_2, PW, Role.ROLE_ADMIN, 1 );
-            final User user2 = new Personnel( uf );
+            final User user2 = new Personnel( uf, passwordEncoder );
 
             user2.addRole( Role.ROLE_ER );
 
@@ -109,7 +113,7 @@ public class UserTest {
 
         try {
             final UserForm uf = new UserForm( USER_2, PW, Role.ROLE_ER, 1 );
-            final User user2 = new Personnel( uf );
+            final User user2 = new Personnel( uf, passwordEncoder );
 
             user2.addRole( Role.ROLE_ADMIN );
 